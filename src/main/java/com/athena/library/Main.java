@@ -1,9 +1,14 @@
 package com.athena.library;
 
 import com.athena.library.firebase.FirebaseConfig;
+import com.athena.library.firebase.HoldService;
+import com.athena.library.firebase.WriteBehindQueue;
 import com.athena.library.ui.javafx.LoginScreenFX;
 import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.EdtMonitor;
 import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.MetricsHttpServer;
+import com.athena.library.utils.StallWatchdog;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -38,6 +43,10 @@ public class MainFX extends Application {
         // Load configuration
         ConfigManager.getInstance();
 
+        // Watch the Swing and JavaFX threads for stalls
+        EdtMonitor.install();
+        StallWatchdog.getInstance().start();
+
         // Show loading screen
         showLoadingScreen();
 
@@ -49,6 +58,9 @@ public class MainFX extends Application {
                     // Initialize Firebase
                     FirebaseConfig.initialize();
 
+                    // Pass on uncollected hold copies whoever is logged in
+                    HoldService.getInstance().startExpirySweeper();
+
                     // Simulate longer loading time for demo purposes
                     Thread.sleep(2000);
 
@@ -134,6 +146,10 @@ public class MainFX extends Application {
     @Override
     public void stop() {
         // Clean up resources
+        HoldService.getInstance().stopExpirySweeper();
+        WriteBehindQueue.getInstance().shutdown();
+        MetricsHttpServer.getInstance().stop();
+        StallWatchdog.getInstance().stop();
         ErrorHandler.shutdown();
     }
 }
\ No newline at end of file
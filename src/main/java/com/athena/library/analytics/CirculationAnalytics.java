@@ -0,0 +1,386 @@
+package com.athena.library.analytics;
+
+import com.athena.library.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Circulation reports computed locally over a {@link LoanDataset}.
+ *
+ * Every report scans the loan columns with a parallel stream: each fork/join task counts its
+ * share of the rows into its own primitive array and the arrays are added together at the
+ * end, so no locks or per-loan objects are involved. Date ranges select loans by borrow date
+ * (copy utilization instead counts the time books were out during the range); a null bound
+ * leaves that side open.
+ */
+public class CirculationAnalytics {
+    private static final double MINUTES_PER_DAY = 24 * 60;
+    private static final String UNKNOWN_DEPARTMENT = "Unknown";
+    private static final String NO_GENRE = "Uncategorized";
+
+    private final LoanDataset dataset;
+    private final int nowMinute;
+
+    /**
+     * Creates reports over a dataset
+     * @param dataset Loans to report on
+     */
+    public CirculationAnalytics(LoanDataset dataset) {
+        this.dataset = dataset;
+        this.nowMinute = LoanDataset.toMinutes(dataset.getBuiltAt());
+    }
+
+    /**
+     * Number of loans of one book
+     */
+    public static class TitleCount {
+        private final String bookId;
+        private final String title;
+        private final long borrows;
+
+        TitleCount(String bookId, String title, long borrows) {
+            this.bookId = bookId;
+            this.title = title;
+            this.borrows = borrows;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        /**
+         * Gets the title
+         * @return Title, or null if the book is no longer in the catalogue
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        @Override
+        public String toString() {
+            return (title != null ? title : bookId) + ": " + borrows;
+        }
+    }
+
+    /**
+     * Loan counts, durations and overdue rate of the loans borrowed in a range
+     */
+    public static class LoanStats {
+        private final long loans;
+        private final long returned;
+        private final long overdue;
+        private final long lost;
+        private final double averageLoanDays;
+
+        LoanStats(long loans, long returned, long overdue, long lost, double averageLoanDays) {
+            this.loans = loans;
+            this.returned = returned;
+            this.overdue = overdue;
+            this.lost = lost;
+            this.averageLoanDays = averageLoanDays;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+
+        public long getReturned() {
+            return returned;
+        }
+
+        /**
+         * Gets the number of loans returned after their due date or still out past it
+         * @return Number of overdue loans
+         */
+        public long getOverdue() {
+            return overdue;
+        }
+
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * Gets the average time between borrowing and returning, over returned loans
+         * @return Average loan duration in days, 0 if nothing was returned
+         */
+        public double getAverageLoanDays() {
+            return averageLoanDays;
+        }
+
+        /**
+         * Gets the share of loans that went overdue
+         * @return Overdue loans / loans, 0 if there were no loans
+         */
+        public double getOverdueRate() {
+            return loans > 0 ? (double) overdue / loans : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "LoanStats{" +
+                    "loans=" + loans +
+                    ", returned=" + returned +
+                    ", overdue=" + overdue +
+                    ", lost=" + lost +
+                    ", averageLoanDays=" + averageLoanDays +
+                    '}';
+        }
+    }
+
+    /**
+     * How much of a book's stock is in use
+     */
+    public static class CopyUtilization {
+        private final String bookId;
+        private final String title;
+        private final int totalCopies;
+        private final int availableCopies;
+        private final double utilization;
+
+        CopyUtilization(String bookId, String title, int totalCopies, int availableCopies, double utilization) {
+            this.bookId = bookId;
+            this.title = title;
+            this.totalCopies = totalCopies;
+            this.availableCopies = availableCopies;
+            this.utilization = utilization;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getTotalCopies() {
+            return totalCopies;
+        }
+
+        public int getAvailableCopies() {
+            return availableCopies;
+        }
+
+        /**
+         * Gets the share of copies on the shelf when the dataset was built
+         * @return availableCopies / totalCopies
+         */
+        public double getAvailableRatio() {
+            return totalCopies > 0 ? (double) availableCopies / totalCopies : 0;
+        }
+
+        /**
+         * Gets the share of the stock that was out on loan over the report range
+         * @return Copy-time on loan / (totalCopies * length of the range)
+         */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        @Override
+        public String toString() {
+            return (title != null ? title : bookId) + ": " + availableCopies + "/" + totalCopies
+                    + " available, " + Math.round(utilization * 100) + "% utilized";
+        }
+    }
+
+    /**
+     * Gets the most borrowed titles
+     * @param from Earliest borrow date, or null
+     * @param to Latest borrow date, or null
+     * @param limit Maximum number of titles
+     * @return Titles with the most loans first
+     */
+    public List<TitleCount> topBorrowed(Date from, Date to, int limit) {
+        int books = dataset.getBookCount();
+        long[] counts = loans(from, to).collect(() -> new long[books],
+                (acc, loan) -> acc[dataset.getBookRow(loan)]++,
+                CirculationAnalytics::addInto);
+
+        List<TitleCount> top = new ArrayList<>();
+        IntStream.range(0, books)
+                .filter(book -> counts[book] > 0)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer book) -> counts[book]).reversed())
+                .limit(Math.max(0, limit))
+                .forEach(book -> top.add(new TitleCount(dataset.getBookId(book), dataset.getTitle(book), counts[book])));
+        return top;
+    }
+
+    /**
+     * Gets the number of loans of each genre by the students of each department.
+     * A book with several genres counts once for each.
+     * @param from Earliest borrow date, or null
+     * @param to Latest borrow date, or null
+     * @return Department -> genre -> loans, busiest departments and genres first
+     */
+    public Map<String, Map<String, Long>> genreDemandByDepartment(Date from, Date to) {
+        List<String> genres = dataset.getGenreDictionary();
+        List<String> departments = dataset.getDepartmentDictionary();
+        int genreColumns = genres.size() + 1;                 // Last column: books without a genre
+        int cells = (departments.size() + 1) * genreColumns;  // Last row: unknown department
+
+        long[] demand = loans(from, to).collect(() -> new long[cells], (acc, loan) -> {
+            int department = dataset.getDepartmentId(dataset.getStudentRow(loan));
+            int row = (department != LoanDataset.NONE ? department : departments.size()) * genreColumns;
+            int book = dataset.getBookRow(loan);
+            int start = dataset.getGenreStart(book);
+            int end = dataset.getGenreEnd(book);
+            if (start == end) {
+                acc[row + genres.size()]++;
+            }
+            for (int i = start; i < end; i++) {
+                acc[row + dataset.getGenreId(i)]++;
+            }
+        }, CirculationAnalytics::addInto);
+
+        List<Integer> departmentOrder = new ArrayList<>();
+        long[] departmentTotals = new long[departments.size() + 1];
+        for (int department = 0; department <= departments.size(); department++) {
+            for (int genre = 0; genre < genreColumns; genre++) {
+                departmentTotals[department] += demand[department * genreColumns + genre];
+            }
+            if (departmentTotals[department] > 0) {
+                departmentOrder.add(department);
+            }
+        }
+        departmentOrder.sort(Comparator.comparingLong((Integer department) -> departmentTotals[department]).reversed());
+
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        for (int department : departmentOrder) {
+            int row = department * genreColumns;
+            Map<String, Long> byGenre = new LinkedHashMap<>();
+            IntStream.range(0, genreColumns)
+                    .filter(genre -> demand[row + genre] > 0)
+                    .boxed()
+                    .sorted(Comparator.comparingLong((Integer genre) -> demand[row + genre]).reversed())
+                    .forEach(genre -> byGenre.put(genre < genres.size() ? genres.get(genre) : NO_GENRE,
+                            demand[row + genre]));
+            result.put(department < departments.size() ? departments.get(department) : UNKNOWN_DEPARTMENT, byGenre);
+        }
+        return result;
+    }
+
+    /**
+     * Gets loan counts, the average loan duration and the overdue rate
+     * @param from Earliest borrow date, or null
+     * @param to Latest borrow date, or null
+     * @return Statistics of the loans borrowed in the range
+     */
+    public LoanStats loanStats(Date from, Date to) {
+        // loans, returned, minutes out of returned loans, overdue, lost
+        long[] totals = loans(from, to).collect(() -> new long[5], (acc, loan) -> {
+            acc[0]++;
+            int borrowed = dataset.getBorrowMinute(loan);
+            int due = dataset.getDueMinute(loan);
+            int returned = dataset.getReturnMinute(loan);
+            if (dataset.getStatus(loan) == Transaction.Status.LOST) {
+                acc[4]++;
+            } else if (returned != LoanDataset.NO_DATE) {
+                acc[1]++;
+                acc[2] += returned - borrowed;
+                if (due != LoanDataset.NO_DATE && returned > due) {
+                    acc[3]++;
+                }
+            } else if (due != LoanDataset.NO_DATE && due < nowMinute) {
+                acc[3]++;
+            }
+        }, CirculationAnalytics::addInto);
+
+        double averageDays = totals[1] > 0 ? totals[2] / (double) totals[1] / MINUTES_PER_DAY : 0;
+        return new LoanStats(totals[0], totals[1], totals[3], totals[4], averageDays);
+    }
+
+    /**
+     * Gets the average loan duration of the returned loans borrowed in a range
+     * @param from Earliest borrow date, or null
+     * @param to Latest borrow date, or null
+     * @return Average duration in days
+     */
+    public double averageLoanDays(Date from, Date to) {
+        return loanStats(from, to).getAverageLoanDays();
+    }
+
+    /**
+     * Gets the share of the loans borrowed in a range that went overdue
+     * @param from Earliest borrow date, or null
+     * @param to Latest borrow date, or null
+     * @return Overdue rate between 0 and 1
+     */
+    public double overdueRate(Date from, Date to) {
+        return loanStats(from, to).getOverdueRate();
+    }
+
+    /**
+     * Gets the copy utilization of every book with copies. Loans still out count up to the
+     * time the dataset was built; lost books count as out until their due date.
+     * @param from Start of the range, or null for the first loan
+     * @param to End of the range, or null for when the dataset was built
+     * @return Books with the highest utilization first
+     */
+    public List<CopyUtilization> copyUtilization(Date from, Date to) {
+        int books = dataset.getBookCount();
+        int rangeStart = from != null ? LoanDataset.toMinutes(from)
+                : dataset.size() > 0 ? dataset.getBorrowMinute(0) : nowMinute;
+        int rangeEnd = to != null ? LoanDataset.toMinutes(to) : nowMinute;
+        long rangeMinutes = Math.max(0L, (long) rangeEnd - rangeStart);
+
+        // Only loans borrowed before the end of the range can overlap it
+        long[] minutesOut = IntStream.range(0, dataset.endOfLoansTo(to)).parallel().collect(() -> new long[books],
+                (acc, loan) -> {
+                    int borrowed = dataset.getBorrowMinute(loan);
+                    int returned = dataset.getReturnMinute(loan);
+                    int end;
+                    if (returned != LoanDataset.NO_DATE) {
+                        end = returned;
+                    } else if (dataset.getStatus(loan) == Transaction.Status.LOST) {
+                        end = dataset.getDueMinute(loan) != LoanDataset.NO_DATE ? dataset.getDueMinute(loan) : borrowed;
+                    } else {
+                        end = nowMinute;
+                    }
+                    long overlap = (long) Math.min(end, rangeEnd) - Math.max(borrowed, rangeStart);
+                    if (overlap > 0) {
+                        acc[dataset.getBookRow(loan)] += overlap;
+                    }
+                }, CirculationAnalytics::addInto);
+
+        List<CopyUtilization> utilization = new ArrayList<>();
+        for (int book = 0; book < books; book++) {
+            int copies = dataset.getTotalCopies(book);
+            if (copies <= 0) {
+                continue;
+            }
+            double used = rangeMinutes > 0 ? minutesOut[book] / ((double) copies * rangeMinutes) : 0;
+            utilization.add(new CopyUtilization(dataset.getBookId(book), dataset.getTitle(book), copies,
+                    dataset.getAvailableCopies(book), used));
+        }
+        utilization.sort(Comparator.comparingDouble(CopyUtilization::getUtilization).reversed());
+        return utilization;
+    }
+
+    /**
+     * Gets the loans borrowed in a range as a parallel stream of rows
+     */
+    private IntStream loans(Date from, Date to) {
+        int start = dataset.firstLoanFrom(from);
+        int end = Math.max(start, dataset.endOfLoansTo(to));
+        return IntStream.range(start, end).parallel();
+    }
+
+    private static void addInto(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+}
\ No newline at end of file
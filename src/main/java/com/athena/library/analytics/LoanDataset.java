@@ -0,0 +1,407 @@
+package com.athena.library.analytics;
+
+import com.athena.library.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the loan history for circulation reports.
+ *
+ * Each loan is one row. The book and student are row numbers in small dimension tables
+ * (books: title, genres and copy counts; students: department), dates are minutes since
+ * the epoch in int arrays and the status is a byte, so a few million loans fit in tens of
+ * megabytes and a report is a scan over primitive arrays. Loans are sorted by borrow date,
+ * so the loans borrowed in a date range are one contiguous slice, found by binary search.
+ *
+ * A dataset is a snapshot: build a new one to pick up later loans.
+ */
+public class LoanDataset {
+    static final int NONE = -1;
+    static final int NO_DATE = Integer.MIN_VALUE;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final Transaction.Status[] STATUSES = Transaction.Status.values();
+
+    // Loans, sorted by borrow date
+    private final int size;
+    private final int[] bookRows;
+    private final int[] studentRows;
+    private final int[] borrowMinutes;
+    private final int[] dueMinutes;
+    private final int[] returnMinutes; // NO_DATE while the book is out
+    private final byte[] statuses;     // Transaction.Status ordinals
+
+    // Books: every book in the catalogue, plus any only known from its loans
+    private final String[] bookIds;
+    private final String[] titles;
+    private final int[] totalCopies;
+    private final int[] availableCopies;
+    private final String[] genreDictionary;
+    private final int[] genreOffsets; // The genres of book b are genreIds[genreOffsets[b]] .. genreIds[genreOffsets[b + 1] - 1]
+    private final int[] genreIds;
+
+    // Students
+    private final String[] studentIds;
+    private final String[] departmentDictionary;
+    private final int[] departmentIds; // NONE if unknown
+
+    private final long builtAt;
+
+    private LoanDataset(Builder builder, int[] order) {
+        this.size = order.length;
+        this.bookRows = permute(builder.bookRows, order);
+        this.studentRows = permute(builder.studentRows, order);
+        this.borrowMinutes = permute(builder.borrowMinutes, order);
+        this.dueMinutes = permute(builder.dueMinutes, order);
+        this.returnMinutes = permute(builder.returnMinutes, order);
+        this.statuses = new byte[size];
+        for (int i = 0; i < size; i++) {
+            statuses[i] = builder.statuses[order[i]];
+        }
+
+        int books = builder.bookIds.size();
+        this.bookIds = builder.bookIds.toArray(new String[0]);
+        this.titles = builder.titles.toArray(new String[0]);
+        this.totalCopies = Arrays.copyOf(builder.totalCopies, books);
+        this.availableCopies = Arrays.copyOf(builder.availableCopies, books);
+        this.genreDictionary = builder.genres.toArray(new String[0]);
+
+        // Books added before their catalogue entry keep their genres in a list until now
+        this.genreOffsets = new int[books + 1];
+        int genreCount = 0;
+        for (int book = 0; book < books; book++) {
+            genreCount += builder.bookGenres.get(book).length;
+            genreOffsets[book + 1] = genreCount;
+        }
+        this.genreIds = new int[genreCount];
+        for (int book = 0; book < books; book++) {
+            int[] ids = builder.bookGenres.get(book);
+            System.arraycopy(ids, 0, genreIds, genreOffsets[book], ids.length);
+        }
+
+        this.studentIds = builder.studentIds.toArray(new String[0]);
+        this.departmentDictionary = builder.departments.toArray(new String[0]);
+        this.departmentIds = Arrays.copyOf(builder.departmentIds, studentIds.length);
+        this.builtAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the number of loans
+     * @return Number of loan rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of books, including books only known from their loans
+     * @return Number of book rows
+     */
+    public int getBookCount() {
+        return bookIds.length;
+    }
+
+    /**
+     * Gets the time the dataset was built; loans still out are counted up to this time
+     * @return Build time in milliseconds since the epoch
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    int getBookRow(int loan) {
+        return bookRows[loan];
+    }
+
+    int getStudentRow(int loan) {
+        return studentRows[loan];
+    }
+
+    int getBorrowMinute(int loan) {
+        return borrowMinutes[loan];
+    }
+
+    int getDueMinute(int loan) {
+        return dueMinutes[loan];
+    }
+
+    int getReturnMinute(int loan) {
+        return returnMinutes[loan];
+    }
+
+    Transaction.Status getStatus(int loan) {
+        return STATUSES[statuses[loan]];
+    }
+
+    String getBookId(int book) {
+        return bookIds[book];
+    }
+
+    String getTitle(int book) {
+        return titles[book];
+    }
+
+    int getTotalCopies(int book) {
+        return totalCopies[book];
+    }
+
+    int getAvailableCopies(int book) {
+        return availableCopies[book];
+    }
+
+    int getGenreStart(int book) {
+        return genreOffsets[book];
+    }
+
+    int getGenreEnd(int book) {
+        return genreOffsets[book + 1];
+    }
+
+    int getGenreId(int index) {
+        return genreIds[index];
+    }
+
+    /**
+     * Gets every distinct genre
+     * @return Genres, indexed by genre id
+     */
+    public List<String> getGenreDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(genreDictionary));
+    }
+
+    /**
+     * Gets every distinct department
+     * @return Departments, indexed by department id
+     */
+    public List<String> getDepartmentDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(departmentDictionary));
+    }
+
+    int getDepartmentId(int student) {
+        return student != NONE ? departmentIds[student] : NONE;
+    }
+
+    /**
+     * Finds the first loan borrowed at or after a time
+     * @param date Time, or null for the first loan
+     * @return Loan row; size() if every loan was borrowed earlier
+     */
+    int firstLoanFrom(Date date) {
+        return date != null ? lowerBound(toMinutes(date)) : 0;
+    }
+
+    /**
+     * Finds the end of the loans borrowed at or before a time
+     * @param date Time, or null for the end of the dataset
+     * @return One past the last matching loan row
+     */
+    int endOfLoansTo(Date date) {
+        if (date == null) {
+            return size;
+        }
+        int minute = toMinutes(date);
+        return minute == Integer.MAX_VALUE ? size : lowerBound(minute + 1);
+    }
+
+    private int lowerBound(int minute) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (borrowMinutes[middle] < minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    static int toMinutes(Date date) {
+        return date != null ? toMinutes(date.getTime()) : NO_DATE;
+    }
+
+    static int toMinutes(long millis) {
+        long minutes = Math.floorDiv(millis, MILLIS_PER_MINUTE);
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, minutes));
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = column[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Maps distinct strings to dense ids
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String[] toArray(String[] type) {
+            return values.toArray(type);
+        }
+    }
+
+    /**
+     * Accumulates books, students and loans, in any order, before the dataset is frozen
+     */
+    static class Builder {
+        private static final int[] NO_GENRES = new int[0];
+
+        private int size;
+        private int[] bookRows = new int[1024];
+        private int[] studentRows = new int[1024];
+        private int[] borrowMinutes = new int[1024];
+        private int[] dueMinutes = new int[1024];
+        private int[] returnMinutes = new int[1024];
+        private byte[] statuses = new byte[1024];
+
+        private final Map<String, Integer> booksById = new HashMap<>();
+        private final List<String> bookIds = new ArrayList<>();
+        private final List<String> titles = new ArrayList<>();
+        private final List<int[]> bookGenres = new ArrayList<>();
+        private int[] totalCopies = new int[256];
+        private int[] availableCopies = new int[256];
+        private final Dictionary genres = new Dictionary();
+
+        private final Map<String, Integer> studentsById = new HashMap<>();
+        private final List<String> studentIds = new ArrayList<>();
+        private int[] departmentIds = new int[256];
+        private final Dictionary departments = new Dictionary();
+
+        /**
+         * Adds or completes a book
+         */
+        void addBook(String id, String title, List<String> bookGenreNames, int total, int available) {
+            if (id == null) {
+                return;
+            }
+            int book = bookRow(id);
+            titles.set(book, title);
+            totalCopies[book] = total;
+            availableCopies[book] = available;
+
+            if (bookGenreNames != null && !bookGenreNames.isEmpty()) {
+                int[] ids = new int[bookGenreNames.size()];
+                int count = 0;
+                for (String genre : bookGenreNames) {
+                    if (genre != null && !genre.isEmpty()) {
+                        ids[count++] = genres.encode(genre);
+                    }
+                }
+                bookGenres.set(book, Arrays.copyOf(ids, count));
+            }
+        }
+
+        /**
+         * Adds or completes a student
+         */
+        void addStudent(String id, String department) {
+            if (id == null) {
+                return;
+            }
+            int student = studentRow(id);
+            departmentIds[student] = department != null && !department.isEmpty()
+                    ? departments.encode(department) : NONE;
+        }
+
+        /**
+         * Adds a loan; loans without a borrow date are skipped
+         * @return true if the loan was added
+         */
+        boolean addLoan(String studentId, String bookId, Date borrowDate, Date dueDate, Date returnDate,
+                        Transaction.Status status) {
+            if (borrowDate == null || bookId == null) {
+                return false;
+            }
+            if (size == borrowMinutes.length) {
+                int capacity = size * 2;
+                bookRows = Arrays.copyOf(bookRows, capacity);
+                studentRows = Arrays.copyOf(studentRows, capacity);
+                borrowMinutes = Arrays.copyOf(borrowMinutes, capacity);
+                dueMinutes = Arrays.copyOf(dueMinutes, capacity);
+                returnMinutes = Arrays.copyOf(returnMinutes, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            int loan = size++;
+            bookRows[loan] = bookRow(bookId);
+            studentRows[loan] = studentId != null ? studentRow(studentId) : NONE;
+            borrowMinutes[loan] = toMinutes(borrowDate);
+            dueMinutes[loan] = dueDate != null ? toMinutes(dueDate) : NO_DATE;
+            returnMinutes[loan] = returnDate != null ? toMinutes(returnDate) : NO_DATE;
+            statuses[loan] = (byte) (status != null ? status : Transaction.Status.BORROWED).ordinal();
+            return true;
+        }
+
+        /**
+         * Sorts the loans by borrow date and freezes the dataset
+         */
+        LoanDataset build() {
+            // Sort (borrow minute, row) pairs packed into longs, in parallel
+            long[] keys = new long[size];
+            for (int loan = 0; loan < size; loan++) {
+                keys[loan] = ((long) borrowMinutes[loan] << 32) | loan;
+            }
+            Arrays.parallelSort(keys);
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) keys[i];
+            }
+            return new LoanDataset(this, order);
+        }
+
+        private int bookRow(String id) {
+            Integer row = booksById.get(id);
+            if (row != null) {
+                return row;
+            }
+            int book = bookIds.size();
+            booksById.put(id, book);
+            bookIds.add(id);
+            titles.add(null);
+            bookGenres.add(NO_GENRES);
+            if (book == totalCopies.length) {
+                totalCopies = Arrays.copyOf(totalCopies, book * 2);
+                availableCopies = Arrays.copyOf(availableCopies, book * 2);
+            }
+            return book;
+        }
+
+        private int studentRow(String id) {
+            Integer row = studentsById.get(id);
+            if (row != null) {
+                return row;
+            }
+            int student = studentIds.size();
+            studentsById.put(id, student);
+            studentIds.add(id);
+            if (student == departmentIds.length) {
+                departmentIds = Arrays.copyOf(departmentIds, student * 2);
+            }
+            departmentIds[student] = NONE;
+            return student;
+        }
+    }
+}
\ No newline at end of file
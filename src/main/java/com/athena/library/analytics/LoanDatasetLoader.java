@@ -0,0 +1,377 @@
+package com.athena.library.analytics;
+
+import com.athena.library.firebase.ExportService;
+import com.athena.library.firebase.FirebaseConfig;
+import com.athena.library.firebase.SyncEngine;
+import com.athena.library.models.Transaction;
+import com.athena.library.utils.ErrorHandler;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Query;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Builds {@link LoanDataset}s from synced collection mirrors or from export files.
+ *
+ * The transactions are mirrored projected to the handful of fields a loan row needs
+ * (transactions/analytics), so the first build reads only those fields and later builds only
+ * read loans changed since the last {@link SyncEngine} delta sync. Export files written by
+ * {@link ExportService} (CSV or JSON Lines, plain or gzipped) are streamed row by row and need
+ * no reads at all, which suits histories too large to keep in memory on a client. Student
+ * departments always come from the students mirror, as there is no student export.
+ */
+public class LoanDatasetLoader {
+    private static final String BOOKS_COLLECTION = "books";
+    private static final String STUDENTS_COLLECTION = "students";
+    private static final String TRANSACTIONS_COLLECTION = "transactions";
+    private static final String LOANS_MIRROR = TRANSACTIONS_COLLECTION + "/analytics";
+    // Fields of a loan row, plus lastUpdated for the delta syncs
+    private static final String[] LOAN_FIELDS = {
+            "studentId", "bookId", "borrowDate", "dueDate", "returnDate", "status", "lastUpdated"
+    };
+
+    /**
+     * Builds a dataset from the books and students mirrors and a projected transactions mirror
+     * @return The dataset
+     */
+    public static LoanDataset fromMirrors() {
+        long start = System.nanoTime();
+        LoanDataset.Builder builder = new LoanDataset.Builder();
+        SyncEngine syncEngine = SyncEngine.getInstance();
+
+        for (DocumentSnapshot document : syncEngine.getDocuments(BOOKS_COLLECTION)) {
+            builder.addBook(document.getId(), document.getString("title"), toStrings(document.get("genres")),
+                    toInt(document.getLong("totalCopies")), toInt(document.getLong("availableCopies")));
+        }
+        addDepartments(builder);
+        Query loans = FirebaseConfig.getFirestoreInstance().collection(TRANSACTIONS_COLLECTION).select(LOAN_FIELDS);
+        for (DocumentSnapshot document : syncEngine.getDocuments(LOANS_MIRROR, TRANSACTIONS_COLLECTION, loans)) {
+            builder.addLoan(document.getString("studentId"), document.getString("bookId"),
+                    document.getDate("borrowDate"), document.getDate("dueDate"), document.getDate("returnDate"),
+                    toStatus(document.getString("status")));
+        }
+        return build(builder, "mirrors", start);
+    }
+
+    /**
+     * Builds a dataset from export files
+     * @param transactions Transaction export
+     * @param catalogue Catalogue export, or null to take the books from the books mirror
+     * @param format Format of both files; gzipped files are detected automatically
+     * @return The dataset, or null if a file couldn't be read
+     */
+    public static LoanDataset fromExport(Path transactions, Path catalogue, ExportService.Format format) {
+        long start = System.nanoTime();
+        LoanDataset.Builder builder = new LoanDataset.Builder();
+        try {
+            if (catalogue != null) {
+                try (ExportRows rows = ExportRows.open(catalogue, format)) {
+                    while (rows.next()) {
+                        builder.addBook(rows.get("id"), rows.get("title"), rows.getList("genres"),
+                                parseInt(rows.get("totalCopies")), parseInt(rows.get("availableCopies")));
+                    }
+                }
+            } else {
+                for (DocumentSnapshot document : SyncEngine.getInstance().getDocuments(BOOKS_COLLECTION)) {
+                    builder.addBook(document.getId(), document.getString("title"), toStrings(document.get("genres")),
+                            toInt(document.getLong("totalCopies")), toInt(document.getLong("availableCopies")));
+                }
+            }
+            addDepartments(builder);
+
+            int skipped = 0;
+            try (ExportRows rows = ExportRows.open(transactions, format)) {
+                while (rows.next()) {
+                    boolean added = builder.addLoan(rows.get("studentId"), rows.get("bookId"),
+                            parseDate(rows.get("borrowDate")), parseDate(rows.get("dueDate")),
+                            parseDate(rows.get("returnDate")), toStatus(rows.get("status")));
+                    if (!added) {
+                        skipped++;
+                    }
+                }
+            }
+            if (skipped > 0) {
+                ErrorHandler.logWarning("Skipped " + skipped + " transactions without a book or borrow date in "
+                        + transactions, ErrorHandler.ErrorType.FILE);
+            }
+            return build(builder, transactions.toString(), start);
+        } catch (IOException | JsonParseException e) {
+            ErrorHandler.logWarning("Error reading export for analytics: " + e.getMessage(), ErrorHandler.ErrorType.FILE);
+            return null;
+        }
+    }
+
+    private static void addDepartments(LoanDataset.Builder builder) {
+        for (DocumentSnapshot document : SyncEngine.getInstance().getDocuments(STUDENTS_COLLECTION)) {
+            builder.addStudent(document.getId(), document.getString("department"));
+        }
+    }
+
+    private static LoanDataset build(LoanDataset.Builder builder, String source, long start) {
+        LoanDataset dataset = builder.build();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        ErrorHandler.logInfo("Built loan dataset from " + source + ": " + dataset.size() + " loans, "
+                + dataset.getBookCount() + " books in " + elapsedMs + " ms");
+        return dataset;
+    }
+
+    private static List<String> toStrings(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                if (item != null) {
+                    strings.add(item.toString());
+                }
+            }
+        }
+        return strings;
+    }
+
+    private static int toInt(Long value) {
+        return value != null ? value.intValue() : 0;
+    }
+
+    private static int parseInt(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return (int) Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Date parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Date.from(Instant.parse(value));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Transaction.Status toStatus(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Transaction.Status.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the rows of an export file one at a time
+     */
+    private abstract static class ExportRows implements Closeable {
+        protected final BufferedReader reader;
+
+        ExportRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        static ExportRows open(Path file, ExportService.Format format) throws IOException {
+            InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+            in.mark(2);
+            boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+            if (gzip) {
+                // Each export page is its own gzip member; GZIPInputStream reads them as one stream
+                in = new GZIPInputStream(in, 1 << 16);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+            return format == ExportService.Format.CSV ? new CsvRows(reader) : new JsonRows(reader);
+        }
+
+        /**
+         * Moves to the next row
+         * @return false at the end of the file
+         */
+        abstract boolean next() throws IOException;
+
+        /**
+         * Gets a value of the current row
+         * @return The value, or null if missing or empty
+         */
+        abstract String get(String column);
+
+        /**
+         * Gets a list value of the current row
+         */
+        abstract List<String> getList(String column);
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * CSV with a header row; values with commas, quotes or line breaks are quoted
+     */
+    private static class CsvRows extends ExportRows {
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final List<String> row = new ArrayList<>();
+        private final StringBuilder value = new StringBuilder();
+
+        CsvRows(BufferedReader reader) throws IOException {
+            super(reader);
+            if (readRow()) {
+                for (int i = 0; i < row.size(); i++) {
+                    columns.put(row.get(i).trim(), i);
+                }
+            }
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (readRow()) {
+                if (row.size() > 1 || !row.get(0).isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        String get(String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= row.size() || row.get(index).isEmpty()) {
+                return null;
+            }
+            return row.get(index);
+        }
+
+        @Override
+        List<String> getList(String column) {
+            List<String> items = new ArrayList<>();
+            String text = get(column);
+            if (text != null) {
+                for (String item : text.split(";")) {
+                    if (!item.trim().isEmpty()) {
+                        items.add(item.trim());
+                    }
+                }
+            }
+            return items;
+        }
+
+        private boolean readRow() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            row.clear();
+            value.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"') {
+                            if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                                value.append('"');
+                                i++;
+                            } else {
+                                quoted = false;
+                            }
+                        } else {
+                            value.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        row.add(value.toString());
+                        value.setLength(0);
+                    } else {
+                        value.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                // The quoted value continues on the next line
+                line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                value.append('\n');
+            }
+            row.add(value.toString());
+            return true;
+        }
+    }
+
+    /**
+     * One JSON object per line
+     */
+    private static class JsonRows extends ExportRows {
+        private JsonObject row;
+
+        JsonRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    row = JsonParser.parseString(line).getAsJsonObject();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        String get(String column) {
+            JsonElement element = row.get(column);
+            if (element == null || element.isJsonNull() || !element.isJsonPrimitive()) {
+                return null;
+            }
+            String text = element.getAsString();
+            return text.isEmpty() ? null : text;
+        }
+
+        @Override
+        List<String> getList(String column) {
+            List<String> items = new ArrayList<>();
+            JsonElement element = row.get(column);
+            if (element != null && element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                for (JsonElement item : array) {
+                    if (item.isJsonPrimitive()) {
+                        items.add(item.getAsString());
+                    }
+                }
+            }
+            return items;
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,11 @@
 package com.athena.library.auth;
 
 import com.athena.library.firebase.FirebaseConfig;
+import com.athena.library.firebase.FirestoreOps;
+import com.athena.library.firebase.LibrarianService;
+import com.athena.library.firebase.StudentService;
+import com.athena.library.firebase.WriteBehindQueue;
+import com.athena.library.utils.ErrorHandler;
 import org.mindrot.jbcrypt.BCrypt;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
@@ -65,7 +70,7 @@ public class AuthService {
             authData.put("lastLogin", null);
 
             ApiFuture<WriteResult> future = authRef.set(authData);
-            future.get();
+            FirestoreOps.await(future, "AuthService.createAuthRecord", AUTH_COLLECTION);
 
             return true;
         } catch (InterruptedException | ExecutionException e) {
@@ -84,24 +89,20 @@ public class AuthService {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
 
-            // First, find the student by studentId
-            Query query = db.collection(STUDENTS_COLLECTION).whereEqualTo("studentId", studentId);
-            ApiFuture<QuerySnapshot> queryFuture = query.get();
-            QuerySnapshot querySnapshot = queryFuture.get();
+            // First, find the student by studentId (served from the profile cache when possible)
+            Student student = new StudentService().getStudentByStudentId(studentId);
 
-            if (querySnapshot.isEmpty()) {
+            if (student == null) {
                 System.err.println("Student not found with ID: " + studentId);
                 return null;
             }
 
-            // Get the student document
-            DocumentSnapshot studentDoc = querySnapshot.getDocuments().get(0);
-            String systemId = studentDoc.getId();
+            String systemId = student.getId();
 
             // Now get the auth record for this user
             DocumentReference authRef = db.collection(AUTH_COLLECTION).document(systemId);
             ApiFuture<DocumentSnapshot> authFuture = authRef.get();
-            DocumentSnapshot authDoc = authFuture.get();
+            DocumentSnapshot authDoc = FirestoreOps.await(authFuture, "AuthService.authenticateStudent", AUTH_COLLECTION);
 
             if (!authDoc.exists()) {
                 System.err.println("Auth record not found for student: " + studentId);
@@ -113,17 +114,15 @@ public class AuthService {
 
             // Check the password using BCrypt
             if (BCrypt.checkpw(password, storedHash)) {
-                // Authentication successful
-                Student student = studentDoc.toObject(Student.class);
-
-                // Update last login time
+                // Authentication successful, update last login time in the background
                 Map<String, Object> updates = new HashMap<>();
                 updates.put("lastLogin", FieldValue.serverTimestamp());
-                authRef.update(updates);
+                WriteBehindQueue.getInstance().enqueueUpdate(AUTH_COLLECTION, systemId, updates);
 
                 // Set current user
                 this.currentUserId = systemId;
                 this.currentUserType = "STUDENT";
+                ErrorHandler.setUserContext(systemId, "STUDENT");
 
                 return student;
             } else {
@@ -136,6 +135,60 @@ public class AuthService {
         }
     }
 
+    /**
+     * Authenticates a librarian
+     * @param staffId Staff ID
+     * @param password Password
+     * @return Librarian object if authentication is successful, null otherwise
+     */
+    public Librarian authenticateLibrarian(String staffId, String password) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // First, find the librarian by staffId (served from the profile cache when possible)
+            Librarian librarian = new LibrarianService().getLibrarianByStaffId(staffId);
+
+            if (librarian == null) {
+                System.err.println("Librarian not found with ID: " + staffId);
+                return null;
+            }
+
+            String systemId = librarian.getId();
+
+            // Now get the auth record for this user
+            DocumentReference authRef = db.collection(AUTH_COLLECTION).document(systemId);
+            ApiFuture<DocumentSnapshot> authFuture = authRef.get();
+            DocumentSnapshot authDoc = FirestoreOps.await(authFuture, "AuthService.authenticateLibrarian", AUTH_COLLECTION);
+
+            if (!authDoc.exists()) {
+                System.err.println("Auth record not found for librarian: " + staffId);
+                return null;
+            }
+
+            // Check the password using BCrypt
+            String storedHash = authDoc.getString("passwordHash");
+            if (BCrypt.checkpw(password, storedHash)) {
+                // Authentication successful, update last login time in the background
+                Map<String, Object> updates = new HashMap<>();
+                updates.put("lastLogin", FieldValue.serverTimestamp());
+                WriteBehindQueue.getInstance().enqueueUpdate(AUTH_COLLECTION, systemId, updates);
+
+                // Set current user
+                this.currentUserId = systemId;
+                this.currentUserType = "LIBRARIAN";
+                ErrorHandler.setUserContext(systemId, "LIBRARIAN");
+
+                return librarian;
+            } else {
+                System.err.println("Invalid password for librarian: " + staffId);
+                return null;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error authenticating librarian: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Updates a user's password
      * @param userId System user ID
@@ -150,7 +203,7 @@ public class AuthService {
 
             // Get the current auth record
             ApiFuture<DocumentSnapshot> future = authRef.get();
-            DocumentSnapshot document = future.get();
+            DocumentSnapshot document = FirestoreOps.await(future, "AuthService.updatePassword", AUTH_COLLECTION);
 
             if (!document.exists()) {
                 System.err.println("Auth record not found for user: " + userId);
@@ -174,7 +227,7 @@ public class AuthService {
             updates.put("updatedAt", FieldValue.serverTimestamp());
 
             ApiFuture<WriteResult> updateFuture = authRef.update(updates);
-            updateFuture.get();
+            FirestoreOps.await(updateFuture, "AuthService.updatePassword", AUTH_COLLECTION);
 
             return true;
         } catch (InterruptedException | ExecutionException e) {
@@ -204,7 +257,7 @@ public class AuthService {
             updates.put("passwordReset", true); // Flag to indicate a password reset
 
             ApiFuture<WriteResult> future = authRef.update(updates);
-            future.get();
+            FirestoreOps.await(future, "AuthService.resetPassword", AUTH_COLLECTION);
 
             return true;
         } catch (InterruptedException | ExecutionException e) {
@@ -223,7 +276,7 @@ public class AuthService {
             Firestore db = FirebaseConfig.getFirestoreInstance();
             ApiFuture<WriteResult> future = db.collection(AUTH_COLLECTION).document(userId).delete();
 
-            future.get();
+            FirestoreOps.await(future, "AuthService.deleteAuthRecord", AUTH_COLLECTION);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error deleting auth record: " + e.getMessage());
@@ -237,6 +290,7 @@ public class AuthService {
     public void logout() {
         this.currentUserId = null;
         this.currentUserType = null;
+        ErrorHandler.setUserContext(null, null);
     }
 
     /**
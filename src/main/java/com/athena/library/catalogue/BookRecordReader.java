@@ -0,0 +1,459 @@
+package com.athena.library.catalogue;
+
+import com.athena.library.models.Book;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads books from a supplier feed one record at a time, so a feed of any size can be
+ * imported without holding it in memory.
+ *
+ * Two formats are understood:
+ * <ul>
+ *   <li>CSV with a header row. Recognised columns (case-insensitive) are title, authors,
+ *       publisher, isbn, year, genres, description, copies, location and coverImageUrl;
+ *       list columns separate values with ";" or "|". Quoted values may span lines.</li>
+ *   <li>MARC in its line-based text form (".mrk": one "=TAG  ind$asubfield..." line per
+ *       field, records separated by blank lines or "=LDR"). Title comes from 245, authors
+ *       from 100/700, ISBN from 020, publisher and year from 264 or 260, genres from
+ *       650/655, description from 520, location from 852 $h, and each 852 is one copy.</li>
+ * </ul>
+ */
+public abstract class BookRecordReader implements Closeable {
+    /**
+     * Input formats
+     */
+    public enum Format {
+        CSV,
+        MARC
+    }
+
+    /**
+     * One record from the feed: a book, or the reason it couldn't be read
+     */
+    public static class Record {
+        private final int line;
+        private final Book book;
+        private final String error;
+
+        Record(int line, Book book, String error) {
+            this.line = line;
+            this.book = book;
+            this.error = error;
+        }
+
+        /**
+         * Gets the line the record starts on
+         * @return 1-based line number
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * Gets the parse error, if any
+         * @return Error message, or null if the record was read
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    protected final BufferedReader reader;
+    protected int lineNumber;
+
+    protected BookRecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a feed
+     * @param file Feed file, UTF-8
+     * @param format Feed format
+     * @return Reader positioned at the first record
+     */
+    public static BookRecordReader open(Path file, Format format) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            return format == Format.MARC ? new MarcReader(reader) : new CsvReader(reader);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next record
+     * @return The record, or null at the end of the feed
+     */
+    public abstract Record next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Strips separators and qualifiers from an ISBN, e.g. "0-261-10238-2 (pbk.)" becomes "0261102382"
+     * @param isbn ISBN as written in the feed
+     * @return Digits (and a trailing X), or null if there are none
+     */
+    public static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (Character.isDigit(c) || ((c == 'X' || c == 'x') && digits.length() == 9)) {
+                digits.append(Character.toUpperCase(c));
+            } else if (c == '(' || (Character.isWhitespace(c) && digits.length() >= 10)) {
+                break; // Qualifier such as "(pbk.)"
+            }
+        }
+        return digits.length() > 0 ? digits.toString() : null;
+    }
+
+    private static Book newBook(String title, List<String> authors, String publisher, String isbn, int year,
+                                List<String> genres, String description, int copies, String location) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setPublisher(publisher);
+        book.setIsbn(normalizeIsbn(isbn));
+        book.setPublicationYear(year);
+        book.setGenres(genres);
+        book.setDescription(description);
+        book.setTotalCopies(copies);
+        book.setAvailableCopies(copies);
+        book.setLocation(location);
+        book.clearChanges();
+        return book;
+    }
+
+    private static String emptyToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Reads CSV feeds (RFC 4180 quoting)
+     */
+    private static class CsvReader extends BookRecordReader {
+        private static final Map<String, String> COLUMN_ALIASES = new HashMap<>();
+
+        static {
+            COLUMN_ALIASES.put("title", "title");
+            COLUMN_ALIASES.put("author", "authors");
+            COLUMN_ALIASES.put("authors", "authors");
+            COLUMN_ALIASES.put("publisher", "publisher");
+            COLUMN_ALIASES.put("isbn", "isbn");
+            COLUMN_ALIASES.put("year", "year");
+            COLUMN_ALIASES.put("publicationyear", "year");
+            COLUMN_ALIASES.put("genre", "genres");
+            COLUMN_ALIASES.put("genres", "genres");
+            COLUMN_ALIASES.put("subjects", "genres");
+            COLUMN_ALIASES.put("description", "description");
+            COLUMN_ALIASES.put("copies", "copies");
+            COLUMN_ALIASES.put("totalcopies", "copies");
+            COLUMN_ALIASES.put("quantity", "copies");
+            COLUMN_ALIASES.put("location", "location");
+            COLUMN_ALIASES.put("shelf", "location");
+            COLUMN_ALIASES.put("coverimageurl", "coverImageUrl");
+        }
+
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final List<String> row = new ArrayList<>();
+        private final StringBuilder value = new StringBuilder();
+
+        CsvReader(BufferedReader reader) throws IOException {
+            super(reader);
+            if (!readRow()) {
+                throw new IOException("CSV feed is empty");
+            }
+            for (int i = 0; i < row.size(); i++) {
+                String name = row.get(i).replace("\uFEFF", "").replaceAll("[\\s_-]", "").toLowerCase(Locale.ROOT);
+                String column = COLUMN_ALIASES.get(name);
+                if (column != null) {
+                    columns.putIfAbsent(column, i);
+                }
+            }
+            if (!columns.containsKey("title")) {
+                throw new IOException("CSV header has no title column");
+            }
+        }
+
+        @Override
+        public Record next() throws IOException {
+            int line;
+            do {
+                line = lineNumber + 1;
+                if (!readRow()) {
+                    return null;
+                }
+            } while (row.size() == 1 && row.get(0).trim().isEmpty()); // Skip blank lines
+
+            String yearText = get("year");
+            String copiesText = get("copies");
+            int year;
+            int copies;
+            try {
+                year = yearText != null ? Integer.parseInt(yearText) : 0;
+                copies = copiesText != null ? Integer.parseInt(copiesText) : 1;
+            } catch (NumberFormatException e) {
+                return new Record(line, null, "year and copies must be whole numbers");
+            }
+
+            Book book = newBook(get("title"), getList("authors"), get("publisher"), get("isbn"), year,
+                    getList("genres"), get("description"), copies, get("location"));
+            String coverImageUrl = get("coverImageUrl");
+            if (coverImageUrl != null) {
+                book.setCoverImageUrl(coverImageUrl);
+                book.clearChanges();
+            }
+            return new Record(line, book, null);
+        }
+
+        private String get(String column) {
+            Integer index = columns.get(column);
+            return index != null && index < row.size() ? emptyToNull(row.get(index)) : null;
+        }
+
+        private List<String> getList(String column) {
+            List<String> values = new ArrayList<>();
+            String text = get(column);
+            if (text != null) {
+                for (String item : text.split("[;|]")) {
+                    String trimmed = emptyToNull(item);
+                    if (trimmed != null) {
+                        values.add(trimmed);
+                    }
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Reads one row into {@link #row}
+         * @return false at the end of the input
+         */
+        private boolean readRow() throws IOException {
+            row.clear();
+            value.setLength(0);
+            String line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            lineNumber++;
+
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            value.append('"');
+                            i++;
+                        } else if (c == '"') {
+                            quoted = false;
+                        } else {
+                            value.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        row.add(value.toString());
+                        value.setLength(0);
+                    } else {
+                        value.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+
+                // The quoted value continues on the next line
+                line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+                value.append('\n');
+            }
+            row.add(value.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Reads MARC text (.mrk) feeds
+     */
+    private static class MarcReader extends BookRecordReader {
+        private static final Pattern YEAR = Pattern.compile("\\d{4}");
+
+        // Fields of the record being read: tag -> each occurrence's subfields (code -> values)
+        private final Map<String, List<Map<Character, List<String>>>> fields = new HashMap<>();
+
+        MarcReader(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public Record next() throws IOException {
+            fields.clear();
+            int start = 0;
+            String line;
+            while (true) {
+                reader.mark(8192);
+                line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+
+                if (line.trim().isEmpty()) {
+                    if (start > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (line.startsWith("=LDR") && start > 0) {
+                    // Next record starts without a blank line; leave it for the next call
+                    reader.reset();
+                    lineNumber--;
+                    break;
+                }
+                if (start == 0) {
+                    start = lineNumber;
+                }
+                parseField(line);
+            }
+            if (start == 0) {
+                return null;
+            }
+
+            String title = join(first("245", 'a'), first("245", 'b'));
+            List<String> authors = new ArrayList<>();
+            addAll(authors, "100", 'a');
+            addAll(authors, "700", 'a');
+            List<String> genres = new ArrayList<>();
+            addAll(genres, "650", 'a');
+            addAll(genres, "655", 'a');
+
+            String publisher = first("264", 'b') != null ? first("264", 'b') : first("260", 'b');
+            String date = first("264", 'c') != null ? first("264", 'c') : first("260", 'c');
+            int year = 0;
+            if (date != null) {
+                Matcher matcher = YEAR.matcher(date);
+                if (matcher.find()) {
+                    year = Integer.parseInt(matcher.group());
+                }
+            }
+
+            List<Map<Character, List<String>>> holdings = fields.get("852");
+            int copies = holdings != null ? holdings.size() : 1;
+
+            Book book = newBook(title, authors, publisher, first("020", 'a'), year, genres,
+                    first("520", 'a'), copies, first("852", 'h'));
+            return new Record(start, book, null);
+        }
+
+        /**
+         * Parses "=245  10$aThe hobbit :$bor there and back again /$cJ.R.R. Tolkien."
+         */
+        private void parseField(String line) {
+            if (line.length() < 5 || line.charAt(0) != '=') {
+                return;
+            }
+            String tag = line.substring(1, 4);
+            Map<Character, List<String>> subfields = new HashMap<>();
+            fields.computeIfAbsent(tag, key -> new ArrayList<>()).add(subfields);
+
+            // Control fields and leader have no subfields
+            int dollar = line.indexOf('$', 6);
+            if (tag.compareTo("010") < 0 || dollar < 0) {
+                return;
+            }
+            for (String part : line.substring(dollar + 1).split("\\$")) {
+                if (!part.isEmpty()) {
+                    String text = trimPunctuation(part.substring(1).replace("{dollar}", "$"));
+                    if (!text.isEmpty()) {
+                        subfields.computeIfAbsent(part.charAt(0), key -> new ArrayList<>()).add(text);
+                    }
+                }
+            }
+        }
+
+        private String first(String tag, char code) {
+            List<Map<Character, List<String>>> occurrences = fields.get(tag);
+            if (occurrences == null) {
+                return null;
+            }
+            for (Map<Character, List<String>> subfields : occurrences) {
+                List<String> values = subfields.get(code);
+                if (values != null && !values.isEmpty()) {
+                    return values.get(0);
+                }
+            }
+            return null;
+        }
+
+        private void addAll(List<String> target, String tag, char code) {
+            List<Map<Character, List<String>>> occurrences = fields.get(tag);
+            if (occurrences == null) {
+                return;
+            }
+            for (Map<Character, List<String>> subfields : occurrences) {
+                List<String> values = subfields.get(code);
+                if (values != null) {
+                    for (String value : values) {
+                        if (!target.contains(value)) {
+                            target.add(value);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static String join(String title, String subtitle) {
+            if (title == null) {
+                return subtitle;
+            }
+            return subtitle == null ? title : title + ": " + subtitle;
+        }
+
+        /**
+         * Drops the ISBD punctuation cataloguers put at the end of subfields (" /", " :", ",", ".")
+         */
+        private static String trimPunctuation(String text) {
+            int end = text.length();
+            while (end > 0 && " /:;,=".indexOf(text.charAt(end - 1)) >= 0) {
+                end--;
+            }
+            // A final period is punctuation unless it ends an initial, e.g. "Tolkien, J. R. R."
+            if (end > 2 && text.charAt(end - 1) == '.' && text.charAt(end - 3) != ' ' && text.charAt(end - 3) != '.') {
+                end--;
+            }
+            return text.substring(0, end).trim();
+        }
+    }
+}
\ No newline at end of file
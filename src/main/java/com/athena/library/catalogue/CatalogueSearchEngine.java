@@ -0,0 +1,535 @@
+package com.athena.library.catalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Ranked, typo-tolerant full-text search over book titles, authors and descriptions.
+ *
+ * Documents are numbered in the order they are added (for the catalogue panel that is
+ * the row in the {@link ColumnarBookStore}). Each query word is matched against the
+ * vocabulary allowing a few typos, using a SymSpell-style index of the words with
+ * letters deleted, and matching books are scored with BM25F: term frequency per field,
+ * weighted by field and normalised by field length. Misspelled matches score lower than
+ * exact ones. Only the best results are kept, using a bounded heap.
+ *
+ * A query word also matches the indexed words it begins, so partial words find books
+ * while the user is still typing ("pot" finds "Potter"). Such matches score lower than
+ * whole-word matches.
+ *
+ * Words of up to three letters must match exactly: with so few letters, one edit turns
+ * most short words into other common words ("cat" into "car", "bat", "at"). Words of four
+ * to six letters allow one typo and longer words two.
+ *
+ * The engine is immutable once built; rebuild it when the catalogue changes.
+ */
+public class CatalogueSearchEngine {
+    /**
+     * Searchable fields and how much a match in each counts
+     */
+    public enum Field {
+        TITLE(2.0f),
+        AUTHOR(1.5f),
+        DESCRIPTION(1.0f);
+
+        private final float weight;
+
+        Field(float weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int FIELD_COUNT = Field.values().length;
+
+    // BM25 parameters: term frequency saturation and length normalisation
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Typo tolerance: words are indexed with up to MAX_EDIT_DISTANCE letters deleted
+    // from their first PREFIX_LENGTH letters, and each edit multiplies the score by FUZZY_PENALTY
+    private static final int MAX_EDIT_DISTANCE = 2;
+    private static final int PREFIX_LENGTH = 7;
+    private static final float FUZZY_PENALTY = 0.6f;
+
+    // Partial words: query words of at least MIN_PREFIX_LENGTH letters also match the terms
+    // they begin, and such a match multiplies the score by PREFIX_PENALTY
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final float PREFIX_PENALTY = 0.8f;
+
+    private final int documentCount;
+    private final String[] terms;
+    private final Map<String, Integer> termIds;
+
+    // Term ids in alphabetical order of their terms, for prefix lookups
+    private final int[] sortedTerms;
+
+    // Postings per term: matching documents in ascending order, and for the i-th document
+    // the term frequency of each field at postingFrequencies[term][i * FIELD_COUNT + field]
+    private final int[][] postingDocuments;
+    private final int[][] postingFrequencies;
+
+    private final int[][] fieldLengths;
+    private final float[] averageFieldLengths;
+
+    // Word with letters deleted -> ids of terms it was derived from
+    private final Map<String, int[]> deletes;
+
+    /**
+     * A search result
+     */
+    public static class Hit {
+        private final int document;
+        private final float score;
+
+        Hit(int document, float score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        /**
+         * Gets the matching document
+         * @return Document number, in the order documents were added
+         */
+        public int getDocument() {
+            return document;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    private CatalogueSearchEngine(Builder builder) {
+        this.documentCount = builder.documentCount;
+        this.terms = builder.terms.toArray(new String[0]);
+        this.termIds = builder.termIds;
+        this.sortedTerms = new int[terms.length];
+        Integer[] order = new Integer[terms.length];
+        for (int term = 0; term < terms.length; term++) {
+            order[term] = term;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer term) -> terms[term]));
+        for (int i = 0; i < order.length; i++) {
+            sortedTerms[i] = order[i];
+        }
+
+        this.postingDocuments = new int[terms.length][];
+        this.postingFrequencies = new int[terms.length][];
+        for (int term = 0; term < terms.length; term++) {
+            postingDocuments[term] = builder.postingDocuments.get(term).toArray();
+            postingFrequencies[term] = builder.postingFrequencies.get(term).toArray();
+        }
+
+        this.fieldLengths = new int[FIELD_COUNT][];
+        this.averageFieldLengths = new float[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            fieldLengths[field] = builder.fieldLengths[field].toArray();
+            long total = 0;
+            for (int length : fieldLengths[field]) {
+                total += length;
+            }
+            averageFieldLengths[field] = documentCount > 0 ? Math.max(1f, (float) total / documentCount) : 1f;
+        }
+
+        Map<String, List<Integer>> deleteLists = new HashMap<>();
+        for (int term = 0; term < terms.length; term++) {
+            String prefix = terms[term].length() > PREFIX_LENGTH ? terms[term].substring(0, PREFIX_LENGTH) : terms[term];
+            for (String delete : generateDeletes(prefix, MAX_EDIT_DISTANCE)) {
+                deleteLists.computeIfAbsent(delete, key -> new ArrayList<>(2)).add(term);
+            }
+        }
+        this.deletes = new HashMap<>(deleteLists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : deleteLists.entrySet()) {
+            deletes.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Gets the number of documents in the index
+     * @return Document count
+     */
+    public int size() {
+        return documentCount;
+    }
+
+    /**
+     * Searches every field
+     * @param query Words to search for
+     * @param limit Maximum number of results
+     * @return Results, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        return search(query, limit, EnumSet.allOf(Field.class));
+    }
+
+    /**
+     * Searches some of the fields
+     * @param query Words to search for
+     * @param limit Maximum number of results
+     * @param fields Fields to match against
+     * @return Results, best first
+     */
+    public List<Hit> search(String query, int limit, Set<Field> fields) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (words.isEmpty() || limit <= 0 || documentCount == 0) {
+            return new ArrayList<>();
+        }
+
+        // Weight of each field, zero for fields not searched
+        float[] weights = new float[FIELD_COUNT];
+        for (Field field : fields) {
+            weights[field.ordinal()] = field.weight;
+        }
+
+        float[] scores = new float[documentCount];
+        float[] wordScores = new float[documentCount];
+        IntBuffer matched = new IntBuffer();
+        IntBuffer wordMatched = new IntBuffer();
+
+        for (String word : words) {
+            // A document scores once per query word, using its best-matching spelling
+            for (Map.Entry<Integer, Float> candidate : findCandidates(word).entrySet()) {
+                int term = candidate.getKey();
+                float penalty = candidate.getValue();
+                int[] documents = postingDocuments[term];
+                int[] frequencies = postingFrequencies[term];
+                float idf = idf(documents.length);
+
+                for (int i = 0; i < documents.length; i++) {
+                    int document = documents[i];
+                    float frequency = 0f;
+                    for (int field = 0; field < FIELD_COUNT; field++) {
+                        int tf = frequencies[i * FIELD_COUNT + field];
+                        if (tf > 0 && weights[field] > 0f) {
+                            float lengthRatio = fieldLengths[field][document] / averageFieldLengths[field];
+                            frequency += weights[field] * tf / (1 - B + B * lengthRatio);
+                        }
+                    }
+                    if (frequency == 0f) {
+                        continue;
+                    }
+
+                    float score = penalty * idf * frequency * (K1 + 1) / (K1 + frequency);
+                    if (score > wordScores[document]) {
+                        if (wordScores[document] == 0f) {
+                            wordMatched.add(document);
+                        }
+                        wordScores[document] = score;
+                    }
+                }
+            }
+
+            for (int i = 0; i < wordMatched.size; i++) {
+                int document = wordMatched.values[i];
+                if (scores[document] == 0f) {
+                    matched.add(document);
+                }
+                scores[document] += wordScores[document];
+                wordScores[document] = 0f;
+            }
+            wordMatched.size = 0;
+        }
+
+        return topHits(scores, matched, limit);
+    }
+
+    /**
+     * Splits text into lowercase words
+     * @param text Text to split (may be null)
+     * @return Words, in order
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> words = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Finds the indexed terms close enough to a query word, or beginning with it
+     * @return Term id -> score multiplier, closest first
+     */
+    private Map<Integer, Float> findCandidates(String word) {
+        Map<Integer, Float> candidates = new LinkedHashMap<>();
+        Integer exact = termIds.get(word);
+        if (exact != null) {
+            candidates.put(exact, 1f);
+        }
+
+        int maxDistance = allowedDistance(word.length());
+        if (maxDistance > 0) {
+            addFuzzyCandidates(word, maxDistance, candidates);
+        }
+        if (word.length() >= MIN_PREFIX_LENGTH) {
+            addPrefixCandidates(word, candidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds the terms within the given edit distance of a word
+     */
+    private void addFuzzyCandidates(String word, int maxDistance, Map<Integer, Float> candidates) {
+
+        String prefix = word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+        Set<Integer> checked = new HashSet<>(candidates.keySet());
+        for (String delete : generateDeletes(prefix, maxDistance)) {
+            int[] derivedTerms = deletes.get(delete);
+            if (derivedTerms == null) {
+                continue;
+            }
+            for (int term : derivedTerms) {
+                if (checked.add(term)) {
+                    int distance = editDistance(word, terms[term], maxDistance);
+                    if (distance <= maxDistance) {
+                        candidates.put(term, (float) Math.pow(FUZZY_PENALTY, distance));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the terms that begin with a word, unless they already matched more closely
+     */
+    private void addPrefixCandidates(String word, Map<Integer, Float> candidates) {
+        // Binary search for the first term not before the word
+        int low = 0;
+        int high = sortedTerms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terms[sortedTerms[middle]].compareTo(word) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < sortedTerms.length && terms[sortedTerms[i]].startsWith(word); i++) {
+            int term = sortedTerms[i];
+            Float current = candidates.get(term);
+            if (current == null || current < PREFIX_PENALTY) {
+                candidates.put(term, PREFIX_PENALTY);
+            }
+        }
+    }
+
+    /**
+     * Gets how many typos to allow in a word; short words must match exactly
+     */
+    private static int allowedDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 6 ? 1 : MAX_EDIT_DISTANCE;
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private static List<Hit> topHits(float[] scores, IntBuffer matched, int limit) {
+        // Min-heap of the best hits so far; ties go to the earlier document
+        Comparator<Hit> worstFirst = Comparator.comparingDouble((Hit hit) -> hit.score)
+                .thenComparing(Comparator.comparingInt((Hit hit) -> hit.document).reversed());
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Math.min(limit, matched.size) + 1, worstFirst);
+
+        for (int i = 0; i < matched.size; i++) {
+            int document = matched.values[i];
+            float score = scores[document];
+            if (heap.size() < limit) {
+                heap.add(new Hit(document, score));
+            } else if (score > heap.peek().score) {
+                heap.poll();
+                heap.add(new Hit(document, score));
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(worstFirst.reversed());
+        return hits;
+    }
+
+    /**
+     * Generates every string obtained by deleting up to the given number of letters
+     * (the word itself included)
+     */
+    private static Set<String> generateDeletes(String word, int maxDistance) {
+        Set<String> results = new HashSet<>();
+        results.add(word);
+        List<String> current = Collections.singletonList(word);
+        for (int distance = 1; distance <= maxDistance; distance++) {
+            List<String> next = new ArrayList<>();
+            for (String candidate : current) {
+                if (candidate.length() <= 1) {
+                    continue;
+                }
+                for (int i = 0; i < candidate.length(); i++) {
+                    String delete = candidate.substring(0, i) + candidate.substring(i + 1);
+                    if (results.add(delete)) {
+                        next.add(delete);
+                    }
+                }
+            }
+            current = next;
+        }
+        return results;
+    }
+
+    /**
+     * Computes the edit distance (insertions, deletions, substitutions and adjacent
+     * transpositions) between two words, giving up once it exceeds the limit
+     * @return The distance, or maxDistance + 1 if it is larger than maxDistance
+     */
+    static int editDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > maxDistance) {
+                return maxDistance + 1;
+            }
+
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    /**
+     * Growable int array
+     */
+    private static class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Collects documents before the index is built
+     */
+    public static class Builder {
+        private int documentCount;
+        private final List<String> terms = new ArrayList<>();
+        private final Map<String, Integer> termIds = new HashMap<>();
+        private final List<IntBuffer> postingDocuments = new ArrayList<>();
+        private final List<IntBuffer> postingFrequencies = new ArrayList<>();
+        private final IntBuffer[] fieldLengths = new IntBuffer[FIELD_COUNT];
+
+        public Builder() {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                fieldLengths[field] = new IntBuffer();
+            }
+        }
+
+        /**
+         * Adds a book
+         * @param title Book title (may be null)
+         * @param authors Author names (may be null)
+         * @param description Book description (may be null)
+         * @return The document number of the book
+         */
+        public int add(String title, List<String> authors, String description) {
+            int document = documentCount++;
+
+            // Term -> frequency in each field
+            Map<String, int[]> frequencies = new LinkedHashMap<>();
+            addField(frequencies, Field.TITLE, tokenize(title));
+            List<String> authorWords = new ArrayList<>();
+            if (authors != null) {
+                for (String author : authors) {
+                    authorWords.addAll(tokenize(author));
+                }
+            }
+            addField(frequencies, Field.AUTHOR, authorWords);
+            addField(frequencies, Field.DESCRIPTION, tokenize(description));
+
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                Integer term = termIds.get(entry.getKey());
+                if (term == null) {
+                    term = terms.size();
+                    terms.add(entry.getKey());
+                    termIds.put(entry.getKey(), term);
+                    postingDocuments.add(new IntBuffer());
+                    postingFrequencies.add(new IntBuffer());
+                }
+                postingDocuments.get(term).add(document);
+                for (int tf : entry.getValue()) {
+                    postingFrequencies.get(term).add(tf);
+                }
+            }
+            return document;
+        }
+
+        private void addField(Map<String, int[]> frequencies, Field field, List<String> words) {
+            fieldLengths[field.ordinal()].add(words.size());
+            for (String word : words) {
+                frequencies.computeIfAbsent(word, key -> new int[FIELD_COUNT])[field.ordinal()]++;
+            }
+        }
+
+        /**
+         * Builds the search engine
+         * @return The engine
+         */
+        public CatalogueSearchEngine build() {
+            return new CatalogueSearchEngine(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,432 @@
+package com.athena.library.catalogue;
+
+import com.athena.library.models.BookSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the catalogue for list views and filtering.
+ *
+ * Instead of one object per book, each field is stored in its own array indexed by row:
+ * numbers as int arrays, repeated strings (genres, publishers, locations, authors) as ids
+ * into a dictionary, and the multi-valued genre and author fields as flattened id tables
+ * with per-row offsets. Filters produce {@link BitSet}s of matching rows that can be
+ * combined with and/or, so no per-book objects are touched while filtering.
+ *
+ * The store is built once per catalogue load. Only the available copy count can change
+ * afterwards, for example after the current user borrows a copy.
+ */
+public class ColumnarBookStore {
+    private static final int NONE = -1;
+
+    private final int size;
+
+    // Per-row strings that are (nearly) unique per book
+    private final String[] ids;
+    private final String[] titles;
+    private final String[] isbns;
+
+    // Per-row numbers
+    private final int[] publicationYears;
+    private final int[] totalCopies;
+    private final int[] availableCopies;
+    private final long[] lastUpdated;
+
+    // Dictionary-encoded single-valued fields (NONE for null)
+    private final String[] publisherDictionary;
+    private final int[] publisherIds;
+    private final String[] locationDictionary;
+    private final int[] locationIds;
+
+    // Multi-valued fields: the ids for row r are ids[offsets[r]] .. ids[offsets[r + 1] - 1]
+    private final String[] genreDictionary;
+    private final int[] genreOffsets;
+    private final int[] genreIds;
+    private final String[] authorDictionary;
+    private final int[] authorOffsets;
+    private final int[] authorIds;
+
+    private final Map<String, Integer> rowsById;
+
+    private ColumnarBookStore(Builder builder) {
+        this.size = builder.size;
+        this.ids = builder.ids;
+        this.titles = builder.titles;
+        this.isbns = builder.isbns;
+        this.publicationYears = builder.publicationYears;
+        this.totalCopies = builder.totalCopies;
+        this.availableCopies = builder.availableCopies;
+        this.lastUpdated = builder.lastUpdated;
+        this.publisherDictionary = builder.publishers.toArray();
+        this.publisherIds = builder.publisherIds;
+        this.locationDictionary = builder.locations.toArray();
+        this.locationIds = builder.locationIds;
+        this.genreDictionary = builder.genres.toArray();
+        this.genreOffsets = builder.genreOffsets;
+        this.genreIds = Arrays.copyOf(builder.genreIds, builder.genreCount);
+        this.authorDictionary = builder.authors.toArray();
+        this.authorOffsets = builder.authorOffsets;
+        this.authorIds = Arrays.copyOf(builder.authorIds, builder.authorCount);
+        this.rowsById = builder.rowsById;
+    }
+
+    /**
+     * Builds a store from catalogue summaries
+     * @param books Books to store, in display order
+     * @return The columnar store
+     */
+    public static ColumnarBookStore build(List<BookSummary> books) {
+        Builder builder = new Builder(books.size());
+        for (BookSummary book : books) {
+            builder.add(book);
+        }
+        return new ColumnarBookStore(builder);
+    }
+
+    /**
+     * Gets the number of books
+     * @return Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the row of a book
+     * @param bookId Book ID
+     * @return Row index, or -1 if the book isn't in the store
+     */
+    public int indexOf(String bookId) {
+        Integer row = rowsById.get(bookId);
+        return row != null ? row : NONE;
+    }
+
+    public String getId(int row) {
+        return ids[row];
+    }
+
+    public String getTitle(int row) {
+        return titles[row];
+    }
+
+    public String getIsbn(int row) {
+        return isbns[row];
+    }
+
+    public int getPublicationYear(int row) {
+        return publicationYears[row];
+    }
+
+    public int getTotalCopies(int row) {
+        return totalCopies[row];
+    }
+
+    public int getAvailableCopies(int row) {
+        return availableCopies[row];
+    }
+
+    /**
+     * Updates the available copy count of a book after a local borrow or return
+     * @param row Row index
+     * @param copies New number of available copies
+     */
+    public void setAvailableCopies(int row, int copies) {
+        availableCopies[row] = copies;
+    }
+
+    public long getLastUpdated(int row) {
+        return lastUpdated[row];
+    }
+
+    public String getPublisher(int row) {
+        return publisherIds[row] != NONE ? publisherDictionary[publisherIds[row]] : null;
+    }
+
+    public String getLocation(int row) {
+        return locationIds[row] != NONE ? locationDictionary[locationIds[row]] : null;
+    }
+
+    /**
+     * Gets the genres of a book
+     * @param row Row index
+     * @return List of genres
+     */
+    public List<String> getGenres(int row) {
+        return decode(genreDictionary, genreIds, genreOffsets[row], genreOffsets[row + 1]);
+    }
+
+    /**
+     * Gets the dictionary ids of a book's genres
+     * @param row Row index
+     * @return Genre ids, see {@link #getGenreDictionary()}
+     */
+    public int[] getGenreIds(int row) {
+        return Arrays.copyOfRange(genreIds, genreOffsets[row], genreOffsets[row + 1]);
+    }
+
+    /**
+     * Gets the authors of a book
+     * @param row Row index
+     * @return List of authors
+     */
+    public List<String> getAuthors(int row) {
+        return decode(authorDictionary, authorIds, authorOffsets[row], authorOffsets[row + 1]);
+    }
+
+    /**
+     * Gets a formatted string of all authors
+     * @param row Row index
+     * @return String containing all authors separated by commas
+     */
+    public String getAuthorsAsString(int row) {
+        if (authorOffsets[row] == authorOffsets[row + 1]) {
+            return "Unknown";
+        }
+        return String.join(", ", getAuthors(row));
+    }
+
+    /**
+     * Gets a formatted string of all genres
+     * @param row Row index
+     * @return String containing all genres separated by commas
+     */
+    public String getGenresAsString(int row) {
+        if (genreOffsets[row] == genreOffsets[row + 1]) {
+            return "Uncategorized";
+        }
+        return String.join(", ", getGenres(row));
+    }
+
+    /**
+     * Gets every distinct genre in the catalogue
+     * @return Genres, in order of first appearance
+     */
+    public List<String> getGenreDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(genreDictionary));
+    }
+
+    /**
+     * Gets the dictionary id of a genre
+     * @param genre Genre name
+     * @return Genre id, or -1 if no book has that genre
+     */
+    public int getGenreId(String genre) {
+        for (int i = 0; i < genreDictionary.length; i++) {
+            if (genreDictionary[i].equals(genre)) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Checks if a book has a genre
+     * @param row Row index
+     * @param genreId Genre id from {@link #getGenreId}
+     * @return true if the book has the genre
+     */
+    public boolean hasGenre(int row, int genreId) {
+        for (int i = genreOffsets[row]; i < genreOffsets[row + 1]; i++) {
+            if (genreIds[i] == genreId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a bitmap with every row set
+     * @return Bitmap of all rows
+     */
+    public BitSet allRows() {
+        BitSet rows = new BitSet(size);
+        rows.set(0, size);
+        return rows;
+    }
+
+    /**
+     * Gets the rows with at least one available copy
+     * @return Bitmap of available books
+     */
+    public BitSet availableRows() {
+        BitSet rows = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            if (availableCopies[row] > 0) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the rows with a genre
+     * @param genre Genre name
+     * @return Bitmap of matching books (empty if the genre is unknown)
+     */
+    public BitSet rowsWithGenre(String genre) {
+        BitSet rows = new BitSet(size);
+        int genreId = getGenreId(genre);
+        if (genreId == NONE) {
+            return rows;
+        }
+        for (int row = 0; row < size; row++) {
+            if (hasGenre(row, genreId)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the rows published within a range of years
+     * @param fromYear First year, inclusive
+     * @param toYear Last year, inclusive
+     * @return Bitmap of matching books
+     */
+    public BitSet rowsInYearRange(int fromYear, int toYear) {
+        BitSet rows = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            int year = publicationYears[row];
+            if (year >= fromYear && year <= toYear) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Converts a bitmap of rows to an array of row indexes
+     * @param rows Bitmap of rows
+     * @return Row indexes in ascending order
+     */
+    public static int[] toRowArray(BitSet rows) {
+        return rows.stream().toArray();
+    }
+
+    private static List<String> decode(String[] dictionary, int[] ids, int from, int to) {
+        List<String> values = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            values.add(dictionary[ids[i]]);
+        }
+        return values;
+    }
+
+    /**
+     * Maps distinct strings to dense ids
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Accumulates rows before the store is frozen
+     */
+    private static class Builder {
+        private int size;
+
+        private final String[] ids;
+        private final String[] titles;
+        private final String[] isbns;
+        private final int[] publicationYears;
+        private final int[] totalCopies;
+        private final int[] availableCopies;
+        private final long[] lastUpdated;
+        private final int[] publisherIds;
+        private final int[] locationIds;
+        private final int[] genreOffsets;
+        private final int[] authorOffsets;
+        private int[] genreIds = new int[16];
+        private int genreCount;
+        private int[] authorIds = new int[16];
+        private int authorCount;
+
+        private final Dictionary publishers = new Dictionary();
+        private final Dictionary locations = new Dictionary();
+        private final Dictionary genres = new Dictionary();
+        private final Dictionary authors = new Dictionary();
+        private final Map<String, Integer> rowsById;
+
+        Builder(int capacity) {
+            this.ids = new String[capacity];
+            this.titles = new String[capacity];
+            this.isbns = new String[capacity];
+            this.publicationYears = new int[capacity];
+            this.totalCopies = new int[capacity];
+            this.availableCopies = new int[capacity];
+            this.lastUpdated = new long[capacity];
+            this.publisherIds = new int[capacity];
+            this.locationIds = new int[capacity];
+            this.genreOffsets = new int[capacity + 1];
+            this.authorOffsets = new int[capacity + 1];
+            this.rowsById = new HashMap<>(capacity * 4 / 3 + 1);
+        }
+
+        void add(BookSummary book) {
+            int row = size++;
+            ids[row] = book.getId();
+            titles[row] = book.getTitle();
+            isbns[row] = book.getIsbn();
+            publicationYears[row] = book.getPublicationYear();
+            totalCopies[row] = book.getTotalCopies();
+            availableCopies[row] = book.getAvailableCopies();
+            lastUpdated[row] = book.getLastUpdated() != null ? book.getLastUpdated().getTime() : 0;
+            publisherIds[row] = publishers.encode(book.getPublisher());
+            locationIds[row] = locations.encode(book.getLocation());
+
+            if (book.getGenres() != null) {
+                for (String genre : book.getGenres()) {
+                    if (genre != null) {
+                        genreIds = ensureCapacity(genreIds, genreCount + 1);
+                        genreIds[genreCount++] = genres.encode(genre);
+                    }
+                }
+            }
+            genreOffsets[row + 1] = genreCount;
+
+            if (book.getAuthors() != null) {
+                for (String author : book.getAuthors()) {
+                    if (author != null) {
+                        authorIds = ensureCapacity(authorIds, authorCount + 1);
+                        authorIds[authorCount++] = authors.encode(author);
+                    }
+                }
+            }
+            authorOffsets[row + 1] = authorCount;
+
+            if (book.getId() != null) {
+                rowsById.put(book.getId(), row);
+            }
+        }
+
+        private static int[] ensureCapacity(int[] array, int needed) {
+            if (needed <= array.length) {
+                return array;
+            }
+            return Arrays.copyOf(array, Math.max(needed, array.length * 2));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.athena.library.catalogue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Bitmap index over a {@link ColumnarBookStore} for faceted browsing.
+ *
+ * Keeps one bitmap per genre, one per publication decade and one for books with an
+ * available copy. Filters are combined with bitmap and/or, and facet counts are the
+ * cardinality of a facet bitmap and-ed with the rows matching the other filters,
+ * so neither filtering nor counting looks at individual books.
+ *
+ * The index is built together with the store. Availability changes must go through
+ * {@link #setAvailableCopies} so the store and the "available" bitmap stay in step.
+ *
+ * The bitmaps are plain {@link BitSet}s, the same type the store's filters return, so
+ * they combine without conversion. Rows are dense ids, so each bitmap costs one bit per
+ * book: about 25 KB at 200,000 books, or a little over 1 MB across 50 facet values.
+ */
+public class FacetIndex {
+    /** Width of a publication year bucket, in years */
+    public static final int YEAR_BUCKET_SIZE = 10;
+
+    private final ColumnarBookStore store;
+    private final List<String> genres;
+    private final BitSet[] genreRows;
+    private final TreeMap<Integer, BitSet> yearBucketRows;
+    private final BitSet availableRows;
+
+    // Reused when counting so facet counts don't allocate
+    private final BitSet scratch;
+
+    private FacetIndex(ColumnarBookStore store) {
+        this.store = store;
+        this.genres = store.getGenreDictionary();
+        this.genreRows = new BitSet[genres.size()];
+        this.yearBucketRows = new TreeMap<>();
+        this.availableRows = new BitSet(store.size());
+        this.scratch = new BitSet(store.size());
+
+        for (int genreId = 0; genreId < genreRows.length; genreId++) {
+            genreRows[genreId] = new BitSet(store.size());
+        }
+
+        for (int row = 0; row < store.size(); row++) {
+            for (int genreId : store.getGenreIds(row)) {
+                genreRows[genreId].set(row);
+            }
+
+            int year = store.getPublicationYear(row);
+            if (year > 0) {
+                yearBucketRows.computeIfAbsent(getYearBucket(year), bucket -> new BitSet(store.size())).set(row);
+            }
+
+            if (store.getAvailableCopies(row) > 0) {
+                availableRows.set(row);
+            }
+        }
+    }
+
+    /**
+     * Builds the facet index for a store
+     * @param store Columnar catalogue
+     * @return The facet index
+     */
+    public static FacetIndex build(ColumnarBookStore store) {
+        return new FacetIndex(store);
+    }
+
+    /**
+     * Gets the store this index covers
+     * @return Columnar catalogue
+     */
+    public ColumnarBookStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the genre facet values
+     * @return Genres, in the order of the store's genre dictionary
+     */
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    /**
+     * Gets the publication year facet values
+     * @return First year of each bucket that has books, in ascending order
+     */
+    public List<Integer> getYearBuckets() {
+        return Collections.unmodifiableList(new ArrayList<>(yearBucketRows.keySet()));
+    }
+
+    /**
+     * Gets the bucket a publication year falls into
+     * @param year Publication year
+     * @return First year of the bucket, e.g. 1990 for 1994
+     */
+    public static int getYearBucket(int year) {
+        return Math.floorDiv(year, YEAR_BUCKET_SIZE) * YEAR_BUCKET_SIZE;
+    }
+
+    /**
+     * Gets a bitmap with every row set
+     * @return Bitmap of all rows
+     */
+    public BitSet allRows() {
+        return store.allRows();
+    }
+
+    /**
+     * Gets the rows with at least one available copy
+     * @return Bitmap of available books (a copy the caller may modify)
+     */
+    public BitSet availableRows() {
+        return (BitSet) availableRows.clone();
+    }
+
+    /**
+     * Gets the rows with a genre
+     * @param genre Genre name
+     * @return Bitmap of matching books (empty if the genre is unknown)
+     */
+    public BitSet genreRows(String genre) {
+        int genreId = store.getGenreId(genre);
+        return genreId >= 0 ? (BitSet) genreRows[genreId].clone() : new BitSet();
+    }
+
+    /**
+     * Gets the rows published within a year bucket
+     * @param bucket First year of the bucket, from {@link #getYearBuckets()}
+     * @return Bitmap of matching books (empty if no book falls in the bucket)
+     */
+    public BitSet yearBucketRows(int bucket) {
+        BitSet rows = yearBucketRows.get(bucket);
+        return rows != null ? (BitSet) rows.clone() : new BitSet();
+    }
+
+    /**
+     * Counts, for each genre, how many of the given rows have it
+     * @param rows Rows matching the other filters
+     * @return Counts indexed like {@link #getGenres()}
+     */
+    public int[] countGenres(BitSet rows) {
+        int[] counts = new int[genreRows.length];
+        for (int genreId = 0; genreId < genreRows.length; genreId++) {
+            counts[genreId] = countIntersection(genreRows[genreId], rows);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts, for each year bucket, how many of the given rows fall in it
+     * @param rows Rows matching the other filters
+     * @return Counts indexed like {@link #getYearBuckets()}
+     */
+    public int[] countYearBuckets(BitSet rows) {
+        int[] counts = new int[yearBucketRows.size()];
+        int i = 0;
+        for (BitSet bucketRows : yearBucketRows.values()) {
+            counts[i++] = countIntersection(bucketRows, rows);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts how many of the given rows have an available copy
+     * @param rows Rows matching the other filters
+     * @return Number of available books
+     */
+    public int countAvailable(BitSet rows) {
+        return countIntersection(availableRows, rows);
+    }
+
+    /**
+     * Updates the available copy count of a book, keeping the "available" bitmap current
+     * @param row Row index
+     * @param copies New number of available copies
+     */
+    public void setAvailableCopies(int row, int copies) {
+        store.setAvailableCopies(row, copies);
+        availableRows.set(row, copies > 0);
+    }
+
+    private int countIntersection(BitSet facetRows, BitSet rows) {
+        scratch.clear();
+        scratch.or(facetRows);
+        scratch.and(rows);
+        return scratch.cardinality();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.LoanRollup;
+import com.athena.library.utils.CompletionIndex;
+import com.athena.library.utils.ConfigManager;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Suggests completions for the catalogue and student search fields as the user types.
+ *
+ * Keeps one {@link CompletionIndex} over book titles and authors and one over student
+ * names and IDs. Each index is only maintained once a screen has asked for it, and is
+ * rebuilt on a background thread and swapped in when ready, so lookups never wait on
+ * Firestore or on a rebuild.
+ *
+ * The names come from mirrors projected to just the fields needed (books/completion and
+ * students/completion), so only those fields of changed documents are read. The most
+ * borrowed books and students (autocomplete.weighted.top.n, default 500) are ranked first,
+ * using the all-time loan rollups; everything else weighs the same.
+ *
+ * Changes to those mirrors, and to the book and student summary mirrors that the other
+ * screens keep synced, request a rebuild, as do screens when they open. Requests are
+ * debounced by autocomplete.rebuild.debounce.ms (default 2000) and rebuilds run at most
+ * once per autocomplete.rebuild.min.interval.ms (default 60000).
+ */
+public class AutocompleteService {
+    private static final String BOOKS_COLLECTION = "books";
+    private static final String STUDENTS_COLLECTION = "students";
+    private static final String BOOKS_MIRROR = BOOKS_COLLECTION + "/completion";
+    private static final String STUDENTS_MIRROR = STUDENTS_COLLECTION + "/completion";
+
+    private static AutocompleteService instance;
+
+    private volatile CompletionIndex catalogueIndex = CompletionIndex.EMPTY;
+    private volatile CompletionIndex studentIndex = CompletionIndex.EMPTY;
+
+    private final ScheduledExecutorService rebuilder;
+    private volatile Thread rebuilderThread;
+    private final LoanRollupService rollupService = new LoanRollupService();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private volatile long lastRebuildMillis;
+    private volatile boolean catalogueEnabled;
+    private volatile boolean studentsEnabled;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private AutocompleteService() {
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autocomplete-rebuilder");
+            thread.setDaemon(true);
+            rebuilderThread = thread;
+            return thread;
+        });
+
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        SyncEngine syncEngine = SyncEngine.getInstance();
+        syncEngine.addChangeListener(BOOKS_MIRROR, BOOKS_COLLECTION, catalogueNames(db), this::onMirrorChanged);
+        syncEngine.addChangeListener(STUDENTS_MIRROR, STUDENTS_COLLECTION, studentNames(db), this::onMirrorChanged);
+        syncEngine.addChangeListener(BOOKS_COLLECTION, this::onMirrorChanged);
+        syncEngine.addChangeListener(StudentService.SUMMARY_MIRROR, STUDENTS_COLLECTION,
+                StudentService.summaryProjection(), this::onMirrorChanged);
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return AutocompleteService instance
+     */
+    public static synchronized AutocompleteService getInstance() {
+        if (instance == null) {
+            instance = new AutocompleteService();
+        }
+        return instance;
+    }
+
+    /**
+     * Suggests book titles and author names
+     * @param prefix What the user has typed so far
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, most borrowed first
+     */
+    public List<String> completeCatalogue(String prefix, int limit) {
+        return catalogueIndex.complete(prefix, limit);
+    }
+
+    /**
+     * Suggests student names and student IDs
+     * @param prefix What the user has typed so far
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, most active borrowers first
+     */
+    public List<String> completeStudents(String prefix, int limit) {
+        return studentIndex.complete(prefix, limit);
+    }
+
+    /**
+     * Starts maintaining the title and author suggestions and rebuilds them in the background
+     */
+    public void refreshCatalogue() {
+        catalogueEnabled = true;
+        scheduleRebuild();
+    }
+
+    /**
+     * Starts maintaining the student name and ID suggestions and rebuilds them in the background
+     */
+    public void refreshStudents() {
+        studentsEnabled = true;
+        scheduleRebuild();
+    }
+
+    /**
+     * Requests a rebuild when a mirror the suggestions depend on changes
+     * @param changes Changes applied to the mirror
+     */
+    private void onMirrorChanged(SyncEngine.ChangeSet changes) {
+        // The rebuild that synced these changes is already indexing them
+        if (Thread.currentThread() != rebuilderThread) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Queues a rebuild after the debounce delay; requests made while one is waiting are merged into it
+     */
+    private void scheduleRebuild() {
+        if ((catalogueEnabled || studentsEnabled) && rebuildPending.compareAndSet(false, true)) {
+            ConfigManager config = ConfigManager.getInstance();
+            long debounceMs = config.getInt("autocomplete.rebuild.debounce.ms", 2000);
+            long minIntervalMs = config.getInt("autocomplete.rebuild.min.interval.ms", 60000);
+            long untilAllowed = lastRebuildMillis + minIntervalMs - System.currentTimeMillis();
+            // The first build runs straight away so suggestions appear as soon as possible
+            long delayMs = lastRebuildMillis == 0 ? 0 : Math.max(debounceMs, untilAllowed);
+            rebuilder.schedule(this::rebuild, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        lastRebuildMillis = System.currentTimeMillis();
+        int topN = ConfigManager.getInstance().getInt("autocomplete.weighted.top.n", 500);
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        SyncEngine syncEngine = SyncEngine.getInstance();
+
+        // Every value weighs at least 1, so never-borrowed books and students are still suggested
+        if (catalogueEnabled) {
+            catalogueIndex = buildCatalogueIndex(
+                    syncEngine.getDocuments(BOOKS_MIRROR, BOOKS_COLLECTION, catalogueNames(db)),
+                    getBorrowCounts(LoanRollup.Scope.BOOK, topN));
+        }
+        if (studentsEnabled) {
+            studentIndex = buildStudentIndex(
+                    syncEngine.getDocuments(STUDENTS_MIRROR, STUDENTS_COLLECTION, studentNames(db)),
+                    getBorrowCounts(LoanRollup.Scope.STUDENT, topN));
+        }
+    }
+
+    /**
+     * Gets the field mask of the catalogue completion mirror
+     */
+    private static Query catalogueNames(Firestore db) {
+        return db.collection(BOOKS_COLLECTION).select("title", "authors", "lastUpdated");
+    }
+
+    /**
+     * Gets the field mask of the student completion mirror
+     */
+    private static Query studentNames(Firestore db) {
+        return db.collection(STUDENTS_COLLECTION).select("firstName", "lastName", "studentId", "lastUpdated");
+    }
+
+    /**
+     * Gets the all-time borrow counts of the most borrowed books or most active students
+     */
+    private Map<String, Long> getBorrowCounts(LoanRollup.Scope scope, int topN) {
+        Map<String, Long> borrows = new HashMap<>();
+        for (LoanRollup rollup : rollupService.getMostBorrowed(scope, null, null, topN)) {
+            borrows.put(rollup.getEntityId(), rollup.getBorrows());
+        }
+        return borrows;
+    }
+
+    private static CompletionIndex buildCatalogueIndex(List<DocumentSnapshot> books, Map<String, Long> bookBorrows) {
+        CompletionIndex.Builder catalogue = new CompletionIndex.Builder();
+        for (DocumentSnapshot book : books) {
+            long weight = 1 + bookBorrows.getOrDefault(book.getId(), 0L);
+            catalogue.add(book.getString("title"), weight);
+            Object authors = book.get("authors");
+            if (authors instanceof List) {
+                for (Object author : (List<?>) authors) {
+                    if (author instanceof String) {
+                        catalogue.add((String) author, weight);
+                    }
+                }
+            }
+        }
+        return catalogue.build();
+    }
+
+    private static CompletionIndex buildStudentIndex(List<DocumentSnapshot> students, Map<String, Long> studentBorrows) {
+        CompletionIndex.Builder index = new CompletionIndex.Builder();
+        for (DocumentSnapshot student : students) {
+            long weight = 1 + studentBorrows.getOrDefault(student.getId(), 0L);
+            String firstName = student.getString("firstName");
+            String lastName = student.getString("lastName");
+            index.add((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : ""), weight);
+            index.add(student.getString("studentId"), weight);
+        }
+        return index.build();
+    }
+}
\ No newline at end of file
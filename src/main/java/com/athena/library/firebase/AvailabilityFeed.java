@@ -0,0 +1,234 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes changes to the available copy counts of books, made by this or any other client.
+ *
+ * A snapshot listener watches books with a lastUpdated time after the feed started, so the
+ * initial snapshot is empty and only later writes, such as a borrow or return, are read.
+ * Changes are coalesced: subscribers get at most one batch every
+ * catalogue.availability.coalesce.ms (default 250), with the latest count of every book
+ * that changed since the previous batch. Batches are delivered on the feed's own thread.
+ *
+ * If the listener fails, it is registered again after a backoff (1 s, doubling up to a
+ * minute). The new listener watches from the read time of the last snapshot received, so
+ * its initial snapshot holds every book changed while the feed was down, and those changes
+ * are delivered like any others.
+ */
+public class AvailabilityFeed {
+    private static final String COLLECTION_NAME = "books";
+    private static final String AVAILABLE_COPIES_FIELD = "availableCopies";
+    // Overlap on the listener start time to allow for clock skew with the server
+    private static final long LISTEN_SKEW_MS = 5000;
+    private static final long INITIAL_RECONNECT_MS = 1000;
+    private static final long MAX_RECONNECT_MS = 60000;
+
+    /**
+     * Receives coalesced availability changes
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called with the books whose available copies changed
+         * @param availableCopies Book ID -> available copies
+         */
+        void onAvailabilityChanged(Map<String, Integer> availableCopies);
+    }
+
+    // Singleton instance
+    private static AvailabilityFeed instance;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Latest count of every book seen by the listener, for subscribers that missed batches
+    private final Map<String, Integer> known = new ConcurrentHashMap<>();
+    // Changes not yet delivered, guarded by this
+    private final Map<String, Integer> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService deliverer;
+    private final long coalesceNanos;
+    private boolean deliveryScheduled;
+    private long lastDeliveryNanos;
+    private ListenerRegistration registration;
+    // Identifies the current registration, so callbacks from a replaced one are ignored
+    private int registrationGeneration;
+    // Read time of the last snapshot, less the skew allowance; null until the first snapshot
+    private Timestamp resumeFrom;
+    private long reconnectDelayMs = INITIAL_RECONNECT_MS;
+    private ScheduledFuture<?> reconnect;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private AvailabilityFeed() {
+        this.deliverer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "athena-availability-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(
+                ConfigManager.getInstance().getInt("catalogue.availability.coalesce.ms", 250));
+        this.lastDeliveryNanos = System.nanoTime() - coalesceNanos;
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return AvailabilityFeed instance
+     */
+    public static synchronized AvailabilityFeed getInstance() {
+        if (instance == null) {
+            instance = new AvailabilityFeed();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a listener, starting the snapshot listener if it isn't running
+     * @param listener Listener to add
+     */
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+        listen();
+    }
+
+    /**
+     * Removes a listener. The snapshot listener keeps running so
+     * {@link #getKnownAvailability()} stays current for the next subscriber.
+     * @param listener Listener to remove
+     */
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the latest count of every book changed since the feed started,
+     * to bring a list loaded earlier up to date
+     * @return Book ID -> available copies
+     */
+    public Map<String, Integer> getKnownAvailability() {
+        return new HashMap<>(known);
+    }
+
+    /**
+     * Stops the snapshot listener
+     */
+    public synchronized void stop() {
+        registrationGeneration++;
+        if (reconnect != null) {
+            reconnect.cancel(false);
+            reconnect = null;
+        }
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private synchronized void listen() {
+        if (registration != null) {
+            return;
+        }
+        if (reconnect != null) {
+            reconnect.cancel(false);
+            reconnect = null;
+        }
+
+        // After a failure, catch up from the last snapshot instead of starting from now
+        Timestamp since = resumeFrom != null ? resumeFrom : minusSkew(System.currentTimeMillis());
+        int generation = ++registrationGeneration;
+        registration = FirebaseConfig.getFirestoreInstance().collection(COLLECTION_NAME)
+                .whereGreaterThan("lastUpdated", since)
+                .addSnapshotListener((QuerySnapshot snapshots, FirestoreException error) ->
+                        onSnapshot(generation, snapshots, error));
+    }
+
+    private void onSnapshot(int generation, QuerySnapshot snapshots, FirestoreException error) {
+        synchronized (this) {
+            if (generation != registrationGeneration) {
+                // Stopped or replaced since
+                return;
+            }
+            if (error != null) {
+                ErrorHandler.logWarning("Availability listener failed, reconnecting in " + reconnectDelayMs
+                        + "ms: " + error.getMessage(), ErrorHandler.ErrorType.DATABASE);
+                registration = null;
+                reconnect = deliverer.schedule(this::listen, reconnectDelayMs, TimeUnit.MILLISECONDS);
+                reconnectDelayMs = Math.min(reconnectDelayMs * 2, MAX_RECONNECT_MS);
+                return;
+            }
+            if (snapshots == null) {
+                return;
+            }
+            reconnectDelayMs = INITIAL_RECONNECT_MS;
+            Timestamp readTime = snapshots.getReadTime();
+            resumeFrom = minusSkew(readTime.getSeconds() * 1000 + readTime.getNanos() / 1_000_000);
+        }
+
+        FirestoreOps.countReads("AvailabilityFeed.listen", COLLECTION_NAME, snapshots.getDocumentChanges().size());
+        for (DocumentChange change : snapshots.getDocumentChanges()) {
+            if (change.getType() != DocumentChange.Type.REMOVED) {
+                onDocumentChanged(change.getDocument());
+            }
+        }
+    }
+
+    private static Timestamp minusSkew(long millis) {
+        return Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(millis - LISTEN_SKEW_MS));
+    }
+
+    private void onDocumentChanged(DocumentSnapshot document) {
+        Long copies = document.getLong(AVAILABLE_COPIES_FIELD);
+        if (copies == null) {
+            return;
+        }
+        Integer previous = known.put(document.getId(), copies.intValue());
+        if (previous != null && previous == copies.intValue()) {
+            // Some other field of the book changed
+            return;
+        }
+
+        synchronized (this) {
+            pending.put(document.getId(), copies.intValue());
+            if (!deliveryScheduled) {
+                deliveryScheduled = true;
+                long delay = Math.max(0, lastDeliveryNanos + coalesceNanos - System.nanoTime());
+                deliverer.schedule(this::deliver, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void deliver() {
+        Map<String, Integer> batch;
+        synchronized (this) {
+            batch = Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+            pending.clear();
+            deliveryScheduled = false;
+            lastDeliveryNanos = System.nanoTime();
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onAvailabilityChanged(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error delivering availability changes: " + e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,429 @@
+package com.athena.library.firebase;
+
+import com.athena.library.catalogue.BookRecordReader;
+import com.athena.library.models.Book;
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports books in bulk from supplier feeds (see {@link BookRecordReader} for the formats).
+ *
+ * Records are read one at a time and validated against the constraints on {@link Book}.
+ * Books whose ISBN is already in the catalogue, or earlier in the same feed, are merged by
+ * adding their copies to the existing record instead of creating a duplicate; ISBN-10 and
+ * ISBN-13 forms of the same book count as one. Everything else becomes a new book.
+ *
+ * Writes go out in WriteBatches of import.batch.size operations (default 400, at most 500),
+ * with up to import.max.in.flight.batches (default 4) committing at once. Records that fail
+ * validation or whose batch fails are written to an error file with the reason, so the
+ * supplier feed can be fixed and the failed rows imported again.
+ */
+public class BookImportService {
+    private static final String COLLECTION_NAME = "books";
+
+    // Firestore limit on operations per batch
+    private static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Counts for an import, updated while it runs
+     */
+    public static class ImportResult {
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger merged = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        /**
+         * Gets the number of records read from the feed
+         * @return Records read
+         */
+        public int getRead() {
+            return read.get();
+        }
+
+        /**
+         * Gets the number of new books written
+         * @return Books created
+         */
+        public int getCreated() {
+            return created.get();
+        }
+
+        /**
+         * Gets the number of records added as extra copies of an existing book
+         * @return Records merged
+         */
+        public int getMerged() {
+            return merged.get();
+        }
+
+        /**
+         * Gets the number of records written to the error file
+         * @return Records that failed
+         */
+        public int getFailed() {
+            return failed.get();
+        }
+
+        @Override
+        public String toString() {
+            return getRead() + " read, " + getCreated() + " created, " + getMerged() + " merged, "
+                    + getFailed() + " failed";
+        }
+    }
+
+    /**
+     * One pending write: a new book, or extra copies for an existing one
+     */
+    private static class ImportWrite {
+        private final int line;
+        private final String documentId;
+        private final Book book;
+        private int extraCopies;
+        // Feed records merged into this write as extra copies
+        private int mergedRecords;
+
+        ImportWrite(int line, String documentId, Book book) {
+            this.line = line;
+            this.documentId = documentId;
+            this.book = book;
+        }
+    }
+
+    private static Validator validator;
+
+    /**
+     * Imports a feed
+     * @param input Feed file
+     * @param format Feed format
+     * @param errorFile CSV file for rejected records (line, isbn, title, error); only kept if there are any
+     * @param progress Called with the running counts after each batch commits, on a Firestore thread; may be null
+     * @return Counts for the import, or null if the feed couldn't be opened
+     */
+    public ImportResult importBooks(Path input, BookRecordReader.Format format, Path errorFile,
+                                    Consumer<ImportResult> progress) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        CollectionReference books = db.collection(COLLECTION_NAME);
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE,
+                ConfigManager.getInstance().getInt("import.batch.size", 400)));
+        int maxInFlight = Math.max(1, ConfigManager.getInstance().getInt("import.max.in.flight.batches", 4));
+
+        ImportResult result = new ImportResult();
+        Map<String, String> isbnIndex = buildIsbnIndex();
+
+        // Books created by this import: their batch may not have committed yet, so later
+        // copies of them are merged into the pending write or applied once every batch is done
+        Map<String, ImportWrite> pendingNewBooks = new HashMap<>();
+        Set<String> createdHere = new HashSet<>();
+        Map<String, ImportWrite> lateIncrements = new LinkedHashMap<>();
+        Set<String> failedCreates = ConcurrentHashMap.newKeySet();
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<ImportWrite> batch = new ArrayList<>(batchSize);
+
+        try (BookRecordReader reader = BookRecordReader.open(input, format);
+             BufferedWriter errors = Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8)) {
+            errors.write("line,isbn,title,error\r\n");
+
+            try {
+                BookRecordReader.Record record;
+                while ((record = reader.next()) != null) {
+                    result.read.incrementAndGet();
+                    Book book = record.getBook();
+                    String error = record.getError() != null ? record.getError() : validate(book);
+                    if (error != null) {
+                        writeError(errors, record.getLine(), book, error);
+                        result.failed.incrementAndGet();
+                        continue;
+                    }
+
+                    String isbnKey = toIsbnKey(book.getIsbn());
+                    String existingId = isbnKey != null ? isbnIndex.get(isbnKey) : null;
+                    if (existingId == null) {
+                        String id = books.document().getId();
+                        book.setId(id);
+                        book.setLastUpdated(null); // Let the server stamp the write time
+                        ImportWrite write = new ImportWrite(record.getLine(), id, book);
+                        if (isbnKey != null) {
+                            isbnIndex.put(isbnKey, id);
+                        }
+                        pendingNewBooks.put(id, write);
+                        createdHere.add(id);
+                        batch.add(write);
+                    } else if (pendingNewBooks.containsKey(existingId)) {
+                        // Still in the unsent batch: just raise its copy counts
+                        ImportWrite pending = pendingNewBooks.get(existingId);
+                        pending.book.setTotalCopies(pending.book.getTotalCopies() + book.getTotalCopies());
+                        pending.book.setAvailableCopies(pending.book.getAvailableCopies() + book.getTotalCopies());
+                        pending.mergedRecords++;
+                    } else {
+                        ImportWrite increment;
+                        if (createdHere.contains(existingId)) {
+                            int line = record.getLine();
+                            increment = lateIncrements.computeIfAbsent(existingId, id -> new ImportWrite(line, id, null));
+                        } else {
+                            increment = new ImportWrite(record.getLine(), existingId, null);
+                            batch.add(increment);
+                        }
+                        increment.extraCopies += book.getTotalCopies();
+                        increment.mergedRecords++;
+                    }
+
+                    if (batch.size() >= batchSize) {
+                        submit(db, batch, inFlight, errors, result, failedCreates, progress);
+                        batch = new ArrayList<>(batchSize);
+                        pendingNewBooks.clear();
+                    }
+                }
+                submit(db, batch, inFlight, errors, result, failedCreates, progress);
+                inFlight.acquire(maxInFlight);
+                inFlight.release(maxInFlight);
+
+                // Extra copies of books created above, now that the books exist
+                batch = new ArrayList<>(batchSize);
+                for (ImportWrite increment : lateIncrements.values()) {
+                    if (failedCreates.contains(increment.documentId)) {
+                        writeError(errors, increment.line, null, "the book these copies belong to could not be created");
+                        result.failed.addAndGet(increment.mergedRecords);
+                        continue;
+                    }
+                    batch.add(increment);
+                    if (batch.size() >= batchSize) {
+                        submit(db, batch, inFlight, errors, result, failedCreates, progress);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                submit(db, batch, inFlight, errors, result, failedCreates, progress);
+            } finally {
+                // Failure callbacks write to the error file, so wait for every batch before it is closed,
+                // even if the import stopped early
+                inFlight.acquireUninterruptibly(maxInFlight);
+            }
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Error importing books from " + input + ": " + e.getMessage(),
+                    ErrorHandler.ErrorType.FILE);
+            if (result.getRead() == 0) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ErrorHandler.logWarning("Book import from " + input + " was interrupted after "
+                    + result.getRead() + " records", ErrorHandler.ErrorType.DATABASE);
+        }
+
+        if (result.getFailed() == 0) {
+            try {
+                Files.deleteIfExists(errorFile);
+            } catch (IOException e) {
+                // An empty error file is harmless
+            }
+        }
+
+        // Pick up the new books so the catalogue screens and ISBN lookups see them
+        SyncEngine.getInstance().sync(COLLECTION_NAME);
+        ErrorHandler.logInfo("Imported books from " + input + ": " + result);
+        if (progress != null) {
+            progress.accept(result);
+        }
+        return result;
+    }
+
+    /**
+     * Commits one batch asynchronously, waiting first if too many batches are already in flight
+     */
+    private void submit(Firestore db, List<ImportWrite> writes, Semaphore inFlight, BufferedWriter errors,
+                        ImportResult result, Set<String> failedCreates, Consumer<ImportResult> progress)
+            throws InterruptedException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        inFlight.acquire();
+
+        long start = System.nanoTime();
+        ApiFuture<List<WriteResult>> future;
+        try {
+            WriteBatch batch = db.batch();
+            for (ImportWrite write : writes) {
+                if (write.book != null) {
+                    batch.set(db.collection(COLLECTION_NAME).document(write.documentId), write.book);
+                } else {
+                    Map<String, Object> updates = new HashMap<>();
+                    updates.put("totalCopies", FieldValue.increment(write.extraCopies));
+                    updates.put("availableCopies", FieldValue.increment(write.extraCopies));
+                    updates.put("lastUpdated", FieldValue.serverTimestamp());
+                    batch.update(db.collection(COLLECTION_NAME).document(write.documentId), updates);
+                }
+            }
+            future = batch.commit();
+        } catch (RuntimeException e) {
+            // No callback will release the permit
+            inFlight.release();
+            throw e;
+        }
+        ApiFutures.addCallback(future, new ApiFutureCallback<List<WriteResult>>() {
+            @Override
+            public void onSuccess(List<WriteResult> writeResults) {
+                FirestoreOps.record("BookImportService.commitBatch", COLLECTION_NAME, writes.size(), -1, start, null);
+                FirestoreOps.countWrites("BookImportService.commitBatch", COLLECTION_NAME, writeResults.size());
+                for (ImportWrite write : writes) {
+                    if (write.book != null) {
+                        result.created.incrementAndGet();
+                    }
+                    result.merged.addAndGet(write.mergedRecords);
+                }
+                inFlight.release();
+                if (progress != null) {
+                    progress.accept(result);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                FirestoreOps.record("BookImportService.commitBatch", COLLECTION_NAME, writes.size(), -1, start, t);
+                for (ImportWrite write : writes) {
+                    if (write.book != null) {
+                        failedCreates.add(write.documentId);
+                        result.failed.incrementAndGet();
+                    }
+                    result.failed.addAndGet(write.mergedRecords);
+                    String merged = write.mergedRecords > 0 ? " (with " + write.mergedRecords + " merged records)" : "";
+                    writeError(errors, write.line, write.book, "write failed" + merged + ": " + t.getMessage());
+                }
+                inFlight.release();
+                if (progress != null) {
+                    progress.accept(result);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Maps ISBN keys to document IDs for the whole catalogue
+     */
+    private static Map<String, String> buildIsbnIndex() {
+        Map<String, String> isbnIndex = new HashMap<>();
+        for (DocumentSnapshot book : SyncEngine.getInstance().getDocuments(COLLECTION_NAME)) {
+            String key = toIsbnKey(BookRecordReader.normalizeIsbn(book.getString("isbn")));
+            if (key != null) {
+                isbnIndex.putIfAbsent(key, book.getId());
+            }
+        }
+        return isbnIndex;
+    }
+
+    /**
+     * Gets the key an ISBN is indexed under: its ISBN-13 form, so both forms of one book match
+     * @param isbn Normalised ISBN
+     * @return ISBN-13, or null if the ISBN is missing or malformed
+     */
+    static String toIsbnKey(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        if (isbn.length() == 13) {
+            return isbn;
+        }
+        if (isbn.length() != 10) {
+            return null;
+        }
+        String isbn13 = "978" + isbn.substring(0, 9);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (isbn13.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return isbn13 + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Checks the bean constraints on a book and its ISBN check digit
+     * @return Error message, or null if the book is valid
+     */
+    private static String validate(Book book) {
+        Set<ConstraintViolation<Book>> violations = getValidator().validate(book);
+        if (!violations.isEmpty()) {
+            StringBuilder message = new StringBuilder();
+            for (ConstraintViolation<Book> violation : violations) {
+                if (message.length() > 0) {
+                    message.append("; ");
+                }
+                message.append(violation.getMessage());
+            }
+            return message.toString();
+        }
+        if (book.getIsbn() != null && !hasValidCheckDigit(book.getIsbn())) {
+            return "ISBN check digit is wrong";
+        }
+        return null;
+    }
+
+    private static boolean hasValidCheckDigit(String isbn) {
+        int sum = 0;
+        if (isbn.length() == 10) {
+            for (int i = 0; i < 10; i++) {
+                char c = isbn.charAt(i);
+                sum += (c == 'X' ? 10 : c - '0') * (10 - i);
+            }
+            return sum % 11 == 0;
+        }
+        for (int i = 0; i < 13; i++) {
+            sum += (isbn.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return sum % 10 == 0;
+    }
+
+    private static synchronized Validator getValidator() {
+        if (validator == null) {
+            validator = Validation.buildDefaultValidatorFactory().getValidator();
+        }
+        return validator;
+    }
+
+    private static void writeError(BufferedWriter errors, int line, Book book, String error) {
+        String isbn = book != null && book.getIsbn() != null ? book.getIsbn() : "";
+        String title = book != null && book.getTitle() != null ? book.getTitle() : "";
+        synchronized (errors) {
+            try {
+                errors.write(line + "," + csv(isbn) + "," + csv(title) + "," + csv(error) + "\r\n");
+            } catch (IOException e) {
+                System.err.println("Error writing import error file: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
\ No newline at end of file
@@ -1,14 +1,25 @@
 package com.athena.library.firebase;
 
+import com.athena.library.catalogue.CatalogueSearchEngine;
 import com.athena.library.models.Book;
+import com.athena.library.models.BookSummary;
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.StringPool;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service class to handle all Book-related operations with Firebase
@@ -16,6 +27,32 @@ import java.util.concurrent.ExecutionException;
 public class BookService {
     private static final String COLLECTION_NAME = "books";
 
+    private static final CatalogueSnapshotStore CATALOGUE_SNAPSHOT = new CatalogueSnapshotStore();
+
+    // Search index over the synced book mirror. The change listener only bumps the generation;
+    // indexes are built by the searching thread and swapped in whole, newest generation wins.
+    private static final AtomicLong SEARCH_GENERATION = new AtomicLong();
+    private static final AtomicReference<SearchIndex> SEARCH_INDEX = new AtomicReference<>();
+
+    static {
+        SyncEngine.getInstance().addChangeListener(COLLECTION_NAME, changes -> SEARCH_GENERATION.incrementAndGet());
+    }
+
+    /**
+     * Book documents in the order they were added to the search engine
+     */
+    private static class SearchIndex {
+        private final long generation;
+        private final List<DocumentSnapshot> documents;
+        private final CatalogueSearchEngine engine;
+
+        SearchIndex(long generation, List<DocumentSnapshot> documents, CatalogueSearchEngine engine) {
+            this.generation = generation;
+            this.documents = documents;
+            this.engine = engine;
+        }
+    }
+
     /**
      * Adds a new book to the database
      * @param book Book object to add
@@ -24,10 +61,14 @@ public class BookService {
     public boolean addBook(Book book) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // Let the server stamp the write time
+            book.setLastUpdated(null);
             ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(book.getId()).set(book);
 
             // Wait for the operation to complete
-            future.get();
+            FirestoreOps.await(future, "BookService.addBook", COLLECTION_NAME);
+            book.clearChanges();
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error adding book: " + e.getMessage());
@@ -46,9 +87,9 @@ public class BookService {
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(id);
             ApiFuture<DocumentSnapshot> future = docRef.get();
 
-            DocumentSnapshot document = future.get();
+            DocumentSnapshot document = FirestoreOps.await(future, "BookService.getBookById", COLLECTION_NAME);
             if (document.exists()) {
-                return document.toObject(Book.class);
+                return toBook(document);
             } else {
                 return null;
             }
@@ -69,9 +110,9 @@ public class BookService {
             Query query = db.collection(COLLECTION_NAME).whereEqualTo("isbn", isbn);
             ApiFuture<QuerySnapshot> future = query.get();
 
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "BookService.getBookByIsbn", COLLECTION_NAME);
             if (!querySnapshot.isEmpty()) {
-                return querySnapshot.getDocuments().get(0).toObject(Book.class);
+                return toBook(querySnapshot.getDocuments().get(0));
             } else {
                 return null;
             }
@@ -82,17 +123,22 @@ public class BookService {
     }
 
     /**
-     * Updates an existing book's information
+     * Updates an existing book's information by replacing the whole document.
+     * Prefer {@link #saveBook(Book)}, which only writes the fields that changed.
      * @param book Updated book object
      * @return true if successful, false otherwise
      */
     public boolean updateBook(Book book) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // Let the server stamp the write time
+            book.setLastUpdated(null);
             ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(book.getId()).set(book);
 
             // Wait for the operation to complete
-            future.get();
+            FirestoreOps.await(future, "BookService.updateBook", COLLECTION_NAME);
+            book.clearChanges();
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error updating book: " + e.getMessage());
@@ -100,6 +146,35 @@ public class BookService {
         }
     }
 
+    /**
+     * Saves only the fields of a book that changed since it was loaded.
+     * Copy counters are written as server-side increments so concurrent borrows
+     * and returns of the same title don't overwrite each other.
+     * @param book Book with pending changes
+     * @return true if successful (or nothing to save), false otherwise
+     */
+    public boolean saveBook(Book book) {
+        if (!book.hasChanges()) {
+            return true;
+        }
+
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            DocumentReference docRef = db.collection(COLLECTION_NAME).document(book.getId());
+
+            Map<String, Object> updates = book.getPendingUpdates();
+            updates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            ApiFuture<WriteResult> future = docRef.update(updates);
+            FirestoreOps.await(future, "BookService.saveBook", COLLECTION_NAME);
+            book.clearChanges();
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error saving book: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Updates only specific fields of a book document
      * @param bookId ID of the book to update
@@ -111,8 +186,11 @@ public class BookService {
             Firestore db = FirebaseConfig.getFirestoreInstance();
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(bookId);
 
-            ApiFuture<WriteResult> future = docRef.update(updates);
-            future.get();
+            Map<String, Object> stampedUpdates = new HashMap<>(updates);
+            stampedUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            ApiFuture<WriteResult> future = docRef.update(stampedUpdates);
+            FirestoreOps.await(future, "BookService.updateBookFields", COLLECTION_NAME);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error updating book fields: " + e.getMessage());
@@ -127,11 +205,11 @@ public class BookService {
      */
     public boolean deleteBook(String bookId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(bookId).delete();
-
-            // Wait for the operation to complete
-            future.get();
+            // Leave a tombstone so catalogue snapshots and mirrors on other clients drop the book too
+            FirestoreOps.await(SyncEngine.deleteWithTombstone(COLLECTION_NAME, bookId),
+                    "BookService.deleteBook", COLLECTION_NAME);
+            removeFromCatalogueSnapshot(bookId);
+            SyncEngine.getInstance().applyLocalDelete(COLLECTION_NAME, bookId);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error deleting book: " + e.getMessage());
@@ -144,91 +222,230 @@ public class BookService {
      * @return List of all books
      */
     public List<Book> getAllBooks() {
+        // Served from the synced mirror, so only new or changed books are read
+        List<Book> books = new ArrayList<>();
+        for (DocumentSnapshot document : SyncEngine.getInstance().getDocuments(COLLECTION_NAME)) {
+            books.add(toBook(document));
+        }
+        return books;
+    }
+
+    /**
+     * Gets a lightweight summary of every book for list views.
+     * Only the fields in {@link BookSummary#FIELDS} are transferred.
+     * @return List of book summaries
+     */
+    public List<BookSummary> getAllBookSummaries() {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
+            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME)
+                    .select(BookSummary.FIELDS)
+                    .get();
 
-            List<Book> books = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+            List<BookSummary> summaries = new ArrayList<>();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "BookService.getAllBookSummaries", COLLECTION_NAME);
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                books.add(document.toObject(Book.class));
+                BookSummary summary = toSummary(document);
+                if (summary != null) {
+                    summaries.add(summary);
+                }
             }
 
-            return books;
+            return summaries;
         } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting all books: " + e.getMessage());
+            System.err.println("Error getting book summaries: " + e.getMessage());
             return new ArrayList<>();
         }
     }
 
     /**
-     * Searches for books by title
-     * @param title Title to search for
-     * @return List of matching books
+     * Gets summaries of books whose lastUpdated is after the given time
+     * @param since Only books changed after this time are returned
+     * @return List of changed book summaries
      */
-    public List<Book> searchBooksByTitle(String title) {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
+    public List<BookSummary> getBookSummariesChangedSince(Date since) throws InterruptedException, ExecutionException {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Query query = db.collection(COLLECTION_NAME).select(BookSummary.FIELDS);
 
-            // Convert to lowercase for case-insensitive search
-            String searchTitle = title.toLowerCase();
+        List<BookSummary> summaries = new ArrayList<>();
+        for (DocumentSnapshot document : SyncEngine.fetchChangedSince(query, since.getTime())) {
+            BookSummary summary = toSummary(document);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
 
-            // Firebase doesn't support direct substring search, so we need to do this manually
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
+    /**
+     * Gets the catalogue as saved locally by the last refresh, without contacting Firestore
+     * @return List of book summaries, empty if there is no local snapshot
+     */
+    public List<BookSummary> getCachedCatalogueSummaries() {
+        CatalogueSnapshotStore.Snapshot snapshot = CATALOGUE_SNAPSHOT.load();
+        return snapshot != null ? snapshot.getBooks() : new ArrayList<>();
+    }
 
-            List<Book> matchingBooks = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+    /**
+     * Gets the catalogue, refreshing the local snapshot with only the books changed or
+     * deleted (per their tombstones) since the last refresh. The whole catalogue is
+     * downloaded when there is no snapshot or it is older than cache.catalogue.max.age.hours,
+     * as a safety net for deletes that left no tombstone. If Firestore can't be reached
+     * the local snapshot is returned as is.
+     * @return List of book summaries
+     */
+    public List<BookSummary> getCatalogueSummaries() {
+        synchronized (CATALOGUE_SNAPSHOT) {
+            long now = System.currentTimeMillis();
+            long maxAgeMs = ConfigManager.getInstance().getInt("cache.catalogue.max.age.hours", 168) * 3600000L;
+            CatalogueSnapshotStore.Snapshot snapshot = CATALOGUE_SNAPSHOT.load();
+
+            if (snapshot == null || now - snapshot.getSavedAt() > maxAgeMs) {
+                List<BookSummary> books = getAllBookSummaries();
+                if (!books.isEmpty()) {
+                    CATALOGUE_SNAPSHOT.save(books, getHighWatermark(books, 0), now);
+                } else if (snapshot != null) {
+                    // Probably offline; keep showing what we had
+                    return snapshot.getBooks();
+                }
+                return books;
+            }
 
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Book book = document.toObject(Book.class);
-                if (book != null && book.getTitle().toLowerCase().contains(searchTitle)) {
-                    matchingBooks.add(book);
+            long since = snapshot.getHighWatermark() - SyncEngine.OVERLAP_MS;
+            List<BookSummary> changed;
+            Map<String, Long> deleted;
+            try {
+                changed = getBookSummariesChangedSince(new Date(since));
+                deleted = SyncEngine.fetchDeletedSince(COLLECTION_NAME, since);
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Error refreshing catalogue snapshot: " + e.getMessage());
+                return snapshot.getBooks();
+            }
+
+            Map<String, BookSummary> merged = new LinkedHashMap<>();
+            for (BookSummary book : snapshot.getBooks()) {
+                merged.put(book.getId(), book);
+            }
+            boolean removed = merged.keySet().removeAll(deleted.keySet());
+            if (changed.isEmpty() && !removed) {
+                return snapshot.getBooks();
+            }
+            for (BookSummary book : changed) {
+                merged.put(book.getId(), book);
+            }
+
+            List<BookSummary> books = new ArrayList<>(merged.values());
+            CATALOGUE_SNAPSHOT.save(books, getHighWatermark(changed, snapshot.getHighWatermark()),
+                    snapshot.getSavedAt());
+            return books;
+        }
+    }
+
+    /**
+     * Drops a deleted book from the local catalogue snapshot
+     * @param bookId ID of the deleted book
+     */
+    private static void removeFromCatalogueSnapshot(String bookId) {
+        synchronized (CATALOGUE_SNAPSHOT) {
+            CatalogueSnapshotStore.Snapshot snapshot = CATALOGUE_SNAPSHOT.load();
+            if (snapshot != null) {
+                List<BookSummary> books = new ArrayList<>(snapshot.getBooks());
+                if (books.removeIf(book -> bookId.equals(book.getId()))) {
+                    CATALOGUE_SNAPSHOT.save(books, snapshot.getHighWatermark(), snapshot.getSavedAt());
                 }
             }
+        }
+    }
 
-            return matchingBooks;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error searching books by title: " + e.getMessage());
-            return new ArrayList<>();
+    /**
+     * Gets the latest lastUpdated time of the given books
+     * @param books Books to check
+     * @param initial Watermark to start from
+     * @return Latest lastUpdated time in milliseconds
+     */
+    private static long getHighWatermark(List<BookSummary> books, long initial) {
+        long watermark = initial;
+        for (BookSummary book : books) {
+            if (book.getLastUpdated() != null) {
+                watermark = Math.max(watermark, book.getLastUpdated().getTime());
+            }
         }
+        return watermark;
+    }
+
+    /**
+     * Searches for books by title, tolerating typos in words of four or more letters and matching partial words
+     * @param title Title to search for
+     * @return List of matching books, best match first
+     */
+    public List<Book> searchBooksByTitle(String title) {
+        return searchBooks(title, getSearchResultLimit(), EnumSet.of(CatalogueSearchEngine.Field.TITLE));
     }
 
     /**
-     * Searches for books by author
+     * Searches for books by author, tolerating typos in words of four or more letters and matching partial words
      * @param author Author to search for
-     * @return List of matching books
+     * @return List of matching books, best match first
      */
     public List<Book> searchBooksByAuthor(String author) {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
+        return searchBooks(author, getSearchResultLimit(), EnumSet.of(CatalogueSearchEngine.Field.AUTHOR));
+    }
 
-            // Convert to lowercase for case-insensitive search
-            String searchAuthor = author.toLowerCase();
+    /**
+     * Searches titles, authors and descriptions, tolerating typos in words of four or more letters and matching partial words
+     * @param query Words to search for
+     * @param limit Maximum number of results
+     * @return List of matching books, best match first
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        return searchBooks(query, limit, EnumSet.allOf(CatalogueSearchEngine.Field.class));
+    }
 
-            // Firebase doesn't support direct array containment search for substrings
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
+    private List<Book> searchBooks(String query, int limit, Set<CatalogueSearchEngine.Field> fields) {
+        SearchIndex index = getSearchIndex();
+        List<Book> matchingBooks = new ArrayList<>();
+        for (CatalogueSearchEngine.Hit hit : index.engine.search(query, limit, fields)) {
+            // A new Book per result, so callers can edit it without touching the index
+            matchingBooks.add(toBook(index.documents.get(hit.getDocument())));
+        }
+        return matchingBooks;
+    }
 
-            List<Book> matchingBooks = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+    /**
+     * Gets the search index, rebuilding it if the book mirror changed since it was built
+     * @return Search index over all books
+     */
+    private SearchIndex getSearchIndex() {
+        // Read the generation before syncing, so changes applied during the sync make this index stale
+        long generation = SEARCH_GENERATION.get();
+        List<DocumentSnapshot> documents = SyncEngine.getInstance().getDocuments(COLLECTION_NAME);
+        SearchIndex index = SEARCH_INDEX.get();
+        if (index != null && index.generation == SEARCH_GENERATION.get()) {
+            return index;
+        }
+        if (generation != SEARCH_GENERATION.get()) {
+            // This sync pulled changes; the mirror is now current up to the new generation
+            generation = SEARCH_GENERATION.get();
+            documents = SyncEngine.getInstance().getDocuments(COLLECTION_NAME);
+        }
 
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Book book = document.toObject(Book.class);
-                if (book != null) {
-                    // Check if any author contains the search term
-                    for (String bookAuthor : book.getAuthors()) {
-                        if (bookAuthor.toLowerCase().contains(searchAuthor)) {
-                            matchingBooks.add(book);
-                            break;
-                        }
-                    }
-                }
+        List<DocumentSnapshot> indexed = new ArrayList<>(documents.size());
+        CatalogueSearchEngine.Builder builder = new CatalogueSearchEngine.Builder();
+        for (DocumentSnapshot document : documents) {
+            Book book = toBook(document);
+            if (book != null) {
+                indexed.add(document);
+                builder.add(book.getTitle(), book.getAuthors(), book.getDescription());
             }
-
-            return matchingBooks;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error searching books by author: " + e.getMessage());
-            return new ArrayList<>();
         }
+        SearchIndex built = new SearchIndex(generation, indexed, builder.build());
+        // Never replace an index built from a later generation
+        return SEARCH_INDEX.accumulateAndGet(built,
+                (current, candidate) -> current != null && current.generation > candidate.generation ? current : candidate);
+    }
+
+    private static int getSearchResultLimit() {
+        return ConfigManager.getInstance().getInt("search.max.results", 500);
     }
 
     /**
@@ -243,10 +460,10 @@ public class BookService {
             ApiFuture<QuerySnapshot> future = query.get();
 
             List<Book> books = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "BookService.getBooksByGenre", COLLECTION_NAME);
 
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                books.add(document.toObject(Book.class));
+                books.add(toBook(document));
             }
 
             return books;
@@ -268,10 +485,10 @@ public class BookService {
             ApiFuture<QuerySnapshot> future = query.get();
 
             List<Book> books = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "BookService.getBooksByYear", COLLECTION_NAME);
 
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                books.add(document.toObject(Book.class));
+                books.add(toBook(document));
             }
 
             return books;
@@ -292,10 +509,10 @@ public class BookService {
             ApiFuture<QuerySnapshot> future = query.get();
 
             List<Book> books = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "BookService.getAvailableBooks", COLLECTION_NAME);
 
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                books.add(document.toObject(Book.class));
+                books.add(toBook(document));
             }
 
             return books;
@@ -311,13 +528,13 @@ public class BookService {
      */
     public int getBookCount() {
         try {
+            // Count on the server instead of reading the books
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
-
-            QuerySnapshot querySnapshot = future.get();
-            return querySnapshot.size();
+            ApiFuture<AggregateQuerySnapshot> future = db.collection(COLLECTION_NAME).count().get();
+            AggregateQuerySnapshot snapshot = FirestoreOps.await(future, "BookService.getBookCount", COLLECTION_NAME);
+            return (int) snapshot.getCount();
         } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting book count: " + e.getMessage());
+            System.err.println("Error counting books: " + e.getMessage());
             return 0;
         }
     }
@@ -331,29 +548,54 @@ public class BookService {
     }
 
     /**
-     * Gets the total number of book copies (both available and borrowed)
+     * Gets the total number of book copies (both available and borrowed).
+     * Adds up the local catalogue snapshot, so only books changed since the last refresh are read.
      * @return Total number of book copies
      */
     public int getTotalCopiesCount() {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
-
-            int totalCopies = 0;
-            QuerySnapshot querySnapshot = future.get();
+        int totalCopies = 0;
+        for (BookSummary book : getCatalogueSummaries()) {
+            totalCopies += book.getTotalCopies();
+        }
+        return totalCopies;
+    }
 
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Book book = document.toObject(Book.class);
-                if (book != null) {
-                    totalCopies += book.getTotalCopies();
-                }
-            }
+    /**
+     * Maps a document to a Book with no pending changes
+     * (the Firestore mapper goes through the setters, which record changes)
+     * @param document Document to map
+     * @return The book, or null if the document has no data
+     */
+    private static Book toBook(DocumentSnapshot document) {
+        Book book = document.toObject(Book.class);
+        if (book != null) {
+            // Share one instance of each repeated value across the catalogue
+            StringPool pool = StringPool.getInstance();
+            book.setPublisher(pool.intern(book.getPublisher()));
+            book.setLocation(pool.intern(book.getLocation()));
+            pool.internAll(book.getGenres());
+            pool.internAll(book.getAuthors());
+            book.clearChanges();
+        }
+        return book;
+    }
 
-            return totalCopies;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting total copies count: " + e.getMessage());
-            return 0;
+    /**
+     * Maps a projected document to a BookSummary, sharing repeated values through the string pool
+     * @param document Document selected with {@link BookSummary#FIELDS}
+     * @return The summary, or null if the document has no data
+     */
+    private static BookSummary toSummary(DocumentSnapshot document) {
+        BookSummary summary = document.toObject(BookSummary.class);
+        if (summary != null) {
+            summary.setId(document.getId());
+            StringPool pool = StringPool.getInstance();
+            summary.setPublisher(pool.intern(summary.getPublisher()));
+            summary.setLocation(pool.intern(summary.getLocation()));
+            pool.internAll(summary.getGenres());
+            pool.internAll(summary.getAuthors());
         }
+        return summary;
     }
 
     /**
@@ -0,0 +1,286 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.BookSummary;
+import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.StringPool;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps a copy of the catalogue summaries on disk so the catalogue can be shown
+ * straight away at startup and refreshed with a delta query instead of a full download.
+ *
+ * The file is a compact binary snapshot: a header with the high watermark (the latest
+ * lastUpdated seen) followed by length-prefixed records. It is read into memory with a plain
+ * channel read, so no mapping keeps the file open, and replaced atomically on save, so a
+ * crash mid-write leaves the previous snapshot intact. Counts and lengths read from the file
+ * are checked against its size before anything is allocated.
+ */
+public class CatalogueSnapshotStore {
+    private static final String CACHE_DIR = "cache";
+    private static final String SNAPSHOT_FILE = "catalogue.snapshot";
+
+    // "ATHC" followed by a format version; bump the version when the record layout changes
+    private static final int MAGIC = 0x41544843;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NULL_STRING = -1;
+
+    // Smallest possible record: null strings, empty lists, the three ints and the date
+    private static final int MIN_RECORD_BYTES = 7 * Integer.BYTES + 3 * Integer.BYTES + Long.BYTES;
+
+    private final Path snapshotPath;
+
+    /**
+     * Creates a store using the default snapshot location
+     */
+    public CatalogueSnapshotStore() {
+        this(Paths.get(CACHE_DIR, SNAPSHOT_FILE));
+    }
+
+    /**
+     * Creates a store using the given snapshot file
+     * @param snapshotPath Path of the snapshot file
+     */
+    public CatalogueSnapshotStore(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * Catalogue contents as of the last save
+     */
+    public static class Snapshot {
+        private final List<BookSummary> books;
+        private final long highWatermark;
+        private final long savedAt;
+
+        Snapshot(List<BookSummary> books, long highWatermark, long savedAt) {
+            this.books = books;
+            this.highWatermark = highWatermark;
+            this.savedAt = savedAt;
+        }
+
+        public List<BookSummary> getBooks() {
+            return books;
+        }
+
+        /**
+         * Gets the latest lastUpdated time of any book in the snapshot
+         * @return Watermark in milliseconds since the epoch
+         */
+        public long getHighWatermark() {
+            return highWatermark;
+        }
+
+        /**
+         * Gets when the snapshot was last fully downloaded
+         * @return Time in milliseconds since the epoch
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+    }
+
+    /**
+     * Reads the snapshot from disk
+     * @return The snapshot, or null if there is none or it can't be read
+     */
+    public synchronized Snapshot load() {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("snapshot is too large (" + size + " bytes)");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("snapshot ended early");
+                }
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                ErrorHandler.logWarning("Ignoring catalogue snapshot in an unknown format",
+                        ErrorHandler.ErrorType.FILE);
+                return null;
+            }
+
+            long highWatermark = buffer.getLong();
+            long savedAt = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_RECORD_BYTES) {
+                throw new IllegalArgumentException("record count " + count + " doesn't fit the file");
+            }
+
+            List<BookSummary> books = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                books.add(readBook(buffer));
+            }
+
+            return new Snapshot(books, highWatermark, savedAt);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            ErrorHandler.logWarning("Could not read catalogue snapshot: " + e.getMessage(),
+                    ErrorHandler.ErrorType.FILE);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a new snapshot, replacing the old one
+     * @param books Catalogue summaries to store
+     * @param highWatermark Latest lastUpdated time of any book, in milliseconds
+     * @param savedAt When the catalogue was last fully downloaded, in milliseconds
+     * @return true if successful, false otherwise
+     */
+    public synchronized boolean save(Collection<BookSummary> books, long highWatermark, long savedAt) {
+        Path tempFile = null;
+        try {
+            Path directory = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+
+            tempFile = Files.createTempFile(directory, SNAPSHOT_FILE, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(highWatermark);
+                out.writeLong(savedAt);
+                out.writeInt(books.size());
+                for (BookSummary book : books) {
+                    writeBook(out, book);
+                }
+            }
+
+            try {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Could not save catalogue snapshot: " + e.getMessage(),
+                    ErrorHandler.ErrorType.FILE);
+            return false;
+        } finally {
+            // Only still there if writing or moving it failed
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    System.err.println("Error deleting catalogue snapshot temp file: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the snapshot so the next load downloads the whole catalogue
+     */
+    public synchronized void delete() {
+        try {
+            Files.deleteIfExists(snapshotPath);
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Could not delete catalogue snapshot: " + e.getMessage(),
+                    ErrorHandler.ErrorType.FILE);
+        }
+    }
+
+    private static void writeBook(DataOutputStream out, BookSummary book) throws IOException {
+        writeString(out, book.getId());
+        writeString(out, book.getTitle());
+        writeStringList(out, book.getAuthors());
+        writeString(out, book.getPublisher());
+        writeString(out, book.getIsbn());
+        out.writeInt(book.getPublicationYear());
+        writeStringList(out, book.getGenres());
+        out.writeInt(book.getTotalCopies());
+        out.writeInt(book.getAvailableCopies());
+        writeString(out, book.getLocation());
+        out.writeLong(book.getLastUpdated() != null ? book.getLastUpdated().getTime() : NO_DATE);
+    }
+
+    private static BookSummary readBook(ByteBuffer buffer) {
+        BookSummary book = new BookSummary();
+        book.setId(readString(buffer));
+        book.setTitle(readString(buffer));
+        book.setAuthors(readPooledStringList(buffer));
+        book.setPublisher(StringPool.getInstance().intern(readString(buffer)));
+        book.setIsbn(readString(buffer));
+        book.setPublicationYear(buffer.getInt());
+        book.setGenres(readPooledStringList(buffer));
+        book.setTotalCopies(buffer.getInt());
+        book.setAvailableCopies(buffer.getInt());
+        book.setLocation(StringPool.getInstance().intern(readString(buffer)));
+        long lastUpdated = buffer.getLong();
+        book.setLastUpdated(lastUpdated != NO_DATE ? new Date(lastUpdated) : null);
+        return book;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("string length " + length + " doesn't fit the file");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStringList(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readPooledStringList(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0 || size > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("list size " + size + " doesn't fit the file");
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(StringPool.getInstance().intern(readString(buffer)));
+        }
+        return values;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,398 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams whole collections to CSV or JSON Lines files for reporting.
+ *
+ * Documents are read a page at a time with a query cursor, so memory use depends on the
+ * page size rather than on the size of the collection. Each page is encoded into a reused
+ * buffer, appended to the file through a {@link FileChannel} and followed by a checkpoint
+ * (the file length and the cursor) in a ".checkpoint" file next to the export. If an export
+ * is interrupted, running the same export again truncates the file to the last checkpoint
+ * and carries on from there. Gzipped exports write one gzip member per page, which standard
+ * tools read as a single stream, so every checkpoint falls on a member boundary.
+ */
+public class ExportService {
+    private static final String TRANSACTIONS_COLLECTION = "transactions";
+    private static final String BOOKS_COLLECTION = "books";
+
+    private static final String[] TRANSACTION_COLUMNS = {
+            "studentId", "bookId", "borrowDate", "dueDate", "returnDate",
+            "status", "librarianId", "fine", "notes", "lastUpdated"
+    };
+    private static final String[] BOOK_COLUMNS = {
+            "title", "authors", "publisher", "isbn", "publicationYear", "genres", "description",
+            "totalCopies", "availableCopies", "location", "addedDate", "lastUpdated"
+    };
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * Output formats
+     */
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    /**
+     * Exports transactions, oldest borrow date first
+     * @param file File to write
+     * @param format Output format
+     * @param gzip Whether to gzip the output
+     * @param startDate Earliest borrow date to include, or null for no lower bound
+     * @param endDate Latest borrow date to include, or null for no upper bound
+     * @param progress Called with the number of rows written so far after each page, or null
+     * @return Number of rows in the file, or -1 if the export failed
+     */
+    public long exportTransactions(Path file, Format format, boolean gzip, Date startDate, Date endDate,
+                                   LongConsumer progress) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Query query = db.collection(TRANSACTIONS_COLLECTION);
+        if (startDate != null) {
+            query = query.whereGreaterThanOrEqualTo("borrowDate", startDate);
+        }
+        if (endDate != null) {
+            query = query.whereLessThanOrEqualTo("borrowDate", endDate);
+        }
+
+        String job = "transactions|" + format + "|" + gzip + "|" + toMillis(startDate) + "|" + toMillis(endDate);
+        return export(file, format, gzip, job, TRANSACTIONS_COLLECTION, query, "borrowDate", TRANSACTION_COLUMNS, progress);
+    }
+
+    /**
+     * Exports the whole catalogue, in document ID order
+     * @param file File to write
+     * @param format Output format
+     * @param gzip Whether to gzip the output
+     * @param progress Called with the number of rows written so far after each page, or null
+     * @return Number of rows in the file, or -1 if the export failed
+     */
+    public long exportCatalogue(Path file, Format format, boolean gzip, LongConsumer progress) {
+        Query query = FirebaseConfig.getFirestoreInstance().collection(BOOKS_COLLECTION);
+        String job = "books|" + format + "|" + gzip;
+        return export(file, format, gzip, job, BOOKS_COLLECTION, query, null, BOOK_COLUMNS, progress);
+    }
+
+    /**
+     * Pages through a query and appends every document to the file
+     * @param orderField Field to page by before the document ID, or null to page by document ID only
+     */
+    private long export(Path file, Format format, boolean gzip, String job, String collection, Query baseQuery,
+                        String orderField, String[] columns, LongConsumer progress) {
+        long start = System.nanoTime();
+        Path checkpointFile = Paths.get(file.toString() + CHECKPOINT_SUFFIX);
+        int pageSize = Math.max(1, ConfigManager.getInstance().getInt("export.page.size", 1000));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Checkpoint checkpoint = Checkpoint.load(checkpointFile, job);
+            if (checkpoint == null || checkpoint.offset > channel.size()) {
+                checkpoint = new Checkpoint(job);
+            } else if (checkpoint.offset > 0) {
+                ErrorHandler.logInfo("Resuming export to " + file + " after " + checkpoint.rows + " rows");
+            }
+            long startRows = checkpoint.rows;
+            long startOffset = checkpoint.offset;
+            channel.truncate(checkpoint.offset);
+            channel.position(checkpoint.offset);
+
+            // Not closed: closing it would close the channel
+            OutputStream fileOut = Channels.newOutputStream(channel);
+            ByteArrayOutputStream pageBuffer = new ByteArrayOutputStream(64 * 1024);
+
+            Query query = orderField != null
+                    ? baseQuery.orderBy(orderField).orderBy(FieldPath.documentId())
+                    : baseQuery.orderBy(FieldPath.documentId());
+            query = query.select(columns).limit(pageSize);
+
+            boolean writeHeader = checkpoint.offset == 0 && format == Format.CSV;
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Export to " + file + " cancelled");
+                }
+
+                Query page = query;
+                if (checkpoint.lastId != null) {
+                    page = orderField != null
+                            ? query.startAfter(Timestamp.parseTimestamp(checkpoint.lastOrderValue), checkpoint.lastId)
+                            : query.startAfter(checkpoint.lastId);
+                }
+                List<? extends DocumentSnapshot> documents =
+                        FirestoreOps.await(page.get(), "ExportService.exportPage", collection).getDocuments();
+                if (documents.isEmpty() && !writeHeader) {
+                    break;
+                }
+
+                pageBuffer.reset();
+                OutputStream pageOut = gzip ? new GZIPOutputStream(pageBuffer, 8192) : pageBuffer;
+                Writer writer = new OutputStreamWriter(pageOut, StandardCharsets.UTF_8);
+                if (writeHeader) {
+                    writeCsvHeader(writer, columns);
+                    writeHeader = false;
+                }
+                for (DocumentSnapshot document : documents) {
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, document, columns);
+                    } else {
+                        writeJsonLine(writer, document, columns);
+                    }
+                }
+                writer.flush();
+                if (gzip) {
+                    ((GZIPOutputStream) pageOut).finish();
+                }
+                pageBuffer.writeTo(fileOut);
+                channel.force(false);
+
+                // Only advance the checkpoint once the page is on disk
+                if (!documents.isEmpty()) {
+                    DocumentSnapshot last = documents.get(documents.size() - 1);
+                    checkpoint.lastId = last.getId();
+                    if (orderField != null) {
+                        Timestamp orderValue = last.getTimestamp(orderField);
+                        checkpoint.lastOrderValue = orderValue != null ? orderValue.toString() : null;
+                    }
+                    checkpoint.rows += documents.size();
+                }
+                checkpoint.offset = channel.position();
+                checkpoint.save(checkpointFile);
+
+                if (progress != null) {
+                    progress.accept(checkpoint.rows);
+                }
+                if (documents.size() < pageSize) {
+                    break;
+                }
+            }
+
+            Files.deleteIfExists(checkpointFile);
+            FirestoreOps.record("ExportService.export", collection, (int) (checkpoint.rows - startRows),
+                    checkpoint.offset - startOffset, start, null);
+            return checkpoint.rows;
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Error exporting to " + file + ": " + e.getMessage(), ErrorHandler.ErrorType.FILE);
+            return -1;
+        } catch (InterruptedException e) {
+            // Keep the interrupt for the caller, e.g. a cancelled SwingWorker
+            Thread.currentThread().interrupt();
+            System.err.println("Export to " + file + " interrupted (run it again to resume): " + e.getMessage());
+            return -1;
+        } catch (ExecutionException e) {
+            System.err.println("Error exporting to " + file + " (run it again to resume): " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static void writeCsvHeader(Writer writer, String[] columns) throws IOException {
+        writer.write("id");
+        for (String column : columns) {
+            writer.write(',');
+            writer.write(column);
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeCsvRow(Writer writer, DocumentSnapshot document, String[] columns) throws IOException {
+        writeCsvValue(writer, document.getId());
+        for (String column : columns) {
+            writer.write(',');
+            Object value = document.get(column);
+            if (value instanceof List) {
+                // Lists go in one cell, separated by semicolons
+                StringBuilder joined = new StringBuilder();
+                for (Object item : (List<?>) value) {
+                    if (joined.length() > 0) {
+                        joined.append("; ");
+                    }
+                    joined.append(formatScalar(item));
+                }
+                writeCsvValue(writer, joined.toString());
+            } else {
+                writeCsvValue(writer, formatScalar(value));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonLine(Writer writer, DocumentSnapshot document, String[] columns) throws IOException {
+        writer.write("{\"id\":");
+        writeJsonValue(writer, document.getId());
+        for (String column : columns) {
+            writer.write(",\"");
+            writer.write(column);
+            writer.write("\":");
+            writeJsonValue(writer, document.get(column));
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            writer.write(value.toString());
+        } else if (value instanceof List) {
+            writer.write('[');
+            String separator = "";
+            for (Object item : (List<?>) value) {
+                writer.write(separator);
+                writeJsonValue(writer, item);
+                separator = ",";
+            }
+            writer.write(']');
+        } else {
+            writer.write('"');
+            String text = formatScalar(value);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        writer.write("\\\"");
+                        break;
+                    case '\\':
+                        writer.write("\\\\");
+                        break;
+                    case '\n':
+                        writer.write("\\n");
+                        break;
+                    case '\r':
+                        writer.write("\\r");
+                        break;
+                    case '\t':
+                        writer.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                }
+            }
+            writer.write('"');
+        }
+    }
+
+    /**
+     * Formats a single value; timestamps become ISO-8601 UTC times
+     */
+    private static String formatScalar(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Timestamp) {
+            return DateTimeFormatter.ISO_INSTANT.format(((Timestamp) value).toDate().toInstant());
+        }
+        if (value instanceof Date) {
+            return DateTimeFormatter.ISO_INSTANT.format(((Date) value).toInstant());
+        }
+        return value.toString();
+    }
+
+    private static String toMillis(Date date) {
+        return date != null ? String.valueOf(date.getTime()) : "";
+    }
+
+    /**
+     * How far an export got: the file length after the last complete page and the cursor
+     * to continue from
+     */
+    private static class Checkpoint {
+        private final String job;
+        private long offset;
+        private long rows;
+        private String lastId;
+        private String lastOrderValue;
+
+        Checkpoint(String job) {
+            this.job = job;
+        }
+
+        /**
+         * Loads the checkpoint for a job
+         * @return The checkpoint, or null if there is none or it belongs to a different export
+         */
+        static Checkpoint load(Path file, String job) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            if (!job.equals(properties.getProperty("job"))) {
+                return null;
+            }
+
+            try {
+                Checkpoint checkpoint = new Checkpoint(job);
+                checkpoint.offset = Long.parseLong(properties.getProperty("offset", "0"));
+                checkpoint.rows = Long.parseLong(properties.getProperty("rows", "0"));
+                checkpoint.lastId = properties.getProperty("lastId");
+                checkpoint.lastOrderValue = properties.getProperty("lastOrderValue");
+                return checkpoint;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        void save(Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("job", job);
+            properties.setProperty("offset", String.valueOf(offset));
+            properties.setProperty("rows", String.valueOf(rows));
+            if (lastId != null) {
+                properties.setProperty("lastId", lastId);
+            }
+            if (lastOrderValue != null) {
+                properties.setProperty("lastOrderValue", lastOrderValue);
+            }
+
+            // Write then rename, so a crash never leaves a half-written checkpoint
+            Path temp = Paths.get(file.toString() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Export checkpoint");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.EventLog;
+import com.athena.library.utils.JfrEvents;
+import com.athena.library.utils.MetricsRegistry;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteResult;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Waits for Firestore calls and records each one in the {@link EventLog} with its
+ * latency, document count and outcome. Services call {@link #await} where they would
+ * call future.get(); the exceptions are the same, so their error handling is unchanged.
+ *
+ * Each call is also timed in the {@link MetricsRegistry} (athena_firestore_call_seconds
+ * by operation), and the documents it read or wrote are counted per collection in
+ * athena_firestore_reads_total and athena_firestore_writes_total, which is what
+ * Firestore bills for. The same counts go to the {@link QuotaLedger} by operation,
+ * user and day, and each call is a {@link JfrEvents.FirestoreCall} in flight recordings.
+ */
+public final class FirestoreOps {
+    // Aggregation queries are billed one read per this many index entries counted
+    private static final long INDEX_ENTRIES_PER_READ = 1000;
+
+    private FirestoreOps() {
+    }
+
+    /**
+     * Waits for a Firestore call and records it
+     * @param future The call's future
+     * @param operation Operation name, "Service.method"
+     * @param collection Collection the call reads or writes
+     * @return The call's result
+     */
+    public static <T> T await(ApiFuture<T> future, String operation, String collection)
+            throws InterruptedException, ExecutionException {
+        JfrEvents.FirestoreCall event = new JfrEvents.FirestoreCall();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            T result = future.get();
+            long elapsed = System.nanoTime() - start;
+            int documents = countDocuments(result);
+            event.finish(operation, collection, documents, "ok");
+            EventLog.record(operation, collection, documents, -1, elapsed, "ok", null);
+            timeCall(operation, elapsed, false);
+            countResult(operation, collection, result);
+            return result;
+        } catch (ExecutionException e) {
+            long elapsed = System.nanoTime() - start;
+            event.finish(operation, collection, 0, "error");
+            EventLog.record(operation, collection, 0, -1, elapsed, "error", e.getCause() != null ? e.getCause() : e);
+            timeCall(operation, elapsed, true);
+            throw e;
+        } catch (InterruptedException e) {
+            event.finish(operation, collection, 0, "interrupted");
+            EventLog.record(operation, collection, 0, -1, System.nanoTime() - start, "interrupted", null);
+            throw e;
+        }
+    }
+
+    /**
+     * Records an operation that wasn't a single Firestore call, such as a mirror lookup or an export
+     * @param operation Operation name, "Service.method"
+     * @param collection Collection involved
+     * @param documents Number of documents read or written
+     * @param bytes Bytes read or written, or -1 if unknown
+     * @param startNanos {@link System#nanoTime()} when the operation started
+     * @param error The failure, or null if it succeeded
+     */
+    public static void record(String operation, String collection, int documents, long bytes,
+                              long startNanos, Throwable error) {
+        long elapsed = System.nanoTime() - startNanos;
+        EventLog.record(operation, collection, documents, bytes, elapsed, error == null ? "ok" : "error", error);
+        timeCall(operation, elapsed, error != null);
+    }
+
+    /**
+     * Counts documents read outside {@link #await}, e.g. delivered to a snapshot listener
+     * @param operation Operation name, "Service.method"
+     * @param collection Collection read
+     * @param documents Number of documents
+     */
+    public static void countReads(String operation, String collection, int documents) {
+        countUsage(operation, collection, documents, 0);
+    }
+
+    /**
+     * Counts documents written outside {@link #await}, e.g. by a batch committed asynchronously
+     * @param operation Operation name, "Service.method"
+     * @param collection Collection written
+     * @param documents Number of documents
+     */
+    public static void countWrites(String operation, String collection, int documents) {
+        countUsage(operation, collection, 0, documents);
+    }
+
+    private static void countUsage(String operation, String collection, int reads, int writes) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        if (reads > 0) {
+            metrics.counter("athena_firestore_reads_total", "Documents read from Firestore",
+                    "collection", collection).add(reads);
+        }
+        if (writes > 0) {
+            metrics.counter("athena_firestore_writes_total", "Documents written to Firestore",
+                    "collection", collection).add(writes);
+        }
+        QuotaLedger.getInstance().record(operation, reads, writes);
+    }
+
+    private static void timeCall(String operation, long elapsedNanos, boolean failed) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.histogram("athena_firestore_call_seconds", "Firestore call latency by operation",
+                "op", operation).recordNanos(elapsedNanos);
+        if (failed) {
+            metrics.counter("athena_firestore_errors_total", "Failed Firestore calls by operation",
+                    "op", operation).increment();
+        }
+    }
+
+    private static void countResult(String operation, String collection, Object result) {
+        if (result instanceof QuerySnapshot) {
+            // A query is billed at least one read even when it matches nothing
+            countReads(operation, collection, Math.max(1, ((QuerySnapshot) result).size()));
+        } else if (result instanceof AggregateQuerySnapshot) {
+            // At least one read, even when nothing is counted
+            long count = ((AggregateQuerySnapshot) result).getCount();
+            countReads(operation, collection, (int) Math.max(1, (count + INDEX_ENTRIES_PER_READ - 1) / INDEX_ENTRIES_PER_READ));
+        } else if (result instanceof DocumentSnapshot) {
+            countReads(operation, collection, 1);
+        } else if (result instanceof WriteResult) {
+            countWrites(operation, collection, 1);
+        } else if (result instanceof List) {
+            countWrites(operation, collection, ((List<?>) result).size());
+        } else {
+            countUsage(operation, collection, 0, 0);
+        }
+    }
+
+    private static int countDocuments(Object result) {
+        if (result instanceof QuerySnapshot) {
+            return ((QuerySnapshot) result).size();
+        }
+        if (result instanceof DocumentSnapshot) {
+            return ((DocumentSnapshot) result).exists() ? 1 : 0;
+        }
+        if (result instanceof List) {
+            return ((List<?>) result).size(); // Write results of a batch
+        }
+        return 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.athena.library.firebase;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a history listing, newest first. Pass it back to the same method
+ * to get the next page.
+ * @param <T> Item type
+ */
+public class HistoryPage<T> {
+    private final List<T> items;
+    private final DocumentSnapshot last;
+    private final boolean hasMore;
+
+    HistoryPage(List<T> items, DocumentSnapshot last, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.last = last;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Gets an empty page, e.g. after a failed read
+     * @param <T> Item type
+     * @return Page with no items and nothing more to read
+     */
+    static <T> HistoryPage<T> empty() {
+        return new HistoryPage<>(Collections.emptyList(), null, false);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Checks if there are older items after this page
+     * @return true if another page can be read
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Gets the cursor for the next page
+     * @return Last document of this page
+     */
+    DocumentSnapshot getLast() {
+        return last;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,501 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.Hold;
+import com.athena.library.models.Student;
+import com.athena.library.utils.ConfigManager;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service class for the hold queues of books with no copies available.
+ *
+ * Each book has a first-come, first-served queue of holds in the holds collection, ordered
+ * by the server time the hold was placed. A student's own holds are read through a
+ * {@link SyncEngine} mirror scoped to that student; a book's queue is read on demand.
+ * A returned copy is given to the first waiting student in the same Firestore transaction
+ * that reads the queue, so two returns can't hand out one copy twice and a copy only goes
+ * back on the shelf when nobody is waiting. The student gets a message and has
+ * hold.pickup.days (default 3) to collect the book before the copy passes to the next
+ * student. Every running client sweeps expired holds every hold.expiry.check.minutes
+ * (default 10), started from the application entry point; each hold is ended in a transaction
+ * that checks the expiry again, so overlapping sweeps pass a copy on only once.
+ *
+ * Holds are deleted, with a tombstone, once collected, cancelled or expired, so the
+ * mirrors only ever hold live holds. The composite indexes for the queue and the student
+ * mirrors are declared in {@link QueryPlans#HOLD_QUEUE} and {@link QueryPlans#STUDENT_HOLD_CHANGES}.
+ */
+public class HoldService {
+    private static final String COLLECTION_NAME = "holds";
+    private static final String BOOKS_COLLECTION = "books";
+    private static final String SENDER_ID = "system";
+    private static final String SENDER_NAME = "Athena University Library";
+
+    // Ready holds first, then the queue in the order the holds were placed
+    private static final Comparator<Hold> QUEUE_ORDER = Comparator
+            .comparing((Hold hold) -> hold.getStatus() != Hold.Status.READY)
+            .thenComparing(Hold::getPlacedDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Hold::getId);
+
+    // Singleton instance
+    private static HoldService instance;
+
+    private final MessageService messageService = new MessageService();
+    private ScheduledExecutorService expirer;
+
+    /**
+     * What happened to a kept copy when its hold ended
+     */
+    private static class Handover {
+        private final boolean removed;
+        private final Hold next;
+
+        Handover(boolean removed, Hold next) {
+            this.removed = removed;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private HoldService() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return HoldService instance
+     */
+    public static synchronized HoldService getInstance() {
+        if (instance == null) {
+            instance = new HoldService();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts sweeping expired holds every hold.expiry.check.minutes, once Firebase is initialized
+     */
+    public synchronized void startExpirySweeper() {
+        if (expirer != null) {
+            return;
+        }
+        expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "athena-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int checkMinutes = ConfigManager.getInstance().getInt("hold.expiry.check.minutes", 10);
+        expirer.scheduleWithFixedDelay(this::expireHolds, checkMinutes, checkMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the expiry sweep when the application exits
+     */
+    public synchronized void stopExpirySweeper() {
+        if (expirer != null) {
+            expirer.shutdownNow();
+            expirer = null;
+        }
+    }
+
+    /**
+     * Gets a student's hold on a book
+     * @param studentId Student ID
+     * @param bookId Book ID
+     * @return The hold, or null if the student has none
+     */
+    public Hold getHold(String studentId, String bookId) {
+        String holdId = Hold.idFor(studentId, bookId);
+        for (Hold hold : getHoldsForStudent(studentId)) {
+            if (hold.getId().equals(holdId)) {
+                return hold;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the holds on a book, ready ones first, then the queue in order
+     * @param bookId Book ID
+     * @return List of holds
+     */
+    public List<Hold> getHoldsForBook(String bookId) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        return queryHolds(db.collection(COLLECTION_NAME).whereEqualTo("bookId", bookId), "HoldService.getHoldsForBook");
+    }
+
+    /**
+     * Gets a student's holds, ready ones first
+     * @param studentId Student ID
+     * @return List of holds
+     */
+    public List<Hold> getHoldsForStudent(String studentId) {
+        // Students check their holds often, so keep a synced mirror of just their own
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Query own = db.collection(COLLECTION_NAME).whereEqualTo("studentId", studentId);
+        List<Hold> holds = new ArrayList<>();
+        for (DocumentSnapshot document : SyncEngine.getInstance()
+                .getDocuments(COLLECTION_NAME + "/student/" + studentId, COLLECTION_NAME, own)) {
+            Hold hold = toHold(document);
+            if (hold != null) {
+                holds.add(hold);
+            }
+        }
+        holds.sort(QUEUE_ORDER);
+        return holds;
+    }
+
+    /**
+     * Gets how many students are waiting for a book
+     * @param bookId Book ID
+     * @return Number of waiting holds
+     */
+    public int getWaitingCount(String bookId) {
+        int waiting = 0;
+        for (Hold hold : getHoldsForBook(bookId)) {
+            if (hold.getStatus() == Hold.Status.WAITING) {
+                waiting++;
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Gets a student's place in the queue for a book
+     * @param studentId Student ID
+     * @param bookId Book ID
+     * @return 1 for the front of the queue, or 0 if the student isn't waiting
+     */
+    public int getQueuePosition(String studentId, String bookId) {
+        int position = 0;
+        for (Hold hold : getHoldsForBook(bookId)) {
+            if (hold.getStatus() == Hold.Status.WAITING) {
+                position++;
+                if (studentId.equals(hold.getStudentId())) {
+                    return position;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Puts a student in the queue for a book, unless a copy is available
+     * @param student Student placing the hold
+     * @param bookId Book ID
+     * @param bookTitle Book title, for the notification
+     * @return true if the student is in the queue (or already was), false if a copy is
+     *         available or the hold couldn't be placed
+     */
+    public boolean placeHold(Student student, String bookId, String bookTitle) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            DocumentReference bookRef = db.collection(BOOKS_COLLECTION).document(bookId);
+            DocumentReference holdRef = db.collection(COLLECTION_NAME).document(Hold.idFor(student.getId(), bookId));
+
+            // Set when the last attempt of the transaction created the hold
+            AtomicBoolean created = new AtomicBoolean();
+            ApiFuture<Boolean> future = db.runTransaction(transaction -> {
+                created.set(false);
+                DocumentSnapshot existing = FirestoreOps.await(transaction.get(holdRef),
+                        "HoldService.placeHold", COLLECTION_NAME);
+                if (existing.exists()) {
+                    return true;
+                }
+                // Checked in the transaction so a copy returned meanwhile isn't missed
+                DocumentSnapshot book = FirestoreOps.await(transaction.get(bookRef),
+                        "HoldService.placeHold", BOOKS_COLLECTION);
+                Long available = book.getLong("availableCopies");
+                if (!book.exists() || (available != null && available > 0)) {
+                    return false;
+                }
+
+                Map<String, Object> hold = new HashMap<>();
+                hold.put("bookId", bookId);
+                hold.put("bookTitle", bookTitle);
+                hold.put("studentId", student.getId());
+                hold.put("studentName", student.getFullName());
+                hold.put("status", Hold.Status.WAITING.toString());
+                hold.put("placedDate", FieldValue.serverTimestamp());
+                hold.put("lastUpdated", FieldValue.serverTimestamp());
+                transaction.set(holdRef, hold);
+                created.set(true);
+                return true;
+            });
+
+            boolean queued = FirestoreOps.await(future, "HoldService.placeHold", COLLECTION_NAME);
+            if (created.get()) {
+                FirestoreOps.countWrites("HoldService.placeHold", COLLECTION_NAME, 1);
+            }
+            return queued;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error placing hold: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Takes a student out of the queue for a book. A copy kept for the student goes to the next in line.
+     * @param studentId Student ID
+     * @param bookId Book ID
+     * @return true if a hold was cancelled, false otherwise
+     */
+    public boolean cancelHold(String studentId, String bookId) {
+        Handover handover = endHold(Hold.idFor(studentId, bookId), false, "HoldService.cancelHold");
+        if (handover == null || !handover.removed) {
+            return false;
+        }
+        notifyReady(handover.next);
+        return true;
+    }
+
+    /**
+     * Reads a student's hold on a book inside a Firestore transaction, for
+     * {@link #claimReadyHold(Transaction, DocumentSnapshot)}
+     * @param transaction Transaction recording the loan
+     * @param studentId Student ID
+     * @param bookId Book ID
+     * @return Future for the hold document
+     */
+    ApiFuture<DocumentSnapshot> readHold(Transaction transaction, String studentId, String bookId) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        return transaction.get(db.collection(COLLECTION_NAME).document(Hold.idFor(studentId, bookId)));
+    }
+
+    /**
+     * Collects the copy kept for a student, ending their hold. Must run inside the transaction
+     * that read the hold and records the loan, so the hold only goes if the borrow goes through.
+     * Call {@link #holdClaimed} once the transaction has committed.
+     * @param transaction Transaction recording the loan
+     * @param holdDocument The student's hold, from {@link #readHold}
+     * @return true if a copy was kept for the student and is now theirs, false if they have no ready hold
+     */
+    boolean claimReadyHold(Transaction transaction, DocumentSnapshot holdDocument) {
+        Hold hold = toHold(holdDocument);
+        if (hold == null || !hold.isReady()) {
+            return false;
+        }
+        SyncEngine.addDeleteWithTombstone(transaction, COLLECTION_NAME, holdDocument.getId());
+        return true;
+    }
+
+    /**
+     * Updates the metrics and the mirror after a claimed hold was committed
+     * @param studentId Student ID
+     * @param bookId Book ID
+     */
+    void holdClaimed(String studentId, String bookId) {
+        FirestoreOps.countWrites("HoldService.claimReadyHold", COLLECTION_NAME, 2);
+        SyncEngine.getInstance().applyLocalDelete(COLLECTION_NAME, Hold.idFor(studentId, bookId));
+    }
+
+    /**
+     * Reads the first student waiting for a book inside a Firestore transaction, for
+     * {@link #releaseCopy(Transaction, DocumentSnapshot, QuerySnapshot)}
+     * @param transaction Transaction recording the return
+     * @param bookId Book ID
+     * @return Future for the queue
+     */
+    ApiFuture<QuerySnapshot> readQueue(Transaction transaction, String bookId) {
+        return transaction.get(nextInQueue(FirebaseConfig.getFirestoreInstance(), bookId));
+    }
+
+    /**
+     * Handles a returned copy: keeps it for the first student in the queue, or puts it back
+     * on the shelf if nobody is waiting. Must run inside the transaction that records the return,
+     * so the copy can't be lost between the two. Call {@link #copyReleased} once it has committed.
+     * @param transaction Transaction recording the return
+     * @param book The book, read in the transaction
+     * @param waiting The queue, from {@link #readQueue}
+     * @return The hold the copy is now kept for, or null if it went back on the shelf
+     */
+    Hold releaseCopy(Transaction transaction, DocumentSnapshot book, QuerySnapshot waiting) {
+        return handOver(transaction, book, waiting);
+    }
+
+    /**
+     * Updates the metrics and tells the student after a released copy was committed
+     * @param keptFor The hold the copy is kept for, or null if it went back on the shelf
+     */
+    void copyReleased(Hold keptFor) {
+        FirestoreOps.countWrites("HoldService.releaseCopy", keptFor != null ? COLLECTION_NAME : BOOKS_COLLECTION, 1);
+        notifyReady(keptFor);
+    }
+
+    /**
+     * Ends ready holds whose copy wasn't collected in time and passes the copies on
+     * @return Number of holds expired
+     */
+    public int expireHolds() {
+        int expired = 0;
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Query ready = db.collection(COLLECTION_NAME).whereEqualTo("status", Hold.Status.READY.toString());
+        for (Hold hold : queryHolds(ready, "HoldService.expireHolds")) {
+            if (!hold.isExpired()) {
+                continue;
+            }
+            Handover handover = endHold(hold.getId(), true, "HoldService.expireHolds");
+            if (handover != null && handover.removed) {
+                expired++;
+                messageService.sendNotificationToStudent(SENDER_ID, SENDER_NAME,
+                        hold.getStudentId(), hold.getStudentName(),
+                        "Hold Expired: " + hold.getBookTitle(),
+                        "Dear " + hold.getStudentName() + ",\n\n" +
+                                "The copy of \"" + hold.getBookTitle() + "\" kept for you was not collected by " +
+                                formatDate(hold.getExpiryDate()) + " and has been passed on.\n\n" +
+                                "You can place a new hold from the book catalogue.\n\n" +
+                                "Regards,\n" + SENDER_NAME);
+                notifyReady(handover.next);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes a hold and, if a copy was kept for it, passes the copy on
+     * @param holdId Hold document ID
+     * @param onlyIfExpired Only remove the hold if it is ready and expired
+     * @param operation Operation name for the metrics
+     * @return What happened, or null if the update failed
+     */
+    private Handover endHold(String holdId, boolean onlyIfExpired, String operation) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            DocumentReference holdRef = db.collection(COLLECTION_NAME).document(holdId);
+
+            ApiFuture<Handover> future = db.runTransaction(transaction -> {
+                // Firestore transactions do all their reads before any writes
+                Hold hold = toHold(FirestoreOps.await(transaction.get(holdRef), operation, COLLECTION_NAME));
+                if (hold == null || (onlyIfExpired && !hold.isExpired())) {
+                    return new Handover(false, null);
+                }
+                DocumentSnapshot book = null;
+                QuerySnapshot waiting = null;
+                if (hold.getStatus() == Hold.Status.READY) {
+                    book = FirestoreOps.await(transaction.get(db.collection(BOOKS_COLLECTION).document(hold.getBookId())),
+                            operation, BOOKS_COLLECTION);
+                    waiting = FirestoreOps.await(transaction.get(nextInQueue(db, hold.getBookId())),
+                            operation, COLLECTION_NAME);
+                }
+
+                SyncEngine.addDeleteWithTombstone(transaction, COLLECTION_NAME, holdId);
+                return new Handover(true, book != null ? handOver(transaction, book, waiting) : null);
+            });
+
+            Handover handover = FirestoreOps.await(future, operation, COLLECTION_NAME);
+            if (handover.removed) {
+                FirestoreOps.countWrites(operation, COLLECTION_NAME, 3);
+                SyncEngine.getInstance().applyLocalDelete(COLLECTION_NAME, holdId);
+            }
+            return handover;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error ending hold: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Keeps a free copy for the first waiting student, or puts it back on the shelf.
+     * Must run inside the transaction that read the book and the queue.
+     * @return The hold the copy is now kept for, or null if it went back on the shelf
+     */
+    private static Hold handOver(Transaction transaction, DocumentSnapshot book, QuerySnapshot waiting) {
+        if (!waiting.isEmpty()) {
+            DocumentSnapshot document = waiting.getDocuments().get(0);
+            Hold hold = toHold(document);
+            int pickupDays = ConfigManager.getInstance().getInt("hold.pickup.days", 3);
+            Date now = new Date();
+            hold.setStatus(Hold.Status.READY);
+            hold.setReadyDate(now);
+            hold.setExpiryDate(new Date(now.getTime() + TimeUnit.DAYS.toMillis(pickupDays)));
+
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("status", Hold.Status.READY.toString());
+            updates.put("readyDate", hold.getReadyDate());
+            updates.put("expiryDate", hold.getExpiryDate());
+            updates.put("lastUpdated", FieldValue.serverTimestamp());
+            transaction.update(document.getReference(), updates);
+            return hold;
+        }
+
+        Long available = book.getLong("availableCopies");
+        Long total = book.getLong("totalCopies");
+        if (book.exists() && (available == null || total == null || available < total)) {
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("availableCopies", FieldValue.increment(1));
+            updates.put("lastUpdated", FieldValue.serverTimestamp());
+            transaction.update(book.getReference(), updates);
+        }
+        return null;
+    }
+
+    private void notifyReady(Hold hold) {
+        if (hold == null) {
+            return;
+        }
+        messageService.sendNotificationToStudent(SENDER_ID, SENDER_NAME,
+                hold.getStudentId(), hold.getStudentName(),
+                "Your Hold Is Ready: " + hold.getBookTitle(),
+                "Dear " + hold.getStudentName() + ",\n\n" +
+                        "A copy of \"" + hold.getBookTitle() + "\" is being kept for you. " +
+                        "Please borrow it from the book catalogue by " +
+                        formatDate(hold.getExpiryDate()) + ", after which it will go to the next " +
+                        "student in the queue.\n\n" +
+                        "Regards,\n" + SENDER_NAME);
+    }
+
+    private static String formatDate(Date date) {
+        return date != null ? new SimpleDateFormat("MM/dd/yyyy").format(date) : "";
+    }
+
+    private static Query nextInQueue(Firestore db, String bookId) {
+        return db.collection(COLLECTION_NAME)
+                .whereEqualTo("bookId", bookId)
+                .whereEqualTo("status", Hold.Status.WAITING.toString())
+                .orderBy("placedDate")
+                .limit(1);
+    }
+
+    /**
+     * Reads holds from the server: ready holds first, then in queue order
+     */
+    private List<Hold> queryHolds(Query query, String operation) {
+        List<Hold> holds = new ArrayList<>();
+        try {
+            for (DocumentSnapshot document : FirestoreOps.await(query.get(), operation, COLLECTION_NAME).getDocuments()) {
+                Hold hold = toHold(document);
+                if (hold != null) {
+                    holds.add(hold);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting holds: " + e.getMessage());
+        }
+        holds.sort(QUEUE_ORDER);
+        return holds;
+    }
+
+    private static Hold toHold(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Hold hold = document.toObject(Hold.class);
+        if (hold != null) {
+            hold.setId(document.getId());
+        }
+        return hold;
+    }
+}
\ No newline at end of file
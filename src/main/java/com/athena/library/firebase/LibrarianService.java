@@ -0,0 +1,155 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.Librarian;
+import com.athena.library.utils.ConfigManager;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Service class to handle Librarian profile operations with Firebase
+ */
+public class LibrarianService {
+    private static final String COLLECTION_NAME = "librarians";
+
+    // Shared by every LibrarianService so profile lookups hit memory after the first read
+    private static final ProfileCache PROFILE_CACHE = new ProfileCache(COLLECTION_NAME,
+            ConfigManager.getInstance().getInt("cache.profiles.max.size", 500),
+            ConfigManager.getInstance().getInt("cache.profiles.ttl.seconds", 300) * 1000L);
+
+    /**
+     * Gets a librarian by ID
+     * @param id Librarian ID to look up
+     * @return Librarian object if found, null otherwise
+     */
+    public Librarian getLibrarianById(String id) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            CollectionReference collection = db.collection(COLLECTION_NAME);
+            PROFILE_CACHE.watch(collection);
+
+            DocumentSnapshot document = PROFILE_CACHE.get(id, () ->
+                    FirestoreOps.await(collection.document(id).get(), "LibrarianService.getLibrarianById", COLLECTION_NAME));
+            if (document.exists()) {
+                return toLibrarian(document);
+            } else {
+                return null;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting librarian: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets a librarian by their staff ID (not the database ID)
+     * @param staffId Staff ID to look up
+     * @return Librarian object if found, null otherwise
+     */
+    public Librarian getLibrarianByStaffId(String staffId) {
+        // Reuse the cached profile if we've already seen this staff ID
+        String documentId = PROFILE_CACHE.resolveAlias(staffId);
+        if (documentId != null) {
+            Librarian librarian = getLibrarianById(documentId);
+            if (librarian != null && staffId.equals(librarian.getStaffId())) {
+                return librarian;
+            }
+        }
+
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            Query query = db.collection(COLLECTION_NAME).whereEqualTo("staffId", staffId);
+            ApiFuture<QuerySnapshot> future = query.get();
+
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "LibrarianService.getLibrarianByStaffId", COLLECTION_NAME);
+            if (!querySnapshot.isEmpty()) {
+                DocumentSnapshot document = querySnapshot.getDocuments().get(0);
+                PROFILE_CACHE.put(document);
+                PROFILE_CACHE.putAlias(staffId, document.getId());
+                return toLibrarian(document);
+            } else {
+                return null;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting librarian by staff ID: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Updates an existing librarian's information by replacing the whole document.
+     * Prefer {@link #saveLibrarian(Librarian)}, which only writes the fields that changed.
+     * @param librarian Updated librarian object
+     * @return true if successful, false otherwise
+     */
+    public boolean updateLibrarian(Librarian librarian) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // Let the server stamp the write time
+            librarian.setLastUpdated(null);
+            ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(librarian.getId()).set(librarian);
+
+            // Wait for the operation to complete
+            FirestoreOps.await(future, "LibrarianService.updateLibrarian", COLLECTION_NAME);
+            librarian.clearChanges();
+            PROFILE_CACHE.invalidate(librarian.getId());
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error updating librarian: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Saves only the fields of a librarian that changed since it was loaded
+     * @param librarian Librarian with pending changes
+     * @return true if successful (or nothing to save), false otherwise
+     */
+    public boolean saveLibrarian(Librarian librarian) {
+        if (!librarian.hasChanges()) {
+            return true;
+        }
+
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            DocumentReference docRef = db.collection(COLLECTION_NAME).document(librarian.getId());
+
+            Map<String, Object> updates = librarian.getPendingUpdates();
+            updates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            ApiFuture<WriteResult> future = docRef.update(updates);
+            FirestoreOps.await(future, "LibrarianService.saveLibrarian", COLLECTION_NAME);
+            librarian.clearChanges();
+            PROFILE_CACHE.invalidate(librarian.getId());
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error saving librarian: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gets the shared librarian profile cache, e.g. to report its statistics
+     * @return Librarian profile cache
+     */
+    public static ProfileCache getProfileCache() {
+        return PROFILE_CACHE;
+    }
+
+    /**
+     * Maps a document to a Librarian with no pending changes
+     * (the Firestore mapper goes through the setters, which record changes)
+     * @param document Document to map
+     * @return The librarian, or null if the document has no data
+     */
+    private static Librarian toLibrarian(DocumentSnapshot document) {
+        Librarian librarian = document.toObject(Librarian.class);
+        if (librarian != null) {
+            librarian.clearChanges();
+        }
+        return librarian;
+    }
+}
\ No newline at end of file
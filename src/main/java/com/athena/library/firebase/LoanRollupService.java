@@ -0,0 +1,296 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.LoanRollup;
+import com.athena.library.models.Transaction;
+import com.athena.library.utils.ErrorHandler;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Service class for the daily and all-time loan rollups of books, students and librarians.
+ *
+ * Every borrow, renewal, return, loss and newly overdue loan adds to two documents per
+ * book, student and processing librarian in loanRollups: one for the day
+ * ({scope}_{id}_{yyyyMMdd}) and one for all time ({scope}_{id}). The changes are server-side
+ * increments merged into the documents, so concurrent loans of the same book add up, and
+ * they are committed in the background without holding up the loan. Reports such as
+ * "most borrowed" read the rollups, one document per entity and day, instead of the
+ * transaction history.
+ *
+ * Librarian rollups count the loans a librarian processed; they don't track active loans.
+ */
+public class LoanRollupService {
+    private static final String COLLECTION_NAME = "loanRollups";
+
+    /**
+     * Counts a new loan
+     * @param loan The loan
+     */
+    public void recordBorrow(Transaction loan) {
+        Map<String, Number> changes = new LinkedHashMap<>();
+        changes.put("borrows", 1L);
+        write("LoanRollupService.recordBorrow", loan, changes, 1);
+    }
+
+    /**
+     * Counts a renewal
+     * @param loan The renewed loan
+     */
+    public void recordRenewal(Transaction loan) {
+        Map<String, Number> changes = new LinkedHashMap<>();
+        changes.put("renewals", 1L);
+        write("LoanRollupService.recordRenewal", loan, changes, 0);
+    }
+
+    /**
+     * Counts a return
+     * @param loan The returned loan
+     * @param late Whether it was returned after its due date
+     * @param fine Fine charged for the return
+     */
+    public void recordReturn(Transaction loan, boolean late, double fine) {
+        Map<String, Number> changes = new LinkedHashMap<>();
+        changes.put("returns", 1L);
+        changes.put("overdueReturns", late ? 1L : 0L);
+        changes.put("fines", fine);
+        write("LoanRollupService.recordReturn", loan, changes, -1);
+    }
+
+    /**
+     * Counts a lost book
+     * @param loan The loan of the lost book
+     * @param lossFee Fee charged for the loss
+     */
+    public void recordLoss(Transaction loan, double lossFee) {
+        Map<String, Number> changes = new LinkedHashMap<>();
+        changes.put("lost", 1L);
+        changes.put("fines", lossFee);
+        write("LoanRollupService.recordLoss", loan, changes, -1);
+    }
+
+    /**
+     * Counts a loan that has just become overdue
+     * @param loan The overdue loan
+     */
+    public void recordOverdue(Transaction loan) {
+        Map<String, Number> changes = new LinkedHashMap<>();
+        changes.put("overdue", 1L);
+        write("LoanRollupService.recordOverdue", loan, changes, 0);
+    }
+
+    /**
+     * Gets the daily rollups of a book, student or librarian
+     * @param scope What the ID refers to
+     * @param entityId Book, student or librarian ID
+     * @param from First day to include
+     * @param to Last day to include
+     * @return Rollups of the days with activity, oldest first
+     */
+    public List<LoanRollup> getDailyRollups(LoanRollup.Scope scope, String entityId, Date from, Date to) {
+        try {
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance().execute(QueryPlans.DAILY_ROLLUPS_FOR_ENTITY,
+                    scope.toString(), entityId, startOfDay(from), endOfDay(to));
+
+            List<LoanRollup> rollups = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                rollups.add(document.toObject(LoanRollup.class));
+            }
+            return rollups;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting daily loan rollups: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Gets the all-time rollup of a book, student or librarian
+     * @param scope What the ID refers to
+     * @param entityId Book, student or librarian ID
+     * @return The rollup, empty if there has been no activity
+     */
+    public LoanRollup getTotals(LoanRollup.Scope scope, String entityId) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            ApiFuture<DocumentSnapshot> future = db.collection(COLLECTION_NAME).document(totalId(scope, entityId)).get();
+            DocumentSnapshot document = FirestoreOps.await(future, "LoanRollupService.getTotals", COLLECTION_NAME);
+            if (document.exists()) {
+                return document.toObject(LoanRollup.class);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting loan totals: " + e.getMessage());
+        }
+        return new LoanRollup(scope, entityId, LoanRollup.PERIOD_TOTAL);
+    }
+
+    /**
+     * Gets the most borrowed books (or busiest students or librarians)
+     * @param scope Which kind of entity to rank
+     * @param from First day to count, or null with to also null for all time
+     * @param to Last day to count
+     * @param limit Maximum number of results
+     * @return Rollups with the most borrows first; summed over the range when one is given
+     */
+    public List<LoanRollup> getMostBorrowed(LoanRollup.Scope scope, Date from, Date to, int limit) {
+        try {
+            if (from == null && to == null) {
+                // All time: the totals are already ranked by the server
+                List<DocumentSnapshot> documents = QueryPlanner.getInstance().executePage(
+                        QueryPlans.ROLLUP_TOTALS_BY_BORROWS, limit, null, scope.toString(), LoanRollup.PERIOD_TOTAL);
+                List<LoanRollup> rollups = new ArrayList<>();
+                for (DocumentSnapshot document : documents) {
+                    rollups.add(document.toObject(LoanRollup.class));
+                }
+                return rollups;
+            }
+
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance().execute(QueryPlans.DAILY_ROLLUPS_FOR_SCOPE,
+                    scope.toString(), startOfDay(from != null ? from : new Date(0)), endOfDay(to != null ? to : new Date()));
+
+            Map<String, LoanRollup> byEntity = new HashMap<>();
+            for (DocumentSnapshot document : documents) {
+                LoanRollup day = document.toObject(LoanRollup.class);
+                if (day != null) {
+                    byEntity.computeIfAbsent(day.getEntityId(),
+                            id -> new LoanRollup(scope, id, LoanRollup.PERIOD_RANGE)).add(day);
+                }
+            }
+
+            List<LoanRollup> ranked = new ArrayList<>(byEntity.values());
+            ranked.sort((a, b) -> Long.compare(b.getBorrows(), a.getBorrows()));
+            return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting most borrowed: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds the changes to the day and all-time rollups of the loan's book, student and librarian
+     * @param operation Operation name for the metrics
+     * @param loan The loan
+     * @param changes Field name -> amount to add
+     * @param activeLoansChange Change in the number of loans out
+     */
+    private void write(String operation, Transaction loan, Map<String, Number> changes, int activeLoansChange) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Date now = new Date();
+        Date day = startOfDay(now);
+        String dayKey = new SimpleDateFormat("yyyyMMdd").format(now);
+
+        WriteBatch batch = db.batch();
+        int writes = 0;
+        for (LoanRollup.Scope scope : LoanRollup.Scope.values()) {
+            String entityId = getEntityId(scope, loan);
+            if (entityId == null) {
+                continue;
+            }
+
+            Map<String, Object> fields = new HashMap<>();
+            for (Map.Entry<String, Number> change : changes.entrySet()) {
+                addIncrement(fields, change.getKey(), change.getValue());
+            }
+            if (scope != LoanRollup.Scope.LIBRARIAN) {
+                addIncrement(fields, "activeLoans", (long) activeLoansChange);
+            }
+            if (fields.isEmpty()) {
+                continue;
+            }
+            fields.put("scope", scope.toString());
+            fields.put("entityId", entityId);
+            fields.put("lastUpdated", FieldValue.serverTimestamp());
+
+            Map<String, Object> dayFields = new HashMap<>(fields);
+            dayFields.put("period", LoanRollup.PERIOD_DAY);
+            dayFields.put("day", day);
+            batch.set(db.collection(COLLECTION_NAME).document(totalId(scope, entityId) + "_" + dayKey),
+                    dayFields, SetOptions.merge());
+
+            Map<String, Object> totalFields = new HashMap<>(fields);
+            totalFields.put("period", LoanRollup.PERIOD_TOTAL);
+            batch.set(db.collection(COLLECTION_NAME).document(totalId(scope, entityId)),
+                    totalFields, SetOptions.merge());
+            writes += 2;
+        }
+        if (writes == 0) {
+            return;
+        }
+
+        int documents = writes;
+        long start = System.nanoTime();
+        ApiFutures.addCallback(batch.commit(), new ApiFutureCallback<List<WriteResult>>() {
+            @Override
+            public void onSuccess(List<WriteResult> results) {
+                FirestoreOps.record(operation, COLLECTION_NAME, documents, -1, start, null);
+                FirestoreOps.countWrites(operation, COLLECTION_NAME, results.size());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                FirestoreOps.record(operation, COLLECTION_NAME, documents, -1, start, t);
+                ErrorHandler.logWarning("Could not update loan rollups for transaction " + loan.getId()
+                        + ": " + t.getMessage(), ErrorHandler.ErrorType.DATABASE);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static void addIncrement(Map<String, Object> fields, String field, Number amount) {
+        if (amount instanceof Double) {
+            if (amount.doubleValue() != 0) {
+                fields.put(field, FieldValue.increment(amount.doubleValue()));
+            }
+        } else if (amount.longValue() != 0) {
+            fields.put(field, FieldValue.increment(amount.longValue()));
+        }
+    }
+
+    private static String getEntityId(LoanRollup.Scope scope, Transaction loan) {
+        switch (scope) {
+            case BOOK:
+                return loan.getBookId();
+            case STUDENT:
+                return loan.getStudentId();
+            default:
+                return loan.getLibrarianId();
+        }
+    }
+
+    private static String totalId(LoanRollup.Scope scope, String entityId) {
+        return scope.toString().toLowerCase() + "_" + entityId;
+    }
+
+    private static Date startOfDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    private static Date endOfDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(startOfDay(date));
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        calendar.add(Calendar.MILLISECOND, -1);
+        return calendar.getTime();
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.athena.library.firebase;
 
 import com.athena.library.models.Message;
+import com.athena.library.models.MessageHeader;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
@@ -32,10 +33,12 @@ public class MessageService {
                 message.setSentDate(new Date());
             }
 
+            // Let the server stamp the write time
+            message.setLastUpdated(null);
             ApiFuture<WriteResult> future = docRef.set(message);
 
             // Wait for the operation to complete
-            future.get();
+            FirestoreOps.await(future, "MessageService.sendMessage", COLLECTION_NAME);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error sending message: " + e.getMessage());
@@ -120,7 +123,7 @@ public class MessageService {
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(id);
             ApiFuture<DocumentSnapshot> future = docRef.get();
 
-            DocumentSnapshot document = future.get();
+            DocumentSnapshot document = FirestoreOps.await(future, "MessageService.getMessageById", COLLECTION_NAME);
             if (document.exists()) {
                 return document.toObject(Message.class);
             } else {
@@ -140,9 +143,10 @@ public class MessageService {
     public boolean updateMessage(Message message) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
+            message.setLastUpdated(null);
             ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(message.getId()).set(message);
 
-            future.get();
+            FirestoreOps.await(future, "MessageService.updateMessage", COLLECTION_NAME);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error updating message: " + e.getMessage());
@@ -151,25 +155,16 @@ public class MessageService {
     }
 
     /**
-     * Marks a message as read
+     * Marks a message as read. The write is queued and applied shortly after.
      * @param messageId ID of the message to mark as read
-     * @return true if successful, false otherwise
+     * @return true if the update was queued, false otherwise
      */
     public boolean markMessageAsRead(String messageId) {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            DocumentReference docRef = db.collection(COLLECTION_NAME).document(messageId);
-
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("read", true);
-
-            ApiFuture<WriteResult> future = docRef.update(updates);
-            future.get();
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error marking message as read: " + e.getMessage());
-            return false;
-        }
+        // Read receipts aren't critical, so they are batched with other background writes
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("read", true);
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+        return WriteBehindQueue.getInstance().enqueueUpdate(COLLECTION_NAME, messageId, updates);
     }
 
     /**
@@ -179,10 +174,10 @@ public class MessageService {
      */
     public boolean deleteMessage(String messageId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(messageId).delete();
-
-            future.get();
+            // Leave a tombstone so synced mirrors on other clients drop the message too
+            FirestoreOps.await(SyncEngine.deleteWithTombstone(COLLECTION_NAME, messageId),
+                    "MessageService.deleteMessage", COLLECTION_NAME);
+            SyncEngine.getInstance().applyLocalDelete(COLLECTION_NAME, messageId);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error deleting message: " + e.getMessage());
@@ -197,17 +192,11 @@ public class MessageService {
      */
     public List<Message> getMessagesForReceiver(String receiverId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("receiverId", receiverId)
-                    .orderBy("sentDate", Query.Direction.DESCENDING);
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.MESSAGES_FOR_RECEIVER, receiverId);
 
             List<Message> messages = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+            for (DocumentSnapshot document : documents) {
                 messages.add(document.toObject(Message.class));
             }
 
@@ -225,18 +214,11 @@ public class MessageService {
      */
     public List<Message> getUnreadMessagesForReceiver(String receiverId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("receiverId", receiverId)
-                    .whereEqualTo("read", false)
-                    .orderBy("sentDate", Query.Direction.DESCENDING);
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.UNREAD_MESSAGES_FOR_RECEIVER, receiverId, false);
 
             List<Message> messages = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+            for (DocumentSnapshot document : documents) {
                 messages.add(document.toObject(Message.class));
             }
 
@@ -254,17 +236,11 @@ public class MessageService {
      */
     public List<Message> getMessagesBySender(String senderId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("senderId", senderId)
-                    .orderBy("sentDate", Query.Direction.DESCENDING);
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.MESSAGES_BY_SENDER, senderId);
 
             List<Message> messages = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+            for (DocumentSnapshot document : documents) {
                 messages.add(document.toObject(Message.class));
             }
 
@@ -275,6 +251,63 @@ public class MessageService {
         }
     }
 
+    /**
+     * Gets the headers of all messages for a specific recipient, without message content
+     * @param receiverId ID of the recipient
+     * @return List of message headers, newest first
+     */
+    public List<MessageHeader> getMessageHeadersForReceiver(String receiverId) {
+        return getMessageHeaders("Error getting message headers for receiver: ",
+                QueryPlans.MESSAGE_HEADERS_FOR_RECEIVER, receiverId);
+    }
+
+    /**
+     * Gets the headers of unread messages for a specific recipient, without message content
+     * @param receiverId ID of the recipient
+     * @return List of unread message headers, newest first
+     */
+    public List<MessageHeader> getUnreadMessageHeadersForReceiver(String receiverId) {
+        return getMessageHeaders("Error getting unread message headers: ",
+                QueryPlans.UNREAD_MESSAGE_HEADERS_FOR_RECEIVER, receiverId, false);
+    }
+
+    /**
+     * Gets the headers of all messages sent by a specific sender, without message content
+     * @param senderId ID of the sender
+     * @return List of message headers, newest first
+     */
+    public List<MessageHeader> getMessageHeadersBySender(String senderId) {
+        return getMessageHeaders("Error getting message headers by sender: ",
+                QueryPlans.MESSAGE_HEADERS_BY_SENDER, senderId);
+    }
+
+    /**
+     * Runs a message query plan that is projected down to {@link MessageHeader#FIELDS}
+     * @param errorPrefix Prefix for the error log line
+     * @param plan Plan to run
+     * @param values Values for the plan's filters
+     * @return List of message headers
+     */
+    private List<MessageHeader> getMessageHeaders(String errorPrefix, QueryPlan plan, Object... values) {
+        try {
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance().execute(plan, values);
+
+            List<MessageHeader> headers = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                MessageHeader header = document.toObject(MessageHeader.class);
+                if (header != null) {
+                    header.setId(document.getId());
+                    headers.add(header);
+                }
+            }
+
+            return headers;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println(errorPrefix + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * Gets the conversation between two users
      * @param userId1 ID of the first user
@@ -299,13 +332,13 @@ public class MessageService {
             List<Message> conversation = new ArrayList<>();
 
             ApiFuture<QuerySnapshot> future1 = query1.get();
-            QuerySnapshot querySnapshot1 = future1.get();
+            QuerySnapshot querySnapshot1 = FirestoreOps.await(future1, "MessageService.getConversation", COLLECTION_NAME);
             for (DocumentSnapshot document : querySnapshot1.getDocuments()) {
                 conversation.add(document.toObject(Message.class));
             }
 
             ApiFuture<QuerySnapshot> future2 = query2.get();
-            QuerySnapshot querySnapshot2 = future2.get();
+            QuerySnapshot querySnapshot2 = FirestoreOps.await(future2, "MessageService.getConversation", COLLECTION_NAME);
             for (DocumentSnapshot document : querySnapshot2.getDocuments()) {
                 conversation.add(document.toObject(Message.class));
             }
@@ -326,20 +359,19 @@ public class MessageService {
      * @return Number of unread messages
      */
     public int getUnreadMessageCount(String receiverId) {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("receiverId", receiverId)
-                    .whereEqualTo("read", false);
-
-            ApiFuture<QuerySnapshot> future = query.get();
-            QuerySnapshot querySnapshot = future.get();
+        // The dashboards poll this, so keep a synced mirror of the inbox and only read what changed
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Query inbox = db.collection(COLLECTION_NAME).whereEqualTo("receiverId", receiverId);
+        List<DocumentSnapshot> messages = SyncEngine.getInstance()
+                .getDocuments(COLLECTION_NAME + "/receiver/" + receiverId, COLLECTION_NAME, inbox);
 
-            return querySnapshot.size();
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting unread message count: " + e.getMessage());
-            return 0;
+        int count = 0;
+        for (DocumentSnapshot message : messages) {
+            if (Boolean.FALSE.equals(message.getBoolean("read"))) {
+                count++;
+            }
         }
+        return count;
     }
 
     /**
@@ -355,20 +387,20 @@ public class MessageService {
                     .whereEqualTo("read", false);
 
             ApiFuture<QuerySnapshot> future = query.get();
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "MessageService.markAllMessagesAsRead", COLLECTION_NAME);
 
             int count = 0;
             WriteBatch batch = db.batch();
 
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
                 DocumentReference docRef = db.collection(COLLECTION_NAME).document(document.getId());
-                batch.update(docRef, "read", true);
+                batch.update(docRef, "read", true, "lastUpdated", FieldValue.serverTimestamp());
                 count++;
             }
 
             // Commit the batch
             if (count > 0) {
-                batch.commit().get();
+                FirestoreOps.await(batch.commit(), "MessageService.markAllMessagesAsRead", COLLECTION_NAME);
             }
 
             return count;
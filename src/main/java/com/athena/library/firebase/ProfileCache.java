@@ -0,0 +1,353 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.MetricsRegistry;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size- and TTL-bounded cache of profile documents (students, librarians), keyed by document ID.
+ *
+ * Raw DocumentSnapshots are cached rather than models, so every caller maps its own
+ * copy and can't change what other callers see. Concurrent misses for the same key
+ * share one fetch. Entries are dropped when the app writes the document, when a
+ * snapshot listener reports that another client changed it, or when they expire.
+ * Lookups by a secondary key (e.g. university student ID) go through aliases, which are
+ * kept only while the document they point to is cached, so they are bounded by the cache size.
+ */
+public class ProfileCache {
+    // Overlap on the listener start time to allow for clock skew with the server
+    private static final long LISTEN_SKEW_MS = 5000;
+
+    /**
+     * Loads a document on a cache miss
+     */
+    @FunctionalInterface
+    public interface Loader {
+        DocumentSnapshot load() throws InterruptedException, ExecutionException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMs;
+
+    // Access-ordered so the eldest entry is the least recently used; guarded by this
+    private final LinkedHashMap<String, Entry> entries;
+    // Secondary key -> document ID, for cached documents only; guarded by this
+    private final Map<String, String> aliases = new HashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<DocumentSnapshot>> inFlight = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so loads that raced one aren't cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private ListenerRegistration listener;
+
+    /**
+     * Creates a new profile cache
+     * @param name Name used in log messages (usually the collection name)
+     * @param maxSize Maximum number of cached documents
+     * @param ttlMs How long an entry stays valid, in milliseconds
+     */
+    public ProfileCache(String name, int maxSize, long ttlMs) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ProfileCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    dropAliases(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("athena_cache_hits", "Cache lookups answered from memory", hits::get, "cache", name);
+        metrics.gauge("athena_cache_misses", "Cache lookups that went to Firestore", misses::get, "cache", name);
+        metrics.gauge("athena_cache_hit_ratio", "Fraction of cache lookups answered from memory",
+                this::getHitRate, "cache", name);
+        metrics.gauge("athena_cache_evictions", "Entries evicted to stay under the size limit",
+                evictions::get, "cache", name);
+        metrics.gauge("athena_cache_size", "Cached entries", this::size, "cache", name);
+    }
+
+    /**
+     * Gets a document, loading it on a miss. Missing documents are not cached.
+     * @param documentId Document ID
+     * @param loader Fetches the document from Firestore
+     * @return The document snapshot
+     */
+    public DocumentSnapshot get(String documentId, Loader loader) throws InterruptedException, ExecutionException {
+        DocumentSnapshot cached = getIfPresent(documentId);
+        if (cached != null) {
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<DocumentSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<DocumentSnapshot> existing = inFlight.putIfAbsent(documentId, mine);
+        if (existing != null) {
+            // Someone else is already fetching this document
+            return existing.get();
+        }
+
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+
+        try {
+            DocumentSnapshot snapshot = loader.load();
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    putLocked(documentId, snapshot);
+                }
+            }
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(documentId, mine);
+        }
+    }
+
+    /**
+     * Gets a cached document without loading it
+     * @param documentId Document ID
+     * @return The cached snapshot, or null if absent or expired
+     */
+    public synchronized DocumentSnapshot getIfPresent(String documentId) {
+        Entry entry = entries.get(documentId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > ttlMs) {
+            entries.remove(documentId);
+            dropAliases(documentId, entry);
+            expirations.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.snapshot;
+    }
+
+    /**
+     * Adds a document that was read some other way (e.g. from a query)
+     * @param snapshot Document snapshot
+     */
+    public synchronized void put(DocumentSnapshot snapshot) {
+        putLocked(snapshot.getId(), snapshot);
+    }
+
+    private void putLocked(String documentId, DocumentSnapshot snapshot) {
+        if (snapshot != null && snapshot.exists()) {
+            Entry entry = new Entry(snapshot);
+            Entry previous = entries.put(documentId, entry);
+            if (previous != null) {
+                entry.aliases.addAll(previous.aliases);
+            }
+        }
+    }
+
+    /**
+     * Records that a secondary key refers to a cached document. Ignored if the document
+     * isn't cached; the alias is dropped when the document leaves the cache.
+     * @param alias Secondary key
+     * @param documentId Document ID
+     */
+    public synchronized void putAlias(String alias, String documentId) {
+        Entry entry = entries.get(documentId);
+        if (alias != null && entry != null) {
+            aliases.put(alias, documentId);
+            entry.aliases.add(alias);
+        }
+    }
+
+    private void dropAliases(String documentId, Entry entry) {
+        for (String alias : entry.aliases) {
+            // The alias may have moved to another document since
+            aliases.remove(alias, documentId);
+        }
+    }
+
+    /**
+     * Resolves a secondary key to a document ID
+     * @param alias Secondary key
+     * @return Document ID, or null if unknown
+     */
+    public synchronized String resolveAlias(String alias) {
+        return aliases.get(alias);
+    }
+
+    /**
+     * Drops a document and any aliases pointing to it
+     * @param documentId Document ID
+     */
+    public synchronized void invalidate(String documentId) {
+        generation++;
+        invalidations.incrementAndGet();
+        Entry entry = entries.remove(documentId);
+        if (entry != null) {
+            dropAliases(documentId, entry);
+        }
+    }
+
+    /**
+     * Drops every cached document
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.incrementAndGet();
+        entries.clear();
+        aliases.clear();
+    }
+
+    /**
+     * Starts listening for documents changed by other clients, once.
+     * Only documents with a lastUpdated time after now are watched, so the initial
+     * snapshot is empty and only later writes are delivered. Deletions by other
+     * clients of documents that weren't modified first are left to the TTL.
+     * @param collection Collection the cached documents belong to
+     */
+    public synchronized void watch(CollectionReference collection) {
+        if (listener != null) {
+            return;
+        }
+
+        Timestamp since = Timestamp.ofTimeMicroseconds(
+                TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - LISTEN_SKEW_MS));
+        listener = collection.whereGreaterThan("lastUpdated", since)
+                .addSnapshotListener((QuerySnapshot snapshots, FirestoreException error) -> {
+                    if (error != null) {
+                        ErrorHandler.logWarning("Profile cache listener for " + name + " failed: "
+                                + error.getMessage(), ErrorHandler.ErrorType.DATABASE);
+                        // Can't trust the cache without change notifications
+                        synchronized (ProfileCache.this) {
+                            listener = null;
+                        }
+                        invalidateAll();
+                        return;
+                    }
+                    if (snapshots != null) {
+                        FirestoreOps.countReads("ProfileCache.watch", name, snapshots.getDocumentChanges().size());
+                        for (DocumentChange change : snapshots.getDocumentChanges()) {
+                            invalidate(change.getDocument().getId());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Stops the change listener
+     */
+    public synchronized void stopWatching() {
+        if (listener != null) {
+            listener.remove();
+            listener = null;
+        }
+    }
+
+    /**
+     * Gets the number of cached documents, including expired ones not yet removed
+     * @return Cache size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Gets the fraction of lookups served from the cache
+     * @return Hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    /**
+     * Removes expired entries. Expired entries are also dropped lazily on lookup.
+     */
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> cached = it.next();
+            if (now - cached.getValue().loadedAt > ttlMs) {
+                it.remove();
+                dropAliases(cached.getKey(), cached.getValue());
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProfileCache{%s, size=%d/%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, expirations=%d, invalidations=%d}",
+                name, size(), maxSize, hits.get(), misses.get(), getHitRate(),
+                evictions.get(), expirations.get(), invalidations.get());
+    }
+
+    /**
+     * A cached snapshot, when it was loaded and the aliases that point to it
+     */
+    private static class Entry {
+        private final DocumentSnapshot snapshot;
+        private final long loadedAt;
+        private final Set<String> aliases = new HashSet<>();
+
+        Entry(DocumentSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,458 @@
+package com.athena.library.firebase;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Declarative description of a Firestore query: which fields it filters and orders on,
+ * but not the values. The {@link QueryPlanner} binds values when the query runs.
+ *
+ * Because the shape is known up front, a plan can tell whether it needs a composite index
+ * (and describe that index for firestore.indexes.json), build the server-side query, and
+ * evaluate the same filters and order against documents held in a local mirror.
+ */
+public class QueryPlan {
+    /**
+     * Filter operators; IN and NOT_IN take a list of values
+     */
+    public enum Operator {
+        EQUAL(true),
+        IN(true),
+        NOT_EQUAL(false),
+        NOT_IN(false),
+        LESS_THAN(false),
+        LESS_THAN_OR_EQUAL(false),
+        GREATER_THAN(false),
+        GREATER_THAN_OR_EQUAL(false);
+
+        private final boolean equality;
+
+        Operator(boolean equality) {
+            this.equality = equality;
+        }
+
+        /**
+         * Checks if the operator can be served by merging single-field indexes
+         * @return true for equality and IN filters
+         */
+        public boolean isEquality() {
+            return equality;
+        }
+    }
+
+    private static class Filter {
+        private final String field;
+        private final Operator operator;
+
+        Filter(String field, Operator operator) {
+            this.field = field;
+            this.operator = operator;
+        }
+    }
+
+    private final String name;
+    private final String collection;
+    private final List<Filter> filters;
+    private final String orderField;
+    private final Query.Direction orderDirection;
+    private final String[] selectFields;
+    private final String mirrorKey;
+
+    private QueryPlan(Builder builder) {
+        this.name = builder.name;
+        this.collection = builder.collection;
+        this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+        this.orderField = builder.orderField;
+        this.orderDirection = builder.orderDirection;
+        this.selectFields = builder.selectFields;
+        this.mirrorKey = builder.mirrorKey;
+    }
+
+    /**
+     * Starts describing a query
+     * @param name Name used in logs, e.g. "unreadMessagesForReceiver"
+     * @param collection Collection the query runs against
+     * @return Builder for the plan
+     */
+    public static Builder builder(String name, String collection) {
+        return new Builder(name, collection);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Gets the number of values to bind, one per filter in declaration order
+     * @return Number of parameters
+     */
+    public int getParameterCount() {
+        return filters.size();
+    }
+
+    /**
+     * Checks if Firestore needs a composite index to run this query: an equality filter
+     * combined with a range filter or sort on another field, or a range and a sort on
+     * different fields
+     * @return true if a composite index is required
+     */
+    public boolean needsCompositeIndex() {
+        // Equality filters alone are served by merging single-field indexes
+        return getIndexFields().size() > 1 && (hasRangeFilter() || orderField != null);
+    }
+
+    /**
+     * Gets the fields of the composite index this query needs, in index order:
+     * equality fields first, then the range field, then the sort field
+     * @return Field path -> "ASCENDING" or "DESCENDING"
+     */
+    public Map<String, String> getIndexFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (Filter filter : filters) {
+            if (filter.operator.isEquality()) {
+                fields.putIfAbsent(filter.field, "ASCENDING");
+            }
+        }
+        for (Filter filter : filters) {
+            if (!filter.operator.isEquality() && !fields.containsKey(filter.field)) {
+                boolean descending = filter.field.equals(orderField) && orderDirection == Query.Direction.DESCENDING;
+                fields.put(filter.field, descending ? "DESCENDING" : "ASCENDING");
+            }
+        }
+        if (orderField != null && !fields.containsKey(orderField)) {
+            fields.put(orderField, orderDirection == Query.Direction.DESCENDING ? "DESCENDING" : "ASCENDING");
+        }
+        return fields;
+    }
+
+    /**
+     * Resolves the local mirror that holds every document this query can match
+     * @param values Bound values
+     * @return Mirror key, or null if the query can't be served from a mirror
+     */
+    public String getMirrorKey(Object... values) {
+        if (mirrorKey == null) {
+            return null;
+        }
+        String key = mirrorKey;
+        for (int i = 0; i < filters.size(); i++) {
+            if (filters.get(i).operator == Operator.EQUAL) {
+                key = key.replace("{" + filters.get(i).field + "}", String.valueOf(values[i]));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Builds the full server-side query
+     * @param db Firestore instance
+     * @param values Bound values
+     * @return The query
+     */
+    public Query toQuery(Firestore db, Object... values) {
+        return buildQuery(db, false, values);
+    }
+
+    /**
+     * Builds a query with only the equality filters, which single-field indexes can serve;
+     * the rest of the plan must then be applied with {@link #filterAndSort}
+     * @param db Firestore instance
+     * @param values Bound values
+     * @return The reduced query
+     */
+    public Query toEqualityQuery(Firestore db, Object... values) {
+        return buildQuery(db, true, values);
+    }
+
+    private Query buildQuery(Firestore db, boolean equalityOnly, Object... values) {
+        checkValues(values);
+        Query query = db.collection(collection);
+        for (int i = 0; i < filters.size(); i++) {
+            Filter filter = filters.get(i);
+            Object value = values[i];
+            switch (filter.operator) {
+                case EQUAL:
+                    query = query.whereEqualTo(filter.field, value);
+                    break;
+                case IN:
+                    query = query.whereIn(filter.field, toList(value));
+                    break;
+                default:
+                    if (!equalityOnly) {
+                        query = applyRange(query, filter, value);
+                    }
+                    break;
+            }
+        }
+        if (orderField != null && !equalityOnly) {
+            query = query.orderBy(orderField, orderDirection);
+        }
+        if (selectFields != null) {
+            query = query.select(equalityOnly ? withPlanFields(selectFields) : selectFields);
+        }
+        return query;
+    }
+
+    /**
+     * Adds the filter and sort fields to a field mask so the client can still evaluate them
+     */
+    private String[] withPlanFields(String[] fields) {
+        List<String> allFields = new ArrayList<>(Arrays.asList(fields));
+        for (Filter filter : filters) {
+            if (!allFields.contains(filter.field)) {
+                allFields.add(filter.field);
+            }
+        }
+        if (orderField != null && !allFields.contains(orderField)) {
+            allFields.add(orderField);
+        }
+        return allFields.toArray(new String[0]);
+    }
+
+    private static Query applyRange(Query query, Filter filter, Object value) {
+        switch (filter.operator) {
+            case NOT_EQUAL:
+                return query.whereNotEqualTo(filter.field, value);
+            case NOT_IN:
+                return query.whereNotIn(filter.field, toList(value));
+            case LESS_THAN:
+                return query.whereLessThan(filter.field, value);
+            case LESS_THAN_OR_EQUAL:
+                return query.whereLessThanOrEqualTo(filter.field, value);
+            case GREATER_THAN:
+                return query.whereGreaterThan(filter.field, value);
+            case GREATER_THAN_OR_EQUAL:
+                return query.whereGreaterThanOrEqualTo(filter.field, value);
+            default:
+                return query;
+        }
+    }
+
+    /**
+     * Applies the plan's filters and sort to documents on the client
+     * @param documents Candidate documents, e.g. a mirror or the result of {@link #toEqualityQuery}
+     * @param values Bound values
+     * @return Matching documents in the plan's order
+     */
+    public List<DocumentSnapshot> filterAndSort(Collection<? extends DocumentSnapshot> documents, Object... values) {
+        checkValues(values);
+        List<DocumentSnapshot> results = new ArrayList<>();
+        for (DocumentSnapshot document : documents) {
+            if (matches(document, values)) {
+                results.add(document);
+            }
+        }
+
+        if (orderField != null) {
+            Comparator<DocumentSnapshot> order = Comparator.comparing(
+                    document -> normalize(document.get(orderField)), QueryPlan::compareValues);
+            results.sort(orderDirection == Query.Direction.DESCENDING ? order.reversed() : order);
+        }
+        return results;
+    }
+
+    private boolean matches(DocumentSnapshot document, Object[] values) {
+        // Like Firestore, documents without the sort field are left out
+        if (orderField != null && document.get(orderField) == null) {
+            return false;
+        }
+
+        for (int i = 0; i < filters.size(); i++) {
+            Filter filter = filters.get(i);
+            Object actual = normalize(document.get(filter.field));
+            if (actual == null) {
+                return false;
+            }
+            Object expected = values[i];
+
+            boolean match;
+            switch (filter.operator) {
+                case EQUAL:
+                    match = Objects.equals(actual, normalize(expected));
+                    break;
+                case IN:
+                    match = containsNormalized(toList(expected), actual);
+                    break;
+                case NOT_EQUAL:
+                    match = !Objects.equals(actual, normalize(expected));
+                    break;
+                case NOT_IN:
+                    match = !containsNormalized(toList(expected), actual);
+                    break;
+                case LESS_THAN:
+                    match = compareValues(actual, normalize(expected)) < 0;
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    match = compareValues(actual, normalize(expected)) <= 0;
+                    break;
+                case GREATER_THAN:
+                    match = compareValues(actual, normalize(expected)) > 0;
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    match = compareValues(actual, normalize(expected)) >= 0;
+                    break;
+                default:
+                    match = false;
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasRangeFilter() {
+        for (Filter filter : filters) {
+            if (!filter.operator.isEquality()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkValues(Object[] values) {
+        if (values.length != filters.size()) {
+            throw new IllegalArgumentException("Query plan " + name + " takes " + filters.size()
+                    + " values but got " + values.length);
+        }
+    }
+
+    private static List<?> toList(Object value) {
+        return value instanceof List ? (List<?>) value : Collections.singletonList(value);
+    }
+
+    private static boolean containsNormalized(List<?> values, Object actual) {
+        for (Object value : values) {
+            if (Objects.equals(normalize(value), actual)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts stored and bound values to comparable forms: dates and timestamps to
+     * epoch milliseconds, numbers to doubles (Firestore stores whole numbers as longs),
+     * enums to their names
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate().getTime();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && b != null && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        // Values of different types sort by type name, which keeps the order stable
+        return String.valueOf(a == null ? null : a.getClass().getName())
+                .compareTo(String.valueOf(b == null ? null : b.getClass().getName()));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(collection);
+        for (Filter filter : filters) {
+            description.append(" where ").append(filter.field).append(' ').append(filter.operator);
+        }
+        if (orderField != null) {
+            description.append(" order by ").append(orderField).append(' ').append(orderDirection);
+        }
+        return name + " (" + description + ")";
+    }
+
+    /**
+     * Builder for query plans
+     */
+    public static class Builder {
+        private final String name;
+        private final String collection;
+        private final List<Filter> filters = new ArrayList<>();
+        private String orderField;
+        private Query.Direction orderDirection = Query.Direction.ASCENDING;
+        private String[] selectFields;
+        private String mirrorKey;
+
+        private Builder(String name, String collection) {
+            this.name = name;
+            this.collection = collection;
+        }
+
+        /**
+         * Adds a filter; its value is bound in the same position when the query runs
+         * @param field Field path
+         * @param operator Comparison
+         * @return This builder
+         */
+        public Builder where(String field, Operator operator) {
+            filters.add(new Filter(field, operator));
+            return this;
+        }
+
+        public Builder orderBy(String field, Query.Direction direction) {
+            this.orderField = field;
+            this.orderDirection = direction;
+            return this;
+        }
+
+        /**
+         * Limits the fields transferred by the server-side query. Results served from a
+         * mirror carry whatever fields the mirror stores, so classes the results are mapped
+         * to should ignore extra properties.
+         * @param fields Field paths
+         * @return This builder
+         */
+        public Builder select(String... fields) {
+            this.selectFields = fields;
+            return this;
+        }
+
+        /**
+         * Names the local mirror that holds every document this query can match.
+         * "{field}" placeholders are replaced with the value bound to that equality filter,
+         * e.g. "messages/receiver/{receiverId}".
+         * @param mirrorKey Mirror key template
+         * @return This builder
+         */
+        public Builder servedFromMirror(String mirrorKey) {
+            this.mirrorKey = mirrorKey;
+            return this;
+        }
+
+        public QueryPlan build() {
+            return new QueryPlan(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.MetricsRegistry;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs {@link QueryPlan}s, choosing where each one is answered:
+ * <ol>
+ *   <li>from a synced {@link SyncEngine} mirror, if the plan names one that has already synced.
+ *       The mirror's documents are returned as stored, without the plan's field mask;</li>
+ *   <li>otherwise with the full server-side query;</li>
+ *   <li>if that fails because a composite index isn't deployed, with only the equality filters
+ *       on the server and the rest applied on the client. The plan keeps using this route until
+ *       restart, so a missing index costs one failed round trip rather than one per call.</li>
+ * </ol>
+ * Slow plans and plans that had to fall back are logged with their timings.
+ */
+public class QueryPlanner {
+    private static QueryPlanner instance;
+
+    // Names of plans whose composite index turned out to be missing
+    private final Set<String> missingIndexes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private QueryPlanner() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return QueryPlanner instance
+     */
+    public static synchronized QueryPlanner getInstance() {
+        if (instance == null) {
+            instance = new QueryPlanner();
+        }
+        return instance;
+    }
+
+    /**
+     * Runs a plan
+     * @param plan Plan to run
+     * @param values Values for the plan's filters, in declaration order
+     * @return Matching documents in the plan's order
+     */
+    public List<DocumentSnapshot> execute(QueryPlan plan, Object... values)
+            throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        SyncEngine syncEngine = SyncEngine.getInstance();
+
+        List<DocumentSnapshot> results;
+        String route;
+        boolean clientFiltered = false;
+
+        String mirrorKey = plan.getMirrorKey(values);
+        if (mirrorKey != null && syncEngine.getWatermark(mirrorKey) >= 0) {
+            results = plan.filterAndSort(syncEngine.getDocuments(mirrorKey, plan.getCollection(), null), values);
+            route = "mirror " + mirrorKey;
+        } else if (missingIndexes.contains(plan.getName())) {
+            results = plan.filterAndSort(fetch(plan, plan.toEqualityQuery(db, values)), values);
+            route = "equality filters only, index missing";
+            clientFiltered = true;
+        } else {
+            try {
+                results = new ArrayList<>(fetch(plan, plan.toQuery(db, values)));
+                route = "server";
+            } catch (ExecutionException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                missingIndexes.add(plan.getName());
+                ErrorHandler.logWarning("Query " + plan + " needs a composite index that isn't deployed; "
+                        + "filtering on the client until it is. Add to firestore.indexes.json: "
+                        + toIndexJson(plan), ErrorHandler.ErrorType.DATABASE);
+                results = plan.filterAndSort(fetch(plan, plan.toEqualityQuery(db, values)), values);
+                route = "equality filters only, index missing";
+                clientFiltered = true;
+            }
+        }
+
+        recordTiming(plan, route, clientFiltered, start, results.size());
+        return results;
+    }
+
+    /**
+     * Runs a plan on the server one page at a time. Pages are never served from a mirror,
+     * so a long history is only read as far as the caller pages through it.
+     * @param plan Plan to run; it should have a sort order
+     * @param limit Maximum number of documents to return
+     * @param after Last document of the previous page, or null for the first page
+     * @param values Values for the plan's filters, in declaration order
+     * @return Up to limit matching documents following after, in the plan's order
+     */
+    public List<DocumentSnapshot> executePage(QueryPlan plan, int limit, DocumentSnapshot after, Object... values)
+            throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+
+        List<DocumentSnapshot> results;
+        if (!missingIndexes.contains(plan.getName())) {
+            try {
+                Query query = plan.toQuery(db, values).limit(limit);
+                results = new ArrayList<>(fetch(plan, after != null ? query.startAfter(after) : query));
+                recordTiming(plan, "server", false, start, results.size());
+                return results;
+            } catch (ExecutionException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                missingIndexes.add(plan.getName());
+                ErrorHandler.logWarning("Query " + plan + " needs a composite index that isn't deployed; "
+                        + "filtering on the client until it is. Add to firestore.indexes.json: "
+                        + toIndexJson(plan), ErrorHandler.ErrorType.DATABASE);
+            }
+        }
+
+        // Without the index every page has to read all the equality matches
+        List<DocumentSnapshot> matches = plan.filterAndSort(fetch(plan, plan.toEqualityQuery(db, values)), values);
+        int from = 0;
+        if (after != null) {
+            for (int i = 0; i < matches.size(); i++) {
+                if (matches.get(i).getId().equals(after.getId())) {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        results = new ArrayList<>(matches.subList(Math.min(from, matches.size()), Math.min(from + limit, matches.size())));
+        recordTiming(plan, "equality filters only, index missing", true, start, results.size());
+        return results;
+    }
+
+    private static void recordTiming(QueryPlan plan, String route, boolean clientFiltered, long start, int resultCount) {
+        long elapsedNanos = System.nanoTime() - start;
+        String routeLabel = clientFiltered ? "client_filtered" : route.startsWith("mirror") ? "mirror" : "server";
+        MetricsRegistry.getInstance().histogram("athena_query_plan_seconds", "Planned query latency by plan and route",
+                "plan", plan.getName(), "route", routeLabel).recordNanos(elapsedNanos);
+
+        long elapsedMs = elapsedNanos / 1_000_000;
+        if (clientFiltered || elapsedMs >= getSlowThresholdMs()) {
+            ErrorHandler.logWarning("Query " + plan.getName() + " took " + elapsedMs + " ms via " + route
+                    + " and returned " + resultCount + " documents", ErrorHandler.ErrorType.DATABASE);
+        }
+    }
+
+    /**
+     * Checks if the planner has seen a plan fail for lack of a composite index
+     * @param plan Plan to check
+     * @return true if the plan is being filtered on the client
+     */
+    public boolean isIndexMissing(QueryPlan plan) {
+        return missingIndexes.contains(plan.getName());
+    }
+
+    /**
+     * Builds the firestore.indexes.json content for every registered plan that needs a composite index
+     * @return JSON document for the Firebase CLI
+     */
+    public static String toIndexesJson() {
+        // Several plans can share one index
+        Set<String> indexes = new LinkedHashSet<>();
+        for (QueryPlan plan : QueryPlans.all()) {
+            if (plan.needsCompositeIndex()) {
+                indexes.add(toIndexJson(plan));
+            }
+        }
+
+        StringBuilder json = new StringBuilder("{\n  \"indexes\": [");
+        String separator = "\n    ";
+        for (String index : indexes) {
+            json.append(separator).append(index);
+            separator = ",\n    ";
+        }
+        json.append("\n  ],\n  \"fieldOverrides\": []\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes firestore.indexes.json for deployment with "firebase deploy --only firestore:indexes"
+     * @param file File to write
+     * @return true if successful, false otherwise
+     */
+    public static boolean writeIndexesFile(Path file) {
+        try {
+            Files.write(file, toIndexesJson().getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Could not write " + file + ": " + e.getMessage(), ErrorHandler.ErrorType.FILE);
+            return false;
+        }
+    }
+
+    private static List<QueryDocumentSnapshot> fetch(QueryPlan plan, Query query)
+            throws InterruptedException, ExecutionException {
+        return FirestoreOps.await(query.get(), plan.getName(), plan.getCollection()).getDocuments();
+    }
+
+    private static String toIndexJson(QueryPlan plan) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"collectionGroup\": \"").append(plan.getCollection())
+                .append("\", \"queryScope\": \"COLLECTION\", \"fields\": [");
+        String separator = "";
+        for (Map.Entry<String, String> field : plan.getIndexFields().entrySet()) {
+            json.append(separator).append("{\"fieldPath\": \"").append(field.getKey())
+                    .append("\", \"order\": \"").append(field.getValue()).append("\"}");
+            separator = ", ";
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Checks if a query failed because Firestore needs a composite index for it
+     */
+    private static boolean isMissingIndex(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.contains("FAILED_PRECONDITION") && message.contains("index")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getSlowThresholdMs() {
+        return ConfigManager.getInstance().getInt("query.slow.threshold.ms", 500);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.MessageHeader;
+import com.google.cloud.firestore.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.athena.library.firebase.QueryPlan.Operator.EQUAL;
+import static com.athena.library.firebase.QueryPlan.Operator.GREATER_THAN;
+import static com.athena.library.firebase.QueryPlan.Operator.GREATER_THAN_OR_EQUAL;
+import static com.athena.library.firebase.QueryPlan.Operator.IN;
+import static com.athena.library.firebase.QueryPlan.Operator.LESS_THAN;
+import static com.athena.library.firebase.QueryPlan.Operator.LESS_THAN_OR_EQUAL;
+import static com.athena.library.firebase.QueryPlan.Operator.NOT_EQUAL;
+
+/**
+ * The filtered queries the services run, in one place so the composite indexes they
+ * need can be generated with {@link QueryPlanner#writeIndexesFile}.
+ * Add new service queries here rather than building them inline.
+ */
+public final class QueryPlans {
+    private static final String MESSAGES = "messages";
+    private static final String TRANSACTIONS = "transactions";
+    private static final String LOAN_ROLLUPS = "loanRollups";
+    private static final String HOLDS = "holds";
+    private static final String INBOX_MIRROR = "messages/receiver/{receiverId}";
+
+    // Messages
+
+    public static final QueryPlan MESSAGES_FOR_RECEIVER = QueryPlan.builder("messagesForReceiver", MESSAGES)
+            .where("receiverId", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .servedFromMirror(INBOX_MIRROR)
+            .build();
+
+    public static final QueryPlan UNREAD_MESSAGES_FOR_RECEIVER = QueryPlan.builder("unreadMessagesForReceiver", MESSAGES)
+            .where("receiverId", EQUAL)
+            .where("read", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .servedFromMirror(INBOX_MIRROR)
+            .build();
+
+    public static final QueryPlan MESSAGES_BY_SENDER = QueryPlan.builder("messagesBySender", MESSAGES)
+            .where("senderId", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .build();
+
+    public static final QueryPlan MESSAGE_HEADERS_FOR_RECEIVER = QueryPlan.builder("messageHeadersForReceiver", MESSAGES)
+            .where("receiverId", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .select(MessageHeader.FIELDS)
+            .servedFromMirror(INBOX_MIRROR)
+            .build();
+
+    public static final QueryPlan UNREAD_MESSAGE_HEADERS_FOR_RECEIVER = QueryPlan.builder("unreadMessageHeadersForReceiver", MESSAGES)
+            .where("receiverId", EQUAL)
+            .where("read", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .select(MessageHeader.FIELDS)
+            .servedFromMirror(INBOX_MIRROR)
+            .build();
+
+    public static final QueryPlan MESSAGE_HEADERS_BY_SENDER = QueryPlan.builder("messageHeadersBySender", MESSAGES)
+            .where("senderId", EQUAL)
+            .orderBy("sentDate", Query.Direction.DESCENDING)
+            .select(MessageHeader.FIELDS)
+            .build();
+
+    /** Delta query the {@link SyncEngine} runs for an inbox mirror; listed for its index only */
+    public static final QueryPlan INBOX_CHANGES = QueryPlan.builder("inboxChanges", MESSAGES)
+            .where("receiverId", EQUAL)
+            .where("lastUpdated", GREATER_THAN)
+            .build();
+
+    // Transactions
+
+    public static final QueryPlan TRANSACTIONS_BY_STUDENT = QueryPlan.builder("transactionsByStudent", TRANSACTIONS)
+            .where("studentId", EQUAL)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    public static final QueryPlan ACTIVE_TRANSACTIONS_BY_STUDENT = QueryPlan.builder("activeTransactionsByStudent", TRANSACTIONS)
+            .where("studentId", EQUAL)
+            .where("status", NOT_EQUAL)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    public static final QueryPlan TRANSACTIONS_BY_BOOK = QueryPlan.builder("transactionsByBook", TRANSACTIONS)
+            .where("bookId", EQUAL)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    public static final QueryPlan TRANSACTIONS_BY_LIBRARIAN = QueryPlan.builder("transactionsByLibrarian", TRANSACTIONS)
+            .where("librarianId", EQUAL)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    public static final QueryPlan OVERDUE_TRANSACTIONS = QueryPlan.builder("overdueTransactions", TRANSACTIONS)
+            .where("status", IN)
+            .where("dueDate", LESS_THAN)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    public static final QueryPlan TRANSACTIONS_BY_DATE_RANGE = QueryPlan.builder("transactionsByDateRange", TRANSACTIONS)
+            .where("borrowDate", GREATER_THAN_OR_EQUAL)
+            .where("borrowDate", LESS_THAN_OR_EQUAL)
+            .orderBy("borrowDate", Query.Direction.ASCENDING)
+            .servedFromMirror(TRANSACTIONS)
+            .build();
+
+    // Transaction history, newest first, read a page at a time with QueryPlanner.executePage
+
+    public static final QueryPlan TRANSACTION_HISTORY_BY_STUDENT = QueryPlan.builder("transactionHistoryByStudent", TRANSACTIONS)
+            .where("studentId", EQUAL)
+            .orderBy("borrowDate", Query.Direction.DESCENDING)
+            .build();
+
+    public static final QueryPlan TRANSACTION_HISTORY_BY_BOOK = QueryPlan.builder("transactionHistoryByBook", TRANSACTIONS)
+            .where("bookId", EQUAL)
+            .orderBy("borrowDate", Query.Direction.DESCENDING)
+            .build();
+
+    public static final QueryPlan TRANSACTION_HISTORY_BY_LIBRARIAN = QueryPlan.builder("transactionHistoryByLibrarian", TRANSACTIONS)
+            .where("librarianId", EQUAL)
+            .orderBy("borrowDate", Query.Direction.DESCENDING)
+            .build();
+
+    // Holds
+
+    /** First waiting hold on a book; HoldService reads it inside loan transactions, listed for its index only */
+    public static final QueryPlan HOLD_QUEUE = QueryPlan.builder("holdQueue", HOLDS)
+            .where("bookId", EQUAL)
+            .where("status", EQUAL)
+            .orderBy("placedDate", Query.Direction.ASCENDING)
+            .build();
+
+    /** Delta query the {@link SyncEngine} runs for a student's holds mirror; listed for its index only */
+    public static final QueryPlan STUDENT_HOLD_CHANGES = QueryPlan.builder("studentHoldChanges", HOLDS)
+            .where("studentId", EQUAL)
+            .where("lastUpdated", GREATER_THAN)
+            .build();
+
+    // Loan rollups
+
+    public static final QueryPlan DAILY_ROLLUPS_FOR_ENTITY = QueryPlan.builder("dailyRollupsForEntity", LOAN_ROLLUPS)
+            .where("scope", EQUAL)
+            .where("entityId", EQUAL)
+            .where("day", GREATER_THAN_OR_EQUAL)
+            .where("day", LESS_THAN_OR_EQUAL)
+            .orderBy("day", Query.Direction.ASCENDING)
+            .build();
+
+    public static final QueryPlan DAILY_ROLLUPS_FOR_SCOPE = QueryPlan.builder("dailyRollupsForScope", LOAN_ROLLUPS)
+            .where("scope", EQUAL)
+            .where("day", GREATER_THAN_OR_EQUAL)
+            .where("day", LESS_THAN_OR_EQUAL)
+            .orderBy("day", Query.Direction.ASCENDING)
+            .build();
+
+    public static final QueryPlan ROLLUP_TOTALS_BY_BORROWS = QueryPlan.builder("rollupTotalsByBorrows", LOAN_ROLLUPS)
+            .where("scope", EQUAL)
+            .where("period", EQUAL)
+            .orderBy("borrows", Query.Direction.DESCENDING)
+            .build();
+
+    private QueryPlans() {
+    }
+
+    /**
+     * Gets every registered plan
+     * @return All plans
+     */
+    public static List<QueryPlan> all() {
+        return Collections.unmodifiableList(Arrays.asList(
+                MESSAGES_FOR_RECEIVER,
+                UNREAD_MESSAGES_FOR_RECEIVER,
+                MESSAGES_BY_SENDER,
+                MESSAGE_HEADERS_FOR_RECEIVER,
+                UNREAD_MESSAGE_HEADERS_FOR_RECEIVER,
+                MESSAGE_HEADERS_BY_SENDER,
+                INBOX_CHANGES,
+                TRANSACTIONS_BY_STUDENT,
+                ACTIVE_TRANSACTIONS_BY_STUDENT,
+                TRANSACTIONS_BY_BOOK,
+                TRANSACTIONS_BY_LIBRARIAN,
+                OVERDUE_TRANSACTIONS,
+                TRANSACTIONS_BY_DATE_RANGE,
+                TRANSACTION_HISTORY_BY_STUDENT,
+                TRANSACTION_HISTORY_BY_BOOK,
+                TRANSACTION_HISTORY_BY_LIBRARIAN,
+                HOLD_QUEUE,
+                STUDENT_HOLD_CHANGES,
+                DAILY_ROLLUPS_FOR_ENTITY,
+                DAILY_ROLLUPS_FOR_SCOPE,
+                ROLLUP_TOTALS_BY_BORROWS));
+    }
+}
\ No newline at end of file
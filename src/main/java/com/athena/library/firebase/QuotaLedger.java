@@ -0,0 +1,454 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.MetricsRegistry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for Firestore quota: documents read and written per operation, per user
+ * and per day, which is what Firestore bills for.
+ *
+ * {@link FirestoreOps} reports every call here. Daily rollups are kept in memory and
+ * saved to cache/quota/usage-yyyyMMdd.csv once a minute and at shutdown, so the day's
+ * totals survive a restart. When the day's reads or writes pass 80% and 100% of
+ * quota.daily.reads.budget / quota.daily.writes.budget (and optionally a per-user
+ * budget), a warning is logged once. {@link #getMostExpensive} ranks operations by
+ * estimated cost, to find the call sites that read whole collections.
+ */
+public class QuotaLedger {
+    private static final String QUOTA_DIR = "cache/quota";
+    private static final String FILE_PREFIX = "usage-";
+    private static final String FILE_SUFFIX = ".csv";
+    private static final String HEADER = "operation,user,calls,reads,writes";
+    private static final long SAVE_INTERVAL_SECONDS = 60;
+    private static final String NO_USER = "system";
+    // yyyyMMdd in local time; unlike SimpleDateFormat, safe to share between threads
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE.withZone(ZoneId.systemDefault());
+
+    // Singleton instance
+    private static QuotaLedger instance;
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Usage> usage = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService saver;
+
+    // Alarms already raised, e.g. "20250301|reads|100", so each is logged once per day
+    private final Set<String> raisedAlarms = ConcurrentHashMap.newKeySet();
+    private final long dailyReadBudget;
+    private final long dailyWriteBudget;
+    private final long userDailyReadBudget;
+    private final double costPer100kReads;
+    private final double costPer100kWrites;
+
+    // Running totals for the current day, for budget checks without summing the map
+    private volatile String currentDay;
+    private final AtomicLong dayReads = new AtomicLong();
+    private final AtomicLong dayWrites = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> userDayReads = new ConcurrentHashMap<>();
+
+    /**
+     * Documents read and written by one operation for one user on one day
+     */
+    public static class Usage {
+        private final String day;
+        private final String operation;
+        private final String userId;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong reads = new AtomicLong();
+        private final AtomicLong writes = new AtomicLong();
+
+        Usage(String day, String operation, String userId) {
+            this.day = day;
+            this.operation = operation;
+            this.userId = userId;
+        }
+
+        public String getDay() {
+            return day;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getReads() {
+            return reads.get();
+        }
+
+        public long getWrites() {
+            return writes.get();
+        }
+    }
+
+    /**
+     * An operation's totals over a period, with its estimated cost
+     */
+    public static class OperationCost {
+        private final String operation;
+        private long calls;
+        private long reads;
+        private long writes;
+        private double cost;
+
+        OperationCost(String operation) {
+            this.operation = operation;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        /**
+         * Gets the average documents read per call, the sign of a whole-collection read
+         * @return Reads per call
+         */
+        public double getReadsPerCall() {
+            return calls == 0 ? 0 : (double) reads / calls;
+        }
+
+        /**
+         * Gets the estimated cost at the configured per-document prices
+         * @return Cost in the billing currency
+         */
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private QuotaLedger() {
+        this.directory = Paths.get(QUOTA_DIR);
+
+        ConfigManager config = ConfigManager.getInstance();
+        // Defaults are the free tier's daily allowance
+        this.dailyReadBudget = config.getInt("quota.daily.reads.budget", 50000);
+        this.dailyWriteBudget = config.getInt("quota.daily.writes.budget", 20000);
+        this.userDailyReadBudget = config.getInt("quota.user.daily.reads.budget", 0);
+        this.costPer100kReads = config.getDouble("quota.cost.per.100k.reads", 0.06);
+        this.costPer100kWrites = config.getDouble("quota.cost.per.100k.writes", 0.18);
+
+        deleteOlderThan(config.getInt("quota.retention.days", 90));
+        currentDay = formatDay(System.currentTimeMillis());
+        for (Usage loaded : load(currentDay)) {
+            usage.put(key(loaded.day, loaded.operation, loaded.userId), loaded);
+            dayReads.addAndGet(loaded.getReads());
+            dayWrites.addAndGet(loaded.getWrites());
+            userDayReads.computeIfAbsent(loaded.userId, id -> new AtomicLong()).addAndGet(loaded.getReads());
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("athena_quota_day_reads", "Firestore documents read today", dayReads::get);
+        metrics.gauge("athena_quota_day_writes", "Firestore documents written today", dayWrites::get);
+
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "athena-quota-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(this::save, SAVE_INTERVAL_SECONDS, SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "athena-quota-save"));
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return QuotaLedger instance
+     */
+    public static synchronized QuotaLedger getInstance() {
+        if (instance == null) {
+            instance = new QuotaLedger();
+        }
+        return instance;
+    }
+
+    /**
+     * Records one Firestore call
+     * @param operation Operation name, "Service.method"
+     * @param reads Documents read
+     * @param writes Documents written
+     */
+    public void record(String operation, long reads, long writes) {
+        String userId = ErrorHandler.getUserId() != null ? ErrorHandler.getUserId() : NO_USER;
+        String day = formatDay(System.currentTimeMillis());
+        if (!day.equals(currentDay)) {
+            startDay(day);
+        }
+
+        Usage entry = usage.computeIfAbsent(key(day, operation, userId), k -> new Usage(day, operation, userId));
+        entry.calls.incrementAndGet();
+        entry.reads.addAndGet(reads);
+        entry.writes.addAndGet(writes);
+
+        if (reads > 0) {
+            checkBudget(day, "reads", dayReads.addAndGet(reads), dailyReadBudget, null);
+            if (userDailyReadBudget > 0 && !NO_USER.equals(userId)) {
+                long userReads = userDayReads.computeIfAbsent(userId, id -> new AtomicLong()).addAndGet(reads);
+                checkBudget(day, "reads", userReads, userDailyReadBudget, userId);
+            }
+        }
+        if (writes > 0) {
+            checkBudget(day, "writes", dayWrites.addAndGet(writes), dailyWriteBudget, null);
+        }
+    }
+
+    /**
+     * Ranks operations by estimated cost over the last few days, most expensive first
+     * @param days Number of days to include, counting today
+     * @param limit Maximum number of operations to return
+     * @return Operations with their totals
+     */
+    public List<OperationCost> getMostExpensive(int days, int limit) {
+        Map<String, OperationCost> byOperation = new HashMap<>();
+        for (Usage entry : getUsage(days)) {
+            OperationCost cost = byOperation.computeIfAbsent(entry.operation, OperationCost::new);
+            cost.calls += entry.getCalls();
+            cost.reads += entry.getReads();
+            cost.writes += entry.getWrites();
+        }
+
+        List<OperationCost> ranked = new ArrayList<>(byOperation.values());
+        for (OperationCost cost : ranked) {
+            cost.cost = cost.reads / 100000.0 * costPer100kReads + cost.writes / 100000.0 * costPer100kWrites;
+        }
+        ranked.sort((a, b) -> Double.compare(b.cost, a.cost));
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+
+    /**
+     * Gets the documents read per user over the last few days, highest first
+     * @param days Number of days to include, counting today
+     * @return User ID to documents read
+     */
+    public List<Map.Entry<String, Long>> getReadsByUser(int days) {
+        Map<String, Long> byUser = new HashMap<>();
+        for (Usage entry : getUsage(days)) {
+            byUser.merge(entry.userId, entry.getReads(), Long::sum);
+        }
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(byUser.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return ranked;
+    }
+
+    /**
+     * Gets every rollup for the last few days; today's come from memory, earlier days from disk
+     * @param days Number of days to include, counting today
+     * @return Usage rollups
+     */
+    public List<Usage> getUsage(int days) {
+        if (days > 1) {
+            save(); // So days that just ended are read back complete
+        }
+        List<Usage> result = new ArrayList<>();
+        String today = formatDay(System.currentTimeMillis());
+        for (Usage entry : usage.values()) {
+            if (entry.day.equals(today)) {
+                result.add(entry);
+            }
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 1; i < days; i++) {
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+            result.addAll(load(formatDay(calendar.getTimeInMillis())));
+        }
+        return result;
+    }
+
+    public long getDayReads() {
+        return dayReads.get();
+    }
+
+    public long getDayWrites() {
+        return dayWrites.get();
+    }
+
+    /**
+     * Writes the rollups to disk and drops finished days from memory
+     */
+    public synchronized void save() {
+        Map<String, List<Usage>> byDay = new HashMap<>();
+        for (Usage entry : usage.values()) {
+            byDay.computeIfAbsent(entry.day, day -> new ArrayList<>()).add(entry);
+        }
+
+        for (Map.Entry<String, List<Usage>> day : byDay.entrySet()) {
+            try {
+                write(day.getKey(), day.getValue());
+                if (!day.getKey().equals(currentDay)) {
+                    usage.values().removeAll(day.getValue());
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving quota usage for " + day.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resets the running totals when the date changes
+     */
+    private synchronized void startDay(String day) {
+        if (day.equals(currentDay)) {
+            return;
+        }
+        currentDay = day;
+        dayReads.set(0);
+        dayWrites.set(0);
+        userDayReads.clear();
+        raisedAlarms.removeIf(alarm -> !alarm.startsWith(day + "|"));
+    }
+
+    /**
+     * Logs a warning the first time a total reaches 80% and 100% of its budget on a day
+     */
+    private void checkBudget(String day, String kind, long total, long budget, String userId) {
+        if (budget <= 0 || total < budget * 8 / 10) {
+            return;
+        }
+        int percent = total >= budget ? 100 : 80;
+        String alarm = day + "|" + kind + "|" + percent + (userId != null ? "|" + userId : "");
+        if (!raisedAlarms.add(alarm)) {
+            return;
+        }
+
+        String who = userId != null ? "User " + userId + " has" : "The app has";
+        ErrorHandler.logWarning(who + " used " + percent + "% of the daily Firestore " + kind + " budget ("
+                + total + " of " + budget + "). Top operations today: " + describeTopOperations(),
+                ErrorHandler.ErrorType.DATABASE);
+        MetricsRegistry.getInstance().counter("athena_quota_budget_alarms_total",
+                "Daily Firestore budget warnings raised", "kind", kind).increment();
+    }
+
+    private String describeTopOperations() {
+        StringBuilder text = new StringBuilder();
+        for (OperationCost cost : getMostExpensive(1, 3)) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(cost.getOperation()).append(" (").append(cost.getReads()).append(" reads, ")
+                    .append(cost.getWrites()).append(" writes)");
+        }
+        return text.toString();
+    }
+
+    private void write(String day, List<Usage> entries) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_PREFIX + day + FILE_SUFFIX);
+
+        // Write then rename, so a crash never leaves a half-written file
+        Path temp = Paths.get(file.toString() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Usage entry : entries) {
+                writer.write(entry.operation + "," + entry.userId + "," + entry.getCalls() + ","
+                        + entry.getReads() + "," + entry.getWrites());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<Usage> load(String day) {
+        List<Usage> entries = new ArrayList<>();
+        Path file = directory.resolve(FILE_PREFIX + day + FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return entries;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine(); // Header
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length != 5) {
+                    continue;
+                }
+                Usage entry = new Usage(day, fields[0], fields[1]);
+                entry.calls.set(Long.parseLong(fields[2]));
+                entry.reads.set(Long.parseLong(fields[3]));
+                entry.writes.set(Long.parseLong(fields[4]));
+                entries.add(entry);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading quota usage from " + file + ": " + e.getMessage());
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes saved rollups older than a number of days
+     * @param days Number of days to keep
+     */
+    public void deleteOlderThan(int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -days);
+        String oldestKept = formatDay(calendar.getTimeInMillis());
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String day = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+                // yyyyMMdd sorts in date order
+                if (day.compareTo(oldestKept) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting old quota usage: " + e.getMessage());
+        }
+    }
+
+    private static String key(String day, String operation, String userId) {
+        return day + "|" + operation + "|" + userId;
+    }
+
+    private static String formatDay(long millis) {
+        return DAY_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,480 @@
+package com.athena.library.firebase;
+
+import com.athena.library.models.StudentSummary;
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over the student roster.
+ *
+ * Holds name word postings (sorted, so a word prefix is a range), a sorted array of
+ * student IDs for prefix lookups, and hash maps from email and department to students.
+ * It is built from the students/summary mirror, the students projected to
+ * {@link StudentSummary#FIELDS}, which the student list views also read. The first search
+ * seeds it outside any lock that getInstance() takes, and other searches wait for the seed.
+ * After that, every sync of the mirror (a list refresh or {@link #warmUp()}) reaches it
+ * through the mirror's change listener, so searches never touch the network.
+ */
+public class StudentDirectory {
+    private static final String COLLECTION_NAME = "students";
+
+    // Points per query word, by how it matched; a student must match every word
+    private static final int STUDENT_ID_EXACT_SCORE = 100;
+    private static final int EMAIL_EXACT_SCORE = 80;
+    private static final int STUDENT_ID_PREFIX_SCORE = 40;
+    private static final int NAME_EXACT_SCORE = 20;
+    private static final int NAME_PREFIX_SCORE = 10;
+    private static final int DEPARTMENT_SCORE = 5;
+
+    private static StudentDirectory instance;
+
+    /**
+     * Fields that can be searched on their own
+     */
+    public enum Field {
+        NAME,
+        STUDENT_ID,
+        DEPARTMENT,
+        EMAIL
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, StudentSummary> summaries = new HashMap<>();
+    private final TreeMap<String, Set<String>> nameWords = new TreeMap<>();
+    private final Map<String, String> searchNames = new HashMap<>(); // Lowercase full name by document ID
+    private final Map<String, String> idsByEmail = new HashMap<>();
+    private final Map<String, Set<String>> idsByDepartment = new HashMap<>();
+
+    // Lowercase student IDs in sorted order and the document each belongs to;
+    // rebuilt on the next lookup after the roster changes
+    private volatile String[] sortedStudentIds = new String[0];
+    private volatile String[] sortedDocumentIds = new String[0];
+    private volatile boolean studentIdsDirty;
+
+    // Completed once the first search has loaded the roster
+    private final AtomicBoolean seedStarted = new AtomicBoolean();
+    private final CompletableFuture<Void> seeded = new CompletableFuture<>();
+    // Students the listener changed while the seed was loading, which the seed must not overwrite
+    private final Set<String> changedWhileSeeding = new HashSet<>();
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private StudentDirectory() {
+        SyncEngine.getInstance().addChangeListener(StudentService.SUMMARY_MIRROR, COLLECTION_NAME,
+                StudentService.summaryProjection(), this::applyChanges);
+    }
+
+    private void applyChanges(SyncEngine.ChangeSet changes) {
+        lock.writeLock().lock();
+        try {
+            boolean seeding = !seeded.isDone();
+            for (String id : changes.getDeletedIds()) {
+                remove(id);
+                if (seeding) {
+                    changedWhileSeeding.add(id);
+                }
+            }
+            for (DocumentSnapshot document : changes.getUpserted()) {
+                put(document);
+                if (seeding) {
+                    changedWhileSeeding.add(document.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the singleton instance. The roster is loaded by the first search, not here.
+     * @return StudentDirectory instance
+     */
+    public static synchronized StudentDirectory getInstance() {
+        if (instance == null) {
+            instance = new StudentDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the roster, or pulls the changes since the last sync, e.g. from a background
+     * thread, so later searches don't wait and see students added or edited since
+     */
+    public void warmUp() {
+        if (seeded.isDone()) {
+            SyncEngine.getInstance().sync(StudentService.SUMMARY_MIRROR);
+        } else {
+            awaitSeed();
+        }
+    }
+
+    /**
+     * Loads the roster if no one has yet, or waits for the thread that is loading it
+     */
+    private void awaitSeed() {
+        if (seeded.isDone()) {
+            return;
+        }
+        if (seedStarted.compareAndSet(false, true)) {
+            try {
+                // Sync without holding any lock; changes from here on also arrive through the listener
+                List<DocumentSnapshot> roster = SyncEngine.getInstance().getDocuments(
+                        StudentService.SUMMARY_MIRROR, COLLECTION_NAME, StudentService.summaryProjection());
+                lock.writeLock().lock();
+                try {
+                    for (DocumentSnapshot document : roster) {
+                        if (!changedWhileSeeding.contains(document.getId())) {
+                            put(document);
+                        }
+                    }
+                    changedWhileSeeding.clear();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                seeded.complete(null);
+            }
+        }
+        seeded.join();
+    }
+
+    /**
+     * Gets the number of students in the directory
+     * @return Student count
+     */
+    public int size() {
+        awaitSeed();
+        lock.readLock().lock();
+        try {
+            return summaries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches names, student IDs, emails and departments at once
+     * @param query Words to search for; every word must match some field
+     * @param limit Maximum number of results
+     * @return Matching students, best match first
+     */
+    public List<StudentSummary> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        awaitSeed();
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> scores = null;
+            for (String word : words) {
+                Map<String, Integer> wordScores = new HashMap<>();
+                addScores(wordScores, findByStudentIdPrefix(word), STUDENT_ID_PREFIX_SCORE);
+                addScores(wordScores, findByStudentIdExact(word), STUDENT_ID_EXACT_SCORE - STUDENT_ID_PREFIX_SCORE);
+                String emailMatch = idsByEmail.get(word);
+                if (emailMatch != null) {
+                    addScores(wordScores, Arrays.asList(emailMatch), EMAIL_EXACT_SCORE);
+                }
+                addScores(wordScores, findByNameWordPrefix(word), NAME_PREFIX_SCORE);
+                Set<String> exactName = nameWords.get(word);
+                if (exactName != null) {
+                    addScores(wordScores, exactName, NAME_EXACT_SCORE - NAME_PREFIX_SCORE);
+                }
+                Set<String> department = idsByDepartment.get(word);
+                if (department != null) {
+                    addScores(wordScores, department, DEPARTMENT_SCORE);
+                }
+
+                // Keep only students that matched every word so far
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    Map<String, Integer> combined = new HashMap<>();
+                    for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+                        Integer wordScore = wordScores.get(entry.getKey());
+                        if (wordScore != null) {
+                            combined.put(entry.getKey(), entry.getValue() + wordScore);
+                        }
+                    }
+                    scores = combined;
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+
+            List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(entry -> sortName(summaries.get(entry.getKey()))));
+
+            List<StudentSummary> results = new ArrayList<>();
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                results.add(summaries.get(ranked.get(i).getKey()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches a single field
+     * @param field Field to search
+     * @param text Part of the full name, student ID prefix, department,
+     *             or email (exact, or part of the address)
+     * @return Matching students, sorted by name
+     */
+    public List<StudentSummary> search(Field field, String text) {
+        String value = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (value.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        awaitSeed();
+        lock.readLock().lock();
+        try {
+            Collection<String> ids;
+            switch (field) {
+                case NAME:
+                    ids = findByNameSubstring(value);
+                    break;
+                case STUDENT_ID:
+                    ids = findByStudentIdPrefix(value);
+                    break;
+                case DEPARTMENT:
+                    ids = findByDepartment(value);
+                    break;
+                case EMAIL:
+                    ids = findByEmail(value);
+                    break;
+                default:
+                    ids = null;
+            }
+            return toSortedSummaries(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lookups below must be called with the read lock held
+
+    private Collection<String> findByNameWordPrefix(String prefix) {
+        Set<String> ids = new HashSet<>();
+        for (Set<String> postings : nameWords.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            ids.addAll(postings);
+        }
+        return ids;
+    }
+
+    private Collection<String> findByNameSubstring(String text) {
+        // Matches anywhere in "first last", like the list filter always has; the roster is in memory
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, String> entry : searchNames.entrySet()) {
+            if (entry.getValue().contains(text)) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    private Collection<String> findByStudentIdPrefix(String prefix) {
+        ensureStudentIdsSorted();
+        int from = lowerBound(sortedStudentIds, prefix);
+        int to = lowerBound(sortedStudentIds, prefix + Character.MAX_VALUE);
+        return Arrays.asList(sortedDocumentIds).subList(from, to);
+    }
+
+    private Collection<String> findByStudentIdExact(String studentId) {
+        ensureStudentIdsSorted();
+        int from = lowerBound(sortedStudentIds, studentId);
+        int to = from;
+        while (to < sortedStudentIds.length && sortedStudentIds[to].equals(studentId)) {
+            to++;
+        }
+        return Arrays.asList(sortedDocumentIds).subList(from, to);
+    }
+
+    private Collection<String> findByDepartment(String department) {
+        Set<String> exact = idsByDepartment.get(department);
+        if (exact != null) {
+            return exact;
+        }
+        // There are only a handful of departments, so partial names just check each one
+        Set<String> ids = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : idsByDepartment.entrySet()) {
+            if (entry.getKey().contains(department)) {
+                ids.addAll(entry.getValue());
+            }
+        }
+        return ids;
+    }
+
+    private Collection<String> findByEmail(String email) {
+        String exact = idsByEmail.get(email);
+        if (exact != null) {
+            return Arrays.asList(exact);
+        }
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, String> entry : idsByEmail.entrySet()) {
+            if (entry.getKey().contains(email)) {
+                ids.add(entry.getValue());
+            }
+        }
+        return ids;
+    }
+
+    private List<StudentSummary> toSortedSummaries(Collection<String> ids) {
+        List<StudentSummary> results = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                results.add(summaries.get(id));
+            }
+        }
+        results.sort(Comparator.comparing(StudentDirectory::sortName));
+        return results;
+    }
+
+    private void ensureStudentIdsSorted() {
+        if (!studentIdsDirty) {
+            return;
+        }
+        // Called under the read lock, which can't be upgraded, so readers rebuild under the monitor
+        synchronized (this) {
+            if (!studentIdsDirty) {
+                return;
+            }
+            List<String[]> pairs = new ArrayList<>();
+            for (StudentSummary summary : summaries.values()) {
+                if (summary.getStudentId() != null) {
+                    pairs.add(new String[] { summary.getStudentId().toLowerCase(Locale.ROOT), summary.getId() });
+                }
+            }
+            pairs.sort((a, b) -> a[0].compareTo(b[0]));
+            String[] studentIds = new String[pairs.size()];
+            String[] documentIds = new String[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) {
+                studentIds[i] = pairs.get(i)[0];
+                documentIds[i] = pairs.get(i)[1];
+            }
+            sortedStudentIds = studentIds;
+            sortedDocumentIds = documentIds;
+            studentIdsDirty = false;
+        }
+    }
+
+    // Updates below must be called with the write lock held
+
+    private void put(DocumentSnapshot document) {
+        StudentSummary summary = StudentService.toSummary(document);
+        if (summary == null) {
+            return;
+        }
+        remove(document.getId());
+
+        String id = document.getId();
+        summaries.put(id, summary);
+        searchNames.put(id, fullName(summary).toLowerCase(Locale.ROOT));
+        for (String word : tokenize(fullName(summary))) {
+            nameWords.computeIfAbsent(word, key -> new HashSet<>()).add(id);
+        }
+        if (summary.getEmail() != null) {
+            idsByEmail.put(summary.getEmail().toLowerCase(Locale.ROOT), id);
+        }
+        if (summary.getDepartment() != null) {
+            idsByDepartment.computeIfAbsent(summary.getDepartment().toLowerCase(Locale.ROOT), key -> new HashSet<>()).add(id);
+        }
+        studentIdsDirty = true;
+    }
+
+    private void remove(String id) {
+        StudentSummary summary = summaries.remove(id);
+        searchNames.remove(id);
+        if (summary == null) {
+            return;
+        }
+        for (String word : tokenize(fullName(summary))) {
+            removePosting(nameWords, word, id);
+        }
+        if (summary.getEmail() != null) {
+            idsByEmail.remove(summary.getEmail().toLowerCase(Locale.ROOT), id);
+        }
+        if (summary.getDepartment() != null) {
+            removePosting(idsByDepartment, summary.getDepartment().toLowerCase(Locale.ROOT), id);
+        }
+        studentIdsDirty = true;
+    }
+
+    private static void removePosting(Map<String, Set<String>> postings, String key, String id) {
+        Set<String> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private static void addScores(Map<String, Integer> scores, Collection<String> ids, int points) {
+        for (String id : ids) {
+            scores.merge(id, points, Integer::sum);
+        }
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String fullName(StudentSummary summary) {
+        return (summary.getFirstName() != null ? summary.getFirstName() : "") + " "
+                + (summary.getLastName() != null ? summary.getLastName() : "");
+    }
+
+    private static String sortName(StudentSummary summary) {
+        String lastName = summary.getLastName() != null ? summary.getLastName() : "";
+        String firstName = summary.getFirstName() != null ? summary.getFirstName() : "";
+        return (lastName + " " + firstName).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits text into lowercase words; email addresses and IDs are kept whole
+     */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text != null) {
+            for (String word : text.toLowerCase(Locale.ROOT).split("[\\s,;]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+}
\ No newline at end of file
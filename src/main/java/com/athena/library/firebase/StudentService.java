@@ -1,11 +1,16 @@
 package com.athena.library.firebase;
 
 import com.athena.library.models.Student;
+import com.athena.library.models.StudentSummary;
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.StringPool;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -15,6 +20,13 @@ import java.util.concurrent.ExecutionException;
  */
 public class StudentService {
     private static final String COLLECTION_NAME = "students";
+    // Students projected to StudentSummary.FIELDS, shared by the list views and the StudentDirectory
+    static final String SUMMARY_MIRROR = COLLECTION_NAME + "/summary";
+
+    // Shared by every StudentService so repeated lookups of the same student hit memory
+    private static final ProfileCache PROFILE_CACHE = new ProfileCache(COLLECTION_NAME,
+            ConfigManager.getInstance().getInt("cache.profiles.max.size", 500),
+            ConfigManager.getInstance().getInt("cache.profiles.ttl.seconds", 300) * 1000L);
 
     /**
      * Adds a new student to the database
@@ -24,8 +36,13 @@ public class StudentService {
     public boolean addStudent(Student student) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // Let the server stamp the write time
+            student.setLastUpdated(null);
             ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(student.getId()).set(student);
-            future.get();
+            FirestoreOps.await(future, "StudentService.addStudent", COLLECTION_NAME);
+            student.clearChanges();
+            PROFILE_CACHE.invalidate(student.getId());
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error adding student: " + e.getMessage());
@@ -41,12 +58,13 @@ public class StudentService {
     public Student getStudentById(String id) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            DocumentReference docRef = db.collection(COLLECTION_NAME).document(id);
-            ApiFuture<DocumentSnapshot> future = docRef.get();
+            CollectionReference collection = db.collection(COLLECTION_NAME);
+            PROFILE_CACHE.watch(collection);
 
-            DocumentSnapshot document = future.get();
+            DocumentSnapshot document = PROFILE_CACHE.get(id, () ->
+                    FirestoreOps.await(collection.document(id).get(), "StudentService.getStudentById", COLLECTION_NAME));
             if (document.exists()) {
-                return document.toObject(Student.class);
+                return toStudent(document);
             } else {
                 return null;
             }
@@ -62,14 +80,26 @@ public class StudentService {
      * @return Student object if found, null otherwise
      */
     public Student getStudentByStudentId(String studentId) {
+        // Reuse the cached profile if we've already seen this student ID
+        String documentId = PROFILE_CACHE.resolveAlias(studentId);
+        if (documentId != null) {
+            Student student = getStudentById(documentId);
+            if (student != null && studentId.equals(student.getStudentId())) {
+                return student;
+            }
+        }
+
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
             Query query = db.collection(COLLECTION_NAME).whereEqualTo("studentId", studentId);
             ApiFuture<QuerySnapshot> future = query.get();
 
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "StudentService.getStudentByStudentId", COLLECTION_NAME);
             if (!querySnapshot.isEmpty()) {
-                return querySnapshot.getDocuments().get(0).toObject(Student.class);
+                DocumentSnapshot document = querySnapshot.getDocuments().get(0);
+                PROFILE_CACHE.put(document);
+                PROFILE_CACHE.putAlias(studentId, document.getId());
+                return toStudent(document);
             } else {
                 return null;
             }
@@ -80,17 +110,23 @@ public class StudentService {
     }
 
     /**
-     * Updates an existing student's information
+     * Updates an existing student's information by replacing the whole document.
+     * Prefer {@link #saveStudent(Student)}, which only writes the fields that changed.
      * @param student Updated student object
      * @return true if successful, false otherwise
      */
     public boolean updateStudent(Student student) {
         try {
             Firestore db = FirebaseConfig.getFirestoreInstance();
+
+            // Let the server stamp the write time
+            student.setLastUpdated(null);
             ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(student.getId()).set(student);
 
             // Wait for the operation to complete
-            future.get();
+            FirestoreOps.await(future, "StudentService.updateStudent", COLLECTION_NAME);
+            student.clearChanges();
+            PROFILE_CACHE.invalidate(student.getId());
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error updating student: " + e.getMessage());
@@ -98,6 +134,44 @@ public class StudentService {
         }
     }
 
+    /**
+     * Saves only the fields of a student that changed since it was loaded.
+     * Fines are written as server-side increments and borrowed books as array
+     * union/remove, so concurrent edits to the same student don't clobber each other.
+     * @param student Student with pending changes
+     * @return true if successful (or nothing to save), false otherwise
+     */
+    public boolean saveStudent(Student student) {
+        if (!student.hasChanges()) {
+            return true;
+        }
+
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            DocumentReference docRef = db.collection(COLLECTION_NAME).document(student.getId());
+
+            Map<String, Object> updates = student.getPendingUpdates();
+            updates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            ApiFuture<WriteResult> future = docRef.update(updates);
+            FirestoreOps.await(future, "StudentService.saveStudent", COLLECTION_NAME);
+            student.clearChanges();
+            PROFILE_CACHE.invalidate(student.getId());
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error saving student: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Drops a student's cached profile after a write made elsewhere, e.g. in a loan's Firestore transaction
+     * @param studentId Student ID
+     */
+    void invalidateCachedProfile(String studentId) {
+        PROFILE_CACHE.invalidate(studentId);
+    }
+
     /**
      * Updates only specific fields of a student document
      * @param studentId ID of the student to update
@@ -109,8 +183,12 @@ public class StudentService {
             Firestore db = FirebaseConfig.getFirestoreInstance();
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(studentId);
 
-            ApiFuture<WriteResult> future = docRef.update(updates);
-            future.get();
+            Map<String, Object> stampedUpdates = new HashMap<>(updates);
+            stampedUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            ApiFuture<WriteResult> future = docRef.update(stampedUpdates);
+            FirestoreOps.await(future, "StudentService.updateStudentFields", COLLECTION_NAME);
+            PROFILE_CACHE.invalidate(studentId);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error updating student fields: " + e.getMessage());
@@ -125,11 +203,11 @@ public class StudentService {
      */
     public boolean deleteStudent(String studentId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(studentId).delete();
-
-            // Wait for the operation to complete
-            future.get();
+            // Leave a tombstone so synced mirrors on other clients drop the student too
+            FirestoreOps.await(SyncEngine.deleteWithTombstone(COLLECTION_NAME, studentId),
+                    "StudentService.deleteStudent", COLLECTION_NAME);
+            PROFILE_CACHE.invalidate(studentId);
+            SyncEngine.getInstance().applyLocalDelete(COLLECTION_NAME, studentId);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error deleting student: " + e.getMessage());
@@ -142,21 +220,49 @@ public class StudentService {
      * @return List of all students
      */
     public List<Student> getAllStudents() {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
+        List<Student> students = new ArrayList<>();
+        for (DocumentSnapshot document : SyncEngine.getInstance().getDocuments(COLLECTION_NAME)) {
+            students.add(toStudent(document));
+        }
+        return students;
+    }
 
-            List<Student> students = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                students.add(document.toObject(Student.class));
+    /**
+     * Gets a lightweight summary of every student for list views.
+     * Served from a mirror projected to {@link StudentSummary#FIELDS}, so repeated refreshes
+     * only read those fields of changed students.
+     * @return List of student summaries
+     */
+    public List<StudentSummary> getAllStudentSummaries() {
+        List<StudentSummary> summaries = new ArrayList<>();
+        for (DocumentSnapshot document : SyncEngine.getInstance()
+                .getDocuments(SUMMARY_MIRROR, COLLECTION_NAME, summaryProjection())) {
+            StudentSummary summary = toSummary(document);
+            if (summary != null) {
+                summaries.add(summary);
             }
-
-            return students;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting all students: " + e.getMessage());
-            return new ArrayList<>();
         }
+        return summaries;
+    }
+
+    /**
+     * Searches names, student IDs, emails and departments at once, using the in-memory directory
+     * @param query Words to search for; every word must match some field
+     * @param limit Maximum number of results
+     * @return Matching students, best match first
+     */
+    public List<StudentSummary> searchStudents(String query, int limit) {
+        return StudentDirectory.getInstance().search(query, limit);
+    }
+
+    /**
+     * Searches one field of the student directory
+     * @param field Field to search
+     * @param text Text to search for
+     * @return Matching students, sorted by name
+     */
+    public List<StudentSummary> searchStudents(StudentDirectory.Field field, String text) {
+        return StudentDirectory.getInstance().search(field, text);
     }
 
     /**
@@ -165,39 +271,17 @@ public class StudentService {
      * @return List of matching students
      */
     public List<Student> searchStudentsByName(String name) {
-        try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-
-            // Convert to lowercase for case-insensitive search
-            String searchName = name.toLowerCase();
-
-            // Firebase doesn't support direct substring search, so we need to do this manually
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
-
-            List<Student> matchingStudents = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+        // Look the name up in the directory, then load the full profiles through the cache
+        List<StudentSummary> matches = StudentDirectory.getInstance().search(StudentDirectory.Field.NAME, name);
 
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Student student = document.toObject(Student.class);
-                if (student != null) {
-                    // checks if first name last name or full name contains the search term
-                    String firstName = student.getFirstName().toLowerCase();
-                    String lastName = student.getLastName().toLowerCase();
-                    String fullName = (firstName + " " + lastName).toLowerCase();
-
-                    if (firstName.contains(searchName) ||
-                            lastName.contains(searchName) ||
-                            fullName.contains(searchName)) {
-                        matchingStudents.add(student);
-                    }
-                }
+        List<Student> matchingStudents = new ArrayList<>();
+        for (StudentSummary match : matches) {
+            Student student = getStudentById(match.getId());
+            if (student != null) {
+                matchingStudents.add(student);
             }
-
-            return matchingStudents;
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error searching students by name: " + e.getMessage());
-            return new ArrayList<>();
         }
+        return matchingStudents;
     }
 
     /**
@@ -212,10 +296,10 @@ public class StudentService {
             ApiFuture<QuerySnapshot> future = query.get();
 
             List<Student> students = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
+            QuerySnapshot querySnapshot = FirestoreOps.await(future, "StudentService.getStudentsByDepartment", COLLECTION_NAME);
 
             for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                students.add(document.toObject(Student.class));
+                students.add(toStudent(document));
             }
 
             return students;
@@ -231,17 +315,73 @@ public class StudentService {
      */
     public int getStudentCount() {
         try {
+            // Count on the server instead of reading the students
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
-
-            QuerySnapshot querySnapshot = future.get();
-            return querySnapshot.size();
+            ApiFuture<AggregateQuerySnapshot> future = db.collection(COLLECTION_NAME).count().get();
+            AggregateQuerySnapshot snapshot = FirestoreOps.await(future, "StudentService.getStudentCount", COLLECTION_NAME);
+            return (int) snapshot.getCount();
         } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting student count: " + e.getMessage());
+            System.err.println("Error counting students: " + e.getMessage());
             return 0;
         }
     }
 
+    /**
+     * Builds the query behind the summary mirror
+     * @return Students projected to the summary fields
+     */
+    static Query summaryProjection() {
+        return FirebaseConfig.getFirestoreInstance().collection(COLLECTION_NAME)
+                .select(withLastUpdated(StudentSummary.FIELDS));
+    }
+
+    private static String[] withLastUpdated(String[] fields) {
+        // The mirror's delta syncs order and filter on lastUpdated
+        String[] projected = Arrays.copyOf(fields, fields.length + 1);
+        projected[fields.length] = "lastUpdated";
+        return projected;
+    }
+
+    /**
+     * Gets the shared student profile cache, e.g. to report its statistics
+     * @return Student profile cache
+     */
+    public static ProfileCache getProfileCache() {
+        return PROFILE_CACHE;
+    }
+
+    /**
+     * Maps a document to a StudentSummary, sharing repeated values through the string pool
+     * @param document Student document
+     * @return The summary, or null if the document has no data
+     */
+    static StudentSummary toSummary(DocumentSnapshot document) {
+        StudentSummary summary = document.toObject(StudentSummary.class);
+        if (summary != null) {
+            summary.setId(document.getId());
+            summary.setDepartment(StringPool.getInstance().intern(summary.getDepartment()));
+            summary.setProgram(StringPool.getInstance().intern(summary.getProgram()));
+        }
+        return summary;
+    }
+
+    /**
+     * Maps a document to a Student with no pending changes
+     * (the Firestore mapper goes through the setters, which record changes)
+     * @param document Document to map
+     * @return The student, or null if the document has no data
+     */
+    private static Student toStudent(DocumentSnapshot document) {
+        Student student = document.toObject(Student.class);
+        if (student != null) {
+            // Departments and programs repeat across the whole roster
+            student.setDepartment(StringPool.getInstance().intern(student.getDepartment()));
+            student.setProgram(StringPool.getInstance().intern(student.getProgram()));
+            student.clearChanges();
+        }
+        return student;
+    }
+
     /**
      * Generates a unique ID for a new student
      * @return A unique ID string
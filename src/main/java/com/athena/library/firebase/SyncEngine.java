@@ -0,0 +1,405 @@
+package com.athena.library.firebase;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps in-memory mirrors of Firestore collections up to date with delta queries.
+ *
+ * Each mirror remembers a high watermark: the latest lastUpdated value it has seen.
+ * A sync only reads documents with lastUpdated past the watermark, plus tombstones
+ * for documents deleted since then, so repeated refreshes cost reads proportional
+ * to churn rather than to collection size. The first sync of a mirror reads the
+ * whole collection (or scope).
+ *
+ * Deletes must go through {@link #deleteWithTombstone} so other clients can see them.
+ * Tombstones live in tombstones/{collection}/deleted/{documentId} with a deletedAt
+ * server timestamp; a Firestore TTL policy on deletedAt can be used to expire them.
+ *
+ * Caches and indexes can subscribe to a mirror with {@link #addChangeListener}.
+ * Listeners are called on the thread that ran the sync.
+ */
+public class SyncEngine {
+    private static final String TOMBSTONES_COLLECTION = "tombstones";
+    private static final String TOMBSTONE_SUBCOLLECTION = "deleted";
+    private static final String LAST_UPDATED_FIELD = "lastUpdated";
+    private static final String DELETED_AT_FIELD = "deletedAt";
+
+    // Server timestamps can commit slightly out of order, so every delta re-reads this much history
+    public static final long OVERLAP_MS = 60000;
+
+    private static SyncEngine instance;
+
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+
+    /**
+     * Receives the changes applied to a mirror by each sync
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onChanges(ChangeSet changes);
+    }
+
+    /**
+     * Documents added, changed or removed by one sync
+     */
+    public static class ChangeSet {
+        private final String mirrorKey;
+        private final boolean initial;
+        private final List<DocumentSnapshot> upserted;
+        private final Set<String> deletedIds;
+
+        ChangeSet(String mirrorKey, boolean initial, List<DocumentSnapshot> upserted, Set<String> deletedIds) {
+            this.mirrorKey = mirrorKey;
+            this.initial = initial;
+            this.upserted = Collections.unmodifiableList(upserted);
+            this.deletedIds = Collections.unmodifiableSet(deletedIds);
+        }
+
+        public String getMirrorKey() {
+            return mirrorKey;
+        }
+
+        /**
+         * Checks if this was the first, full load of the mirror
+         * @return true if the mirror was loaded from scratch
+         */
+        public boolean isInitial() {
+            return initial;
+        }
+
+        public List<DocumentSnapshot> getUpserted() {
+            return upserted;
+        }
+
+        public Set<String> getDeletedIds() {
+            return deletedIds;
+        }
+
+        public boolean isEmpty() {
+            return upserted.isEmpty() && deletedIds.isEmpty();
+        }
+    }
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private SyncEngine() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return SyncEngine instance
+     */
+    public static synchronized SyncEngine getInstance() {
+        if (instance == null) {
+            instance = new SyncEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Syncs and returns a mirror of a whole collection
+     * @param collection Collection name
+     * @return Documents in the collection, as of the latest successful sync
+     */
+    public List<DocumentSnapshot> getDocuments(String collection) {
+        return getDocuments(collection, collection, null);
+    }
+
+    /**
+     * Syncs and returns a mirror of part of a collection
+     * @param mirrorKey Unique name for this mirror, e.g. "messages/receiver/abc"
+     * @param collection Collection name
+     * @param scope Equality filters selecting the documents to mirror, or null for the whole collection.
+     *              Scoped delta queries need a composite index on the filter fields plus lastUpdated.
+     * @return Matching documents, as of the latest successful sync
+     */
+    public List<DocumentSnapshot> getDocuments(String mirrorKey, String collection, Query scope) {
+        Mirror mirror = getMirror(mirrorKey, collection, scope);
+        sync(mirror);
+        synchronized (mirror) {
+            return new ArrayList<>(mirror.documents.values());
+        }
+    }
+
+    /**
+     * Pulls changes for a mirror created earlier
+     * @param mirrorKey Mirror name (the collection name for whole-collection mirrors)
+     * @return The changes applied, or null if the mirror doesn't exist or the sync failed
+     */
+    public ChangeSet sync(String mirrorKey) {
+        Mirror mirror = mirrors.get(mirrorKey);
+        return mirror != null ? sync(mirror) : null;
+    }
+
+    /**
+     * Gets the high watermark of a mirror
+     * @param mirrorKey Mirror name
+     * @return Latest lastUpdated seen in milliseconds, or -1 if the mirror hasn't synced yet
+     */
+    public long getWatermark(String mirrorKey) {
+        Mirror mirror = mirrors.get(mirrorKey);
+        if (mirror == null) {
+            return -1;
+        }
+        synchronized (mirror) {
+            return mirror.watermark;
+        }
+    }
+
+    /**
+     * Subscribes to the changes applied to a whole-collection mirror, creating it if needed
+     * @param collection Collection name
+     * @param listener Listener to add
+     */
+    public void addChangeListener(String collection, ChangeListener listener) {
+        addChangeListener(collection, collection, null, listener);
+    }
+
+    /**
+     * Subscribes to the changes applied to a mirror of part of a collection, creating it if needed
+     * @param mirrorKey Unique name for the mirror, as passed to {@link #getDocuments(String, String, Query)}
+     * @param collection Collection name
+     * @param scope Equality filters or field mask of the mirror, or null for the whole collection
+     * @param listener Listener to add
+     */
+    public void addChangeListener(String mirrorKey, String collection, Query scope, ChangeListener listener) {
+        getMirror(mirrorKey, collection, scope).listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes from a mirror
+     * @param mirrorKey Mirror name
+     * @param listener Listener to remove
+     */
+    public void removeChangeListener(String mirrorKey, ChangeListener listener) {
+        Mirror mirror = mirrors.get(mirrorKey);
+        if (mirror != null) {
+            mirror.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Removes a document the app just deleted from every mirror of its collection,
+     * so it disappears without waiting for the next sync
+     * @param collection Collection name
+     * @param documentId ID of the deleted document
+     */
+    public void applyLocalDelete(String collection, String documentId) {
+        for (Mirror mirror : mirrors.values()) {
+            if (!mirror.collection.equals(collection)) {
+                continue;
+            }
+
+            boolean removed;
+            synchronized (mirror) {
+                removed = mirror.documents.remove(documentId) != null;
+            }
+            if (removed) {
+                ChangeSet changes = new ChangeSet(mirror.key, false, new ArrayList<>(),
+                        Collections.singleton(documentId));
+                for (ChangeListener listener : mirror.listeners) {
+                    listener.onChanges(changes);
+                }
+            }
+        }
+    }
+
+    private Mirror getMirror(String mirrorKey, String collection, Query scope) {
+        return mirrors.computeIfAbsent(mirrorKey, key -> new Mirror(key, collection, scope));
+    }
+
+    /**
+     * Runs one delta sync of a mirror and notifies its listeners
+     */
+    private ChangeSet sync(Mirror mirror) {
+        ChangeSet changes;
+        synchronized (mirror) {
+            try {
+                Firestore db = FirebaseConfig.getFirestoreInstance();
+                Query base = mirror.scope != null ? mirror.scope : db.collection(mirror.collection);
+                boolean initial = mirror.watermark < 0;
+
+                List<DocumentSnapshot> fetched;
+                Map<String, Long> deleted;
+                if (initial) {
+                    // Start watching tombstones from now; older deletes are already reflected
+                    mirror.tombstoneWatermark = System.currentTimeMillis();
+                    fetched = new ArrayList<>(FirestoreOps.await(base.get(), "SyncEngine.sync", mirror.collection).getDocuments());
+                    deleted = Collections.emptyMap();
+                    mirror.watermark = 0;
+                } else {
+                    fetched = fetchChangedSince(base, mirror.watermark - OVERLAP_MS);
+                    deleted = fetchDeletedSince(mirror.collection, mirror.tombstoneWatermark - OVERLAP_MS);
+                }
+
+                // Deletes first, so a document deleted and re-created in the same window survives
+                Set<String> deletedIds = new LinkedHashSet<>();
+                for (Map.Entry<String, Long> tombstone : deleted.entrySet()) {
+                    if (mirror.documents.remove(tombstone.getKey()) != null) {
+                        deletedIds.add(tombstone.getKey());
+                    }
+                    mirror.tombstoneWatermark = Math.max(mirror.tombstoneWatermark, tombstone.getValue());
+                }
+
+                List<DocumentSnapshot> upserted = new ArrayList<>();
+                for (DocumentSnapshot document : fetched) {
+                    DocumentSnapshot previous = mirror.documents.put(document.getId(), document);
+                    // The overlap re-reads recent documents; only report real changes
+                    if (previous == null || !Objects.equals(previous.getUpdateTime(), document.getUpdateTime())) {
+                        upserted.add(document);
+                        deletedIds.remove(document.getId());
+                    }
+                    mirror.watermark = Math.max(mirror.watermark, getLastUpdatedMillis(document));
+                }
+
+                changes = new ChangeSet(mirror.key, initial, upserted, deletedIds);
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Error syncing " + mirror.key + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        if (changes.isInitial() || !changes.isEmpty()) {
+            for (ChangeListener listener : mirror.listeners) {
+                listener.onChanges(changes);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the documents matching a query whose lastUpdated is after the given time
+     * @param query Base query (a collection, or a collection with equality filters or a field mask)
+     * @param sinceMillis Lower bound for lastUpdated, in milliseconds since the epoch
+     * @return Changed documents
+     */
+    public static List<DocumentSnapshot> fetchChangedSince(Query query, long sinceMillis)
+            throws InterruptedException, ExecutionException {
+        ApiFuture<QuerySnapshot> future = query
+                .whereGreaterThan(LAST_UPDATED_FIELD, toTimestamp(sinceMillis))
+                .get();
+        return new ArrayList<>(FirestoreOps.await(future, "SyncEngine.fetchChangedSince", null).getDocuments());
+    }
+
+    /**
+     * Gets the documents of a collection deleted after the given time
+     * @param collection Collection name
+     * @param sinceMillis Lower bound for the deletion time, in milliseconds since the epoch
+     * @return Map of deleted document IDs to deletion times in milliseconds
+     */
+    public static Map<String, Long> fetchDeletedSince(String collection, long sinceMillis)
+            throws InterruptedException, ExecutionException {
+        ApiFuture<QuerySnapshot> future = tombstones(collection)
+                .whereGreaterThan(DELETED_AT_FIELD, toTimestamp(sinceMillis))
+                .get();
+
+        Map<String, Long> deleted = new LinkedHashMap<>();
+        QuerySnapshot snapshot = FirestoreOps.await(future, "SyncEngine.fetchDeletedSince", collection);
+        for (DocumentSnapshot tombstone : snapshot.getDocuments()) {
+            Timestamp deletedAt = tombstone.getTimestamp(DELETED_AT_FIELD);
+            deleted.put(tombstone.getId(), deletedAt != null ? deletedAt.toDate().getTime() : sinceMillis);
+        }
+        return deleted;
+    }
+
+    /**
+     * Adds a delete and its tombstone to a batch
+     * @param batch Batch to add the writes to
+     * @param collection Collection name
+     * @param documentId ID of the document to delete
+     */
+    public static void addDeleteWithTombstone(WriteBatch batch, String collection, String documentId) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("documentId", documentId);
+        tombstone.put(DELETED_AT_FIELD, FieldValue.serverTimestamp());
+
+        batch.delete(db.collection(collection).document(documentId));
+        batch.set(tombstones(collection).document(documentId), tombstone);
+    }
+
+    /**
+     * Adds a delete and its tombstone to a Firestore transaction
+     * @param transaction Transaction to add the writes to
+     * @param collection Collection name
+     * @param documentId ID of the document to delete
+     */
+    public static void addDeleteWithTombstone(Transaction transaction, String collection, String documentId) {
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("documentId", documentId);
+        tombstone.put(DELETED_AT_FIELD, FieldValue.serverTimestamp());
+
+        transaction.delete(db.collection(collection).document(documentId));
+        transaction.set(tombstones(collection).document(documentId), tombstone);
+    }
+
+    /**
+     * Deletes a document and records a tombstone for it in one batch.
+     * Callers should call {@link #applyLocalDelete} once the commit succeeds.
+     * @param collection Collection name
+     * @param documentId ID of the document to delete
+     * @return Future for the batch commit
+     */
+    public static ApiFuture<List<WriteResult>> deleteWithTombstone(String collection, String documentId) {
+        WriteBatch batch = FirebaseConfig.getFirestoreInstance().batch();
+        addDeleteWithTombstone(batch, collection, documentId);
+        return batch.commit();
+    }
+
+    private static CollectionReference tombstones(String collection) {
+        return FirebaseConfig.getFirestoreInstance()
+                .collection(TOMBSTONES_COLLECTION)
+                .document(collection)
+                .collection(TOMBSTONE_SUBCOLLECTION);
+    }
+
+    private static Timestamp toTimestamp(long millis) {
+        return Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(Math.max(0, millis)));
+    }
+
+    private static long getLastUpdatedMillis(DocumentSnapshot document) {
+        Object value = document.get(LAST_UPDATED_FIELD);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate().getTime();
+        }
+        return 0;
+    }
+
+    /**
+     * In-memory copy of a collection (or part of one) and its sync state
+     */
+    private static class Mirror {
+        private final String key;
+        private final String collection;
+        private final Query scope;
+        // Guarded by this mirror
+        private final Map<String, DocumentSnapshot> documents = new LinkedHashMap<>();
+        private long watermark = -1;
+        private long tombstoneWatermark;
+        private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+        Mirror(String key, String collection, Query scope) {
+            this.key = key;
+            this.collection = collection;
+            this.scope = scope;
+        }
+    }
+}
\ No newline at end of file
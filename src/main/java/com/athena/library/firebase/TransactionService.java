@@ -1,10 +1,18 @@
 package com.athena.library.firebase;
 
 import com.athena.library.models.Book;
+import com.athena.library.models.Hold;
 import com.athena.library.models.Student;
 import com.athena.library.models.Transaction;
+import com.athena.library.utils.ErrorHandler;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.firebase.cloud.FirestoreClient;
 
 import java.util.*;
@@ -15,11 +23,36 @@ import java.util.concurrent.ExecutionException;
  */
 public class TransactionService {
     private static final String COLLECTION_NAME = "transactions";
+    private static final String BOOKS_COLLECTION = "books";
+    private static final String STUDENTS_COLLECTION = "students";
     private static final int DEFAULT_LOAN_PERIOD_DAYS = 14;
     private static final double DEFAULT_FINE_PER_DAY = 0.50; // $0.50 per day
 
     private BookService bookService;
     private StudentService studentService;
+    private final LoanRollupService rollupService = new LoanRollupService();
+
+    /**
+     * Where a borrowed copy came from
+     */
+    private enum CopySource {
+        HOLD,  // The copy kept for the student's hold
+        SHELF, // A free copy
+        NONE   // No copy available
+    }
+
+    /**
+     * What a return did, decided in its Firestore transaction
+     */
+    private static class ReturnOutcome {
+        private final boolean returned;
+        private final Hold keptFor;
+
+        ReturnOutcome(boolean returned, Hold keptFor) {
+            this.returned = returned;
+            this.keptFor = keptFor;
+        }
+    }
 
     /**
      * Default constructor
@@ -46,38 +79,73 @@ public class TransactionService {
      */
     public Transaction borrowBook(String studentId, String bookId, String librarianId) {
         try {
-            // Check if the book exists and is available
+            // Check if the book and the student exist
             Book book = bookService.getBookById(bookId);
-            if (book == null || !book.isAvailable()) {
-                System.err.println("Book not available for borrowing: " + bookId);
+            if (book == null) {
+                System.err.println("Book not found: " + bookId);
                 return null;
             }
-
-            // Check if the student exists
             Student student = studentService.getStudentById(studentId);
             if (student == null) {
                 System.err.println("Student not found: " + studentId);
                 return null;
             }
 
-            // Create a new transaction
             Firestore db = FirebaseConfig.getFirestoreInstance();
             DocumentReference docRef = db.collection(COLLECTION_NAME).document();
-            String transactionId = docRef.getId();
-
-            Transaction transaction = new Transaction(transactionId, studentId, bookId, librarianId);
+            DocumentReference bookRef = db.collection(BOOKS_COLLECTION).document(bookId);
+            DocumentReference studentRef = db.collection(STUDENTS_COLLECTION).document(studentId);
 
-            // Update book availability
-            book.borrowCopy();
-            bookService.updateBook(book);
+            // Create a new transaction, letting the server stamp the write time
+            Transaction transaction = new Transaction(docRef.getId(), studentId, bookId, librarianId);
+            transaction.setLastUpdated(null);
 
-            // Update student's borrowed books
+            // Update student's borrowed books (written as an array union)
             student.addBorrowedBook(bookId);
-            studentService.updateStudent(student);
+            Map<String, Object> studentUpdates = student.getPendingUpdates();
+            studentUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            // A student collecting a hold takes the copy kept for them; anyone else needs a free copy.
+            // The hold, the copy count, the student and the loan are written together or not at all.
+            HoldService holdService = HoldService.getInstance();
+            ApiFuture<CopySource> future = db.runTransaction(firestoreTransaction -> {
+                DocumentSnapshot hold = FirestoreOps.await(holdService.readHold(firestoreTransaction, studentId, bookId),
+                        "TransactionService.borrowBook", "holds");
+                DocumentSnapshot current = FirestoreOps.await(firestoreTransaction.get(bookRef),
+                        "TransactionService.borrowBook", BOOKS_COLLECTION);
+
+                CopySource source;
+                if (holdService.claimReadyHold(firestoreTransaction, hold)) {
+                    source = CopySource.HOLD;
+                } else {
+                    Long available = current.getLong("availableCopies");
+                    if (!current.exists() || available == null || available <= 0) {
+                        return CopySource.NONE;
+                    }
+                    Map<String, Object> bookUpdates = new HashMap<>();
+                    bookUpdates.put("availableCopies", FieldValue.increment(-1));
+                    bookUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+                    firestoreTransaction.update(bookRef, bookUpdates);
+                    source = CopySource.SHELF;
+                }
+                firestoreTransaction.update(studentRef, studentUpdates);
+                firestoreTransaction.set(docRef, transaction);
+                return source;
+            });
 
-            // Save the transaction
-            ApiFuture<WriteResult> future = docRef.set(transaction);
-            future.get();
+            CopySource source = FirestoreOps.await(future, "TransactionService.borrowBook", COLLECTION_NAME);
+            if (source == CopySource.NONE) {
+                System.err.println("Book not available for borrowing: " + bookId);
+                return null;
+            }
+            FirestoreOps.countWrites("TransactionService.borrowBook", COLLECTION_NAME, source == CopySource.HOLD ? 4 : 3);
+            if (source == CopySource.HOLD) {
+                holdService.holdClaimed(studentId, bookId);
+            }
+            student.clearChanges();
+            studentService.invalidateCachedProfile(studentId);
+            transaction.clearChanges();
+            rollupService.recordBorrow(transaction);
 
             return transaction;
         } catch (InterruptedException | ExecutionException e) {
@@ -111,8 +179,10 @@ public class TransactionService {
             }
 
             // Check if the book is overdue and calculate fine
-            if (transaction.isOverdue()) {
-                double fine = transaction.calculateFine(DEFAULT_FINE_PER_DAY);
+            boolean late = transaction.isOverdue();
+            double fine = 0;
+            if (late) {
+                fine = transaction.calculateFine(DEFAULT_FINE_PER_DAY);
                 if (fine > 0) {
                     student.addFine(fine);
                 }
@@ -122,19 +192,49 @@ public class TransactionService {
             transaction.returnBook();
             transaction.setLibrarianId(librarianId); // Update the librarian who processed the return
 
-            // Update the book availability
-            book.returnCopy();
-
             // Update the student's borrowed books
             student.removeBorrowedBook(transaction.getBookId());
 
-            // Save all changes
+            Map<String, Object> transactionUpdates = transaction.getPendingUpdates();
+            transactionUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+            Map<String, Object> studentUpdates = student.getPendingUpdates();
+            studentUpdates.put("lastUpdated", FieldValue.serverTimestamp());
+
+            // The loan, the student and the copy (kept for the next student waiting, or put back
+            // on the shelf) are written together, so a failed return can be retried without losing the copy
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> transactionFuture = db.collection(COLLECTION_NAME).document(transactionId).set(transaction);
-            bookService.updateBook(book);
-            studentService.updateStudent(student);
+            DocumentReference transactionRef = db.collection(COLLECTION_NAME).document(transactionId);
+            DocumentReference bookRef = db.collection(BOOKS_COLLECTION).document(book.getId());
+            DocumentReference studentRef = db.collection(STUDENTS_COLLECTION).document(student.getId());
+            HoldService holdService = HoldService.getInstance();
+            ApiFuture<ReturnOutcome> future = db.runTransaction(firestoreTransaction -> {
+                DocumentSnapshot current = FirestoreOps.await(firestoreTransaction.get(transactionRef),
+                        "TransactionService.returnBook", COLLECTION_NAME);
+                DocumentSnapshot currentBook = FirestoreOps.await(firestoreTransaction.get(bookRef),
+                        "TransactionService.returnBook", BOOKS_COLLECTION);
+                QuerySnapshot waiting = FirestoreOps.await(holdService.readQueue(firestoreTransaction, book.getId()),
+                        "TransactionService.returnBook", "holds");
+                // Another librarian may have processed the return meanwhile
+                if (Transaction.Status.RETURNED.toString().equals(current.getString("status"))) {
+                    return new ReturnOutcome(false, null);
+                }
+
+                firestoreTransaction.update(transactionRef, transactionUpdates);
+                firestoreTransaction.update(studentRef, studentUpdates);
+                return new ReturnOutcome(true, holdService.releaseCopy(firestoreTransaction, currentBook, waiting));
+            });
 
-            transactionFuture.get();
+            ReturnOutcome outcome = FirestoreOps.await(future, "TransactionService.returnBook", COLLECTION_NAME);
+            if (!outcome.returned) {
+                System.err.println("Transaction already returned: " + transactionId);
+                return false;
+            }
+            FirestoreOps.countWrites("TransactionService.returnBook", COLLECTION_NAME, 3);
+            transaction.clearChanges();
+            student.clearChanges();
+            studentService.invalidateCachedProfile(student.getId());
+            holdService.copyReleased(outcome.keptFor);
+            rollupService.recordReturn(transaction, late, fine);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error returning book: " + e.getMessage());
@@ -171,10 +271,13 @@ public class TransactionService {
                 return false;
             }
 
-            // Save the updated transaction
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME).document(transactionId).set(transaction);
-            future.get();
+            // Save the updated due date and status
+            ApiFuture<WriteResult> future = saveTransactionAsync(transaction);
+            if (future != null) {
+                FirestoreOps.await(future, "TransactionService.renewBook", COLLECTION_NAME);
+                transaction.clearChanges();
+            }
+            rollupService.recordRenewal(transaction);
 
             return true;
         } catch (InterruptedException | ExecutionException e) {
@@ -221,12 +324,15 @@ public class TransactionService {
 
             // No need to update book availability since the book is lost
 
-            // Save all changes
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<WriteResult> transactionFuture = db.collection(COLLECTION_NAME).document(transactionId).set(transaction);
-            studentService.updateStudent(student);
+            // Save only the changed fields of each document
+            ApiFuture<WriteResult> transactionFuture = saveTransactionAsync(transaction);
+            studentService.saveStudent(student);
 
-            transactionFuture.get();
+            if (transactionFuture != null) {
+                FirestoreOps.await(transactionFuture, "TransactionService.markBookAsLost", COLLECTION_NAME);
+                transaction.clearChanges();
+            }
+            rollupService.recordLoss(transaction, lossFee);
             return true;
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("Error marking book as lost: " + e.getMessage());
@@ -234,6 +340,35 @@ public class TransactionService {
         }
     }
 
+    /**
+     * Starts writing only the changed fields of a transaction
+     * @param transaction Transaction with pending changes
+     * @return Future for the write, or null if nothing changed
+     */
+    private ApiFuture<WriteResult> saveTransactionAsync(Transaction transaction) {
+        if (!transaction.hasChanges()) {
+            return null;
+        }
+        Firestore db = FirebaseConfig.getFirestoreInstance();
+        Map<String, Object> updates = transaction.getPendingUpdates();
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+        return db.collection(COLLECTION_NAME).document(transaction.getId()).update(updates);
+    }
+
+    /**
+     * Maps a document to a Transaction with no pending changes
+     * (the Firestore mapper goes through the setters, which record changes)
+     * @param document Document to map
+     * @return The transaction, or null if the document has no data
+     */
+    private static Transaction toTransaction(DocumentSnapshot document) {
+        Transaction transaction = document.toObject(Transaction.class);
+        if (transaction != null) {
+            transaction.clearChanges();
+        }
+        return transaction;
+    }
+
     /**
      * Gets a transaction by ID
      * @param id Transaction ID to look up
@@ -245,9 +380,9 @@ public class TransactionService {
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(id);
             ApiFuture<DocumentSnapshot> future = docRef.get();
 
-            DocumentSnapshot document = future.get();
+            DocumentSnapshot document = FirestoreOps.await(future, "TransactionService.getTransactionById", COLLECTION_NAME);
             if (document.exists()) {
-                return document.toObject(Transaction.class);
+                return toTransaction(document);
             } else {
                 return null;
             }
@@ -258,21 +393,19 @@ public class TransactionService {
     }
 
     /**
-     * Gets all transactions for a student
+     * Gets all transactions for a student. Reads the whole history; prefer
+     * getTransactionHistoryByStudent for listings.
      * @param studentId ID of the student
      * @return List of transactions
      */
     public List<Transaction> getTransactionsByStudent(String studentId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME).whereEqualTo("studentId", studentId);
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.TRANSACTIONS_BY_STUDENT, studentId);
 
             List<Transaction> transactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                transactions.add(document.toObject(Transaction.class));
+            for (DocumentSnapshot document : documents) {
+                transactions.add(toTransaction(document));
             }
 
             return transactions;
@@ -289,18 +422,12 @@ public class TransactionService {
      */
     public List<Transaction> getActiveTransactionsByStudent(String studentId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereEqualTo("studentId", studentId)
-                    .whereNotEqualTo("status", Transaction.Status.RETURNED.toString());
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance().execute(
+                    QueryPlans.ACTIVE_TRANSACTIONS_BY_STUDENT, studentId, Transaction.Status.RETURNED.toString());
 
             List<Transaction> transactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Transaction transaction = document.toObject(Transaction.class);
+            for (DocumentSnapshot document : documents) {
+                Transaction transaction = toTransaction(document);
                 // Double-check the status since Firebase might have issues with enum comparison
                 if (transaction != null && transaction.getStatus() != Transaction.Status.RETURNED) {
                     transactions.add(transaction);
@@ -315,21 +442,19 @@ public class TransactionService {
     }
 
     /**
-     * Gets all transactions for a book
+     * Gets all transactions for a book. Reads the whole history; prefer
+     * getTransactionHistoryByBook for listings and LoanRollupService for counts.
      * @param bookId ID of the book
      * @return List of transactions
      */
     public List<Transaction> getTransactionsByBook(String bookId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME).whereEqualTo("bookId", bookId);
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.TRANSACTIONS_BY_BOOK, bookId);
 
             List<Transaction> transactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                transactions.add(document.toObject(Transaction.class));
+            for (DocumentSnapshot document : documents) {
+                transactions.add(toTransaction(document));
             }
 
             return transactions;
@@ -345,27 +470,25 @@ public class TransactionService {
      */
     public List<Transaction> getOverdueTransactions() {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            // Get all non-returned transactions
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereNotEqualTo("status", Transaction.Status.RETURNED.toString())
-                    .whereNotEqualTo("status", Transaction.Status.LOST.toString());
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            // Loans still out (Firestore allows only one != filter per field, so list the open statuses)
+            List<String> openStatuses = Arrays.asList(
+                    Transaction.Status.BORROWED.toString(),
+                    Transaction.Status.OVERDUE.toString(),
+                    Transaction.Status.RENEWED.toString());
+            Date now = new Date();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.OVERDUE_TRANSACTIONS, openStatuses, now);
 
             List<Transaction> overdueTransactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            Date now = new Date();
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                Transaction transaction = document.toObject(Transaction.class);
+            for (DocumentSnapshot document : documents) {
+                Transaction transaction = toTransaction(document);
                 // Check if actually overdue
                 if (transaction != null && transaction.getDueDate().before(now)) {
                     // Update the status to OVERDUE if not already
                     if (transaction.getStatus() != Transaction.Status.OVERDUE) {
                         transaction.setStatus(Transaction.Status.OVERDUE);
-                        // Update in database
-                        db.collection(COLLECTION_NAME).document(transaction.getId()).set(transaction);
+                        markOverdue(transaction, document.getUpdateTime());
+                        transaction.clearChanges();
                     }
                     overdueTransactions.add(transaction);
                 }
@@ -379,21 +502,66 @@ public class TransactionService {
     }
 
     /**
-     * Gets all transactions processed by a specific librarian
+     * Writes a loan's OVERDUE status in the background; it doesn't need to hold up the listing.
+     * The write only applies if the document is unchanged since it was read, so however many
+     * clients list the loan, and however stale their mirrors, the transition and its rollup
+     * happen once.
+     * @param transaction Loan with the status change pending
+     * @param readTime Update time of the document the status was read from
+     */
+    private void markOverdue(Transaction transaction, Timestamp readTime) {
+        Map<String, Object> updates = transaction.getPendingUpdates();
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+        DocumentReference docRef = FirebaseConfig.getFirestoreInstance()
+                .collection(COLLECTION_NAME).document(transaction.getId());
+
+        long start = System.nanoTime();
+        ApiFuture<WriteResult> future = readTime != null
+                ? docRef.update(updates, Precondition.updatedAt(readTime))
+                : docRef.update(updates);
+        ApiFutures.addCallback(future, new ApiFutureCallback<WriteResult>() {
+            @Override
+            public void onSuccess(WriteResult result) {
+                FirestoreOps.record("TransactionService.markOverdue", COLLECTION_NAME, 1, -1, start, null);
+                FirestoreOps.countWrites("TransactionService.markOverdue", COLLECTION_NAME, 1);
+                rollupService.recordOverdue(transaction);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                FirestoreOps.record("TransactionService.markOverdue", COLLECTION_NAME, 1, -1, start, t);
+                // A failed precondition means another client (or an earlier listing) already changed it
+                if (!isFailedPrecondition(t)) {
+                    ErrorHandler.logWarning("Could not mark transaction " + transaction.getId() + " overdue: "
+                            + t.getMessage(), ErrorHandler.ErrorType.DATABASE);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static boolean isFailedPrecondition(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException) {
+                return ((ApiException) cause).getStatusCode().getCode() == StatusCode.Code.FAILED_PRECONDITION;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets all transactions processed by a specific librarian. Reads the whole history;
+     * prefer getTransactionHistoryByLibrarian for listings and LoanRollupService for counts.
      * @param librarianId ID of the librarian
      * @return List of transactions
      */
     public List<Transaction> getTransactionsByLibrarian(String librarianId) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME).whereEqualTo("librarianId", librarianId);
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.TRANSACTIONS_BY_LIBRARIAN, librarianId);
 
             List<Transaction> transactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                transactions.add(document.toObject(Transaction.class));
+            for (DocumentSnapshot document : documents) {
+                transactions.add(toTransaction(document));
             }
 
             return transactions;
@@ -403,6 +571,68 @@ public class TransactionService {
         }
     }
 
+    /**
+     * Gets one page of a student's transactions, newest first
+     * @param studentId ID of the student
+     * @param pageSize Maximum number of transactions on the page
+     * @param previous The page before, or null for the first page
+     * @return The page
+     */
+    public HistoryPage<Transaction> getTransactionHistoryByStudent(String studentId, int pageSize,
+                                                                   HistoryPage<Transaction> previous) {
+        return getHistoryPage(QueryPlans.TRANSACTION_HISTORY_BY_STUDENT, studentId, pageSize, previous);
+    }
+
+    /**
+     * Gets one page of a book's transactions, newest first
+     * @param bookId ID of the book
+     * @param pageSize Maximum number of transactions on the page
+     * @param previous The page before, or null for the first page
+     * @return The page
+     */
+    public HistoryPage<Transaction> getTransactionHistoryByBook(String bookId, int pageSize,
+                                                                HistoryPage<Transaction> previous) {
+        return getHistoryPage(QueryPlans.TRANSACTION_HISTORY_BY_BOOK, bookId, pageSize, previous);
+    }
+
+    /**
+     * Gets one page of the transactions processed by a librarian, newest first
+     * @param librarianId ID of the librarian
+     * @param pageSize Maximum number of transactions on the page
+     * @param previous The page before, or null for the first page
+     * @return The page
+     */
+    public HistoryPage<Transaction> getTransactionHistoryByLibrarian(String librarianId, int pageSize,
+                                                                     HistoryPage<Transaction> previous) {
+        return getHistoryPage(QueryPlans.TRANSACTION_HISTORY_BY_LIBRARIAN, librarianId, pageSize, previous);
+    }
+
+    private HistoryPage<Transaction> getHistoryPage(QueryPlan plan, String id, int pageSize,
+                                                    HistoryPage<Transaction> previous) {
+        if (previous != null && !previous.hasMore()) {
+            return HistoryPage.empty();
+        }
+        try {
+            // Read one extra document to know if there is another page
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance().executePage(plan, pageSize + 1,
+                    previous != null ? previous.getLast() : null, id);
+
+            boolean hasMore = documents.size() > pageSize;
+            if (hasMore) {
+                documents = documents.subList(0, pageSize);
+            }
+            List<Transaction> transactions = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                transactions.add(toTransaction(document));
+            }
+            DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            return new HistoryPage<>(transactions, last, hasMore);
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("Error getting transaction history: " + e.getMessage());
+            return HistoryPage.empty();
+        }
+    }
+
     /**
      * Gets transactions by date range
      * @param startDate Start date
@@ -411,18 +641,12 @@ public class TransactionService {
      */
     public List<Transaction> getTransactionsByDateRange(Date startDate, Date endDate) {
         try {
-            Firestore db = FirebaseConfig.getFirestoreInstance();
-            Query query = db.collection(COLLECTION_NAME)
-                    .whereGreaterThanOrEqualTo("borrowDate", startDate)
-                    .whereLessThanOrEqualTo("borrowDate", endDate);
-
-            ApiFuture<QuerySnapshot> future = query.get();
+            List<DocumentSnapshot> documents = QueryPlanner.getInstance()
+                    .execute(QueryPlans.TRANSACTIONS_BY_DATE_RANGE, startDate, endDate);
 
             List<Transaction> transactions = new ArrayList<>();
-            QuerySnapshot querySnapshot = future.get();
-
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                transactions.add(document.toObject(Transaction.class));
+            for (DocumentSnapshot document : documents) {
+                transactions.add(toTransaction(document));
             }
 
             return transactions;
@@ -438,13 +662,13 @@ public class TransactionService {
      */
     public int getTransactionCount() {
         try {
+            // Count on the server instead of reading the transactions
             Firestore db = FirebaseConfig.getFirestoreInstance();
-            ApiFuture<QuerySnapshot> future = db.collection(COLLECTION_NAME).get();
-
-            QuerySnapshot querySnapshot = future.get();
-            return querySnapshot.size();
+            ApiFuture<AggregateQuerySnapshot> future = db.collection(COLLECTION_NAME).count().get();
+            AggregateQuerySnapshot snapshot = FirestoreOps.await(future, "TransactionService.getTransactionCount", COLLECTION_NAME);
+            return (int) snapshot.getCount();
         } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Error getting transaction count: " + e.getMessage());
+            System.err.println("Error counting transactions: " + e.getMessage());
             return 0;
         }
     }
@@ -0,0 +1,291 @@
+package com.athena.library.firebase;
+
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.ErrorHandler;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for updates that don't need to block the user,
+ * such as last-login stamps, overdue status flips and read receipts.
+ *
+ * Updates to the same document are coalesced (later values win per field) and
+ * flushed in WriteBatches of up to 500 operations, either when enough documents
+ * are pending or on a timer. Batches that fail for a transient reason are retried with
+ * exponential backoff. A batch the server rejects, e.g. because one of its documents was
+ * deleted, is split in half until the rejected update is found; only that one is dropped.
+ * Only use this for plain field values; increments queued here are not summed.
+ */
+public class WriteBehindQueue {
+    // Firestore limit on operations per batch
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int DEFAULT_FLUSH_INTERVAL_MS = 2000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000;
+
+    private static WriteBehindQueue instance;
+
+    // Pending updates keyed by "collection/documentId", guarded by this
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService executor;
+    private boolean flushScheduled;
+    private boolean shutdown;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private WriteBehindQueue() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "athena-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int flushIntervalMs = ConfigManager.getInstance()
+                .getInt("firestore.writebehind.flush.interval.ms", DEFAULT_FLUSH_INTERVAL_MS);
+        executor.scheduleWithFixedDelay(this::flushPending,
+                flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        // Swing dashboards exit through System.exit, which skips Application.stop
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "athena-write-behind-drain"));
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return WriteBehindQueue instance
+     */
+    public static synchronized WriteBehindQueue getInstance() {
+        if (instance == null) {
+            instance = new WriteBehindQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a partial update of a document
+     * @param collection Collection name
+     * @param documentId Document ID
+     * @param fields Map of field names to new values
+     * @return true if the update was queued, false if the queue has shut down
+     */
+    public boolean enqueueUpdate(String collection, String documentId, Map<String, Object> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (shutdown) {
+                return false;
+            }
+
+            String key = collection + "/" + documentId;
+            PendingWrite write = pending.get(key);
+            if (write == null) {
+                write = new PendingWrite(collection, documentId);
+                pending.put(key, write);
+            }
+            write.fields.putAll(fields);
+
+            // Flush early once a full batch is waiting
+            if (pending.size() >= MAX_BATCH_SIZE && !flushScheduled) {
+                flushScheduled = true;
+                executor.execute(this::flushPending);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of documents with queued updates
+     * @return Number of pending documents
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Requests an immediate flush of everything queued
+     */
+    public void flush() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+        }
+        executor.execute(this::flushPending);
+    }
+
+    /**
+     * Writes everything queued so far. Runs on the queue's own thread.
+     */
+    private void flushPending() {
+        List<PendingWrite> writes;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            writes = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_SIZE) {
+            List<PendingWrite> chunk = writes.subList(start, Math.min(start + MAX_BATCH_SIZE, writes.size()));
+            commitChunk(new ArrayList<>(chunk));
+        }
+    }
+
+    /**
+     * Commits one batch, scheduling a retry if it fails
+     * @param chunk Writes to commit together (at most MAX_BATCH_SIZE)
+     */
+    private void commitChunk(List<PendingWrite> chunk) {
+        try {
+            Firestore db = FirebaseConfig.getFirestoreInstance();
+            WriteBatch batch = db.batch();
+            for (PendingWrite write : chunk) {
+                batch.update(db.collection(write.collection).document(write.documentId), write.fields);
+            }
+            FirestoreOps.await(batch.commit(), "WriteBehindQueue.commitChunk", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requeue(chunk);
+        } catch (ExecutionException | RuntimeException e) {
+            if (isRejected(e)) {
+                if (chunk.size() == 1) {
+                    PendingWrite write = chunk.get(0);
+                    ErrorHandler.logWarning("Dropping queued update of " + write.collection + "/" + write.documentId
+                            + ": " + e.getMessage(), ErrorHandler.ErrorType.DATABASE);
+                    return;
+                }
+                // Retrying won't help; commit each half so the other updates still go through
+                int middle = chunk.size() / 2;
+                commitChunk(new ArrayList<>(chunk.subList(0, middle)));
+                commitChunk(new ArrayList<>(chunk.subList(middle, chunk.size())));
+                return;
+            }
+
+            int attempts = chunk.get(0).attempts + 1;
+            if (attempts >= MAX_ATTEMPTS) {
+                ErrorHandler.logWarning("Dropping " + chunk.size() + " queued updates after "
+                        + attempts + " failed attempts: " + e.getMessage(), ErrorHandler.ErrorType.DATABASE);
+                return;
+            }
+
+            for (PendingWrite write : chunk) {
+                write.attempts = attempts;
+            }
+
+            long backoffMs = INITIAL_BACKOFF_MS << (attempts - 1);
+            ErrorHandler.logWarning("Batched write of " + chunk.size() + " updates failed, retrying in "
+                    + backoffMs + "ms: " + e.getMessage(), ErrorHandler.ErrorType.DATABASE);
+
+            boolean shuttingDown;
+            synchronized (this) {
+                shuttingDown = shutdown;
+            }
+            if (shuttingDown) {
+                // No more scheduled flushes, so retry once more right away, outside the lock
+                if (attempts < MAX_ATTEMPTS - 1) {
+                    commitChunk(chunk);
+                }
+                return;
+            }
+            executor.schedule(() -> {
+                requeue(chunk);
+                flushPending();
+            }, backoffMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checks whether the server refused a write for a reason a retry won't fix
+     * @param error Commit error
+     * @return true for missing documents, invalid values and denied or failed preconditions
+     */
+    private static boolean isRejected(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalArgumentException) {
+                return true;
+            }
+            if (cause instanceof ApiException) {
+                switch (((ApiException) cause).getStatusCode().getCode()) {
+                    case NOT_FOUND:
+                    case INVALID_ARGUMENT:
+                    case FAILED_PRECONDITION:
+                    case PERMISSION_DENIED:
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts failed writes back in the queue without overwriting newer values for the same fields
+     * @param writes Writes to requeue
+     */
+    private synchronized void requeue(List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            String key = write.collection + "/" + write.documentId;
+            PendingWrite newer = pending.get(key);
+            if (newer == null) {
+                pending.put(key, write);
+            } else {
+                for (Map.Entry<String, Object> field : write.fields.entrySet()) {
+                    newer.fields.putIfAbsent(field.getKey(), field.getValue());
+                }
+                newer.attempts = Math.max(newer.attempts, write.attempts);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting updates and drains everything still queued.
+     * Safe to call more than once.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+
+        try {
+            executor.submit(this::flushPending).get(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.err.println("Error draining write-behind queue: " + e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Coalesced updates for one document
+     */
+    private static class PendingWrite {
+        private final String collection;
+        private final String documentId;
+        private final Map<String, Object> fields = new LinkedHashMap<>();
+        private int attempts;
+
+        PendingWrite(String collection, String documentId) {
+            this.collection = collection;
+            this.documentId = documentId;
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,11 @@
 package com.athena.library.models;
 
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -7,16 +13,22 @@ import java.util.List;
 /**
  * Represents a book in the library system
  */
-public class Book {
+public class Book extends TrackedEntity {
     private String id;
+    @NotBlank(message = "title is required")
     private String title;
-    private List<String> authors;
+    @NotEmpty(message = "at least one author is required")
+    private List<@NotBlank(message = "author names can't be blank") String> authors;
     private String publisher;
+    @Pattern(regexp = "\\d{9}[\\dX]|\\d{13}", message = "ISBN must be 10 or 13 digits without separators")
     private String isbn;
+    @PositiveOrZero(message = "publication year can't be negative")
     private int publicationYear;
     private List<String> genres;
     private String description;
+    @PositiveOrZero(message = "total copies can't be negative")
     private int totalCopies;
+    @PositiveOrZero(message = "available copies can't be negative")
     private int availableCopies;
     private String location; // Shelf number or section in the library
     private Date addedDate;
@@ -67,7 +79,7 @@ public class Book {
 
     public void setTitle(String title) {
         this.title = title;
-        this.lastUpdated = new Date();
+        markChanged("title", title);
     }
 
     public List<String> getAuthors() {
@@ -76,7 +88,7 @@ public class Book {
 
     public void setAuthors(List<String> authors) {
         this.authors = authors;
-        this.lastUpdated = new Date();
+        markChanged("authors", authors);
     }
 
     /**
@@ -99,7 +111,7 @@ public class Book {
             this.authors = new ArrayList<>();
         }
         this.authors.add(author);
-        this.lastUpdated = new Date();
+        markChanged("authors", this.authors);
     }
 
     public String getPublisher() {
@@ -108,7 +120,7 @@ public class Book {
 
     public void setPublisher(String publisher) {
         this.publisher = publisher;
-        this.lastUpdated = new Date();
+        markChanged("publisher", publisher);
     }
 
     public String getIsbn() {
@@ -117,7 +129,7 @@ public class Book {
 
     public void setIsbn(String isbn) {
         this.isbn = isbn;
-        this.lastUpdated = new Date();
+        markChanged("isbn", isbn);
     }
 
     public int getPublicationYear() {
@@ -126,7 +138,7 @@ public class Book {
 
     public void setPublicationYear(int publicationYear) {
         this.publicationYear = publicationYear;
-        this.lastUpdated = new Date();
+        markChanged("publicationYear", publicationYear);
     }
 
     public List<String> getGenres() {
@@ -135,7 +147,7 @@ public class Book {
 
     public void setGenres(List<String> genres) {
         this.genres = genres;
-        this.lastUpdated = new Date();
+        markChanged("genres", genres);
     }
 
     /**
@@ -158,7 +170,7 @@ public class Book {
             this.genres = new ArrayList<>();
         }
         this.genres.add(genre);
-        this.lastUpdated = new Date();
+        markChanged("genres", this.genres);
     }
 
     public String getDescription() {
@@ -167,7 +179,7 @@ public class Book {
 
     public void setDescription(String description) {
         this.description = description;
-        this.lastUpdated = new Date();
+        markChanged("description", description);
     }
 
     public int getTotalCopies() {
@@ -176,7 +188,7 @@ public class Book {
 
     public void setTotalCopies(int totalCopies) {
         this.totalCopies = totalCopies;
-        this.lastUpdated = new Date();
+        markChanged("totalCopies", totalCopies);
     }
 
     public int getAvailableCopies() {
@@ -185,7 +197,7 @@ public class Book {
 
     public void setAvailableCopies(int availableCopies) {
         this.availableCopies = availableCopies;
-        this.lastUpdated = new Date();
+        markChanged("availableCopies", availableCopies);
     }
 
     /**
@@ -203,7 +215,7 @@ public class Book {
     public boolean borrowCopy() {
         if (availableCopies > 0) {
             availableCopies--;
-            this.lastUpdated = new Date();
+            markIncrement("availableCopies", -1, availableCopies);
             return true;
         }
         return false;
@@ -215,7 +227,7 @@ public class Book {
     public void returnCopy() {
         if (availableCopies < totalCopies) {
             availableCopies++;
-            this.lastUpdated = new Date();
+            markIncrement("availableCopies", 1, availableCopies);
         }
     }
 
@@ -225,7 +237,7 @@ public class Book {
 
     public void setLocation(String location) {
         this.location = location;
-        this.lastUpdated = new Date();
+        markChanged("location", location);
     }
 
     public Date getAddedDate() {
@@ -234,8 +246,14 @@ public class Book {
 
     public void setAddedDate(Date addedDate) {
         this.addedDate = addedDate;
+        markChanged("addedDate", addedDate);
     }
 
+    /**
+     * Gets the time of the last write. A null value is replaced by the server time on write.
+     * @return Last update time
+     */
+    @ServerTimestamp
     public Date getLastUpdated() {
         return lastUpdated;
     }
@@ -250,7 +268,7 @@ public class Book {
 
     public void setCoverImageUrl(String coverImageUrl) {
         this.coverImageUrl = coverImageUrl;
-        this.lastUpdated = new Date();
+        markChanged("coverImageUrl", coverImageUrl);
     }
 
     /**
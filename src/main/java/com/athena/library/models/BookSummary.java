@@ -0,0 +1,169 @@
+package com.athena.library.models;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lightweight projection of a book used by catalogue list views.
+ * Omits the description and cover image, which are only needed by the details dialog.
+ */
+public class BookSummary {
+    /**
+     * Fields requested from Firestore when loading summaries
+     */
+    public static final String[] FIELDS = {
+            "title", "authors", "publisher", "isbn", "publicationYear", "genres",
+            "totalCopies", "availableCopies", "location", "lastUpdated"
+    };
+
+    private String id;
+    private String title;
+    private List<String> authors;
+    private String publisher;
+    private String isbn;
+    private int publicationYear;
+    private List<String> genres;
+    private int totalCopies;
+    private int availableCopies;
+    private String location;
+    private Date lastUpdated;
+
+    /**
+     * Default constructor
+     */
+    public BookSummary() {
+        this.authors = new ArrayList<>();
+        this.genres = new ArrayList<>();
+    }
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public void setAuthors(List<String> authors) {
+        this.authors = authors;
+    }
+
+    /**
+     * Gets a formatted string of all authors
+     * @return String containing all authors separated by commas
+     */
+    public String getAuthorsAsString() {
+        if (authors == null || authors.isEmpty()) {
+            return "Unknown";
+        }
+        return String.join(", ", authors);
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public int getPublicationYear() {
+        return publicationYear;
+    }
+
+    public void setPublicationYear(int publicationYear) {
+        this.publicationYear = publicationYear;
+    }
+
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    public void setGenres(List<String> genres) {
+        this.genres = genres;
+    }
+
+    /**
+     * Gets a formatted string of all genres
+     * @return String containing all genres separated by commas
+     */
+    public String getGenresAsString() {
+        if (genres == null || genres.isEmpty()) {
+            return "Uncategorized";
+        }
+        return String.join(", ", genres);
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public void setTotalCopies(int totalCopies) {
+        this.totalCopies = totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public void setAvailableCopies(int availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+
+    /**
+     * Checks if the book is available for borrowing
+     * @return true if there are available copies, false otherwise
+     */
+    public boolean isAvailable() {
+        return availableCopies > 0;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    @Override
+    public String toString() {
+        return "BookSummary{" +
+                "id='" + id + '\'' +
+                ", title='" + title + '\'' +
+                ", authors=" + getAuthorsAsString() +
+                ", available=" + availableCopies + "/" + totalCopies +
+                '}';
+    }
+}
\ No newline at end of file
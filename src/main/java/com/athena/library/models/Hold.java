@@ -0,0 +1,164 @@
+package com.athena.library.models;
+
+import com.google.cloud.firestore.annotation.Exclude;
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+
+import java.util.Date;
+
+/**
+ * Represents a student's place in the queue for a book with no copies available.
+ * Holds are removed once they are collected, cancelled or expire.
+ */
+public class Hold {
+    public enum Status {
+        WAITING, // In the queue
+        READY    // A returned copy is being kept for the student until the expiry date
+    }
+
+    private String id;
+    private String bookId;
+    private String bookTitle;
+    private String studentId;
+    private String studentName;
+    private Status status;
+    private Date placedDate;
+    private Date readyDate;
+    private Date expiryDate;
+    private Date lastUpdated;
+
+    /**
+     * Default constructor
+     */
+    public Hold() {
+    }
+
+    /**
+     * Creates the ID of a student's hold on a book; a student has at most one hold per book
+     * @param studentId Student ID
+     * @param bookId Book ID
+     * @return Hold document ID
+     */
+    public static String idFor(String studentId, String bookId) {
+        return bookId + "_" + studentId;
+    }
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(String bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public void setStudentName(String studentName) {
+        this.studentName = studentName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets when the hold was placed, as stamped by the server. Queues are served in this order.
+     * @return Time the hold was placed
+     */
+    public Date getPlacedDate() {
+        return placedDate;
+    }
+
+    public void setPlacedDate(Date placedDate) {
+        this.placedDate = placedDate;
+    }
+
+    public Date getReadyDate() {
+        return readyDate;
+    }
+
+    public void setReadyDate(Date readyDate) {
+        this.readyDate = readyDate;
+    }
+
+    public Date getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(Date expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    /**
+     * Gets the time of the last write. A null value is replaced by the server time on write.
+     * @return Last update time
+     */
+    @ServerTimestamp
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * Checks if a copy is being kept for the student
+     * @return true if the student can collect the book
+     */
+    @Exclude
+    public boolean isReady() {
+        return status == Status.READY && !isExpired();
+    }
+
+    /**
+     * Checks if a kept copy was not collected in time
+     * @return true if the hold is ready and past its expiry date
+     */
+    @Exclude
+    public boolean isExpired() {
+        return status == Status.READY && expiryDate != null && expiryDate.before(new Date());
+    }
+
+    @Override
+    public String toString() {
+        return "Hold{" +
+                "id='" + id + '\'' +
+                ", bookId='" + bookId + '\'' +
+                ", studentId='" + studentId + '\'' +
+                ", status=" + status +
+                ", placedDate=" + placedDate +
+                '}';
+    }
+}
\ No newline at end of file
@@ -49,6 +49,7 @@ public class Librarian extends User {
 
     public void setStaffId(String staffId) {
         this.staffId = staffId;
+        markChanged("staffId", staffId);
     }
 
     public String getDepartment() {
@@ -57,6 +58,7 @@ public class Librarian extends User {
 
     public void setDepartment(String department) {
         this.department = department;
+        markChanged("department", department);
     }
 
     public String getRole() {
@@ -65,6 +67,7 @@ public class Librarian extends User {
 
     public void setRole(String role) {
         this.role = role;
+        markChanged("role", role);
     }
 
     public boolean isAdmin() {
@@ -73,6 +76,7 @@ public class Librarian extends User {
 
     public void setAdmin(boolean admin) {
         isAdmin = admin;
+        markChanged("admin", admin);
     }
 
     /**
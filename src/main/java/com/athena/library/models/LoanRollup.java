@@ -0,0 +1,186 @@
+package com.athena.library.models;
+
+import java.util.Date;
+
+/**
+ * Loan activity of one book, student or librarian, either for one day or all time.
+ * Kept up to date with increments on every borrow, renewal, return and loss, so
+ * reports read one document per entity and day instead of the transactions.
+ */
+public class LoanRollup {
+    public enum Scope {
+        BOOK,
+        STUDENT,
+        LIBRARIAN // Loans processed by the librarian
+    }
+
+    /** Period of a rollup covering one day */
+    public static final String PERIOD_DAY = "day";
+    /** Period of a rollup covering all time */
+    public static final String PERIOD_TOTAL = "total";
+    /** Period of a rollup summed over a date range by a report */
+    public static final String PERIOD_RANGE = "range";
+
+    private Scope scope;
+    private String entityId;
+    private String period;
+    private Date day; // Start of the day, for daily rollups
+    private long borrows;
+    private long renewals;
+    private long returns;
+    private long lost;
+    private long overdue;        // Loans that became overdue
+    private long overdueReturns; // Loans returned after their due date
+    private double fines;
+    private long activeLoans;    // Loans out; for a day or range, the change over it
+    private Date lastUpdated;
+
+    /**
+     * Default constructor
+     */
+    public LoanRollup() {
+    }
+
+    /**
+     * Creates an empty rollup
+     */
+    public LoanRollup(Scope scope, String entityId, String period) {
+        this.scope = scope;
+        this.entityId = entityId;
+        this.period = period;
+    }
+
+    // Getters and Setters
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public void setScope(Scope scope) {
+        this.scope = scope;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public Date getDay() {
+        return day;
+    }
+
+    public void setDay(Date day) {
+        this.day = day;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public void setBorrows(long borrows) {
+        this.borrows = borrows;
+    }
+
+    public long getRenewals() {
+        return renewals;
+    }
+
+    public void setRenewals(long renewals) {
+        this.renewals = renewals;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    public void setReturns(long returns) {
+        this.returns = returns;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    public void setLost(long lost) {
+        this.lost = lost;
+    }
+
+    public long getOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(long overdue) {
+        this.overdue = overdue;
+    }
+
+    public long getOverdueReturns() {
+        return overdueReturns;
+    }
+
+    public void setOverdueReturns(long overdueReturns) {
+        this.overdueReturns = overdueReturns;
+    }
+
+    public double getFines() {
+        return fines;
+    }
+
+    public void setFines(double fines) {
+        this.fines = fines;
+    }
+
+    public long getActiveLoans() {
+        return activeLoans;
+    }
+
+    public void setActiveLoans(long activeLoans) {
+        this.activeLoans = activeLoans;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * Adds another rollup's activity to this one
+     * @param other Rollup of the same entity for another period
+     */
+    public void add(LoanRollup other) {
+        borrows += other.borrows;
+        renewals += other.renewals;
+        returns += other.returns;
+        lost += other.lost;
+        overdue += other.overdue;
+        overdueReturns += other.overdueReturns;
+        fines += other.fines;
+        activeLoans += other.activeLoans;
+    }
+
+    @Override
+    public String toString() {
+        return "LoanRollup{" +
+                "scope=" + scope +
+                ", entityId='" + entityId + '\'' +
+                ", period='" + period + '\'' +
+                ", day=" + day +
+                ", borrows=" + borrows +
+                ", returns=" + returns +
+                ", activeLoans=" + activeLoans +
+                '}';
+    }
+}
\ No newline at end of file
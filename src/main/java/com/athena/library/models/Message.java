@@ -1,5 +1,7 @@
 package com.athena.library.models;
 
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+
 import java.util.Date;
 
 /**
@@ -18,6 +20,7 @@ public class Message {
     private Date sentDate;
     private boolean read;
     private boolean important;
+    private Date lastUpdated;
 
     /**
      * Default constructor
@@ -146,6 +149,19 @@ public class Message {
         this.important = important;
     }
 
+    /**
+     * Gets the time of the last write. A null value is replaced by the server time on write.
+     * @return Last update time
+     */
+    @ServerTimestamp
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
     /**
      * Marks the message as read
      */
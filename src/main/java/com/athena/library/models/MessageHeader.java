@@ -0,0 +1,149 @@
+package com.athena.library.models;
+
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
+
+import java.util.Date;
+
+/**
+ * Lightweight projection of a message used by inbox lists.
+ * Omits the message content, which is loaded when the message is opened.
+ * Inbox headers served from the inbox mirror are mapped from full messages,
+ * so fields outside {@link #FIELDS} are ignored.
+ */
+@IgnoreExtraProperties
+public class MessageHeader {
+    /**
+     * Fields requested from Firestore when loading headers
+     */
+    public static final String[] FIELDS = {
+            "senderId", "senderName", "senderType", "receiverId", "receiverName",
+            "receiverType", "subject", "sentDate", "read", "important"
+    };
+
+    private String id;
+    private String senderId;
+    private String senderName;
+    private String senderType; // "STUDENT" or "LIBRARIAN"
+    private String receiverId;
+    private String receiverName;
+    private String receiverType; // "STUDENT" or "LIBRARIAN"
+    private String subject;
+    private Date sentDate;
+    private boolean read;
+    private boolean important;
+
+    /**
+     * Default constructor
+     */
+    public MessageHeader() {
+    }
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(String senderId) {
+        this.senderId = senderId;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public void setSenderName(String senderName) {
+        this.senderName = senderName;
+    }
+
+    public String getSenderType() {
+        return senderType;
+    }
+
+    public void setSenderType(String senderType) {
+        this.senderType = senderType;
+    }
+
+    public String getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(String receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public String getReceiverName() {
+        return receiverName;
+    }
+
+    public void setReceiverName(String receiverName) {
+        this.receiverName = receiverName;
+    }
+
+    public String getReceiverType() {
+        return receiverType;
+    }
+
+    public void setReceiverType(String receiverType) {
+        this.receiverType = receiverType;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public Date getSentDate() {
+        return sentDate;
+    }
+
+    public void setSentDate(Date sentDate) {
+        this.sentDate = sentDate;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public void setRead(boolean read) {
+        this.read = read;
+    }
+
+    public boolean isImportant() {
+        return important;
+    }
+
+    public void setImportant(boolean important) {
+        this.important = important;
+    }
+
+    /**
+     * Checks if the message is from a librarian
+     * @return true if the sender is a librarian, false otherwise
+     */
+    public boolean isFromLibrarian() {
+        return "LIBRARIAN".equalsIgnoreCase(senderType);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageHeader{" +
+                "id='" + id + '\'' +
+                ", from='" + senderName + " (" + senderType + ")" + '\'' +
+                ", subject='" + subject + '\'' +
+                ", sentDate=" + sentDate +
+                ", read=" + read +
+                '}';
+    }
+}
\ No newline at end of file
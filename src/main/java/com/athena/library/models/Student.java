@@ -64,6 +64,7 @@ public class Student extends User {
 
     public void setStudentId(String studentId) {
         this.studentId = studentId;
+        markChanged("studentId", studentId);
     }
 
     public String getDepartment() {
@@ -72,6 +73,7 @@ public class Student extends User {
 
     public void setDepartment(String department) {
         this.department = department;
+        markChanged("department", department);
     }
 
     public String getProgram() {
@@ -80,6 +82,7 @@ public class Student extends User {
 
     public void setProgram(String program) {
         this.program = program;
+        markChanged("program", program);
     }
 
     public int getYear() {
@@ -88,6 +91,7 @@ public class Student extends User {
 
     public void setYear(int year) {
         this.year = year;
+        markChanged("year", year);
     }
 
     public Date getEnrollmentDate() {
@@ -96,6 +100,7 @@ public class Student extends User {
 
     public void setEnrollmentDate(Date enrollmentDate) {
         this.enrollmentDate = enrollmentDate;
+        markChanged("enrollmentDate", enrollmentDate);
     }
 
     public List<String> getBorrowedBookIds() {
@@ -104,6 +109,7 @@ public class Student extends User {
 
     public void setBorrowedBookIds(List<String> borrowedBookIds) {
         this.borrowedBookIds = borrowedBookIds;
+        markChanged("borrowedBookIds", borrowedBookIds);
     }
 
     /**
@@ -115,6 +121,7 @@ public class Student extends User {
             this.borrowedBookIds = new ArrayList<>();
         }
         this.borrowedBookIds.add(bookId);
+        markArrayAdd("borrowedBookIds", bookId, this.borrowedBookIds);
     }
 
     /**
@@ -126,7 +133,11 @@ public class Student extends User {
         if (this.borrowedBookIds == null) {
             return false;
         }
-        return this.borrowedBookIds.remove(bookId);
+        boolean removed = this.borrowedBookIds.remove(bookId);
+        if (removed) {
+            markArrayRemove("borrowedBookIds", bookId, this.borrowedBookIds);
+        }
+        return removed;
     }
 
     public double getFineBalance() {
@@ -135,6 +146,7 @@ public class Student extends User {
 
     public void setFineBalance(double fineBalance) {
         this.fineBalance = fineBalance;
+        markChanged("fineBalance", fineBalance);
     }
 
     /**
@@ -143,6 +155,7 @@ public class Student extends User {
      */
     public void addFine(double amount) {
         this.fineBalance += amount;
+        markIncrement("fineBalance", amount, this.fineBalance);
     }
 
     /**
@@ -153,6 +166,7 @@ public class Student extends User {
     public boolean payFine(double amount) {
         if (amount <= this.fineBalance) {
             this.fineBalance -= amount;
+            markIncrement("fineBalance", -amount, this.fineBalance);
             return true;
         }
         return false;
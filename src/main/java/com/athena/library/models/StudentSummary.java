@@ -0,0 +1,142 @@
+package com.athena.library.models;
+
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight projection of a student used by the student management table.
+ * The full {@link Student} is loaded on demand when a record is edited or inspected.
+ */
+@IgnoreExtraProperties
+public class StudentSummary {
+    /**
+     * Fields requested from Firestore when loading summaries
+     */
+    public static final String[] FIELDS = {
+            "studentId", "firstName", "lastName", "email", "department",
+            "program", "year", "borrowedBookIds"
+    };
+
+    private String id;
+    private String studentId;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String department;
+    private String program;
+    private int year;
+    private List<String> borrowedBookIds;
+
+    /**
+     * Default constructor
+     */
+    public StudentSummary() {
+        this.borrowedBookIds = new ArrayList<>();
+    }
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getFullName() {
+        return firstName + " " + lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(String department) {
+        this.department = department;
+    }
+
+    public String getProgram() {
+        return program;
+    }
+
+    public void setProgram(String program) {
+        this.program = program;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public List<String> getBorrowedBookIds() {
+        return borrowedBookIds;
+    }
+
+    public void setBorrowedBookIds(List<String> borrowedBookIds) {
+        this.borrowedBookIds = borrowedBookIds;
+    }
+
+    /**
+     * Checks if the student has any borrowed books
+     * @return true if the student has borrowed books, false otherwise
+     */
+    public boolean hasBorrowedBooks() {
+        return this.borrowedBookIds != null && !this.borrowedBookIds.isEmpty();
+    }
+
+    /**
+     * Gets the number of books currently borrowed by the student
+     * @return Number of borrowed books
+     */
+    public int getBorrowedBooksCount() {
+        return this.borrowedBookIds == null ? 0 : this.borrowedBookIds.size();
+    }
+
+    @Override
+    public String toString() {
+        return "StudentSummary{" +
+                "id='" + id + '\'' +
+                ", studentId='" + studentId + '\'' +
+                ", name='" + getFullName() + '\'' +
+                ", department='" + department + '\'' +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.athena.library.models;
+
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.annotation.Exclude;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for models that record which fields changed since they were loaded,
+ * so services can write only those fields instead of replacing the whole document.
+ *
+ * Counter changes are kept as deltas and list changes as added/removed elements, which
+ * become {@link FieldValue#increment}, {@link FieldValue#arrayUnion} and
+ * {@link FieldValue#arrayRemove} transforms. Two clients changing different fields, or
+ * incrementing the same counter, no longer overwrite each other.
+ */
+public abstract class TrackedEntity {
+    // Fields that were assigned outright, with their new values
+    private final Map<String, Object> changedFields = new LinkedHashMap<>();
+    // Pending numeric deltas for counter fields
+    private final Map<String, Double> increments = new HashMap<>();
+    // Pending element additions/removals for list fields
+    private final Map<String, Set<Object>> arrayAdds = new HashMap<>();
+    private final Map<String, Set<Object>> arrayRemoves = new HashMap<>();
+
+    /**
+     * Records that a field was assigned a new value
+     * @param field Firestore field name
+     * @param value New value
+     */
+    protected void markChanged(String field, Object value) {
+        increments.remove(field);
+        arrayAdds.remove(field);
+        arrayRemoves.remove(field);
+        changedFields.put(field, value);
+    }
+
+    /**
+     * Records a relative change to a numeric field
+     * @param field Firestore field name
+     * @param delta Amount added to the field
+     * @param newValue Value of the field after the change
+     */
+    protected void markIncrement(String field, double delta, Object newValue) {
+        if (changedFields.containsKey(field)) {
+            // Already being written outright, so just write the latest value
+            changedFields.put(field, newValue);
+            return;
+        }
+        increments.merge(field, delta, Double::sum);
+    }
+
+    /**
+     * Records that an element was added to a list field
+     * @param field Firestore field name
+     * @param element Element added
+     * @param newValue List after the change
+     */
+    protected void markArrayAdd(String field, Object element, List<?> newValue) {
+        if (changedFields.containsKey(field)) {
+            changedFields.put(field, new ArrayList<>(newValue));
+            return;
+        }
+        Set<Object> removes = arrayRemoves.get(field);
+        if (removes != null && removes.remove(element)) {
+            return;
+        }
+        arrayAdds.computeIfAbsent(field, k -> new LinkedHashSet<>()).add(element);
+        resolveArrayConflict(field, newValue);
+    }
+
+    /**
+     * Records that an element was removed from a list field
+     * @param field Firestore field name
+     * @param element Element removed
+     * @param newValue List after the change
+     */
+    protected void markArrayRemove(String field, Object element, List<?> newValue) {
+        if (changedFields.containsKey(field)) {
+            changedFields.put(field, new ArrayList<>(newValue));
+            return;
+        }
+        Set<Object> adds = arrayAdds.get(field);
+        if (adds != null && adds.remove(element)) {
+            return;
+        }
+        arrayRemoves.computeIfAbsent(field, k -> new LinkedHashSet<>()).add(element);
+        resolveArrayConflict(field, newValue);
+    }
+
+    /**
+     * Firestore cannot apply arrayUnion and arrayRemove to the same field in one update,
+     * so fall back to writing the whole list when both are pending
+     */
+    private void resolveArrayConflict(String field, List<?> newValue) {
+        Set<Object> adds = arrayAdds.get(field);
+        Set<Object> removes = arrayRemoves.get(field);
+        if (adds != null && !adds.isEmpty() && removes != null && !removes.isEmpty()) {
+            markChanged(field, new ArrayList<>(newValue));
+        }
+    }
+
+    /**
+     * Checks if any field changed since the entity was loaded or last saved
+     * @return true if there are unsaved changes
+     */
+    @Exclude
+    public boolean hasChanges() {
+        return !changedFields.isEmpty() || !increments.isEmpty()
+                || !arrayAdds.isEmpty() || !arrayRemoves.isEmpty();
+    }
+
+    /**
+     * Gets the names of all fields with unsaved changes
+     * @return Set of changed field names
+     */
+    @Exclude
+    public Set<String> getChangedFieldNames() {
+        Set<String> names = new LinkedHashSet<>(changedFields.keySet());
+        names.addAll(increments.keySet());
+        names.addAll(arrayAdds.keySet());
+        names.addAll(arrayRemoves.keySet());
+        return names;
+    }
+
+    /**
+     * Builds the Firestore update map for all unsaved changes
+     * @return Map of field names to values or server transforms
+     */
+    @Exclude
+    public Map<String, Object> getPendingUpdates() {
+        Map<String, Object> updates = new LinkedHashMap<>(changedFields);
+        for (Map.Entry<String, Double> entry : increments.entrySet()) {
+            double delta = entry.getValue();
+            if (delta == Math.rint(delta)) {
+                updates.put(entry.getKey(), FieldValue.increment((long) delta));
+            } else {
+                updates.put(entry.getKey(), FieldValue.increment(delta));
+            }
+        }
+        for (Map.Entry<String, Set<Object>> entry : arrayAdds.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                updates.put(entry.getKey(), FieldValue.arrayUnion(entry.getValue().toArray()));
+            }
+        }
+        for (Map.Entry<String, Set<Object>> entry : arrayRemoves.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                updates.put(entry.getKey(), FieldValue.arrayRemove(entry.getValue().toArray()));
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Forgets all recorded changes. Called after loading from Firestore (the mapper goes
+     * through the setters) and after a successful save.
+     */
+    public void clearChanges() {
+        changedFields.clear();
+        increments.clear();
+        arrayAdds.clear();
+        arrayRemoves.clear();
+    }
+}
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.athena.library.models;
 
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+
 import java.util.Date;
 
 /**
  * Represents a book borrowing/returning transaction in the library system
  */
-public class Transaction {
+public class Transaction extends TrackedEntity {
     public enum Status {
         BORROWED,
         RETURNED,
@@ -24,6 +26,7 @@ public class Transaction {
     private String librarianId; // ID of the librarian who processed the transaction
     private double fine;
     private String notes;
+    private Date lastUpdated;
 
     /**
      * Default constructor
@@ -66,6 +69,7 @@ public class Transaction {
 
     public void setStudentId(String studentId) {
         this.studentId = studentId;
+        markChanged("studentId", studentId);
     }
 
     public String getBookId() {
@@ -74,6 +78,7 @@ public class Transaction {
 
     public void setBookId(String bookId) {
         this.bookId = bookId;
+        markChanged("bookId", bookId);
     }
 
     public Date getBorrowDate() {
@@ -82,6 +87,7 @@ public class Transaction {
 
     public void setBorrowDate(Date borrowDate) {
         this.borrowDate = borrowDate;
+        markChanged("borrowDate", borrowDate);
     }
 
     public Date getDueDate() {
@@ -90,6 +96,7 @@ public class Transaction {
 
     public void setDueDate(Date dueDate) {
         this.dueDate = dueDate;
+        markChanged("dueDate", dueDate);
     }
 
     public Date getReturnDate() {
@@ -98,6 +105,7 @@ public class Transaction {
 
     public void setReturnDate(Date returnDate) {
         this.returnDate = returnDate;
+        markChanged("returnDate", returnDate);
     }
 
     public Status getStatus() {
@@ -106,6 +114,7 @@ public class Transaction {
 
     public void setStatus(Status status) {
         this.status = status;
+        markChanged("status", status == null ? null : status.name());
     }
 
     public String getLibrarianId() {
@@ -114,6 +123,7 @@ public class Transaction {
 
     public void setLibrarianId(String librarianId) {
         this.librarianId = librarianId;
+        markChanged("librarianId", librarianId);
     }
 
     public double getFine() {
@@ -122,6 +132,7 @@ public class Transaction {
 
     public void setFine(double fine) {
         this.fine = fine;
+        markChanged("fine", fine);
     }
 
     public String getNotes() {
@@ -130,6 +141,20 @@ public class Transaction {
 
     public void setNotes(String notes) {
         this.notes = notes;
+        markChanged("notes", notes);
+    }
+
+    /**
+     * Gets the time of the last write. A null value is replaced by the server time on write.
+     * @return Last update time
+     */
+    @ServerTimestamp
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
     }
 
     /**
@@ -138,8 +163,8 @@ public class Transaction {
      */
     public boolean returnBook() {
         if (status != Status.RETURNED && status != Status.LOST) {
-            this.returnDate = new Date();
-            this.status = Status.RETURNED;
+            setReturnDate(new Date());
+            setStatus(Status.RETURNED);
             return true;
         }
         return false;
@@ -155,8 +180,8 @@ public class Transaction {
             // Extend due date by the specified number of days
             Date newDueDate = new Date();
             newDueDate.setTime(dueDate.getTime() + days * 24 * 60 * 60 * 1000);
-            this.dueDate = newDueDate;
-            this.status = Status.RENEWED;
+            setDueDate(newDueDate);
+            setStatus(Status.RENEWED);
             return true;
         }
         return false;
@@ -175,9 +200,9 @@ public class Transaction {
                 long diff = now.getTime() - dueDate.getTime();
                 long daysOverdue = diff / (24 * 60 * 60 * 1000);
 
-                this.fine = daysOverdue * finePerDay;
+                setFine(daysOverdue * finePerDay);
                 if (status != Status.OVERDUE) {
-                    this.status = Status.OVERDUE;
+                    setStatus(Status.OVERDUE);
                 }
             }
         }
@@ -213,7 +238,7 @@ public class Transaction {
      * Marks the book as lost
      */
     public void markAsLost() {
-        this.status = Status.LOST;
+        setStatus(Status.LOST);
         // Usually a fixed fee for lost books would be applied here
     }
 
@@ -228,4 +253,5 @@ public class Transaction {
                 ", status=" + status +
                 ", fine=" + fine +
                 '}';
-    }
\ No newline at end of file
+    }
+}
\ No newline at end of file
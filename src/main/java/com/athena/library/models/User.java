@@ -1,11 +1,13 @@
 package com.athena.library.models;
 
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+
 import java.util.Date;
 
 /**
  * Base class for all users in the system
  */
-public abstract class User {
+public abstract class User extends TrackedEntity {
     private String id;
     private String firstName;
     private String lastName;
@@ -14,6 +16,7 @@ public abstract class User {
     private String address;
     private Date createdAt;
     private Date lastLogin;
+    private Date lastUpdated;
 
     /**
      * Default constructor
@@ -52,6 +55,7 @@ public abstract class User {
 
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        markChanged("firstName", firstName);
     }
 
     public String getLastName() {
@@ -60,6 +64,7 @@ public abstract class User {
 
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        markChanged("lastName", lastName);
     }
 
     public String getFullName() {
@@ -72,6 +77,7 @@ public abstract class User {
 
     public void setEmail(String email) {
         this.email = email;
+        markChanged("email", email);
     }
 
     public String getPhoneNumber() {
@@ -80,6 +86,7 @@ public abstract class User {
 
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
+        markChanged("phoneNumber", phoneNumber);
     }
 
     public String getAddress() {
@@ -88,6 +95,7 @@ public abstract class User {
 
     public void setAddress(String address) {
         this.address = address;
+        markChanged("address", address);
     }
 
     public Date getCreatedAt() {
@@ -96,6 +104,7 @@ public abstract class User {
 
     public void setCreatedAt(Date createdAt) {
         this.createdAt = createdAt;
+        markChanged("createdAt", createdAt);
     }
 
     public Date getLastLogin() {
@@ -104,6 +113,20 @@ public abstract class User {
 
     public void setLastLogin(Date lastLogin) {
         this.lastLogin = lastLogin;
+        markChanged("lastLogin", lastLogin);
+    }
+
+    /**
+     * Gets the time of the last write. A null value is replaced by the server time on write.
+     * @return Last update time
+     */
+    @ServerTimestamp
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
     }
 
     /**
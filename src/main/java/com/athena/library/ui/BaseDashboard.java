@@ -193,7 +193,7 @@ public abstract class BaseDashboard extends JFrame {
      * @param message Status message to display
      * @param isError Whether this is an error message
      */
-    protected void updateStatus(String message, boolean isError) {
+    public void updateStatus(String message, boolean isError) {
         statusLabel.setText(message);
         statusLabel.setForeground(isError ? UIUtils.ERROR_COLOR : UIUtils.TEXT_COLOR);
     }
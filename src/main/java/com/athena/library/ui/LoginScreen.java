@@ -4,6 +4,7 @@ import com.athena.library.auth.AuthService;
 import com.athena.library.models.Librarian;
 import com.athena.library.models.Student;
 import com.athena.library.utils.ErrorHandler;
+import com.athena.library.utils.JfrEvents;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
@@ -227,9 +228,12 @@ public class LoginScreenFX {
         boolean isStudentLogin = studentRadioButton.isSelected();
 
         // Create authentication task
+        JfrEvents.UiLoad loginEvent = JfrEvents.UiLoad.start(
+                isStudentLogin ? "LoginScreen.studentLogin" : "LoginScreen.librarianLogin");
         Task<Object> authTask = new Task<Object>() {
             @Override
             protected Object call() throws Exception {
+                loginEvent.markBackgroundThread();
                 if (isStudentLogin) {
                     return authService.authenticateStudent(userId, password);
                 } else {
@@ -241,6 +245,7 @@ public class LoginScreenFX {
         // Handle task completion
         authTask.setOnSucceeded(event -> {
             Object result = authTask.getValue();
+            loginEvent.finish(result != null ? 1 : 0, result != null);
 
             if (result == null) {
                 // Authentication failed
@@ -266,6 +271,7 @@ public class LoginScreenFX {
         });
 
         authTask.setOnFailed(event -> {
+            loginEvent.finish(0, false);
             // Authentication error
             Platform.runLater(() -> {
                 Throwable exception = authTask.getException();
@@ -6,6 +6,9 @@ import com.athena.library.firebase.StudentService;
 import com.athena.library.firebase.TransactionService;
 import com.athena.library.models.Librarian;
 import com.athena.library.ui.BaseDashboard;
+import com.athena.library.utils.EdtMonitor;
+import com.athena.library.utils.JfrEvents;
+import com.athena.library.utils.MetricsHttpServer;
 import com.athena.library.utils.UIUtils;
 
 import javax.swing.*;
@@ -30,6 +33,7 @@ public class LibrarianDashboard extends BaseDashboard {
     private TransactionManagementPanel transactionManagementPanel;
     private LibrarianInboxPanel inboxPanel;
     private ReportsPanel reportsPanel;
+    private PerformancePanel performancePanel; // Admins only
 
     // Navigation buttons
     private JButton profileButton;
@@ -38,6 +42,7 @@ public class LibrarianDashboard extends BaseDashboard {
     private JButton transactionManagementButton;
     private JButton inboxButton;
     private JButton reportsButton;
+    private JButton performanceButton;
 
     /**
      * Creates the librarian dashboard
@@ -63,6 +68,10 @@ public class LibrarianDashboard extends BaseDashboard {
 
         // Check for unread messages
         checkUnreadMessages();
+
+        // UI timings and the metrics endpoint are opt-in, and never run on student machines
+        EdtMonitor.enableMetrics();
+        MetricsHttpServer.getInstance().start();
     }
 
     /**
@@ -77,6 +86,9 @@ public class LibrarianDashboard extends BaseDashboard {
                 transactionService, studentService, bookService);
         inboxPanel = new LibrarianInboxPanel(this, librarian, messageService, studentService);
         reportsPanel = new ReportsPanel(this, librarian, studentService, bookService, transactionService);
+        if (librarian.hasAdminPrivileges()) {
+            performancePanel = new PerformancePanel(this);
+        }
     }
 
     @Override
@@ -178,6 +190,18 @@ public class LibrarianDashboard extends BaseDashboard {
             }
         });
 
+        if (librarian.hasAdminPrivileges()) {
+            performanceButton = createSidebarButton("Performance", null, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    showPanel(performancePanel);
+                    performancePanel.refreshData(); // Starts live sampling
+                    updateButtonSelection(performanceButton);
+                    updateStatus("Viewing performance metrics", false);
+                }
+            });
+        }
+
         // Add buttons to sidebar
         sidebarPanel.add(profileButton);
         sidebarPanel.add(studentManagementButton);
@@ -185,6 +209,9 @@ public class LibrarianDashboard extends BaseDashboard {
         sidebarPanel.add(transactionManagementButton);
         sidebarPanel.add(inboxButton);
         sidebarPanel.add(reportsButton);
+        if (performanceButton != null) {
+            sidebarPanel.add(performanceButton);
+        }
 
         // Add glue to push everything to the top
         sidebarPanel.add(Box.createVerticalGlue());
@@ -278,6 +305,10 @@ public class LibrarianDashboard extends BaseDashboard {
         inboxButton.setForeground(UIUtils.TEXT_COLOR);
         reportsButton.setBackground(UIUtils.BACKGROUND_COLOR);
         reportsButton.setForeground(UIUtils.TEXT_COLOR);
+        if (performanceButton != null) {
+            performanceButton.setBackground(UIUtils.BACKGROUND_COLOR);
+            performanceButton.setForeground(UIUtils.TEXT_COLOR);
+        }
 
         // Highlight selected button
         selectedButton.setBackground(UIUtils.SECONDARY_COLOR);
@@ -288,9 +319,11 @@ public class LibrarianDashboard extends BaseDashboard {
      * Checks for unread messages and updates the inbox button
      */
     private void checkUnreadMessages() {
+        JfrEvents.UiLoad loadEvent = JfrEvents.UiLoad.start("LibrarianDashboard.checkUnreadMessages");
         SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
             @Override
             protected Integer doInBackground() throws Exception {
+                loadEvent.markBackgroundThread();
                 return messageService.getUnreadMessageCount(librarian.getId());
             }
 
@@ -305,7 +338,9 @@ public class LibrarianDashboard extends BaseDashboard {
                         inboxButton.setText("Inbox");
                         inboxButton.setForeground(UIUtils.TEXT_COLOR);
                     }
+                    loadEvent.finish(unreadCount, true);
                 } catch (Exception e) {
+                    loadEvent.finish(0, false);
                     System.err.println("Error checking unread messages: " + e.getMessage());
                 }
             }
@@ -1,7 +1,7 @@
 package com.athena.library.ui.librarian;
 
 import com.athena.library.auth.AuthService;
-import com.athena.library.firebase.FirebaseConfig;
+import com.athena.library.firebase.LibrarianService;
 import com.athena.library.models.Librarian;
 import com.athena.library.utils.UIUtils;
 
@@ -21,6 +21,7 @@ public class LibrarianProfilePanel extends JPanel {
     private final LibrarianDashboard dashboard;
     private Librarian librarian;
     private final AuthService authService;
+    private final LibrarianService librarianService;
 
     // Form fields
     private JTextField staffIdField;
@@ -53,6 +54,7 @@ public class LibrarianProfilePanel extends JPanel {
         this.dashboard = dashboard;
         this.librarian = librarian;
         this.authService = AuthService.getInstance();
+        this.librarianService = new LibrarianService();
 
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -516,17 +518,7 @@ public class LibrarianProfilePanel extends JPanel {
         SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
             @Override
             protected Boolean doInBackground() throws Exception {
-                try {
-                    // Get Firestore instance
-                    return FirebaseConfig.getFirestoreInstance()
-                            .collection("librarians")
-                            .document(librarian.getId())
-                            .set(updatedLibrarian)
-                            .get() != null;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    return false;
-                }
+                return librarianService.updateLibrarian(updatedLibrarian);
             }
 
             @Override
@@ -0,0 +1,452 @@
+package com.athena.library.ui.librarian;
+
+import com.athena.library.firebase.QuotaLedger;
+import com.athena.library.utils.JfrRecorder;
+import com.athena.library.utils.LatencyHistogram;
+import com.athena.library.utils.MetricsRegistry;
+import com.athena.library.utils.UIUtils;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin panel that charts the {@link MetricsRegistry} live: Firestore reads, writes and
+ * call latency, Swing event dispatch times and heap use, sampled once a second, plus a
+ * table of every metric and a ranking of the operations costing the most Firestore quota.
+ * Sampling stops while the panel isn't showing.
+ */
+public class PerformancePanel extends JPanel {
+    private static final int SAMPLE_INTERVAL_MS = 1000;
+    private static final int HISTORY_SIZE = 120;
+    private static final int QUOTA_REFRESH_SAMPLES = 10;
+    private static final int QUOTA_TABLE_ROWS = 25;
+
+    private static final Color READ_COLOR = new Color(41, 128, 185);
+    private static final Color WRITE_COLOR = UIUtils.SECONDARY_COLOR;
+    private static final Color P50_COLOR = UIUtils.SUCCESS_COLOR;
+    private static final Color P95_COLOR = UIUtils.WARNING_COLOR;
+    private static final Color P99_COLOR = UIUtils.ERROR_COLOR;
+
+    private final LibrarianDashboard dashboard;
+    private final MetricsRegistry metrics;
+    private final Timer sampleTimer;
+
+    // UI components
+    private JLabel summaryLabel;
+    private JButton recordButton;
+    private LineChart quotaChart;
+    private LineChart latencyChart;
+    private LineChart edtChart;
+    private LineChart heapChart;
+    private DefaultTableModel tableModel;
+    private DefaultTableModel quotaTableModel;
+    private JComboBox<String> quotaPeriodComboBox;
+    private int samplesSinceQuotaRefresh;
+
+    // Totals at the previous sample, to turn counters into rates
+    private long lastReads = -1;
+    private long lastWrites = -1;
+    private LatencyHistogram.Snapshot lastCallSnapshot;
+    private LatencyHistogram.Snapshot lastEdtSnapshot;
+
+    /**
+     * Creates a new performance panel
+     * @param dashboard The parent dashboard
+     */
+    public PerformancePanel(LibrarianDashboard dashboard) {
+        this.dashboard = dashboard;
+        this.metrics = MetricsRegistry.getInstance();
+        this.sampleTimer = new Timer(SAMPLE_INTERVAL_MS, e -> sample());
+
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        initializeUI();
+    }
+
+    /**
+     * Initializes the UI components
+     */
+    private void initializeUI() {
+        summaryLabel = new JLabel(" ");
+        summaryLabel.setFont(UIUtils.NORMAL_FONT);
+
+        // One-click flight recording for profiling a problem as it happens
+        recordButton = new JButton(JfrRecorder.getInstance().isRecording()
+                ? "Stop and Save Recording" : "Start Recording");
+        recordButton.addActionListener(e -> toggleRecording());
+
+        JPanel topPanel = new JPanel(new BorderLayout(10, 0));
+        topPanel.setBackground(UIUtils.BACKGROUND_COLOR);
+        topPanel.add(summaryLabel, BorderLayout.CENTER);
+        topPanel.add(recordButton, BorderLayout.EAST);
+        add(topPanel, BorderLayout.NORTH);
+
+        quotaChart = new LineChart("Firestore documents per second", "/s");
+        quotaChart.addSeries("Reads", READ_COLOR);
+        quotaChart.addSeries("Writes", WRITE_COLOR);
+
+        latencyChart = new LineChart("Firestore call latency", "ms");
+        latencyChart.addSeries("p50", P50_COLOR);
+        latencyChart.addSeries("p95", P95_COLOR);
+        latencyChart.addSeries("p99", P99_COLOR);
+
+        edtChart = new LineChart("UI event dispatch time", "ms");
+        edtChart.addSeries("p99", P95_COLOR);
+        edtChart.addSeries("Max", P99_COLOR);
+
+        heapChart = new LineChart("Heap used", "MB");
+        heapChart.addSeries("Used", READ_COLOR);
+        heapChart.addSeries("Committed", UIUtils.TEXT_COLOR);
+
+        JPanel chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        chartsPanel.setBackground(UIUtils.BACKGROUND_COLOR);
+        chartsPanel.add(quotaChart);
+        chartsPanel.add(latencyChart);
+        chartsPanel.add(edtChart);
+        chartsPanel.add(heapChart);
+
+        tableModel = new DefaultTableModel(
+                new String[] { "Metric", "Labels", "Value / Count", "p50 (ms)", "p95 (ms)", "p99 (ms)", "Max (ms)" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable metricsTable = new JTable(tableModel);
+        metricsTable.setAutoCreateRowSorter(true);
+        metricsTable.setFont(UIUtils.SMALL_FONT);
+
+        JTabbedPane tablesPane = new JTabbedPane();
+        tablesPane.setFont(UIUtils.NORMAL_FONT);
+        tablesPane.addTab("All Metrics", UIUtils.createStyledScrollPane(metricsTable));
+        tablesPane.addTab("Firestore Quota", createQuotaPanel());
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, chartsPanel, tablesPane);
+        splitPane.setResizeWeight(0.6);
+        add(splitPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Creates the table ranking operations by Firestore cost
+     * @return The quota panel
+     */
+    private JPanel createQuotaPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBackground(UIUtils.BACKGROUND_COLOR);
+
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlsPanel.setBackground(UIUtils.BACKGROUND_COLOR);
+        controlsPanel.add(new JLabel("Most expensive operations for:"));
+        quotaPeriodComboBox = new JComboBox<>(new String[] { "Today", "Last 7 days", "Last 30 days" });
+        quotaPeriodComboBox.addActionListener(e -> refreshQuota());
+        controlsPanel.add(quotaPeriodComboBox);
+        panel.add(controlsPanel, BorderLayout.NORTH);
+
+        quotaTableModel = new DefaultTableModel(
+                new String[] { "Operation", "Calls", "Reads", "Writes", "Reads per Call", "Est. Cost" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable quotaTable = new JTable(quotaTableModel);
+        quotaTable.setAutoCreateRowSorter(true);
+        quotaTable.setFont(UIUtils.SMALL_FONT);
+        panel.add(UIUtils.createStyledScrollPane(quotaTable), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * Reloads the quota ranking for the selected period
+     */
+    private void refreshQuota() {
+        int days = quotaPeriodComboBox.getSelectedIndex() == 0 ? 1 : quotaPeriodComboBox.getSelectedIndex() == 1 ? 7 : 30;
+        samplesSinceQuotaRefresh = 0;
+
+        SwingWorker<List<QuotaLedger.OperationCost>, Void> worker =
+                new SwingWorker<List<QuotaLedger.OperationCost>, Void>() {
+            @Override
+            protected List<QuotaLedger.OperationCost> doInBackground() {
+                // Earlier days are read from disk
+                return QuotaLedger.getInstance().getMostExpensive(days, QUOTA_TABLE_ROWS);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    quotaTableModel.setRowCount(0);
+                    for (QuotaLedger.OperationCost cost : get()) {
+                        quotaTableModel.addRow(new Object[] { cost.getOperation(), cost.getCalls(), cost.getReads(),
+                                cost.getWrites(), String.format("%.1f", cost.getReadsPerCall()),
+                                String.format("%.4f", cost.getCost()) });
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error loading quota usage: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Starts a flight recording, or stops the running one and saves it to error-reports
+     */
+    private void toggleRecording() {
+        JfrRecorder recorder = JfrRecorder.getInstance();
+        if (!recorder.isRecording()) {
+            if (recorder.start()) {
+                recordButton.setText("Stop and Save Recording");
+                dashboard.updateStatus("Flight recording started", false);
+            } else {
+                UIUtils.showErrorDialog(this, "Could not start a flight recording. See the log for details.", "Error");
+            }
+            return;
+        }
+
+        recordButton.setEnabled(false);
+        SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return recorder.stopAndSave();
+            }
+
+            @Override
+            protected void done() {
+                recordButton.setEnabled(true);
+                recordButton.setText("Start Recording");
+                try {
+                    String path = get();
+                    if (path != null) {
+                        UIUtils.showInfoDialog(PerformancePanel.this, "Recording saved to:\n" + path, "Flight Recording");
+                    } else {
+                        UIUtils.showErrorDialog(PerformancePanel.this,
+                                "Could not save the recording. See the log for details.", "Error");
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error saving flight recording: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Starts live sampling; called when the panel is selected
+     */
+    public void refreshData() {
+        sample();
+        refreshQuota();
+        sampleTimer.start();
+    }
+
+    /**
+     * Reads the registry and adds one point to each chart
+     */
+    private void sample() {
+        if (!isShowing() && sampleTimer.isRunning()) {
+            // Stop sampling once another panel is selected
+            sampleTimer.stop();
+            return;
+        }
+
+        long reads = 0;
+        long writes = 0;
+        long stalls = 0;
+        LatencyHistogram.Snapshot callSnapshot = null;
+        LatencyHistogram.Snapshot edtSnapshot = null;
+        double heapUsed = 0;
+        double heapCommitted = 0;
+        List<MetricsRegistry.Metric> all = metrics.getMetrics();
+
+        tableModel.setRowCount(0);
+        for (MetricsRegistry.Metric metric : all) {
+            String name = metric.getName();
+            if (metric instanceof MetricsRegistry.Counter) {
+                long value = ((MetricsRegistry.Counter) metric).get();
+                if (name.equals("athena_firestore_reads_total")) {
+                    reads += value;
+                } else if (name.equals("athena_firestore_writes_total")) {
+                    writes += value;
+                } else if (name.equals("athena_edt_stalls_total")) {
+                    stalls = value;
+                }
+                tableModel.addRow(new Object[] { name, metric.getLabels(), value, "", "", "", "" });
+            } else if (metric instanceof MetricsRegistry.Gauge) {
+                double value = ((MetricsRegistry.Gauge) metric).get();
+                if (name.equals("jvm_memory_heap_used_bytes")) {
+                    heapUsed = value;
+                } else if (name.equals("jvm_memory_heap_committed_bytes")) {
+                    heapCommitted = value;
+                }
+                tableModel.addRow(new Object[] { name, metric.getLabels(), formatGauge(value), "", "", "", "" });
+            } else {
+                LatencyHistogram histogram = ((MetricsRegistry.Histogram) metric).getHistogram();
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                if (name.equals("athena_firestore_call_seconds")) {
+                    callSnapshot = snapshot.plus(callSnapshot);
+                } else if (name.equals("athena_edt_dispatch_seconds")) {
+                    edtSnapshot = snapshot;
+                }
+                tableModel.addRow(new Object[] { name, metric.getLabels(), snapshot.getCount(),
+                        toMs(snapshot.getPercentileMicros(50)), toMs(snapshot.getPercentileMicros(95)),
+                        toMs(snapshot.getPercentileMicros(99)), toMs(histogram.getMaxMicros()) });
+            }
+        }
+
+        // Rates and percentiles are over the last interval, not since startup
+        double seconds = SAMPLE_INTERVAL_MS / 1000.0;
+        quotaChart.addPoint(lastReads < 0 ? 0 : (reads - lastReads) / seconds,
+                lastWrites < 0 ? 0 : (writes - lastWrites) / seconds);
+        lastReads = reads;
+        lastWrites = writes;
+
+        LatencyHistogram.Snapshot recentCalls = callSnapshot != null ? callSnapshot.minus(lastCallSnapshot) : null;
+        if (callSnapshot != null) {
+            lastCallSnapshot = callSnapshot;
+        }
+        latencyChart.addPoint(percentileMs(recentCalls, 50), percentileMs(recentCalls, 95),
+                percentileMs(recentCalls, 99));
+
+        LatencyHistogram.Snapshot recentEvents = edtSnapshot != null ? edtSnapshot.minus(lastEdtSnapshot) : null;
+        if (edtSnapshot != null) {
+            lastEdtSnapshot = edtSnapshot;
+        }
+        edtChart.addPoint(percentileMs(recentEvents, 99), percentileMs(recentEvents, 100));
+
+        heapChart.addPoint(heapUsed / (1024 * 1024), heapCommitted / (1024 * 1024));
+
+        QuotaLedger ledger = QuotaLedger.getInstance();
+        summaryLabel.setText(String.format(
+                "Firestore today: %,d reads, %,d writes    UI stalls: %,d    Heap: %.0f / %.0f MB",
+                ledger.getDayReads(), ledger.getDayWrites(), stalls,
+                heapUsed / (1024 * 1024), heapCommitted / (1024 * 1024)));
+
+        if (++samplesSinceQuotaRefresh >= QUOTA_REFRESH_SAMPLES) {
+            refreshQuota();
+        }
+    }
+
+    private static double percentileMs(LatencyHistogram.Snapshot snapshot, double percentile) {
+        return snapshot == null ? 0 : snapshot.getPercentileMicros(percentile) / 1000.0;
+    }
+
+    private static String toMs(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+    private static String formatGauge(double value) {
+        return value == Math.rint(value) ? String.format("%,d", (long) value) : String.format("%.3f", value);
+    }
+
+    /**
+     * Small line chart of the last few minutes of samples
+     */
+    private static class LineChart extends JComponent {
+        private final String title;
+        private final String unit;
+        private final List<String> names = new ArrayList<>();
+        private final List<Color> colors = new ArrayList<>();
+        private final Map<String, double[]> values = new HashMap<>();
+        // Index of the next sample to write in each ring, and how many are filled
+        private int next;
+        private int filled;
+
+        LineChart(String title, String unit) {
+            this.title = title;
+            this.unit = unit;
+            setPreferredSize(new Dimension(300, 180));
+            setBackground(Color.WHITE);
+            setBorder(UIUtils.PANEL_BORDER);
+        }
+
+        void addSeries(String name, Color color) {
+            names.add(name);
+            colors.add(color);
+            values.put(name, new double[HISTORY_SIZE]);
+        }
+
+        /**
+         * Adds one sample to every series, in the order the series were added
+         */
+        void addPoint(double... samples) {
+            for (int i = 0; i < names.size(); i++) {
+                values.get(names.get(i))[next] = i < samples.length ? samples[i] : 0;
+            }
+            next = (next + 1) % HISTORY_SIZE;
+            filled = Math.min(filled + 1, HISTORY_SIZE);
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            Insets insets = getInsets();
+            int left = insets.left + 8;
+            int top = insets.top + 22;
+            int width = getWidth() - insets.left - insets.right - 16;
+            int height = getHeight() - insets.top - insets.bottom - 40;
+
+            g2.setColor(getBackground());
+            g2.fillRect(insets.left, insets.top, getWidth() - insets.left - insets.right,
+                    getHeight() - insets.top - insets.bottom);
+
+            double max = 0;
+            for (double[] series : values.values()) {
+                for (int i = 0; i < filled; i++) {
+                    max = Math.max(max, series[i]);
+                }
+            }
+            max = max <= 0 ? 1 : max * 1.1;
+
+            g2.setFont(UIUtils.SMALL_FONT);
+            g2.setColor(UIUtils.PRIMARY_COLOR);
+            g2.drawString(title, left, insets.top + 15);
+            String scale = String.format("max %.1f %s", max, unit);
+            g2.drawString(scale, left + width - g2.getFontMetrics().stringWidth(scale), insets.top + 15);
+
+            g2.setColor(new Color(220, 220, 220));
+            g2.drawRect(left, top, width, height);
+
+            if (filled > 1 && width > 0 && height > 0) {
+                double step = (double) width / (HISTORY_SIZE - 1);
+                for (int s = 0; s < names.size(); s++) {
+                    double[] series = values.get(names.get(s));
+                    g2.setColor(colors.get(s));
+                    int previousX = -1;
+                    int previousY = -1;
+                    for (int i = 0; i < filled; i++) {
+                        // Oldest sample on the left, newest on the right edge
+                        int index = (next - filled + i + HISTORY_SIZE) % HISTORY_SIZE;
+                        int x = left + (int) Math.round((HISTORY_SIZE - filled + i) * step);
+                        int y = top + height - (int) Math.round(series[index] / max * height);
+                        if (previousX >= 0) {
+                            g2.drawLine(previousX, previousY, x, y);
+                        }
+                        previousX = x;
+                        previousY = y;
+                    }
+                }
+            }
+
+            // Legend
+            int legendX = left;
+            int legendY = top + height + 14;
+            for (int s = 0; s < names.size(); s++) {
+                g2.setColor(colors.get(s));
+                g2.fillRect(legendX, legendY - 8, 10, 8);
+                g2.setColor(UIUtils.TEXT_COLOR);
+                g2.drawString(names.get(s), legendX + 14, legendY);
+                legendX += 24 + g2.getFontMetrics().stringWidth(names.get(s));
+            }
+            g2.dispose();
+        }
+    }
+}
\ No newline at end of file
@@ -1,10 +1,14 @@
 package com.athena.library.ui.librarian;
 
 import com.athena.library.auth.AuthService;
+import com.athena.library.firebase.AutocompleteService;
 import com.athena.library.firebase.MessageService;
+import com.athena.library.firebase.StudentDirectory;
 import com.athena.library.firebase.StudentService;
 import com.athena.library.models.Librarian;
 import com.athena.library.models.Student;
+import com.athena.library.models.StudentSummary;
+import com.athena.library.utils.JfrEvents;
 import com.athena.library.utils.UIUtils;
 
 import javax.swing.*;
@@ -18,6 +22,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -42,8 +47,8 @@ public class StudentManagementPanel extends JPanel {
     private JButton refreshButton;
 
     // Data
-    private List<Student> allStudents;
-    private List<Student> filteredStudents;
+    private List<StudentSummary> allStudents;
+    private List<StudentSummary> filteredStudents;
 
     /**
      * Creates a new student management panel
@@ -67,6 +72,7 @@ public class StudentManagementPanel extends JPanel {
 
         initializeUI();
         loadStudents();
+        AutocompleteService.getInstance().refreshStudents();
     }
 
     /**
@@ -106,12 +112,17 @@ public class StudentManagementPanel extends JPanel {
         searchControlsPanel.setBackground(UIUtils.BACKGROUND_COLOR);
 
         // Search type dropdown
-        searchTypeComboBox = new JComboBox<>(new String[] { "Name", "Student ID", "Department", "Email" });
+        searchTypeComboBox = new JComboBox<>(new String[] { "Name", "Student ID", "Department", "Email", "Any Field" });
         searchControlsPanel.add(new JLabel("Search by:"));
         searchControlsPanel.add(searchTypeComboBox);
 
         // Search field
         searchField = new JTextField(20);
+        UIUtils.installAutocomplete(searchField, text -> {
+            String searchType = searchTypeComboBox.getSelectedItem().toString();
+            return searchType.equals("Name") || searchType.equals("Student ID") ?
+                    AutocompleteService.getInstance().completeStudents(text, 8) : Collections.<String>emptyList();
+        });
         searchControlsPanel.add(searchField);
 
         // Search button
@@ -255,11 +266,16 @@ public class StudentManagementPanel extends JPanel {
         // Show loading indicator
         setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         dashboard.updateStatus("Loading students...", false);
+        JfrEvents.UiLoad loadEvent = JfrEvents.UiLoad.start("StudentManagementPanel.loadStudents");
 
-        SwingWorker<List<Student>, Void> worker = new SwingWorker<List<Student>, Void>() {
+        SwingWorker<List<StudentSummary>, Void> worker = new SwingWorker<List<StudentSummary>, Void>() {
             @Override
-            protected List<Student> doInBackground() throws Exception {
-                return studentService.getAllStudents();
+            protected List<StudentSummary> doInBackground() throws Exception {
+                loadEvent.markBackgroundThread();
+                List<StudentSummary> students = studentService.getAllStudentSummaries();
+                // Load the search directory now so searching from the EDT never waits on Firestore
+                StudentDirectory.getInstance().warmUp();
+                return students;
             }
 
             @Override
@@ -274,7 +290,9 @@ public class StudentManagementPanel extends JPanel {
                     // Reset cursor and status
                     setCursor(Cursor.getDefaultCursor());
                     dashboard.updateStatus("Loaded " + allStudents.size() + " students", false);
+                    loadEvent.finish(allStudents.size(), true);
                 } catch (Exception e) {
+                    loadEvent.finish(0, false);
                     e.printStackTrace();
                     UIUtils.showErrorDialog(StudentManagementPanel.this,
                             "Error loading students: " + e.getMessage(), "Error");
@@ -295,7 +313,7 @@ public class StudentManagementPanel extends JPanel {
         tableModel.setRowCount(0);
 
         // Add students to table
-        for (Student student : filteredStudents) {
+        for (StudentSummary student : filteredStudents) {
             Object[] row = {
                     student.getStudentId(),
                     student.getFullName(),
@@ -313,6 +331,8 @@ public class StudentManagementPanel extends JPanel {
      * Applies the current search filter to the student list
      */
     private void applyFilters() {
+        JfrEvents.FilterRun filterEvent = JfrEvents.FilterRun.start("StudentManagementPanel.applyFilters");
+
         // Get filter values
         String searchText = searchField.getText().trim().toLowerCase();
         String searchType = searchTypeComboBox.getSelectedItem().toString();
@@ -321,31 +341,24 @@ public class StudentManagementPanel extends JPanel {
             // If search text is empty, show all students
             filteredStudents = new ArrayList<>(allStudents);
         } else {
-            // Apply filter based on search type
-            filteredStudents = new ArrayList<>();
-
-            for (Student student : allStudents) {
-                boolean match = false;
-
-                switch (searchType) {
-                    case "Name":
-                        String fullName = (student.getFirstName() + " " + student.getLastName()).toLowerCase();
-                        match = fullName.contains(searchText);
-                        break;
-                    case "Student ID":
-                        match = student.getStudentId().toLowerCase().contains(searchText);
-                        break;
-                    case "Department":
-                        match = student.getDepartment().toLowerCase().contains(searchText);
-                        break;
-                    case "Email":
-                        match = student.getEmail().toLowerCase().contains(searchText);
-                        break;
-                }
-
-                if (match) {
-                    filteredStudents.add(student);
-                }
+            // Look the search up in the in-memory student directory
+            switch (searchType) {
+                case "Name":
+                    filteredStudents = studentService.searchStudents(StudentDirectory.Field.NAME, searchText);
+                    break;
+                case "Student ID":
+                    filteredStudents = studentService.searchStudents(StudentDirectory.Field.STUDENT_ID, searchText);
+                    break;
+                case "Department":
+                    filteredStudents = studentService.searchStudents(StudentDirectory.Field.DEPARTMENT, searchText);
+                    break;
+                case "Email":
+                    filteredStudents = studentService.searchStudents(StudentDirectory.Field.EMAIL, searchText);
+                    break;
+                default:
+                    // Ranked across every field, best match first
+                    filteredStudents = studentService.searchStudents(searchText, allStudents.size());
+                    break;
             }
         }
 
@@ -354,6 +367,7 @@ public class StudentManagementPanel extends JPanel {
 
         // Update status
         dashboard.updateStatus("Found " + filteredStudents.size() + " matching students", false);
+        filterEvent.finish(searchType + ": " + searchText, allStudents.size(), filteredStudents.size());
     }
 
     /**
@@ -401,18 +415,20 @@ public class StudentManagementPanel extends JPanel {
             // Convert view index to model index
             int modelRow = studentsTable.convertRowIndexToModel(selectedRow);
 
-            // Get the student
-            Student student = filteredStudents.get(modelRow);
+            // Get the student summary and load the full record for editing
+            StudentSummary summary = filteredStudents.get(modelRow);
 
-            // Show edit dialog
-            AddEditStudentDialog dialog = new AddEditStudentDialog(
-                    SwingUtilities.getWindowAncestor(this), student);
-            dialog.setVisible(true);
+            loadFullStudent(summary, student -> {
+                // Show edit dialog
+                AddEditStudentDialog dialog = new AddEditStudentDialog(
+                        SwingUtilities.getWindowAncestor(this), student);
+                dialog.setVisible(true);
 
-            // Refresh data if the student was edited
-            if (dialog.isStudentSaved()) {
-                refreshData();
-            }
+                // Refresh data if the student was edited
+                if (dialog.isStudentSaved()) {
+                    refreshData();
+                }
+            });
         } else {
             UIUtils.showWarningDialog(this, "Please select a student to edit.", "No Student Selected");
         }
@@ -428,7 +444,7 @@ public class StudentManagementPanel extends JPanel {
             int modelRow = studentsTable.convertRowIndexToModel(selectedRow);
 
             // Get the student
-            Student student = filteredStudents.get(modelRow);
+            StudentSummary student = filteredStudents.get(modelRow);
 
             // Check if student has borrowed books
             if (student.hasBorrowedBooks()) {
@@ -516,20 +532,61 @@ public class StudentManagementPanel extends JPanel {
             // Convert view index to model index
             int modelRow = studentsTable.convertRowIndexToModel(selectedRow);
 
-            // Get the student
-            Student student = filteredStudents.get(modelRow);
+            // Get the student summary and load the full record for the dialog
+            StudentSummary summary = filteredStudents.get(modelRow);
 
-            // Show details dialog
-            StudentDetailsDialog dialog = new StudentDetailsDialog(
-                    SwingUtilities.getWindowAncestor(this), student);
-            dialog.setVisible(true);
+            loadFullStudent(summary, student -> {
+                // Show details dialog
+                StudentDetailsDialog dialog = new StudentDetailsDialog(
+                        SwingUtilities.getWindowAncestor(this), student);
+                dialog.setVisible(true);
 
-            // Refresh data if the student was edited
-            if (dialog.isStudentModified()) {
-                refreshData();
-            }
+                // Refresh data if the student was edited
+                if (dialog.isStudentModified()) {
+                    refreshData();
+                }
+            });
         } else {
             UIUtils.showWarningDialog(this, "Please select a student to view details.", "No Student Selected");
         }
     }
+
+    /**
+     * Loads the full student record for a table row in the background
+     * @param summary Summary of the selected student
+     * @param onLoaded Callback run on the EDT with the full student
+     */
+    private void loadFullStudent(StudentSummary summary, Consumer<Student> onLoaded) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        SwingWorker<Student, Void> worker = new SwingWorker<Student, Void>() {
+            @Override
+            protected Student doInBackground() throws Exception {
+                return studentService.getStudentById(summary.getId());
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Student student = get();
+                    setCursor(Cursor.getDefaultCursor());
+                    if (student == null) {
+                        UIUtils.showErrorDialog(StudentManagementPanel.this,
+                                "This student could not be found. The record may have been deleted.",
+                                "Student Not Found");
+                        refreshData();
+                        return;
+                    }
+                    onLoaded.accept(student);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    setCursor(Cursor.getDefaultCursor());
+                    UIUtils.showErrorDialog(StudentManagementPanel.this,
+                            "Error loading student: " + e.getMessage(), "Error");
+                }
+            }
+        };
+
+        worker.execute();
+    }
 }
\ No newline at end of file
@@ -1,10 +1,20 @@
 package com.athena.library.ui.student;
 
+import com.athena.library.catalogue.CatalogueSearchEngine;
+import com.athena.library.catalogue.ColumnarBookStore;
+import com.athena.library.catalogue.FacetIndex;
+import com.athena.library.firebase.AutocompleteService;
+import com.athena.library.firebase.AvailabilityFeed;
 import com.athena.library.firebase.BookService;
+import com.athena.library.firebase.HoldService;
 import com.athena.library.firebase.TransactionService;
 import com.athena.library.models.Book;
+import com.athena.library.models.BookSummary;
+import com.athena.library.models.Hold;
 import com.athena.library.models.Student;
 import com.athena.library.models.Transaction;
+import com.athena.library.utils.ConfigManager;
+import com.athena.library.utils.JfrEvents;
 import com.athena.library.utils.UIUtils;
 
 import javax.swing.*;
@@ -16,13 +26,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Panel for displaying and searching the book catalogue
  */
 public class StudentBookCataloguePanel extends JPanel {
+    private static final int AVAILABLE_COLUMN = 4;
+
     private final StudentDashboard dashboard;
     private final Student student;
     private final BookService bookService;
@@ -31,7 +47,8 @@ public class StudentBookCataloguePanel extends JPanel {
     // UI components
     private JTextField searchField;
     private JComboBox<String> searchTypeComboBox;
-    private JComboBox<String> genreFilterComboBox;
+    private JComboBox<FacetOption> genreFilterComboBox;
+    private JComboBox<FacetOption> yearFilterComboBox;
     private JCheckBox availableOnlyCheckBox;
     private JTable booksTable;
     private DefaultTableModel tableModel;
@@ -40,9 +57,23 @@ public class StudentBookCataloguePanel extends JPanel {
     private JButton viewDetailsButton;
     private JButton reserveButton;
 
-    // Data
-    private List<Book> allBooks;
-    private List<Book> filteredBooks;
+    // Data: the catalogue in columnar form, its facet bitmaps and search engine, the rows
+    // matching the search text (best match first, or null when not searching by relevance),
+    // and the store rows currently shown in the table
+    private ColumnarBookStore catalogue;
+    private FacetIndex facets;
+    private CatalogueSearchEngine searchEngine;
+    private BitSet searchRows;
+    private int[] rankedRows;
+    private int[] filteredRows;
+    // Table model row of each store row, or -1 if it isn't shown
+    private int[] modelRows;
+    // Set while the facet lists are rebuilt, so the combo box events they fire are ignored
+    private boolean populatingFacets;
+
+    // Availability changes arrive on the feed's thread and are applied on the EDT
+    private final AvailabilityFeed.Listener availabilityListener =
+            changes -> SwingUtilities.invokeLater(() -> applyAvailability(changes));
 
     /**
      * Creates a new book catalogue panel
@@ -54,14 +85,33 @@ public class StudentBookCataloguePanel extends JPanel {
         this.student = student;
         this.bookService = new BookService();
         this.transactionService = new TransactionService();
-        this.allBooks = new ArrayList<>();
-        this.filteredBooks = new ArrayList<>();
+        this.catalogue = ColumnarBookStore.build(Collections.emptyList());
+        this.facets = FacetIndex.build(catalogue);
+        this.searchEngine = new CatalogueSearchEngine.Builder().build();
+        this.searchRows = catalogue.allRows();
+        this.filteredRows = new int[0];
+        this.modelRows = new int[0];
 
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         initializeUI();
         loadBooks();
+        AutocompleteService.getInstance().refreshCatalogue();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        // Catch up on changes made while another panel was shown, then follow new ones
+        applyAvailability(AvailabilityFeed.getInstance().getKnownAvailability());
+        AvailabilityFeed.getInstance().subscribe(availabilityListener);
+    }
+
+    @Override
+    public void removeNotify() {
+        AvailabilityFeed.getInstance().unsubscribe(availabilityListener);
+        super.removeNotify();
     }
 
     /**
@@ -107,6 +157,11 @@ public class StudentBookCataloguePanel extends JPanel {
 
         // Search field
         searchField = new JTextField(20);
+        UIUtils.installAutocomplete(searchField, text -> {
+            String searchType = searchTypeComboBox.getSelectedItem().toString();
+            return searchType.equals("Title") || searchType.equals("Author") ?
+                    AutocompleteService.getInstance().completeCatalogue(text, 8) : Collections.<String>emptyList();
+        });
         searchControlsPanel.add(searchField);
 
         // Search button
@@ -137,16 +192,37 @@ public class StudentBookCataloguePanel extends JPanel {
 
         // Genre filter
         filterPanel.add(new JLabel("Genre:"));
-        genreFilterComboBox = new JComboBox<>(new String[] { "All Genres" });
+        genreFilterComboBox = new JComboBox<>(new FacetOption[] { new FacetOption("All Genres", null) });
+        genreFilterComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!populatingFacets) {
+                    applyFacetFilters();
+                }
+            }
+        });
         filterPanel.add(genreFilterComboBox);
 
+        // Publication year filter
+        filterPanel.add(new JLabel("Published:"));
+        yearFilterComboBox = new JComboBox<>(new FacetOption[] { new FacetOption("Any Year", null) });
+        yearFilterComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!populatingFacets) {
+                    applyFacetFilters();
+                }
+            }
+        });
+        filterPanel.add(yearFilterComboBox);
+
         // Available only checkbox
         availableOnlyCheckBox = new JCheckBox("Show Available Books Only");
         availableOnlyCheckBox.setBackground(UIUtils.BACKGROUND_COLOR);
         availableOnlyCheckBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                applyFilters();
+                applyFacetFilters();
             }
         });
         filterPanel.add(availableOnlyCheckBox);
@@ -238,33 +314,40 @@ public class StudentBookCataloguePanel extends JPanel {
     }
 
     /**
-     * Loads all books from the database
+     * Loads all books, showing the locally saved catalogue first while changes are fetched
      */
     private void loadBooks() {
         // Show loading indicator
         setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        JfrEvents.UiLoad loadEvent = JfrEvents.UiLoad.start("StudentBookCataloguePanel.loadBooks");
 
-        SwingWorker<List<Book>, Void> worker = new SwingWorker<List<Book>, Void>() {
+        // The store and its indexes are built in the background; only the swap runs on the EDT
+        SwingWorker<LoadedCatalogue, LoadedCatalogue> worker = new SwingWorker<LoadedCatalogue, LoadedCatalogue>() {
             @Override
-            protected List<Book> doInBackground() throws Exception {
-                return bookService.getAllBooks();
+            protected LoadedCatalogue doInBackground() throws Exception {
+                loadEvent.markBackgroundThread();
+                List<BookSummary> cached = bookService.getCachedCatalogueSummaries();
+                if (!cached.isEmpty()) {
+                    publish(new LoadedCatalogue(cached));
+                }
+                return new LoadedCatalogue(bookService.getCatalogueSummaries());
+            }
+
+            @Override
+            protected void process(List<LoadedCatalogue> chunks) {
+                showBooks(chunks.get(chunks.size() - 1));
             }
 
             @Override
             protected void done() {
                 try {
-                    allBooks = get();
-                    filteredBooks = new ArrayList<>(allBooks);
-
-                    // Populate the table
-                    updateBooksTable();
-
-                    // Extract and populate genres
-                    populateGenreFilter();
+                    showBooks(get());
 
                     // Reset cursor
                     setCursor(Cursor.getDefaultCursor());
+                    loadEvent.finish(catalogue.size(), true);
                 } catch (Exception e) {
+                    loadEvent.finish(0, false);
                     e.printStackTrace();
                     UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
                             "Error loading books: " + e.getMessage(), "Error");
@@ -276,138 +359,236 @@ public class StudentBookCataloguePanel extends JPanel {
         worker.execute();
     }
 
+    /**
+     * Replaces the loaded books and refreshes the facets and table
+     * @param loaded Books to show, with their indexes
+     */
+    private void showBooks(LoadedCatalogue loaded) {
+        catalogue = loaded.store;
+        facets = loaded.facets;
+        searchEngine = loaded.searchEngine;
+
+        // The loaded list may predate availability changes already pushed to this client
+        Map<String, Integer> known = AvailabilityFeed.getInstance().getKnownAvailability();
+        for (Map.Entry<String, Integer> entry : known.entrySet()) {
+            int book = catalogue.indexOf(entry.getKey());
+            if (book >= 0) {
+                facets.setAvailableCopies(book, entry.getValue());
+            }
+        }
+
+        // Rebuild the facet lists, then re-apply the current search and filters
+        populateFacetFilters();
+        applyFilters();
+    }
+
     /**
      * Updates the books table with current filtered books
      */
     private void updateBooksTable() {
         // Clear the table
         tableModel.setRowCount(0);
+        modelRows = new int[catalogue.size()];
+        Arrays.fill(modelRows, -1);
 
         // Add books to table
-        for (Book book : filteredBooks) {
+        for (int book : filteredRows) {
             Object[] row = {
-                    book.getTitle(),
-                    book.getAuthorsAsString(),
-                    book.getPublicationYear(),
-                    book.getGenresAsString(),
-                    book.getAvailableCopies() + " of " + book.getTotalCopies(),
-                    book.getLocation()
+                    catalogue.getTitle(book),
+                    catalogue.getAuthorsAsString(book),
+                    catalogue.getPublicationYear(book),
+                    catalogue.getGenresAsString(book),
+                    formatAvailability(book),
+                    catalogue.getLocation(book)
             };
+            modelRows[book] = tableModel.getRowCount();
             tableModel.addRow(row);
         }
 
         // Update status message
         if (dashboard != null) {
-            dashboard.updateStatus("Showing " + filteredBooks.size() + " books", false);
+            dashboard.updateStatus("Showing " + filteredRows.length + " books", false);
         }
     }
 
+    private String formatAvailability(int book) {
+        return catalogue.getAvailableCopies(book) + " of " + catalogue.getTotalCopies(book);
+    }
+
     /**
-     * Populates the genre filter dropdown with unique genres
+     * Applies pushed availability changes. Shown rows are updated in place; the list is
+     * only re-filtered when "available only" is ticked and a book ran out or came back.
+     * @param changes Book ID -> available copies
      */
-    private void populateGenreFilter() {
-        // Remember current selection
-        String currentSelection = genreFilterComboBox.getSelectedItem() != null ?
-                genreFilterComboBox.getSelectedItem().toString() : "All Genres";
-
-        // Clear the combo box
-        genreFilterComboBox.removeAllItems();
-        genreFilterComboBox.addItem("All Genres");
+    private void applyAvailability(Map<String, Integer> changes) {
+        boolean availabilityFlipped = false;
+        for (Map.Entry<String, Integer> entry : changes.entrySet()) {
+            int book = catalogue.indexOf(entry.getKey());
+            if (book < 0) {
+                // Not in the loaded list; new books appear on the next load
+                continue;
+            }
+            int previous = catalogue.getAvailableCopies(book);
+            int copies = entry.getValue();
+            if (previous == copies) {
+                continue;
+            }
 
-        // Create a set of unique genres
-        java.util.Set<String> genres = new java.util.HashSet<>();
+            facets.setAvailableCopies(book, copies);
+            availabilityFlipped |= (previous > 0) != (copies > 0);
+            if (book < modelRows.length && modelRows[book] >= 0) {
+                tableModel.setValueAt(formatAvailability(book), modelRows[book], AVAILABLE_COLUMN);
+            }
+        }
 
-        // Collect all genres
-        for (Book book : allBooks) {
-            if (book.getGenres() != null) {
-                genres.addAll(book.getGenres());
+        if (availabilityFlipped) {
+            if (availableOnlyCheckBox.isSelected()) {
+                applyFacetFilters();
+            } else {
+                updateAvailableCount();
             }
         }
+    }
+
+    /**
+     * Refreshes the count next to "available only" without re-filtering the list
+     */
+    private void updateAvailableCount() {
+        String genre = (String) getSelectedFacetValue(genreFilterComboBox);
+        Integer yearBucket = (Integer) getSelectedFacetValue(yearFilterComboBox);
+
+        BitSet rows = (BitSet) searchRows.clone();
+        andIfSet(rows, genre != null ? facets.genreRows(genre) : null);
+        andIfSet(rows, yearBucket != null ? facets.yearBucketRows(yearBucket) : null);
+        availableOnlyCheckBox.setText("Show Available Books Only (" + facets.countAvailable(rows) + ")");
+    }
+
+    /**
+     * Populates the genre and year filter dropdowns from the facet index
+     */
+    private void populateFacetFilters() {
+        // Remember current selections
+        Object currentGenre = getSelectedFacetValue(genreFilterComboBox);
+        Object currentYear = getSelectedFacetValue(yearFilterComboBox);
 
-        // Add genres to combo box
-        for (String genre : genres) {
-            genreFilterComboBox.addItem(genre);
+        populatingFacets = true;
+        genreFilterComboBox.removeAllItems();
+        genreFilterComboBox.addItem(new FacetOption("All Genres", null));
+        for (String genre : facets.getGenres()) {
+            genreFilterComboBox.addItem(new FacetOption(genre, genre));
         }
 
-        // Restore selection if it exists
-        for (int i = 0; i < genreFilterComboBox.getItemCount(); i++) {
-            if (genreFilterComboBox.getItemAt(i).equals(currentSelection)) {
-                genreFilterComboBox.setSelectedIndex(i);
-                break;
-            }
+        yearFilterComboBox.removeAllItems();
+        yearFilterComboBox.addItem(new FacetOption("Any Year", null));
+        for (Integer bucket : facets.getYearBuckets()) {
+            yearFilterComboBox.addItem(new FacetOption(bucket + "s", bucket));
         }
 
-        // Add action listener
-        genreFilterComboBox.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                applyFilters();
-            }
-        });
+        // Restore selections if they still exist
+        selectFacetValue(genreFilterComboBox, currentGenre);
+        selectFacetValue(yearFilterComboBox, currentYear);
+        populatingFacets = false;
     }
 
     /**
-     * Applies the current search and filters to the book list
+     * Applies the current search text and filters to the book list.
+     * The text search only runs here; changing a facet afterwards goes through
+     * {@link #applyFacetFilters()}, which only touches bitmaps.
      */
     private void applyFilters() {
-        // Get filter values
+        JfrEvents.FilterRun filterEvent = JfrEvents.FilterRun.start("StudentBookCataloguePanel.applyFilters");
         String searchText = searchField.getText().trim().toLowerCase();
         String searchType = searchTypeComboBox.getSelectedItem().toString();
-        String genreFilter = genreFilterComboBox.getSelectedItem().toString();
-        boolean availableOnly = availableOnlyCheckBox.isSelected();
-
-        // Apply filters
-        filteredBooks = new ArrayList<>();
 
-        for (Book book : allBooks) {
-            // Skip unavailable books if filter is active
-            if (availableOnly && book.getAvailableCopies() <= 0) {
-                continue;
+        searchRows = catalogue.allRows();
+        rankedRows = null;
+        if (!searchText.isEmpty() && (searchType.equals("Title") || searchType.equals("Author"))) {
+            // Ranked, typo-tolerant search; results are listed best match first
+            CatalogueSearchEngine.Field field = searchType.equals("Title") ?
+                    CatalogueSearchEngine.Field.TITLE : CatalogueSearchEngine.Field.AUTHOR;
+            List<CatalogueSearchEngine.Hit> hits = searchEngine.search(searchText,
+                    ConfigManager.getInstance().getInt("search.max.results", 500), EnumSet.of(field));
+
+            searchRows.clear();
+            rankedRows = new int[hits.size()];
+            for (int i = 0; i < hits.size(); i++) {
+                rankedRows[i] = hits.get(i).getDocument();
+                searchRows.set(rankedRows[i]);
             }
-
-            // Filter by genre if not "All Genres"
-            if (!genreFilter.equals("All Genres") &&
-                    (book.getGenres() == null || !book.getGenres().contains(genreFilter))) {
-                continue;
-            }
-
-            // Filter by search text
-            if (!searchText.isEmpty()) {
+        } else if (!searchText.isEmpty()) {
+            for (int book = 0; book < catalogue.size(); book++) {
                 boolean match = false;
 
                 switch (searchType) {
-                    case "Title":
-                        match = book.getTitle().toLowerCase().contains(searchText);
-                        break;
-                    case "Author":
-                        if (book.getAuthors() != null) {
-                            for (String author : book.getAuthors()) {
-                                if (author.toLowerCase().contains(searchText)) {
-                                    match = true;
-                                    break;
-                                }
-                            }
-                        }
-                        break;
                     case "ISBN":
-                        match = book.getIsbn() != null && book.getIsbn().toLowerCase().contains(searchText);
+                        String isbn = catalogue.getIsbn(book);
+                        match = isbn != null && isbn.toLowerCase().contains(searchText);
                         break;
                     case "Year":
-                        match = String.valueOf(book.getPublicationYear()).contains(searchText);
+                        match = String.valueOf(catalogue.getPublicationYear(book)).contains(searchText);
                         break;
                 }
 
                 if (!match) {
-                    continue;
+                    searchRows.clear(book);
                 }
             }
+        }
+
+        applyFacetFilters();
+        filterEvent.finish(searchType + ": " + searchText, catalogue.size(), filteredRows.length);
+    }
+
+    /**
+     * Combines the search results with the selected facets and refreshes the facet counts.
+     * Each facet is counted against the rows matching every other filter, so a count shows
+     * how many books would be listed if that value were selected.
+     */
+    private void applyFacetFilters() {
+        JfrEvents.FilterRun filterEvent = JfrEvents.FilterRun.start("StudentBookCataloguePanel.applyFacetFilters");
+        String genre = (String) getSelectedFacetValue(genreFilterComboBox);
+        Integer yearBucket = (Integer) getSelectedFacetValue(yearFilterComboBox);
+        boolean availableOnly = availableOnlyCheckBox.isSelected();
 
-            // If we get here, the book passed all filters
-            filteredBooks.add(book);
+        BitSet genreRows = genre != null ? facets.genreRows(genre) : null;
+        BitSet yearRows = yearBucket != null ? facets.yearBucketRows(yearBucket) : null;
+        BitSet availableRows = availableOnly ? facets.availableRows() : null;
+
+        // Genre counts: search results and every filter except genre
+        BitSet rows = (BitSet) searchRows.clone();
+        andIfSet(rows, yearRows);
+        andIfSet(rows, availableRows);
+        int[] genreCounts = facets.countGenres(rows);
+
+        // Year counts: search results and every filter except year
+        rows = (BitSet) searchRows.clone();
+        andIfSet(rows, genreRows);
+        andIfSet(rows, availableRows);
+        int[] yearCounts = facets.countYearBuckets(rows);
+
+        // Availability count: search results and every filter except availability
+        rows = (BitSet) searchRows.clone();
+        andIfSet(rows, genreRows);
+        andIfSet(rows, yearRows);
+        int availableCount = facets.countAvailable(rows);
+
+        // Rows shown: everything combined, in relevance order when searching by relevance
+        andIfSet(rows, availableRows);
+        if (rankedRows != null) {
+            BitSet shown = rows;
+            filteredRows = Arrays.stream(rankedRows).filter(shown::get).toArray();
+        } else {
+            filteredRows = ColumnarBookStore.toRowArray(rows);
         }
 
+        updateFacetCounts(genreFilterComboBox, genreCounts);
+        updateFacetCounts(yearFilterComboBox, yearCounts);
+        availableOnlyCheckBox.setText("Show Available Books Only (" + availableCount + ")");
+
         // Update the table
         updateBooksTable();
+        filterEvent.finish("genre=" + genre + ", years=" + yearBucket + ", availableOnly=" + availableOnly,
+                searchRows.cardinality(), filteredRows.length);
     }
 
     /**
@@ -416,12 +597,47 @@ public class StudentBookCataloguePanel extends JPanel {
     private void clearFilters() {
         searchField.setText("");
         searchTypeComboBox.setSelectedIndex(0);
+
+        populatingFacets = true;
         genreFilterComboBox.setSelectedIndex(0);
+        yearFilterComboBox.setSelectedIndex(0);
+        populatingFacets = false;
         availableOnlyCheckBox.setSelected(false);
 
         // Reset filtered books to all books
-        filteredBooks = new ArrayList<>(allBooks);
-        updateBooksTable();
+        applyFilters();
+    }
+
+    private static void andIfSet(BitSet rows, BitSet filter) {
+        if (filter != null) {
+            rows.and(filter);
+        }
+    }
+
+    private static Object getSelectedFacetValue(JComboBox<FacetOption> comboBox) {
+        FacetOption selected = (FacetOption) comboBox.getSelectedItem();
+        return selected != null ? selected.value : null;
+    }
+
+    private static void selectFacetValue(JComboBox<FacetOption> comboBox, Object value) {
+        for (int i = 0; i < comboBox.getItemCount(); i++) {
+            Object itemValue = comboBox.getItemAt(i).value;
+            if (itemValue != null && itemValue.equals(value)) {
+                comboBox.setSelectedIndex(i);
+                return;
+            }
+        }
+        comboBox.setSelectedIndex(0);
+    }
+
+    /**
+     * Sets the counts shown next to each facet value (item 0 is the "all" option)
+     */
+    private static void updateFacetCounts(JComboBox<FacetOption> comboBox, int[] counts) {
+        for (int i = 0; i < counts.length && i + 1 < comboBox.getItemCount(); i++) {
+            comboBox.getItemAt(i + 1).count = counts[i];
+        }
+        comboBox.repaint();
     }
 
     /**
@@ -433,20 +649,51 @@ public class StudentBookCataloguePanel extends JPanel {
             // Convert view index to model index
             int modelRow = booksTable.convertRowIndexToModel(selectedRow);
 
-            // Get the book
-            Book book = filteredBooks.get(modelRow);
+            // Get the book ID
+            String bookId = catalogue.getId(filteredRows[modelRow]);
+
+            // Load the full book (description, cover, publisher) only when the dialog opens
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+            SwingWorker<Book, Void> worker = new SwingWorker<Book, Void>() {
+                @Override
+                protected Book doInBackground() throws Exception {
+                    return bookService.getBookById(bookId);
+                }
 
-            // Show details dialog
-            BookDetailsDialog dialog = new BookDetailsDialog(
-                    SwingUtilities.getWindowAncestor(this), book);
-            dialog.setVisible(true);
+                @Override
+                protected void done() {
+                    try {
+                        Book book = get();
+                        if (book == null) {
+                            UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                                    "This book could not be found. It may have been removed.",
+                                    "Book Not Found");
+                            return;
+                        }
+
+                        // Show details dialog
+                        BookDetailsDialog dialog = new BookDetailsDialog(
+                                SwingUtilities.getWindowAncestor(StudentBookCataloguePanel.this), book);
+                        dialog.setVisible(true);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                                "Error loading book details: " + e.getMessage(), "Error");
+                    } finally {
+                        setCursor(Cursor.getDefaultCursor());
+                    }
+                }
+            };
+
+            worker.execute();
         } else {
             UIUtils.showWarningDialog(this, "Please select a book to view its details.", "No Book Selected");
         }
     }
 
     /**
-     * Reserves a book for the current student
+     * Reserves a book for the current student, or offers a place in the queue if no copy is available
      */
     private void reserveBook() {
         int selectedRow = booksTable.getSelectedRow();
@@ -455,13 +702,7 @@ public class StudentBookCataloguePanel extends JPanel {
             int modelRow = booksTable.convertRowIndexToModel(selectedRow);
 
             // Get the book
-            Book book = filteredBooks.get(modelRow);
-
-            // Check if the book is available
-            if (book.getAvailableCopies() <= 0) {
-                UIUtils.showWarningDialog(this, "This book is currently not available.", "Book Unavailable");
-                return;
-            }
+            int book = filteredRows[modelRow];
 
             // Check if student has reached borrowing limit
             if (student.getBorrowedBooksCount() >= 5) {
@@ -479,60 +720,236 @@ public class StudentBookCataloguePanel extends JPanel {
                 return;
             }
 
+            // Check if the book is available
+            if (catalogue.getAvailableCopies(book) <= 0) {
+                offerHold(book);
+                return;
+            }
+
             // Confirm reservation
             boolean confirm = UIUtils.showConfirmDialog(this,
-                    "Do you want to reserve \"" + book.getTitle() + "\"?",
+                    "Do you want to reserve \"" + catalogue.getTitle(book) + "\"?",
                     "Confirm Reservation");
 
             if (confirm) {
-                // Show loading indicator
-                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                borrowBook(book, false);
+            }
+        } else {
+            UIUtils.showWarningDialog(this, "Please select a book to reserve.", "No Book Selected");
+        }
+    }
+
+    /**
+     * Borrows a book for the current student
+     * @param book Store row of the book
+     * @param collectingHold Whether the student is collecting a copy kept for their hold
+     */
+    private void borrowBook(int book, boolean collectingHold) {
+        String bookId = catalogue.getId(book);
+        FacetIndex bookFacets = facets;
+        int copiesBefore = catalogue.getAvailableCopies(book);
+
+        // Show loading indicator
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        SwingWorker<Transaction, Void> worker = new SwingWorker<Transaction, Void>() {
+            @Override
+            protected Transaction doInBackground() throws Exception {
+                return transactionService.borrowBook(student.getId(), bookId, null);
+            }
 
-                SwingWorker<Transaction, Void> worker = new SwingWorker<Transaction, Void>() {
-                    @Override
-                    protected Transaction doInBackground() throws Exception {
-                        return transactionService.borrowBook(student.getId(), book.getId(), null);
+            @Override
+            protected void done() {
+                try {
+                    Transaction transaction = get();
+                    if (transaction != null) {
+                        // Update student's borrowed books
+                        student.addBorrowedBook(bookId);
+
+                        // Update the book's availability, unless the feed has already pushed it.
+                        // A copy kept for a hold was already off the shelf.
+                        if (!collectingHold) {
+                            int copies = bookFacets.getStore().getAvailableCopies(book);
+                            bookFacets.setAvailableCopies(book, Math.min(copies, copiesBefore - 1));
+                        }
+
+                        // Refresh the facet counts and the table
+                        applyFacetFilters();
+
+                        // Show success message
+                        UIUtils.showInfoDialog(StudentBookCataloguePanel.this,
+                                "Book reserved successfully. Due date: " +
+                                        UIUtils.formatDate(transaction.getDueDate()),
+                                "Book Reserved");
+                    } else {
+                        UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                                "Failed to reserve book. Please try again.",
+                                "Reservation Failed");
                     }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                            "Error reserving book: " + e.getMessage(),
+                            "Error");
+                } finally {
+                    setCursor(Cursor.getDefaultCursor());
+                }
+            }
+        };
 
-                    @Override
-                    protected void done() {
-                        try {
-                            Transaction transaction = get();
-                            if (transaction != null) {
-                                // Update student's borrowed books
-                                student.addBorrowedBook(book.getId());
-
-                                // Update the book's availability
-                                book.setAvailableCopies(book.getAvailableCopies() - 1);
-
-                                // Update the table
-                                updateBooksTable();
-
-                                // Show success message
-                                UIUtils.showInfoDialog(StudentBookCataloguePanel.this,
-                                        "Book reserved successfully. Due date: " +
-                                                UIUtils.formatDate(transaction.getDueDate()),
-                                        "Book Reserved");
-                            } else {
-                                UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
-                                        "Failed to reserve book. Please try again.",
-                                        "Reservation Failed");
-                            }
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
-                                    "Error reserving book: " + e.getMessage(),
-                                    "Error");
-                        } finally {
-                            setCursor(Cursor.getDefaultCursor());
+        worker.execute();
+    }
+
+    /**
+     * Handles a book with no copy available: lets the student collect a copy kept for them,
+     * shows their place in the queue, or offers to join the queue
+     * @param book Store row of the book
+     */
+    private void offerHold(int book) {
+        String bookId = catalogue.getId(book);
+        String title = catalogue.getTitle(book);
+
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        SwingWorker<Hold, Void> worker = new SwingWorker<Hold, Void>() {
+            private int position;
+            private int waiting;
+
+            @Override
+            protected Hold doInBackground() throws Exception {
+                HoldService holdService = HoldService.getInstance();
+                position = holdService.getQueuePosition(student.getId(), bookId);
+                waiting = holdService.getWaitingCount(bookId);
+                return holdService.getHold(student.getId(), bookId);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    Hold hold = get();
+                    if (hold != null && hold.isReady()) {
+                        boolean confirm = UIUtils.showConfirmDialog(StudentBookCataloguePanel.this,
+                                "A copy of \"" + title + "\" is being kept for you until " +
+                                        UIUtils.formatDate(hold.getExpiryDate()) + ". Do you want to borrow it now?",
+                                "Collect Hold");
+                        if (confirm) {
+                            borrowBook(book, true);
+                        }
+                    } else if (hold != null && position > 0) {
+                        UIUtils.showInfoDialog(StudentBookCataloguePanel.this,
+                                "You are number " + position + " of " + waiting + " in the queue for \"" + title +
+                                        "\". You will get a message when a copy is kept for you.",
+                                "On Hold");
+                    } else {
+                        boolean confirm = UIUtils.showConfirmDialog(StudentBookCataloguePanel.this,
+                                "No copies of \"" + title + "\" are available" +
+                                        (waiting > 0 ? " and " + waiting + (waiting == 1 ? " student is" : " students are") +
+                                                " waiting" : "") +
+                                        ". Do you want to join the queue?",
+                                "Place Hold");
+                        if (confirm) {
+                            placeHold(bookId, title);
                         }
                     }
-                };
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                            "Error checking holds: " + e.getMessage(), "Error");
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    /**
+     * Puts the current student in the queue for a book
+     * @param bookId Book ID
+     * @param title Book title
+     */
+    private void placeHold(String bookId, String title) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-                worker.execute();
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                HoldService holdService = HoldService.getInstance();
+                if (!holdService.placeHold(student, bookId, title)) {
+                    return -1;
+                }
+                return holdService.getQueuePosition(student.getId(), bookId);
             }
-        } else {
-            UIUtils.showWarningDialog(this, "Please select a book to reserve.", "No Book Selected");
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    int position = get();
+                    if (position > 0) {
+                        UIUtils.showInfoDialog(StudentBookCataloguePanel.this,
+                                "You are number " + position + " in the queue for \"" + title +
+                                        "\". You will get a message when a copy is kept for you.",
+                                "Hold Placed");
+                    } else if (position == 0) {
+                        UIUtils.showInfoDialog(StudentBookCataloguePanel.this,
+                                "You are in the queue for \"" + title +
+                                        "\". You will get a message when a copy is kept for you.",
+                                "Hold Placed");
+                    } else {
+                        UIUtils.showWarningDialog(StudentBookCataloguePanel.this,
+                                "Could not place a hold. A copy may have just become available; " +
+                                        "please try reserving the book again.",
+                                "Hold Not Placed");
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    UIUtils.showErrorDialog(StudentBookCataloguePanel.this,
+                            "Error placing hold: " + e.getMessage(), "Error");
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    /**
+     * A loaded catalogue with the indexes built over it
+     */
+    private static class LoadedCatalogue {
+        private final ColumnarBookStore store;
+        private final FacetIndex facets;
+        private final CatalogueSearchEngine searchEngine;
+
+        LoadedCatalogue(List<BookSummary> books) {
+            this.store = ColumnarBookStore.build(books);
+            this.facets = FacetIndex.build(store);
+
+            // Document numbers match store rows; summaries carry no description
+            CatalogueSearchEngine.Builder builder = new CatalogueSearchEngine.Builder();
+            for (int row = 0; row < store.size(); row++) {
+                builder.add(store.getTitle(row), store.getAuthors(row), null);
+            }
+            this.searchEngine = builder.build();
+        }
+    }
+
+    /**
+     * A facet value in a filter dropdown, shown with the number of matching books
+     */
+    private static class FacetOption {
+        private final String label;
+        private final Object value;
+        private int count = -1;
+
+        FacetOption(String label, Object value) {
+            this.label = label;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value == null || count < 0 ? label : label + " (" + count + ")";
         }
     }
 
@@ -680,8 +1097,8 @@ public class StudentBookCataloguePanel extends JPanel {
                     dispose(); // Close dialog
 
                     // Find the book in the table and select it
-                    for (int i = 0; i < filteredBooks.size(); i++) {
-                        if (filteredBooks.get(i).getId().equals(book.getId())) {
+                    for (int i = 0; i < filteredRows.length; i++) {
+                        if (catalogue.getId(filteredRows[i]).equals(book.getId())) {
                             int viewIndex = booksTable.convertRowIndexToView(i);
                             booksTable.setRowSelectionInterval(viewIndex, viewIndex);
                             break;
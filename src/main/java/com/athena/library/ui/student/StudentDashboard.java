@@ -3,6 +3,7 @@ package com.athena.library.ui.student;
 import com.athena.library.firebase.MessageService;
 import com.athena.library.models.Student;
 import com.athena.library.ui.BaseDashboard;
+import com.athena.library.utils.JfrEvents;
 import com.athena.library.utils.UIUtils;
 
 import javax.swing.*;
@@ -160,9 +161,11 @@ public class StudentDashboard extends BaseDashboard {
      * Checks for unread messages and updates the inbox button
      */
     private void checkUnreadMessages() {
+        JfrEvents.UiLoad loadEvent = JfrEvents.UiLoad.start("StudentDashboard.checkUnreadMessages");
         SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
             @Override
             protected Integer doInBackground() throws Exception {
+                loadEvent.markBackgroundThread();
                 return messageService.getUnreadMessageCount(student.getId());
             }
 
@@ -177,7 +180,9 @@ public class StudentDashboard extends BaseDashboard {
                         inboxButton.setText("Inbox");
                         inboxButton.setForeground(UIUtils.TEXT_COLOR);
                     }
+                    loadEvent.finish(unreadCount, true);
                 } catch (Exception e) {
+                    loadEvent.finish(0, false);
                     System.err.println("Error checking unread messages: " + e.getMessage());
                 }
             }
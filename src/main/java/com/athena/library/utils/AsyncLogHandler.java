@@ -0,0 +1,193 @@
+package com.athena.library.utils;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * java.util.logging handler that hands records to a background thread instead of
+ * writing them on the caller's thread.
+ *
+ * {@link #publish} only puts the record in a {@link RingBuffer}; a dedicated writer thread
+ * formats records in batches, writes them to a {@link RollingLogFile} and flushes when it
+ * runs out of work or at least every flush interval. When the buffer is full, records below
+ * WARNING are dropped straight away. WARNING and above wait briefly for space, except on the
+ * Swing and JavaFX threads, which never wait. Dropped records are counted, and the count is
+ * written to the log once there is room again. {@link #close} drains everything still queued.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private final RingBuffer<LogRecord> buffer;
+    private final RollingLogFile file;
+    private final long flushIntervalMs;
+    private final long overflowWaitNanos;
+    private final Thread writerThread;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean writerIdle;
+    private volatile boolean closed;
+
+    /**
+     * Creates the handler and starts its writer thread
+     * @param file File to write to
+     * @param capacity Number of records that can be queued
+     * @param flushIntervalMs Longest time a written record stays unflushed
+     * @param overflowWaitMs How long WARNING and SEVERE records wait for space when the buffer is full
+     */
+    public AsyncLogHandler(RollingLogFile file, int capacity, long flushIntervalMs, long overflowWaitMs) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.file = file;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowWaitNanos = TimeUnit.MILLISECONDS.toNanos(overflowWaitMs);
+        setFormatter(new SimpleFormatter());
+
+        this.writerThread = new Thread(this::runWriter, "athena-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // Capture the caller now, since the writer thread formats the record later
+        record.getSourceClassName();
+
+        if (!buffer.offer(record) && !waitForSpace(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Retries an important record for a short while if the caller is allowed to wait
+     * @return true if the record was queued
+     */
+    private boolean waitForSpace(LogRecord record) {
+        if (record.getLevel().intValue() < Level.WARNING.intValue() || isUiThread()) {
+            return false;
+        }
+        LockSupport.unpark(writerThread);
+        long deadline = System.nanoTime() + overflowWaitNanos;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            if (buffer.offer(record)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUiThread() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return true;
+        }
+        // Checked by name so the handler doesn't need the JavaFX classes loaded
+        return "JavaFX Application Thread".equals(Thread.currentThread().getName());
+    }
+
+    private void runWriter() {
+        Formatter formatter = getFormatter();
+        StringBuilder batch = new StringBuilder(16 * 1024);
+        long lastFlush = System.currentTimeMillis();
+        boolean unflushed = false;
+
+        while (true) {
+            boolean stopping = closed;
+
+            // Format everything queued so far into one batch
+            batch.setLength(0);
+            LogRecord record;
+            while (batch.length() < 64 * 1024 && (record = buffer.poll()) != null) {
+                try {
+                    batch.append(formatter.format(record));
+                } catch (RuntimeException e) {
+                    reportError("Could not format log record", e, ErrorManager.FORMAT_FAILURE);
+                }
+            }
+            long droppedCount = dropped.getAndSet(0);
+            if (droppedCount > 0) {
+                batch.append(formatter.format(new LogRecord(Level.WARNING,
+                        "Log buffer was full; " + droppedCount + " log records were dropped")));
+            }
+
+            long now = System.currentTimeMillis();
+            try {
+                if (batch.length() > 0) {
+                    file.append(batch, now);
+                    unflushed = true;
+                }
+                if (unflushed && (buffer.isEmpty() || now - lastFlush >= flushIntervalMs)) {
+                    file.flush();
+                    unflushed = false;
+                    lastFlush = now;
+                }
+            } catch (IOException e) {
+                reportError("Could not write log file", e, ErrorManager.WRITE_FAILURE);
+            }
+
+            if (buffer.isEmpty()) {
+                if (stopping) {
+                    break;
+                }
+                writerIdle = true;
+                if (buffer.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+            }
+        }
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            reportError("Could not close log file", e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Gets the number of records dropped since the writer last reported drops
+     * @return Dropped record count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Asks the writer to flush soon; doesn't wait for it
+     */
+    @Override
+    public void flush() {
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Stops accepting records, then waits for the writer to write out everything queued
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package com.athena.library.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable prefix index that suggests completions for what the user has typed,
+ * most popular first.
+ *
+ * Every value is indexed under its whole text and under each of its words, so "tolk"
+ * completes "J. R. R. Tolkien". The keys are kept in one sorted array, which makes the
+ * matches for a prefix a contiguous range found by binary search, and a segment tree over
+ * the weights picks the heaviest entries in that range without visiting the rest of it.
+ * A lookup therefore costs O((log n + k) log n) however many values share the prefix.
+ *
+ * Build a new index when the data changes and swap the reference; readers keep
+ * using the old one until then.
+ */
+public class CompletionIndex {
+    /** An index with no values */
+    public static final CompletionIndex EMPTY = new Builder().build();
+
+    // Keys in sorted order, and for each key the value it belongs to
+    private final String[] keys;
+    private final int[] keyValues;
+
+    // Values and their weights
+    private final String[] values;
+    private final long[] weights;
+
+    // Segment tree over keys: tree[node] is the key with the heaviest value in the node's range
+    private final int[] tree;
+
+    private CompletionIndex(String[] keys, int[] keyValues, String[] values, long[] weights) {
+        this.keys = keys;
+        this.keyValues = keyValues;
+        this.values = values;
+        this.weights = weights;
+        this.tree = new int[Math.max(1, 4 * keys.length)];
+        if (keys.length > 0) {
+            buildTree(1, 0, keys.length - 1);
+        }
+    }
+
+    /**
+     * Gets the number of distinct values
+     * @return Value count
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Gets the heaviest values with a word or the whole text starting with a prefix
+     * @param prefix What the user has typed so far
+     * @param limit Maximum number of completions
+     * @return Completions, most popular first
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0 || keys.length == 0) {
+            return Collections.emptyList();
+        }
+
+        int from = lowerBound(key);
+        int to = lowerBound(key + Character.MAX_VALUE);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        // Repeatedly take the heaviest key of a range and split the range around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                (a, b) -> Long.compare(weights[keyValues[b[2]]], weights[keyValues[a[2]]]));
+        ranges.add(new int[] { from, to - 1, maxKey(1, 0, keys.length - 1, from, to - 1) });
+
+        List<String> completions = new ArrayList<>(limit);
+        Set<Integer> seenValues = new HashSet<>();
+        while (!ranges.isEmpty() && completions.size() < limit) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            int value = keyValues[best];
+
+            // A value indexed under several words can appear more than once in the range
+            if (seenValues.add(value)) {
+                completions.add(values[value]);
+            }
+
+            if (range[0] < best) {
+                ranges.add(new int[] { range[0], best - 1, maxKey(1, 0, keys.length - 1, range[0], best - 1) });
+            }
+            if (best < range[1]) {
+                ranges.add(new int[] { best + 1, range[1], maxKey(1, 0, keys.length - 1, best + 1, range[1]) });
+            }
+        }
+        return completions;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void buildTree(int node, int low, int high) {
+        if (low == high) {
+            tree[node] = low;
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        buildTree(2 * node, low, middle);
+        buildTree(2 * node + 1, middle + 1, high);
+        tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+    }
+
+    private int maxKey(int node, int low, int high, int from, int to) {
+        if (from <= low && high <= to) {
+            return tree[node];
+        }
+        int middle = (low + high) >>> 1;
+        if (to <= middle) {
+            return maxKey(2 * node, low, middle, from, to);
+        }
+        if (from > middle) {
+            return maxKey(2 * node + 1, middle + 1, high, from, to);
+        }
+        return heavier(maxKey(2 * node, low, middle, from, to), maxKey(2 * node + 1, middle + 1, high, from, to));
+    }
+
+    private int heavier(int keyA, int keyB) {
+        return weights[keyValues[keyB]] > weights[keyValues[keyA]] ? keyB : keyA;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Collects values before the index is built
+     */
+    public static class Builder {
+        private final Map<String, Long> weightsByValue = new HashMap<>();
+
+        /**
+         * Adds a value, or adds to its weight if it was already added
+         * @param value Text to suggest (ignored if null or blank)
+         * @param weight Popularity of the value
+         * @return This builder
+         */
+        public Builder add(String value, long weight) {
+            if (value != null && !value.trim().isEmpty()) {
+                weightsByValue.merge(value.trim(), weight, Long::sum);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the index
+         * @return The immutable index
+         */
+        public CompletionIndex build() {
+            String[] values = weightsByValue.keySet().toArray(new String[0]);
+            long[] weights = new long[values.length];
+            List<String> unsortedKeys = new ArrayList<>();
+            List<Integer> unsortedKeyValues = new ArrayList<>();
+
+            for (int value = 0; value < values.length; value++) {
+                weights[value] = weightsByValue.get(values[value]);
+                String key = normalize(values[value]);
+                unsortedKeys.add(key);
+                unsortedKeyValues.add(value);
+
+                // Also index the text from the start of each later word
+                for (int i = 1; i < key.length(); i++) {
+                    if (!Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                        unsortedKeys.add(key.substring(i));
+                        unsortedKeyValues.add(value);
+                    }
+                }
+            }
+
+            Integer[] order = new Integer[unsortedKeys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> unsortedKeys.get(a).compareTo(unsortedKeys.get(b)));
+
+            String[] keys = new String[order.length];
+            int[] keyValues = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = unsortedKeys.get(order[i]);
+                keyValues[i] = unsortedKeyValues.get(order[i]);
+            }
+            return new CompletionIndex(keys, keyValues, values, weights);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.athena.library.utils;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every event the Swing event dispatch thread handles.
+ *
+ * Installed as the system event queue, it tells the {@link StallWatchdog} which
+ * event is running, so stalls can be sampled while they last. Install it wherever
+ * the watchdog is started; tracking an event costs a few field writes.
+ *
+ * Once {@link #enableMetrics()} is called and metrics.edt.enabled is true (default
+ * false), it also records each dispatch in the athena_edt_dispatch_seconds histogram
+ * and counts dispatches longer than metrics.edt.stall.ms (default 100) in
+ * athena_edt_stalls_total, so a frozen UI shows up in the metrics with the time it
+ * was frozen for.
+ */
+public class EdtMonitor extends EventQueue {
+    private static boolean installed;
+
+    // Read by the watchdog thread; only written on the event dispatch thread
+    private static volatile Thread dispatchThread;
+    private static volatile AWTEvent currentEvent;
+    private static volatile int depth; // Greater than 1 while a modal dialog pumps events
+    private static volatile long lastProgressNanos;
+
+    // Null until metrics are enabled
+    private static volatile DispatchMetrics metrics;
+
+    private EdtMonitor() {
+    }
+
+    /**
+     * Installs the monitor; does nothing if it is already installed
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EdtMonitor());
+    }
+
+    /**
+     * Starts recording dispatch times if metrics.edt.enabled is true; does nothing otherwise
+     */
+    public static synchronized void enableMetrics() {
+        if (metrics != null || !ConfigManager.getInstance().getBoolean("metrics.edt.enabled", false)) {
+            return;
+        }
+        metrics = new DispatchMetrics(ConfigManager.getInstance().getInt("metrics.edt.stall.ms", 100));
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = System.nanoTime();
+        AWTEvent outerEvent = currentEvent;
+        // Swing starts a new dispatch thread after an uncaught exception, so track whichever is current
+        Thread current = Thread.currentThread();
+        if (dispatchThread != current) {
+            dispatchThread = current;
+        }
+        currentEvent = event;
+        lastProgressNanos = start;
+        depth++;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            depth--;
+            currentEvent = outerEvent;
+            lastProgressNanos = System.nanoTime();
+            DispatchMetrics dispatchMetrics = metrics;
+            if (dispatchMetrics != null) {
+                dispatchMetrics.record(lastProgressNanos - start);
+            }
+        }
+    }
+
+    /**
+     * Gets the thread that dispatched the latest event
+     */
+    static Thread getDispatchThread() {
+        return dispatchThread;
+    }
+
+    /**
+     * Checks if the event dispatch thread is inside an event handler
+     */
+    static boolean isDispatching() {
+        return depth > 0;
+    }
+
+    /**
+     * Gets when the event dispatch thread last started or finished an event
+     */
+    static long getLastProgressNanos() {
+        return lastProgressNanos;
+    }
+
+    /**
+     * Describes the innermost event being handled, e.g. "ActionEvent from JButton"
+     */
+    static String describeCurrentEvent() {
+        AWTEvent event = currentEvent;
+        if (event == null) {
+            return "an event";
+        }
+        Object source = event.getSource();
+        return event.getClass().getSimpleName() + (source != null ? " from " + source.getClass().getSimpleName() : "");
+    }
+
+    /**
+     * Dispatch time histogram and stall counter
+     */
+    private static class DispatchMetrics {
+        private final MetricsRegistry.Histogram dispatchTime;
+        private final MetricsRegistry.Counter stalls;
+        private final long stallNanos;
+
+        DispatchMetrics(long stallMs) {
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            this.dispatchTime = registry.histogram("athena_edt_dispatch_seconds",
+                    "Time the Swing event dispatch thread spent handling each event");
+            this.stalls = registry.counter("athena_edt_stalls_total",
+                    "Swing events that blocked the UI for longer than the stall threshold");
+            this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMs);
+        }
+
+        void record(long elapsedNanos) {
+            dispatchTime.recordNanos(elapsedNanos);
+            if (elapsedNanos >= stallNanos) {
+                stalls.increment();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.athena.library.utils;
 
+import com.athena.library.auth.AuthService;
+
 import javax.swing.*;
 import java.io.File;
 import java.io.FileWriter;
@@ -7,20 +9,23 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 
 /**
  * Centralized error handling utility for the application
  */
 public class ErrorHandler {
     private static final Logger LOGGER = Logger.getLogger("AthenaULS");
-    private static FileHandler fileHandler;
+    private static AsyncLogHandler logHandler;
     private static final String LOG_DIRECTORY = "logs";
     private static final String LOG_FILE_PREFIX = "athena-error-";
 
+    // Set by AuthService on login and logout, so logging an error doesn't call back into it
+    private static volatile String userContext;
+    private static volatile String userId;
+    private static volatile String userType;
+
     // Error types for categorization
     public enum ErrorType {
         AUTHENTICATION("Authentication Error"),
@@ -43,30 +48,50 @@ public class ErrorHandler {
 
     // Initialize the logger
     static {
-        try {
-            // Ensure log directory exists
-            File logDir = new File(LOG_DIRECTORY);
-            if (!logDir.exists()) {
-                logDir.mkdir();
-            }
+        // Log records are written by a background thread so callers, including the UI threads, never wait on disk.
+        // Settings come from system properties, since ConfigManager itself logs while loading.
+        RollingLogFile logFile = new RollingLogFile(new File(LOG_DIRECTORY), LOG_FILE_PREFIX, ".log",
+                Integer.getInteger("athena.log.max.file.mb", 10) * 1024L * 1024L,
+                Integer.getInteger("athena.log.max.files", 10));
+        logHandler = new AsyncLogHandler(logFile,
+                Integer.getInteger("athena.log.queue.capacity", 8192),
+                Integer.getInteger("athena.log.flush.interval.ms", 1000),
+                Integer.getInteger("athena.log.overflow.wait.ms", 20));
+        LOGGER.addHandler(logHandler);
+        LOGGER.setLevel(Level.ALL);
+
+        // Don't use parent handlers
+        LOGGER.setUseParentHandlers(false);
+
+        // Swing dashboards exit through System.exit, which skips Application.stop
+        Runtime.getRuntime().addShutdownHook(new Thread(ErrorHandler::shutdown, "athena-log-drain"));
+    }
 
-            // Create a log file with date in name
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
-            String logFileName = LOG_FILE_PREFIX + dateFormat.format(new Date()) + ".log";
+    /**
+     * Records who is logged in, for the context line logged with errors
+     * @param userId ID of the logged-in user, or null after logout
+     * @param userType "STUDENT" or "LIBRARIAN", or null after logout
+     */
+    public static void setUserContext(String userId, String userType) {
+        ErrorHandler.userId = userId;
+        ErrorHandler.userType = userId != null ? userType : null;
+        userContext = userId != null ? userId + " (" + userType + ")" : null;
+    }
 
-            // Set up file handler
-            fileHandler = new FileHandler(LOG_DIRECTORY + File.separator + logFileName, true);
-            fileHandler.setFormatter(new SimpleFormatter());
-            LOGGER.addHandler(fileHandler);
-            LOGGER.setLevel(Level.ALL);
+    /**
+     * Gets the ID of the logged-in user
+     * @return User ID, or null if nobody is logged in
+     */
+    public static String getUserId() {
+        return userId;
+    }
 
-            // Don't use parent handlers
-            LOGGER.setUseParentHandlers(false);
-        } catch (IOException e) {
-            // Can't use our own logging system here since it's failing to initialize
-            System.err.println("Failed to initialize error logging: " + e.getMessage());
-            e.printStackTrace();
-        }
+    /**
+     * Gets the type of the logged-in user
+     * @return "STUDENT" or "LIBRARIAN", or null if nobody is logged in
+     */
+    public static String getUserType() {
+        return userType;
     }
 
     /**
@@ -83,9 +108,9 @@ public class ErrorHandler {
         LOGGER.log(Level.SEVERE, errorType.getDisplayName() + ": " + userMessage, error);
 
         // Log additional context if available
-        if (AuthService.getInstance().isLoggedIn()) {
-            LOGGER.log(Level.INFO, "User context: " + AuthService.getInstance().getCurrentUserId()
-                    + " (" + AuthService.getInstance().getCurrentUserType() + ")");
+        String user = userContext;
+        if (user != null) {
+            LOGGER.log(Level.INFO, "User context: " + user);
         }
 
         // Show user-friendly message
@@ -169,6 +194,13 @@ public class ErrorHandler {
                         (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) /
                                 (1024 * 1024) + "MB used of " +
                         (Runtime.getRuntime().totalMemory() / (1024 * 1024)) + "MB total");
+
+                // Capture what led up to the error if a recording is running
+                String recordingPath = JfrRecorder.getInstance().save();
+                if (recordingPath != null) {
+                    writer.println("\n=== Flight Recording ===");
+                    writer.println(recordingPath);
+                }
             }
 
             return reportFile.getAbsolutePath();
@@ -180,11 +212,11 @@ public class ErrorHandler {
     }
 
     /**
-     * Ensures all logs are properly closed when the application exits
+     * Writes out any queued log records and closes the log file when the application exits
      */
     public static void shutdown() {
-        if (fileHandler != null) {
-            fileHandler.close();
+        if (logHandler != null) {
+            logHandler.close();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.athena.library.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured event log: one JSON object per line for every Firestore operation, with its
+ * latency, so slow checkouts and logins can be traced to the call that was slow.
+ *
+ * Each line has ts (epoch milliseconds), op (e.g. "TransactionService.borrowBook"),
+ * collection, docs, bytes (when known), durationUs, outcome ("ok", "error" or
+ * "interrupted"), error (exception class and message, for failures), user, userType
+ * and thread.
+ *
+ * Recording an event doesn't allocate in steady state: events are taken from a fixed pool,
+ * filled in and queued on a {@link RingBuffer}, and a background thread formats them into
+ * one reused buffer before writing them to logs/athena-events-*.jsonl. If the pool runs out,
+ * events are dropped and the count is logged. Disable with -Dathena.events.enabled=false.
+ */
+public final class EventLog {
+    private static final String LOG_DIRECTORY = "logs";
+    private static final String LOG_FILE_PREFIX = "athena-events-";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("athena.events.enabled"));
+    private static final int CAPACITY = Integer.getInteger("athena.events.queue.capacity", 4096);
+
+    private static final RingBuffer<Event> FREE = new RingBuffer<>(CAPACITY);
+    private static final RingBuffer<Event> QUEUED = new RingBuffer<>(CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final Thread WRITER;
+    private static volatile boolean writerIdle;
+    private static volatile boolean closed;
+
+    /**
+     * A recorded event; instances are pooled and reused
+     */
+    private static final class Event {
+        long timestamp;
+        String operation;
+        String collection;
+        int documents;
+        long bytes;
+        long durationNanos;
+        String outcome;
+        Throwable error;
+        String userId;
+        String userType;
+        String thread;
+    }
+
+    static {
+        for (int i = 0; i < FREE.getCapacity(); i++) {
+            FREE.offer(new Event());
+        }
+        if (ENABLED) {
+            WRITER = new Thread(EventLog::runWriter, "athena-event-writer");
+            WRITER.setDaemon(true);
+            WRITER.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(EventLog::shutdown, "athena-event-drain"));
+        } else {
+            WRITER = null;
+        }
+    }
+
+    private EventLog() {
+    }
+
+    /**
+     * Records an operation
+     * @param operation Operation name, "Service.method"
+     * @param collection Firestore collection, or null
+     * @param documents Number of documents read or written
+     * @param bytes Bytes read or written, or -1 if unknown
+     * @param durationNanos How long the operation took
+     * @param outcome "ok", "error" or "interrupted"
+     * @param error The failure, or null
+     */
+    public static void record(String operation, String collection, int documents, long bytes,
+                              long durationNanos, String outcome, Throwable error) {
+        if (!ENABLED || closed) {
+            return;
+        }
+        Event event = FREE.poll();
+        if (event == null) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+
+        event.timestamp = System.currentTimeMillis();
+        event.operation = operation;
+        event.collection = collection;
+        event.documents = documents;
+        event.bytes = bytes;
+        event.durationNanos = durationNanos;
+        event.outcome = outcome;
+        event.error = error;
+        event.userId = ErrorHandler.getUserId();
+        event.userType = ErrorHandler.getUserType();
+        event.thread = Thread.currentThread().getName();
+
+        // Both buffers have the same capacity, so there is always room for a pooled event
+        QUEUED.offer(event);
+        if (writerIdle) {
+            LockSupport.unpark(WRITER);
+        }
+    }
+
+    /**
+     * Writes out queued events and stops the writer thread
+     */
+    public static void shutdown() {
+        if (WRITER == null || closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(WRITER);
+        try {
+            WRITER.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runWriter() {
+        RollingLogFile file = new RollingLogFile(new File(LOG_DIRECTORY), LOG_FILE_PREFIX, ".jsonl",
+                Integer.getInteger("athena.events.max.file.mb", 20) * 1024L * 1024L,
+                Integer.getInteger("athena.events.max.files", 10));
+        // Lines are collected here and written to the file in chunks
+        StringBuilder batch = new StringBuilder(64 * 1024);
+
+        while (true) {
+            boolean stopping = closed;
+            try {
+                Event event;
+                boolean wrote = false;
+                while ((event = QUEUED.poll()) != null) {
+                    format(event, batch);
+                    event.error = null; // Don't keep exceptions alive in the pool
+                    FREE.offer(event);
+                    if (batch.length() >= 32 * 1024) {
+                        file.append(batch, System.currentTimeMillis());
+                        batch.setLength(0);
+                        wrote = true;
+                    }
+                }
+                long dropped = DROPPED.getAndSet(0);
+                if (dropped > 0) {
+                    batch.append("{\"ts\":").append(System.currentTimeMillis())
+                            .append(",\"op\":\"EventLog.dropped\",\"docs\":").append(dropped).append("}\n");
+                }
+                if (batch.length() > 0) {
+                    file.append(batch, System.currentTimeMillis());
+                    batch.setLength(0);
+                    wrote = true;
+                }
+                if (wrote) {
+                    file.flush();
+                }
+            } catch (IOException e) {
+                batch.setLength(0);
+                System.err.println("Error writing event log: " + e.getMessage());
+            }
+
+            if (QUEUED.isEmpty()) {
+                if (stopping) {
+                    break;
+                }
+                writerIdle = true;
+                if (QUEUED.isEmpty() && !closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+            }
+        }
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Error closing event log: " + e.getMessage());
+        }
+    }
+
+    private static void format(Event event, StringBuilder line) {
+        line.append("{\"ts\":").append(event.timestamp);
+        appendString(line, "op", event.operation);
+        appendString(line, "collection", event.collection);
+        line.append(",\"docs\":").append(event.documents);
+        if (event.bytes >= 0) {
+            line.append(",\"bytes\":").append(event.bytes);
+        }
+        line.append(",\"durationUs\":").append(event.durationNanos / 1000);
+        appendString(line, "outcome", event.outcome);
+        if (event.error != null) {
+            line.append(",\"error\":\"");
+            appendEscaped(line, event.error.getClass().getName());
+            if (event.error.getMessage() != null) {
+                line.append(": ");
+                appendEscaped(line, event.error.getMessage());
+            }
+            line.append('"');
+        }
+        appendString(line, "user", event.userId);
+        appendString(line, "userType", event.userType);
+        appendString(line, "thread", event.thread);
+        line.append("}\n");
+    }
+
+    private static void appendString(StringBuilder line, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        appendEscaped(line, value);
+        line.append('"');
+    }
+
+    private static void appendEscaped(StringBuilder line, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+    }
+}
\ No newline at end of file
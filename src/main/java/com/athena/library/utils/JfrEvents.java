@@ -0,0 +1,167 @@
+package com.athena.library.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom Java Flight Recorder events for the app's own work, so a recording shows
+ * Firestore calls, UI loads and filter runs next to the JVM's GC, lock and I/O events.
+ *
+ * Events are created, begun and ended on every call, but only committed when a recording
+ * with the event enabled is running; otherwise shouldCommit() is false, the fields are
+ * never filled in and the JIT removes the allocation, so the cost when not recording is
+ * close to nothing. JFR adds the start time, duration and thread to every event.
+ */
+public final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    /**
+     * One Firestore call, timed from when the app starts waiting for it
+     */
+    @Name("com.athena.library.FirestoreCall")
+    @Label("Firestore Call")
+    @Category({"Athena", "Firestore"})
+    @Description("A Firestore read or write and how long the app waited for it")
+    @StackTrace(false)
+    public static class FirestoreCall extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Collection")
+        String collection;
+
+        @Label("Documents")
+        int documents;
+
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * Commits the event if a recording wants it
+         * @param operation Operation name, "Service.method"
+         * @param collection Collection read or written
+         * @param documents Documents read or written
+         * @param outcome "ok", "error" or "interrupted"
+         */
+        public void finish(String operation, String collection, int documents, String outcome) {
+            end();
+            if (shouldCommit()) {
+                this.operation = operation;
+                this.collection = collection;
+                this.documents = documents;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A screen load, from starting the background work to the UI showing the result
+     */
+    @Name("com.athena.library.UiLoad")
+    @Label("UI Load")
+    @Category({"Athena", "UI"})
+    @Description("Data loaded in the background for a screen, until the screen shows it")
+    public static class UiLoad extends Event {
+        @Label("Load")
+        String name;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Background Thread")
+        String backgroundThread;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Creates and begins a load event
+         * @param name What is being loaded, e.g. "StudentManagementPanel.loadStudents"
+         * @return The started event
+         */
+        public static UiLoad start(String name) {
+            UiLoad event = new UiLoad();
+            event.name = name;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Records the thread doing the background part; call from that thread
+         */
+        public void markBackgroundThread() {
+            if (isEnabled()) {
+                backgroundThread = Thread.currentThread().getName();
+            }
+        }
+
+        /**
+         * Commits the event if a recording wants it
+         * @param rows Rows or items loaded
+         * @param succeeded Whether the load succeeded
+         */
+        public void finish(long rows, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.rows = rows;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One run of a search or filter over data already in memory
+     */
+    @Name("com.athena.library.FilterRun")
+    @Label("Filter Run")
+    @Category({"Athena", "UI"})
+    @Description("A search or filter applied to a loaded list, including redrawing the table")
+    public static class FilterRun extends Event {
+        @Label("Filter")
+        String name;
+
+        @Label("Criteria")
+        String criteria;
+
+        @Label("Input Rows")
+        long inputRows;
+
+        @Label("Output Rows")
+        long outputRows;
+
+        /**
+         * Creates and begins a filter event
+         * @param name Which filter, e.g. "StudentManagementPanel.applyFilters"
+         * @return The started event
+         */
+        public static FilterRun start(String name) {
+            FilterRun event = new FilterRun();
+            event.name = name;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Commits the event if a recording wants it
+         * @param criteria Search text and filters, for reproducing a slow run
+         * @param inputRows Rows filtered
+         * @param outputRows Rows left
+         */
+        public void finish(String criteria, long inputRows, long outputRows) {
+            end();
+            if (shouldCommit()) {
+                this.criteria = criteria;
+                this.inputRows = inputRows;
+                this.outputRows = outputRows;
+                commit();
+            }
+        }
+    }
+}
\ No newline at end of file
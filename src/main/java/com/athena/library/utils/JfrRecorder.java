@@ -0,0 +1,122 @@
+package com.athena.library.utils;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Starts and saves Java Flight Recorder recordings from inside the app, so a field
+ * problem can be captured with one click and sent in with the error reports.
+ *
+ * Recordings use the JDK's "profile" settings plus the {@link JfrEvents} events, keep at
+ * most the last jfr.max.age.minutes (default 30) and are written to error-reports/,
+ * next to the reports from {@link ErrorHandler#createErrorReport}. An error report made
+ * while recording saves the recording too.
+ */
+public class JfrRecorder {
+    private static final String REPORTS_DIRECTORY = "error-reports";
+
+    // Singleton instance
+    private static JfrRecorder instance;
+
+    private Recording recording;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private JfrRecorder() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return JfrRecorder instance
+     */
+    public static synchronized JfrRecorder getInstance() {
+        if (instance == null) {
+            instance = new JfrRecorder();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a recording, unless one is already running
+     * @return true if a recording is running
+     */
+    public synchronized boolean start() {
+        if (recording != null) {
+            return true;
+        }
+        try {
+            Recording newRecording = new Recording(Configuration.getConfiguration("profile"));
+            newRecording.setName("Athena");
+            newRecording.setMaxAge(Duration.ofMinutes(ConfigManager.getInstance().getInt("jfr.max.age.minutes", 30)));
+            newRecording.enable(JfrEvents.FirestoreCall.class);
+            newRecording.enable(JfrEvents.UiLoad.class);
+            newRecording.enable(JfrEvents.FilterRun.class);
+            newRecording.start();
+            recording = newRecording;
+            ErrorHandler.logInfo("Started flight recording");
+            return true;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            ErrorHandler.logWarning("Could not start flight recording: " + e.getMessage(),
+                    ErrorHandler.ErrorType.GENERAL);
+            return false;
+        }
+    }
+
+    /**
+     * Checks if a recording is running
+     * @return true if recording
+     */
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes what has been recorded so far to a file and keeps recording
+     * @return The path to the .jfr file, or null if nothing is recording or it couldn't be written
+     */
+    public synchronized String save() {
+        if (recording == null) {
+            return null;
+        }
+        try {
+            File reportsDir = new File(REPORTS_DIRECTORY);
+            if (!reportsDir.exists()) {
+                reportsDir.mkdir();
+            }
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+            File file = new File(reportsDir, "recording-" + dateFormat.format(new Date()) + ".jfr");
+
+            recording.dump(file.toPath());
+            ErrorHandler.logInfo("Saved flight recording to " + file.getAbsolutePath());
+            return file.getAbsolutePath();
+        } catch (IOException | IllegalStateException e) {
+            ErrorHandler.logWarning("Could not save flight recording: " + e.getMessage(),
+                    ErrorHandler.ErrorType.FILE);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the recording to a file and stops it
+     * @return The path to the .jfr file, or null if nothing was recording or it couldn't be written
+     */
+    public synchronized String stopAndSave() {
+        if (recording == null) {
+            return null;
+        }
+        try {
+            return save();
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
\ No newline at end of file
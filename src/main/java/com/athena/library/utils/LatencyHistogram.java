@@ -0,0 +1,176 @@
+package com.athena.library.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values are recorded in microseconds. Each power of two is split into 16 equal buckets,
+ * so any recorded value is reported to within about 6%, from 1 microsecond up to about
+ * an hour, in a fixed array of under 500 counters. Recording is one array increment and
+ * doesn't lock or allocate, so it is cheap enough for every Firestore call and every
+ * Swing event.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final long MAX_MICROS = (1L << 32) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a duration
+     * @param nanos Duration in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    /**
+     * Records a duration
+     * @param micros Duration in microseconds; clamped to about an hour
+     */
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_MICROS));
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sumMicros.add(value);
+        if (value > maxMicros.get()) {
+            maxMicros.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Copies the current counts, e.g. to compute percentiles over the last few seconds
+     * with {@link Snapshot#minus}
+     * @return Snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total);
+    }
+
+    private static int indexOf(long value) {
+        // Which power of two past the first sub-bucket range, then which slice of it
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value | (SUB_BUCKET_COUNT - 1)) - (SUB_BUCKET_BITS - 1));
+        int subBucket = (int) (value >>> bucket);
+        return bucket * SUB_BUCKET_HALF + subBucket;
+    }
+
+    /**
+     * Gets the highest value that falls in a bucket
+     */
+    private static long upperBoundOf(int index) {
+        int bucket = Math.max(0, index / SUB_BUCKET_HALF - 1);
+        long subBucket = index - bucket * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram's counts
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts, long count) {
+            this.counts = counts;
+            this.count = count;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the values recorded since an earlier snapshot of the same histogram
+         * @param earlier Earlier snapshot, or null
+         * @return Snapshot of the difference
+         */
+        public Snapshot minus(Snapshot earlier) {
+            if (earlier == null) {
+                return this;
+            }
+            long[] difference = new long[counts.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                difference[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                total += difference[i];
+            }
+            return new Snapshot(difference, total);
+        }
+
+        /**
+         * Combines this snapshot with one of another histogram
+         * @param other Other snapshot, or null
+         * @return Snapshot of both sets of values
+         */
+        public Snapshot plus(Snapshot other) {
+            if (other == null) {
+                return this;
+            }
+            long[] sum = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                sum[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(sum, count + other.count);
+        }
+
+        /**
+         * Gets a percentile
+         * @param percentile Percentile between 0 and 100
+         * @return The value at that percentile in microseconds, or 0 if nothing was recorded
+         */
+        public long getPercentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(counts.length - 1);
+        }
+
+        /**
+         * Counts the values at or below a limit, for Prometheus "le" buckets
+         * @param limitMicros Upper limit in microseconds
+         * @return Number of values whose bucket lies entirely at or below the limit
+         */
+        public long countAtOrBelow(long limitMicros) {
+            long total = 0;
+            for (int i = 0; i < counts.length && upperBoundOf(i) <= limitMicros; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+}
\ No newline at end of file
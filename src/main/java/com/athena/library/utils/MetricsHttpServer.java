@@ -0,0 +1,107 @@
+package com.athena.library.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link MetricsRegistry} at http://127.0.0.1:&lt;port&gt;/metrics in the Prometheus
+ * text format, for a local Prometheus or agent to scrape.
+ *
+ * Only listens on the loopback interface. Opt-in: configured with metrics.http.enabled
+ * (default false) and metrics.http.port (default 9464).
+ */
+public class MetricsHttpServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Singleton instance
+    private static MetricsHttpServer instance;
+
+    private HttpServer server;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private MetricsHttpServer() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return MetricsHttpServer instance
+     */
+    public static synchronized MetricsHttpServer getInstance() {
+        if (instance == null) {
+            instance = new MetricsHttpServer();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the server if it is enabled and not already running
+     * @return true if the server is running
+     */
+    public synchronized boolean start() {
+        if (server != null) {
+            return true;
+        }
+        ConfigManager config = ConfigManager.getInstance();
+        if (!config.getBoolean("metrics.http.enabled", false)) {
+            return false;
+        }
+        int port = config.getInt("metrics.http.port", 9464);
+
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            httpServer.createContext("/metrics", this::handleMetrics);
+            httpServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "athena-metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            httpServer.start();
+            server = httpServer;
+            ErrorHandler.logInfo("Serving metrics on http://127.0.0.1:" + port + "/metrics");
+            return true;
+        } catch (IOException e) {
+            ErrorHandler.logWarning("Could not start metrics endpoint on port " + port + ": " + e.getMessage(),
+                    ErrorHandler.ErrorType.NETWORK);
+            return false;
+        }
+    }
+
+    /**
+     * Stops the server
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder body = new StringBuilder(16 * 1024);
+            MetricsRegistry.getInstance().writePrometheus(body);
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,311 @@
+package com.athena.library.utils;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Application-wide registry of counters, gauges and latency histograms.
+ *
+ * Metrics are identified by a Prometheus-style name plus label pairs, e.g.
+ * counter("athena_firestore_reads_total", "Documents read", "collection", "books").
+ * Asking for the same name and labels again returns the same metric, so callers don't
+ * need to keep references, although hot paths should. Everything can be written in the
+ * Prometheus text format ({@link #writePrometheus}) and is read by the admin
+ * performance panel. JVM heap, GC and thread gauges are registered on creation.
+ */
+public class MetricsRegistry {
+    // Prometheus histogram buckets, in seconds
+    private static final double[] BUCKET_SECONDS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    // Singleton instance
+    private static MetricsRegistry instance;
+
+    private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Kind of metric, as named in the Prometheus TYPE line
+     */
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String prometheusName;
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+    }
+
+    /**
+     * A registered metric: its name, labels and value
+     */
+    public abstract static class Metric {
+        private final String name;
+        private final String help;
+        private final String labels;
+
+        private Metric(String name, String help, String labels) {
+            this.name = name;
+            this.help = help;
+            this.labels = labels;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        /**
+         * Gets the labels in Prometheus form
+         * @return e.g. {collection="books"}, or an empty string
+         */
+        public String getLabels() {
+            return labels;
+        }
+
+        public abstract Type getType();
+    }
+
+    /**
+     * Monotonically increasing count
+     */
+    public static class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String help, String labels) {
+            super(name, help, labels);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public Type getType() {
+            return Type.COUNTER;
+        }
+    }
+
+    /**
+     * Value read from a supplier whenever it is reported
+     */
+    public static class Gauge extends Metric {
+        private final DoubleSupplier supplier;
+
+        private Gauge(String name, String help, String labels, DoubleSupplier supplier) {
+            super(name, help, labels);
+            this.supplier = supplier;
+        }
+
+        public double get() {
+            return supplier.getAsDouble();
+        }
+
+        @Override
+        public Type getType() {
+            return Type.GAUGE;
+        }
+    }
+
+    /**
+     * Latency histogram, reported in seconds
+     */
+    public static class Histogram extends Metric {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Histogram(String name, String help, String labels) {
+            super(name, help, labels);
+        }
+
+        public void recordNanos(long nanos) {
+            histogram.recordNanos(nanos);
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.HISTOGRAM;
+        }
+    }
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private MetricsRegistry() {
+        registerJvmMetrics();
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return MetricsRegistry instance
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets or creates a counter
+     * @param name Metric name
+     * @param help Description
+     * @param labels Label names and values, alternating
+     * @return The counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        String labelText = formatLabels(labels);
+        return (Counter) metrics.computeIfAbsent(name + labelText, key -> new Counter(name, help, labelText));
+    }
+
+    /**
+     * Gets or creates a histogram
+     * @param name Metric name, usually ending in _seconds
+     * @param help Description
+     * @param labels Label names and values, alternating
+     * @return The histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        String labelText = formatLabels(labels);
+        return (Histogram) metrics.computeIfAbsent(name + labelText, key -> new Histogram(name, help, labelText));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name and labels
+     * @param name Metric name
+     * @param help Description
+     * @param supplier Reads the current value; called on the reporting thread
+     * @param labels Label names and values, alternating
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        String labelText = formatLabels(labels);
+        metrics.put(name + labelText, new Gauge(name, help, labelText, supplier));
+    }
+
+    /**
+     * Gets every registered metric, sorted by name and labels
+     * @return List of metrics
+     */
+    public List<Metric> getMetrics() {
+        List<Metric> sorted = new ArrayList<>(metrics.values());
+        sorted.sort(Comparator.comparing(Metric::getName).thenComparing(Metric::getLabels));
+        return sorted;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format
+     * @param out Where to write
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        String lastName = null;
+        for (Metric metric : getMetrics()) {
+            if (!metric.getName().equals(lastName)) {
+                out.append("# HELP ").append(metric.getName()).append(' ').append(metric.getHelp()).append('\n');
+                out.append("# TYPE ").append(metric.getName()).append(' ')
+                        .append(metric.getType().prometheusName).append('\n');
+                lastName = metric.getName();
+            }
+
+            if (metric instanceof Counter) {
+                out.append(metric.getName()).append(metric.getLabels()).append(' ')
+                        .append(Long.toString(((Counter) metric).get())).append('\n');
+            } else if (metric instanceof Gauge) {
+                out.append(metric.getName()).append(metric.getLabels()).append(' ')
+                        .append(formatDouble(((Gauge) metric).get())).append('\n');
+            } else {
+                writeHistogram((Histogram) metric, out);
+            }
+        }
+    }
+
+    private static void writeHistogram(Histogram metric, Appendable out) throws IOException {
+        LatencyHistogram.Snapshot snapshot = metric.getHistogram().snapshot();
+        for (double bucket : BUCKET_SECONDS) {
+            out.append(metric.getName()).append("_bucket").append(withLabel(metric.getLabels(), "le", formatDouble(bucket)))
+                    .append(' ').append(Long.toString(snapshot.countAtOrBelow((long) (bucket * 1_000_000)))).append('\n');
+        }
+        out.append(metric.getName()).append("_bucket").append(withLabel(metric.getLabels(), "le", "+Inf"))
+                .append(' ').append(Long.toString(snapshot.getCount())).append('\n');
+        out.append(metric.getName()).append("_sum").append(metric.getLabels()).append(' ')
+                .append(formatDouble(metric.getHistogram().getSumMicros() / 1_000_000.0)).append('\n');
+        out.append(metric.getName()).append("_count").append(metric.getLabels()).append(' ')
+                .append(Long.toString(snapshot.getCount())).append('\n');
+    }
+
+    private void registerJvmMetrics() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm_memory_heap_used_bytes", "Heap memory in use",
+                () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm_memory_heap_committed_bytes", "Heap memory committed by the JVM",
+                () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("jvm_memory_heap_max_bytes", "Maximum heap size",
+                () -> memory.getHeapMemoryUsage().getMax());
+        gauge("jvm_memory_nonheap_used_bytes", "Non-heap memory in use",
+                () -> memory.getNonHeapMemoryUsage().getUsed());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gauge("jvm_gc_collections", "Garbage collections run",
+                    gc::getCollectionCount, "gc", gc.getName());
+            gauge("jvm_gc_collection_seconds", "Time spent in garbage collection",
+                    () -> gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+        }
+        gauge("jvm_threads_live", "Live threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        gauge("process_uptime_seconds", "Time since the JVM started",
+                () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i + 1] != null ? labels[i + 1] : "";
+            text.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return text.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String formatDouble(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
\ No newline at end of file
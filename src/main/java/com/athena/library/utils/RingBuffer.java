@@ -0,0 +1,100 @@
+package com.athena.library.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue that any number of threads can add to and take from.
+ *
+ * Each slot carries a sequence number that says whose turn it is: producers claim a
+ * position with one compare-and-set on the tail and publish by advancing the slot's
+ * sequence, and consumers claim a position on the head the same way and free the slot
+ * by advancing it again by the capacity. Threads never block each other, and a full
+ * buffer is reported to the caller instead of waiting, so the caller decides whether
+ * to drop or retry.
+ *
+ * @param <T> Element type
+ */
+public class RingBuffer<T> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates a buffer
+     * @param minimumCapacity Minimum number of elements; rounded up to a power of two
+     */
+    public RingBuffer(int minimumCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element; safe to call from any thread
+     * @param element Element to add
+     * @return false if the buffer is full
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (lag < 0) {
+                return false; // The consumer hasn't freed this slot yet
+            }
+            // Otherwise another producer claimed the position first; try the next one
+        }
+    }
+
+    /**
+     * Removes the oldest element; safe to call from any thread
+     * @return The element, or null if the buffer is empty
+     */
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            long lag = sequences.get(index) - (position + 1);
+            if (lag == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T element = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.set(index, position + capacity);
+                    return element;
+                }
+            } else if (lag < 0) {
+                return null; // Nothing published at this position yet
+            }
+            // Otherwise another consumer took this position first; try the next one
+        }
+    }
+
+    /**
+     * Checks if the buffer is empty; only a hint while other threads are adding or taking
+     * @return true if there is nothing to poll
+     */
+    public boolean isEmpty() {
+        long position = head.get();
+        return sequences.get((int) (position & mask)) != position + 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.athena.library.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Log file that starts a new file when it reaches a size limit or a new day begins,
+ * and deletes the oldest files beyond a retention count.
+ *
+ * Files are named prefix + start time + suffix, e.g. logs/athena-error-20250301-091500.log.
+ * Not thread-safe: meant to be written by a single logging thread.
+ */
+public class RollingLogFile {
+    private final File directory;
+    private final String prefix;
+    private final String suffix;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    private Writer writer;
+    private long bytesWritten;
+    private String currentDay;
+    private final SimpleDateFormat fileTimeFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyyMMdd");
+
+    /**
+     * Creates a rolling file; nothing is opened until the first write
+     * @param directory Directory for the files
+     * @param prefix File name prefix
+     * @param suffix File name suffix, e.g. ".log"
+     * @param maxBytes Size at which to start a new file
+     * @param maxFiles Number of files to keep
+     */
+    public RollingLogFile(File directory, String prefix, String suffix, long maxBytes, int maxFiles) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Appends text, rolling over first if needed
+     * @param text Text to append (counted as one byte per char for the size limit)
+     * @param now Current time in milliseconds
+     */
+    public void append(CharSequence text, long now) throws IOException {
+        String day = dayFormat.format(new Date(now));
+        if (writer == null || bytesWritten >= maxBytes || !day.equals(currentDay)) {
+            roll(now, day);
+        }
+        writer.append(text);
+        bytesWritten += text.length();
+    }
+
+    /**
+     * Flushes buffered text to the file
+     */
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes the current file
+     */
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void roll(long now, String day) throws IOException {
+        close();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        String name = prefix + fileTimeFormat.format(new Date(now));
+        File file = new File(directory, name + suffix);
+        for (int n = 1; file.length() >= maxBytes; n++) {
+            // Filled up within the same second
+            file = new File(directory, name + "-" + n + suffix);
+        }
+        OutputStream out = Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        bytesWritten = file.length();
+        currentDay = day;
+        deleteOldFiles();
+    }
+
+    private void deleteOldFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+        if (files == null || files.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            files[i].delete();
+        }
+    }
+}
\ No newline at end of file
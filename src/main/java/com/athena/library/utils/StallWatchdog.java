@@ -0,0 +1,362 @@
+package com.athena.library.utils;
+
+import javafx.application.Platform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the Swing event dispatch thread and the JavaFX application thread for stalls.
+ *
+ * A background thread checks both UI threads every stall.sample.interval.ms (default 50).
+ * The Swing thread is stalled when {@link EdtMonitor} shows it inside one event for longer
+ * than stall.threshold.ms (default 200); the JavaFX thread is stalled when a Platform.runLater
+ * ping goes unanswered that long. While a stall lasts, the stalled thread's stack is sampled
+ * on every check. When it ends, the samples are merged into a flame-style call tree and logged
+ * with {@link ErrorHandler#logWarning}, the duration is recorded in athena_ui_stall_seconds,
+ * and the samples are added to logs/athena-stalls.folded, in the folded-stack format that
+ * flame graph tools read.
+ */
+public class StallWatchdog {
+    private static final String LOG_DIRECTORY = "logs";
+    private static final String FOLDED_FILE = "athena-stalls.folded";
+    private static final int KEPT_COMMON_FRAMES = 3;
+    private static final double MIN_BRANCH_SHARE = 0.1;
+    private static final int MAX_TREE_LINES = 40;
+    private static final long FX_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Singleton instance
+    private static StallWatchdog instance;
+
+    private final Stall edtStall = new Stall("edt", "Swing event dispatch thread");
+    private final Stall fxStall = new Stall("fx", "JavaFX application thread");
+    private final Map<String, Long> foldedTotals = new HashMap<>(); // Only used by the watchdog thread
+
+    private Thread watchdog;
+    private volatile boolean running;
+    private long intervalMs;
+    private long thresholdNanos;
+
+    // JavaFX ping; fxPingSentNanos is 0 while no ping is waiting to be answered
+    private volatile long fxPingSentNanos;
+    private volatile Thread fxThread;
+    private boolean fxAvailable = true;
+    private long fxRetryAtNanos;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private StallWatchdog() {
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return StallWatchdog instance
+     */
+    public static synchronized StallWatchdog getInstance() {
+        if (instance == null) {
+            instance = new StallWatchdog();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts watching, unless already started
+     */
+    public synchronized void start() {
+        if (watchdog != null) {
+            return;
+        }
+        ConfigManager config = ConfigManager.getInstance();
+        intervalMs = Math.max(10, config.getInt("stall.sample.interval.ms", 50));
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getInt("stall.threshold.ms", 200));
+
+        running = true;
+        watchdog = new Thread(this::run, "athena-stall-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /**
+     * Stops watching
+     */
+    public synchronized void stop() {
+        if (watchdog != null) {
+            running = false;
+            watchdog.interrupt();
+            watchdog = null;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            checkEdt(now);
+            checkFx(now);
+        }
+    }
+
+    private void checkEdt(long now) {
+        // Read on every check; the dispatch thread is replaced if one dies
+        Thread edt = EdtMonitor.getDispatchThread();
+        long lastProgress = EdtMonitor.getLastProgressNanos();
+
+        if (edtStall.isActive() && lastProgress != edtStall.startNanos) {
+            // The stalled event finished between two checks
+            finish(edtStall, Math.max(lastProgress, edtStall.lastSampleNanos));
+        }
+        if (edt == null || !edt.isAlive() || !EdtMonitor.isDispatching() || now - lastProgress < thresholdNanos) {
+            return;
+        }
+        StackTraceElement[] stack = edt.getStackTrace();
+        if (isWaitingForEvents(stack)) {
+            // A modal dialog is open and idle, which is not a stall
+            return;
+        }
+        if (!edtStall.isActive()) {
+            edtStall.begin(lastProgress, EdtMonitor.describeCurrentEvent());
+        }
+        edtStall.addSample(stack, now);
+    }
+
+    private void checkFx(long now) {
+        if (!fxAvailable) {
+            return;
+        }
+        long pingSent = fxPingSentNanos;
+        if (pingSent == 0) {
+            if (fxStall.isActive()) {
+                finish(fxStall, now);
+            }
+            if (now >= fxRetryAtNanos) {
+                sendFxPing(now);
+            }
+            return;
+        }
+
+        Thread thread = fxThread;
+        if (thread != null && !thread.isAlive()) {
+            // JavaFX has exited and will never answer
+            fxAvailable = false;
+            fxStall.reset();
+            return;
+        }
+        if (thread == null || now - pingSent < thresholdNanos) {
+            return;
+        }
+        if (!fxStall.isActive()) {
+            fxStall.begin(pingSent, "a JavaFX pulse or runLater task");
+        }
+        fxStall.addSample(thread.getStackTrace(), now);
+    }
+
+    private void sendFxPing(long now) {
+        fxPingSentNanos = now;
+        try {
+            Platform.runLater(() -> {
+                fxThread = Thread.currentThread();
+                fxPingSentNanos = 0;
+            });
+        } catch (IllegalStateException e) {
+            // JavaFX isn't started yet; try again later
+            fxPingSentNanos = 0;
+            fxRetryAtNanos = now + FX_RETRY_NANOS;
+        } catch (NoClassDefFoundError e) {
+            fxPingSentNanos = 0;
+            fxAvailable = false;
+        }
+    }
+
+    private static boolean isWaitingForEvents(StackTraceElement[] stack) {
+        for (int i = 0; i < Math.min(stack.length, 12); i++) {
+            if ("java.awt.EventQueue".equals(stack[i].getClassName())
+                    && "getNextEvent".equals(stack[i].getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finish(Stall stall, long endNanos) {
+        long durationNanos = endNanos - stall.startNanos;
+        MetricsRegistry.getInstance().histogram("athena_ui_stall_seconds",
+                "How long the UI threads were stalled for", "thread", stall.label).recordNanos(durationNanos);
+
+        if (!stall.samples.isEmpty()) {
+            ErrorHandler.logWarning(buildReport(stall, durationNanos), ErrorHandler.ErrorType.UI);
+            for (StackTraceElement[] sample : stall.samples) {
+                foldedTotals.merge(fold(stall.label, sample), 1L, Long::sum);
+            }
+            writeFolded();
+        }
+        stall.reset();
+    }
+
+    private static String buildReport(Stall stall, long durationNanos) {
+        int total = stall.samples.size();
+        StringBuilder report = new StringBuilder();
+        report.append("UI stall: the ").append(stall.description).append(" was blocked for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms handling ")
+                .append(stall.trigger).append(" (").append(total).append(total == 1 ? " sample" : " samples")
+                .append(")");
+
+        // Merge the samples into one tree, outermost frame first
+        Node root = new Node(null);
+        for (StackTraceElement[] sample : stall.samples) {
+            Node node = root;
+            node.count++;
+            for (int i = sample.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(formatFrame(sample[i]), Node::new);
+                node.count++;
+            }
+        }
+
+        // Skip the frames every sample shares, such as the event loop, except the last few
+        List<Node> common = new ArrayList<>();
+        Node node = root;
+        while (node.children.size() == 1) {
+            node = node.children.values().iterator().next();
+            common.add(node);
+        }
+        int[] lines = {0};
+        if (common.size() > KEPT_COMMON_FRAMES) {
+            int skipped = common.size() - KEPT_COMMON_FRAMES;
+            report.append("\n  ... ").append(skipped).append(" common frames");
+            appendTree(report, common.get(skipped), total, 1, lines);
+        } else {
+            for (Node child : sortedChildren(root)) {
+                appendTree(report, child, total, 1, lines);
+            }
+        }
+        if (lines[0] > MAX_TREE_LINES) {
+            report.append("\n  ... (see ").append(LOG_DIRECTORY).append('/').append(FOLDED_FILE)
+                    .append(" for the full stacks)");
+        }
+        return report.toString();
+    }
+
+    private static void appendTree(StringBuilder report, Node node, int total, int depth, int[] lines) {
+        if (node.count < total * MIN_BRANCH_SHARE || ++lines[0] > MAX_TREE_LINES) {
+            return;
+        }
+        report.append('\n');
+        for (int i = 0; i < depth; i++) {
+            report.append("  ");
+        }
+        report.append(String.format("%3d%% ", node.count * 100 / total)).append(node.frame);
+        for (Node child : sortedChildren(node)) {
+            appendTree(report, child, total, depth + 1, lines);
+        }
+    }
+
+    private static List<Node> sortedChildren(Node node) {
+        List<Node> children = new ArrayList<>(node.children.values());
+        children.sort((a, b) -> Integer.compare(b.count, a.count));
+        return children;
+    }
+
+    private static String formatFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        String text = className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+        if (frame.getFileName() != null && frame.getLineNumber() >= 0) {
+            text += "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+        }
+        return text;
+    }
+
+    private static String fold(String label, StackTraceElement[] sample) {
+        StringBuilder folded = new StringBuilder(label);
+        for (int i = sample.length - 1; i >= 0; i--) {
+            folded.append(';').append(sample[i].getClassName()).append('.').append(sample[i].getMethodName());
+        }
+        return folded.toString();
+    }
+
+    private void writeFolded() {
+        File logDir = new File(LOG_DIRECTORY);
+        if (!logDir.exists()) {
+            logDir.mkdirs();
+        }
+        Path target = new File(logDir, FOLDED_FILE).toPath();
+        Path temp = new File(logDir, FOLDED_FILE + ".tmp").toPath();
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : new TreeMap<>(foldedTotals).entrySet()) {
+                    writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing stall stacks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A stall on one UI thread, while it is being sampled
+     */
+    private static class Stall {
+        final String label;
+        final String description;
+        final List<StackTraceElement[]> samples = new ArrayList<>();
+        String trigger;
+        long startNanos;
+        long lastSampleNanos;
+        boolean active;
+
+        Stall(String label, String description) {
+            this.label = label;
+            this.description = description;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        void begin(long startNanos, String trigger) {
+            this.active = true;
+            this.startNanos = startNanos;
+            this.trigger = trigger;
+        }
+
+        void addSample(StackTraceElement[] stack, long now) {
+            samples.add(stack);
+            lastSampleNanos = now;
+        }
+
+        void reset() {
+            active = false;
+            samples.clear();
+            trigger = null;
+        }
+    }
+
+    /**
+     * A frame in the merged call tree
+     */
+    private static class Node {
+        final String frame;
+        final Map<String, Node> children = new LinkedHashMap<>();
+        int count;
+
+        Node(String frame) {
+            this.frame = frame;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.athena.library.utils;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicates repeated string values such as genres, publishers, locations,
+ * departments, programs and author names.
+ *
+ * Every document mapped from Firestore gets fresh String instances, so a catalogue
+ * of thousands of books holds thousands of copies of "Fiction". Passing mapped values
+ * through the pool makes them share one instance. Only use it for low-cardinality
+ * fields; the pool stops accepting new values once it reaches its size limit.
+ */
+public class StringPool {
+    private static final int DEFAULT_MAX_ENTRIES = 50000;
+
+    private static StringPool instance;
+
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private StringPool() {
+        this.maxEntries = ConfigManager.getInstance().getInt("cache.string.pool.max.entries", DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return StringPool instance
+     */
+    public static synchronized StringPool getInstance() {
+        if (instance == null) {
+            instance = new StringPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the shared instance of a string
+     * @param value String to deduplicate (may be null)
+     * @return The pooled instance, or the value itself if it isn't pooled
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups.incrementAndGet();
+
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            if (pooled != value) {
+                hits.incrementAndGet();
+                bytesSaved.addAndGet(estimateSize(value));
+            }
+            return pooled;
+        }
+
+        if (pool.size() >= maxEntries) {
+            return value;
+        }
+        pooled = pool.putIfAbsent(value, value);
+        if (pooled != null) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(estimateSize(value));
+            return pooled;
+        }
+        return value;
+    }
+
+    /**
+     * Replaces every element of a list with its shared instance, in place
+     * @param values Mutable list of strings (may be null)
+     */
+    public void internAll(List<String> values) {
+        if (values != null) {
+            values.replaceAll(this::intern);
+        }
+    }
+
+    /**
+     * Gets the number of distinct strings in the pool
+     * @return Pool size
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the estimated heap no longer held by duplicate strings
+     * @return Bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Estimates the heap size of a String and its backing array with compact strings
+     * (a 24-byte String object plus a 16-byte array header, rounded up to 8 bytes)
+     */
+    private static long estimateSize(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        long arrayBytes = 16L + (long) value.length() * (latin1 ? 1 : 2);
+        return 24 + ((arrayBytes + 7) & ~7L);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StringPool{size=%d, lookups=%d, hits=%d, bytesSaved=%d}",
+                size(), lookups.get(), hits.get(), bytesSaved.get());
+    }
+}
\ No newline at end of file
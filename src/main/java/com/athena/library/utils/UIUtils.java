@@ -2,9 +2,17 @@ package com.athena.library.utils;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Utility class for common UI operations
@@ -210,4 +218,112 @@ public class UIUtils {
         scrollPane.setBorder(BorderFactory.createLineBorder(PRIMARY_COLOR, 1));
         return scrollPane;
     }
+
+    /**
+     * Shows a list of suggestions under a text field as the user types.
+     * Up/Down move through the suggestions, Enter or a click picks one, Escape closes the list.
+     * @param field Text field to attach to
+     * @param completer Gives the suggestions for the current text; called on the EDT, so it must be fast
+     */
+    public static void installAutocomplete(JTextField field, Function<String, List<String>> completer) {
+        DefaultListModel<String> suggestions = new DefaultListModel<>();
+        JList<String> list = new JList<>(suggestions);
+        list.setFont(NORMAL_FONT);
+        list.setFocusable(false);
+
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        popup.setBorder(BorderFactory.createLineBorder(PRIMARY_COLOR, 1));
+        popup.add(new JScrollPane(list));
+
+        // Set while a picked suggestion is written to the field, so it doesn't reopen the list
+        boolean[] accepting = { false };
+
+        Runnable accept = () -> {
+            String selected = list.getSelectedValue();
+            popup.setVisible(false);
+            if (selected != null) {
+                accepting[0] = true;
+                field.setText(selected);
+                accepting[0] = false;
+            }
+        };
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                update();
+            }
+
+            private void update() {
+                if (accepting[0]) {
+                    return;
+                }
+                // Document events can arrive mid-edit; read the text once the edit is done
+                SwingUtilities.invokeLater(() -> {
+                    suggestions.clear();
+                    for (String suggestion : completer.apply(field.getText())) {
+                        suggestions.addElement(suggestion);
+                    }
+                    if (suggestions.isEmpty() || !field.isShowing()) {
+                        popup.setVisible(false);
+                        return;
+                    }
+                    list.setVisibleRowCount(Math.min(suggestions.size(), 8));
+                    popup.setPopupSize(field.getWidth(), popup.getPreferredSize().height);
+                    popup.show(field, 0, field.getHeight());
+                    field.requestFocusInWindow();
+                });
+            }
+        });
+
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        list.setSelectedIndex(Math.min(list.getSelectedIndex() + 1, suggestions.size() - 1));
+                        list.ensureIndexIsVisible(list.getSelectedIndex());
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        list.setSelectedIndex(Math.max(list.getSelectedIndex() - 1, 0));
+                        list.ensureIndexIsVisible(list.getSelectedIndex());
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (list.getSelectedIndex() >= 0) {
+                            accept.run();
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                }
+            }
+        });
+
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                list.setSelectedIndex(list.locationToIndex(e.getPoint()));
+                accept.run();
+            }
+        });
+    }
 }
\ No newline at end of file